@@ -0,0 +1,48 @@
+package org.moyrax.benchmark;
+
+import org.moyrax.javascript.annotation.Function;
+import org.moyrax.javascript.annotation.GlobalFunction;
+import org.moyrax.javascript.annotation.Script;
+
+/**
+ * Component used by the benchmarks which require an exportable class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Script(name = "BenchmarkComponent")
+public class BenchmarkComponent {
+  /** Accumulated value. */
+  private double total;
+
+  /**
+   * Default constructor.
+   */
+  public BenchmarkComponent() {}
+
+  /**
+   * Adds the specified values to the total.
+   */
+  @Function
+  public double add(final int value, final double factor) {
+    total += value * factor;
+
+    return total;
+  }
+
+  /**
+   * Concatenates the specified values.
+   */
+  @Function
+  public String join(final String first, final String second) {
+    return first + second;
+  }
+
+  /**
+   * Returns the received value.
+   */
+  @GlobalFunction
+  public static String echo(final String value) {
+    return value;
+  }
+}
@@ -0,0 +1,85 @@
+package org.moyrax.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import org.moyrax.reflect.ClassResource;
+import org.moyrax.reflect.Method;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the bytecode parsing done by {@link ClassResource}, against a
+ * baseline which parses the whole class like it was done before the members
+ * were read on demand. The allocation of each benchmark is reported when
+ * it's run with the GC profiler (<code>-prof gc</code>).
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassResourceBenchmark {
+  /** Class to parse. */
+  @Param({
+    "org.moyrax.benchmark.BenchmarkComponent",
+    "org.moyrax.javascript.Shell"
+  })
+  public String className;
+
+  /** Class loader to read the classes from. */
+  private ClassLoader classLoader = getClass().getClassLoader();
+
+  /**
+   * Parses the class header and reads the annotations.
+   */
+  @Benchmark
+  public Annotation[] annotations() throws IOException {
+    return new ClassResource(className, classLoader).getAnnotations();
+  }
+
+  /**
+   * Parses the class header and reads the methods, which are parsed in a
+   * lazy second pass that skips the code.
+   */
+  @Benchmark
+  public Method[] methods() throws IOException {
+    return new ClassResource(className, classLoader).getMethods();
+  }
+
+  /**
+   * Baseline: parses the whole class, including the code, with the same
+   * flags used before the members were parsed on demand.
+   */
+  @Benchmark
+  public ClassNode fullParse() throws IOException {
+    InputStream input = classLoader.getResourceAsStream(
+        className.replace(".", "/") + ".class");
+
+    try {
+      ClassNode node = new ClassNode();
+
+      new ClassReader(input).accept(node, ClassReader.EXPAND_FRAMES);
+
+      return node;
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package org.moyrax.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.moyrax.javascript.ContextClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the component transformation done by the
+ * {@link ContextClassLoader}, and the lookup of classes which are not
+ * components.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContextClassLoaderBenchmark {
+  /** Parent of the class loaders created by the benchmarks. */
+  private ClassLoader parent = getClass().getClassLoader();
+
+  /** Class loader shared by the lookup benchmark. */
+  private ContextClassLoader sharedClassLoader = new ContextClassLoader(parent);
+
+  /**
+   * Transforms a component in a new class loader.
+   */
+  @Benchmark
+  public Class<?> transform() throws ClassNotFoundException {
+    return new ContextClassLoader(parent).loadClass(
+        BenchmarkComponent.class.getName());
+  }
+
+  /**
+   * Loads a class which is not a component.
+   */
+  @Benchmark
+  public Class<?> delegate() throws ClassNotFoundException {
+    return sharedClassLoader.loadClass(ClassResourceBenchmark.class.getName());
+  }
+}
@@ -0,0 +1,123 @@
+package org.moyrax.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.FunctionObject;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+
+import org.moyrax.javascript.instrument.FunctionInvoker;
+import org.moyrax.javascript.instrument.FunctionInvokerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the calls per second of a component function invoked through a
+ * generated {@link FunctionInvoker} and through Rhino's reflective
+ * {@link FunctionObject}.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FunctionInvokerBenchmark {
+  /**
+   * Component with a function to call.
+   */
+  public static class Counter extends ScriptableObject {
+    /** Default id for serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /** Accumulated value. */
+    private double total;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getClassName() {
+      return "Counter";
+    }
+
+    /**
+     * Adds the specified values to the total.
+     */
+    public double add(final int value, final double factor) {
+      total += value * factor;
+
+      return total;
+    }
+  }
+
+  /** Context bound to the benchmark thread. */
+  private Context context;
+
+  /** Scope to define the functions. */
+  private ScriptableObject scope;
+
+  /** Object to invoke the function on. */
+  private Counter counter;
+
+  /** Function which invokes the method through reflection. */
+  private FunctionObject reflective;
+
+  /** Function which invokes the method directly. */
+  private FunctionInvoker direct;
+
+  /** Arguments of the calls, as they're received from JavaScript. */
+  private Object[] args = new Object[] { Integer.valueOf(2), Double.valueOf(1.5) };
+
+  /**
+   * Creates both functions.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws NoSuchMethodException {
+    context = Context.enter();
+    scope = context.initStandardObjects();
+    counter = new Counter();
+
+    reflective = new FunctionObject("add", Counter.class.getMethod("add",
+        Integer.TYPE, Double.TYPE), scope);
+    direct = new FunctionInvokerFactory().create(Counter.class, "add", false,
+        scope);
+  }
+
+  /**
+   * Exits the context.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Context.exit();
+  }
+
+  /**
+   * Calls the function through reflection.
+   */
+  @Benchmark
+  public Object reflective() {
+    return reflective.call(context, scope, counter, args);
+  }
+
+  /**
+   * Calls the function through the generated invoker.
+   */
+  @Benchmark
+  public Object direct() {
+    return direct.call(context, scope, counter, args);
+  }
+}
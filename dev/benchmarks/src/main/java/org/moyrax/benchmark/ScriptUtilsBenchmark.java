@@ -0,0 +1,104 @@
+package org.moyrax.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+
+import org.moyrax.util.ScriptUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Measures the execution of the JavaScript libraries bundled with the plugin
+ * through {@link ScriptUtils#run(Context, Scriptable, String)}. The libraries
+ * run in the window scope of an empty page, since they require the DOM.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScriptUtilsBenchmark {
+  /** Library to execute. */
+  @Param({
+    "org/moyrax/javascript/lib/qunit.js",
+    "org/moyrax/javascript/lib/jquery.js",
+    "org/moyrax/javascript/lib/prototype.js"
+  })
+  public String library;
+
+  /** Browser which contains the page. */
+  private WebClient client;
+
+  /** Empty page to run the libraries. */
+  private File page;
+
+  /** Context bound to the benchmark thread. */
+  private Context context;
+
+  /** Window scope of the page. */
+  private Scriptable scope;
+
+  /**
+   * Loads the empty page and enters the browser's JavaScript context.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    page = File.createTempFile("benchmark", ".html");
+
+    FileWriter writer = new FileWriter(page);
+
+    try {
+      writer.write("<html><head></head><body></body></html>");
+    } finally {
+      writer.close();
+    }
+
+    client = new WebClient();
+
+    HtmlPage htmlPage = client.getPage(page.toURI().toURL());
+
+    scope = (Scriptable)htmlPage.getEnclosingWindow().getScriptObject();
+    context = client.getJavaScriptEngine().getContextFactory().enterContext();
+  }
+
+  /**
+   * Exits the context and releases the browser.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Context.exit();
+    client.closeAllWindows();
+    page.delete();
+  }
+
+  /**
+   * Executes the library.
+   */
+  @Benchmark
+  public Object run() {
+    return ScriptUtils.run(context, scope, library);
+  }
+}
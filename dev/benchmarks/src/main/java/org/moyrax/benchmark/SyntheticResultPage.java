@@ -0,0 +1,66 @@
+package org.moyrax.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a static page with the same markup that QUnit renders when all the
+ * tests are finished. It allows to measure the results extraction without
+ * running the tests.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public final class SyntheticResultPage {
+  /** Utility class. */
+  private SyntheticResultPage() {}
+
+  /**
+   * Creates a new page in a temporary file.
+   *
+   * @param modules Number of modules.
+   * @param tests Number of tests in each module.
+   * @param assertions Number of assertions in each test.
+   *
+   * @return Returns the created file.
+   */
+  public static File create(final int modules, final int tests,
+      final int assertions) throws IOException {
+
+    File file = File.createTempFile("qunit-results", ".html");
+    Writer writer = new FileWriter(file);
+
+    try {
+      writer.write("<html><head><title>Synthetic results</title></head>"
+          + "<body><ol id=\"qunit-tests\">\n");
+
+      for (int module = 0; module < modules; module++) {
+        for (int test = 0; test < tests; test++) {
+          writer.write("<li class=\"pass\"><strong>module" + module + ": test"
+              + test + " (0, " + assertions + ", " + assertions
+              + ")</strong><ol>");
+
+          for (int assertion = 0; assertion < assertions; assertion++) {
+            writer.write("<li class=\"pass\"><span>assertion " + assertion
+                + " of test" + test + "</span></li>");
+          }
+
+          writer.write("</ol></li>\n");
+        }
+      }
+
+      int total = modules * tests * assertions;
+
+      writer.write("</ol><p id=\"qunit-testresult\">Tests completed in 1234"
+          + " milliseconds.<br/><span class=\"passed\">" + total + "</span>"
+          + " tests of <span class=\"total\">" + total + "</span> passed,"
+          + " <span class=\"failed\">0</span> failed.</p></body></html>");
+    } finally {
+      writer.close();
+    }
+
+    return file;
+  }
+}
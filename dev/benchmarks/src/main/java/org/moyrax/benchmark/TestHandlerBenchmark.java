@@ -0,0 +1,77 @@
+package org.moyrax.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.moyrax.javascript.qunit.TestHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Measures how {@link TestHandler} reads the results from a large page. The
+ * page contains the markup rendered by QUnit, so no test is executed.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TestHandlerBenchmark {
+  /** Number of tests in each module. */
+  @Param({ "100", "1000" })
+  public int tests;
+
+  /** Browser to load the page. */
+  private WebClient client;
+
+  /** Page with the results. */
+  private File page;
+
+  /**
+   * Creates the page.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    client = new WebClient();
+    page = SyntheticResultPage.create(10, tests, 5);
+  }
+
+  /**
+   * Releases the browser and deletes the page.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.closeAllWindows();
+    page.delete();
+  }
+
+  /**
+   * Loads the page and reads the results.
+   */
+  @Benchmark
+  public TestHandler extract() throws IOException {
+    TestHandler handler = new TestHandler(client, page);
+
+    handler.run();
+
+    return handler;
+  }
+}
@@ -0,0 +1,118 @@
+package org.moyrax.benchmark;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.moyrax.javascript.qunit.ModuleStatus;
+import org.moyrax.javascript.qunit.TestStatus;
+import org.moyrax.reporting.Operation;
+import org.moyrax.reporting.ReportEntry;
+import org.moyrax.reporting.ReportStatus;
+import org.moyrax.reporting.TestCase;
+import org.moyrax.reporting.TestSuite;
+import org.moyrax.reporting.XmlReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the report of a whole test file through the {@link XmlReporter},
+ * including the final output.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlReporterBenchmark {
+  /** Number of tests in each module. */
+  @Param({ "100", "1000" })
+  public int tests;
+
+  /** Modules to report. */
+  private List<TestSuite> modules;
+
+  /**
+   * Creates the modules and tests.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    modules = new ArrayList<TestSuite>();
+
+    for (int i = 0; i < 10; i++) {
+      TestSuite module = new TestSuite("module" + i);
+
+      for (int j = 0; j < tests; j++) {
+        TestCase test = new TestCase("test" + j);
+
+        test.start(0);
+        test.print("<span>assertion of test" + j + "</span>");
+        test.done(5, j % 10 == 0 ? 1 : 0);
+
+        module.addTest(test);
+      }
+
+      module.done();
+      modules.add(module);
+    }
+  }
+
+  /**
+   * Reports all the modules and writes the XML output.
+   */
+  @Benchmark
+  public XmlReporter report() {
+    XmlReporter reporter = new XmlReporter(new PrintWriter(new NullWriter()));
+
+    for (TestSuite module : modules) {
+      reporter.started(new Operation<TestSuite>(module), ModuleStatus.STARTED);
+
+      for (TestCase test : module.getTests()) {
+        reporter.started(new Operation<TestCase>(test), TestStatus.STARTED);
+        reporter.succeed(new Operation<TestCase>(test), TestStatus.SUCCEED);
+      }
+
+      reporter.succeed(new Operation<TestSuite>(module),
+          ModuleStatus.SUCCEED);
+    }
+
+    reporter.succeed(new Operation<ReportEntry>(modules.get(0)),
+        ReportStatus.DONE);
+
+    return reporter;
+  }
+
+  /**
+   * Writer that discards the output.
+   */
+  private static class NullWriter extends Writer {
+    @Override
+    public void write(final char[] buffer, final int offset,
+        final int length) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
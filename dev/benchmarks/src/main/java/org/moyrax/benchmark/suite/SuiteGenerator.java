@@ -0,0 +1,218 @@
+package org.moyrax.benchmark.suite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Generates synthetic QUnit suites to measure complete test runs. Each suite
+ * has a number of pages, and each page contains a number of modules with a
+ * number of tests. A configurable part of the tests are asynchronous, and the
+ * DOM-heavy tests build and query nodes inside the page fixture.
+ *
+ * The generated pages don't include QUnit itself, it must be registered as a
+ * global resource in the client that runs them.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class SuiteGenerator {
+  /** Number of pages to generate. */
+  private int pages = 1;
+
+  /** Number of modules in each page. */
+  private int modules = 1;
+
+  /** Number of tests in each module. */
+  private int tests = 1;
+
+  /** Number of assertions in each test. */
+  private int assertions = 1;
+
+  /** One of every <code>asyncEvery</code> tests is asynchronous. */
+  private int asyncEvery;
+
+  /** One of every <code>domEvery</code> tests is DOM-heavy. */
+  private int domEvery;
+
+  /** Number of nodes that each DOM-heavy test creates. */
+  private int domNodes = 100;
+
+  /** Number of elements in the static fixture of each page. */
+  private int fixtureSize;
+
+  /**
+   * Sets the size of the suite.
+   *
+   * @param thePages Number of pages. Must be greater than zero.
+   * @param theModules Number of modules in each page. Must be greater than
+   *    zero.
+   * @param theTests Number of tests in each module. Must be greater than
+   *    zero.
+   * @param theAssertions Number of assertions in each test. Must be greater
+   *    than zero.
+   */
+  public void setSize(final int thePages, final int theModules,
+      final int theTests, final int theAssertions) {
+    Validate.isTrue(thePages > 0, "The pages must be greater than zero.");
+    Validate.isTrue(theModules > 0, "The modules must be greater than zero.");
+    Validate.isTrue(theTests > 0, "The tests must be greater than zero.");
+    Validate.isTrue(theAssertions > 0, "The assertions must be greater than"
+        + " zero.");
+
+    pages = thePages;
+    modules = theModules;
+    tests = theTests;
+    assertions = theAssertions;
+  }
+
+  /**
+   * Makes asynchronous one of every <code>theAsyncEvery</code> tests.
+   *
+   * @param theAsyncEvery Tests interval. Zero to disable asynchronous tests.
+   */
+  public void setAsyncEvery(final int theAsyncEvery) {
+    Validate.isTrue(theAsyncEvery >= 0, "The interval cannot be negative.");
+
+    asyncEvery = theAsyncEvery;
+  }
+
+  /**
+   * Makes DOM-heavy one of every <code>theDomEvery</code> tests.
+   *
+   * @param theDomEvery Tests interval. Zero to disable DOM-heavy tests.
+   * @param theDomNodes Number of nodes created by each DOM-heavy test. Must be
+   *    greater than zero.
+   */
+  public void setDomEvery(final int theDomEvery, final int theDomNodes) {
+    Validate.isTrue(theDomEvery >= 0, "The interval cannot be negative.");
+    Validate.isTrue(theDomNodes > 0, "The nodes must be greater than zero.");
+
+    domEvery = theDomEvery;
+    domNodes = theDomNodes;
+  }
+
+  /**
+   * Sets the number of elements in the static fixture of each page.
+   *
+   * @param theFixtureSize Number of elements. It cannot be negative.
+   */
+  public void setFixtureSize(final int theFixtureSize) {
+    Validate.isTrue(theFixtureSize >= 0, "The size cannot be negative.");
+
+    fixtureSize = theFixtureSize;
+  }
+
+  /**
+   * Returns the number of tests in each page.
+   */
+  public int getTestsPerPage() {
+    return modules * tests;
+  }
+
+  /**
+   * Writes the suite pages into the specified directory.
+   *
+   * @param directory Directory to write the pages. It must exist.
+   *
+   * @return Returns the names of the pages, relative to the directory.
+   */
+  public String[] generate(final File directory) throws IOException {
+    Validate.notNull(directory, "The directory cannot be null.");
+    Validate.isTrue(directory.isDirectory(), "The directory must exist.");
+
+    String[] names = new String[pages];
+
+    for (int page = 0; page < pages; page++) {
+      names[page] = "suite-" + page + ".html";
+
+      Writer writer = new FileWriter(new File(directory, names[page]));
+
+      try {
+        writePage(writer, page);
+      } finally {
+        writer.close();
+      }
+    }
+
+    return names;
+  }
+
+  /**
+   * Writes a single page.
+   *
+   * @param writer Writer to write the page. It cannot be null.
+   * @param page Number of the page.
+   */
+  private void writePage(final Writer writer, final int page)
+      throws IOException {
+
+    writer.write("<html>\n<body>\n");
+    writer.write("<ol id=\"qunit-tests\"></ol>\n");
+    writer.write("<div id=\"fixture\">\n");
+
+    for (int i = 0; i < fixtureSize; i++) {
+      writer.write("<div class=\"item\" id=\"item" + i + "\"><span>item "
+          + i + "</span></div>\n");
+    }
+
+    writer.write("</div>\n<script type=\"text/javascript\">\n");
+
+    for (int module = 0; module < modules; module++) {
+      writer.write("module(\"page" + page + ".module" + module + "\");\n");
+
+      for (int test = 0; test < tests; test++) {
+        writeTest(writer, test);
+      }
+    }
+
+    writer.write("</script>\n</body>\n</html>\n");
+  }
+
+  /**
+   * Writes a single test.
+   *
+   * @param writer Writer to write the test. It cannot be null.
+   * @param test Number of the test in the module.
+   */
+  private void writeTest(final Writer writer, final int test)
+      throws IOException {
+
+    boolean async = asyncEvery > 0 && test % asyncEvery == 0;
+    boolean dom = domEvery > 0 && test % domEvery == 0;
+
+    writer.write("test(\"test" + test + "\", function() {\n");
+    writer.write("  expect(" + (dom ? assertions + 1 : assertions) + ");\n");
+
+    if (async) {
+      writer.write("  stop();\n  setTimeout(function() {\n");
+    }
+
+    if (dom) {
+      writer.write("  var fixture = document.getElementById(\"fixture\");\n"
+          + "  var container = document.createElement(\"div\");\n"
+          + "  for (var i = 0; i < " + domNodes + "; i++) {\n"
+          + "    var node = document.createElement(\"span\");\n"
+          + "    node.appendChild(document.createTextNode(\"node \" + i));\n"
+          + "    container.appendChild(node);\n"
+          + "  }\n"
+          + "  fixture.appendChild(container);\n"
+          + "  equals(container.getElementsByTagName(\"span\").length, "
+          + domNodes + ", \"nodes created\");\n"
+          + "  fixture.removeChild(container);\n");
+    }
+
+    for (int i = 0; i < assertions; i++) {
+      writer.write("  ok(true, \"assertion " + i + "\");\n");
+    }
+
+    if (async) {
+      writer.write("  start();\n  }, 1);\n");
+    }
+
+    writer.write("});\n");
+  }
+}
@@ -0,0 +1,369 @@
+package org.moyrax.benchmark.suite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.moyrax.javascript.ContextClassLoader;
+import org.moyrax.javascript.qunit.QUnitReporter;
+import org.moyrax.javascript.qunit.TestRunner;
+import org.moyrax.maven.EnvironmentConfiguration;
+import org.moyrax.maven.TestingClient;
+import org.moyrax.resolver.ClassPathResolver;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Runs synthetic suites from end to end through the {@link TestingClient} and
+ * the {@link TestRunner}, the same way the plugin does, and records the wall
+ * time, pages per second, peak heap and GC time of each configuration.
+ *
+ * Each argument is a configuration with the format
+ * <code>pages x modules x tests x assertions</code>, optionally followed by
+ * <code>,async=N</code>, <code>,dom=N</code> and <code>,fixture=N</code>
+ * (for instance <code>20x5x10x3,async=4,fixture=500</code>). The
+ * <code>-o file</code> option writes the results in JSON format to the
+ * specified file.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public final class ThroughputHarness {
+  /** Default logger for this class. */
+  private static final Log logger = LogFactory.getLog(ThroughputHarness.class);
+
+  /** Configurations run when none is specified. */
+  private static final String[] DEFAULT_CONFIGURATIONS = new String[] {
+    "10x5x10x3",
+    "50x5x10x3",
+    "10x5x10x3,async=2",
+    "10x5x10x3,dom=2",
+    "10x5x10x3,fixture=1000"
+  };
+
+  /** Class loader used to load the client components. */
+  private ClassLoader classLoader = new ContextClassLoader(
+      Thread.currentThread().getContextClassLoader());
+
+  /**
+   * Results of a single configuration.
+   */
+  public static class Result {
+    /** Configuration that was run. */
+    private String configuration;
+
+    /** Number of pages run. */
+    private int pages;
+
+    /** Number of tests run. */
+    private int tests;
+
+    /** Elapsed time, in milliseconds. */
+    private long wallTime;
+
+    /** Peak of the heap usage, in bytes. */
+    private long peakHeap;
+
+    /** Time spent in garbage collections, in milliseconds. */
+    private long gcTime;
+
+    /** Number of garbage collections. */
+    private long gcCount;
+
+    /**
+     * Returns the number of pages run per second.
+     */
+    public double getPagesPerSecond() {
+      if (wallTime == 0) {
+        return 0;
+      }
+
+      return pages * 1000.0 / wallTime;
+    }
+
+    /**
+     * Returns this result in JSON format.
+     */
+    public String toJson() {
+      return "{\"configuration\":\"" + configuration + "\""
+          + ",\"pages\":" + pages
+          + ",\"tests\":" + tests
+          + ",\"wallTimeMillis\":" + wallTime
+          + ",\"pagesPerSecond\":" + getPagesPerSecond()
+          + ",\"peakHeapBytes\":" + peakHeap
+          + ",\"gcTimeMillis\":" + gcTime
+          + ",\"gcCount\":" + gcCount + "}";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return String.format("%-28s %6d pages %8d ms %8.2f pages/s"
+          + " %6d MB heap %6d ms gc (%d)", configuration, pages, wallTime,
+          getPagesPerSecond(), peakHeap / (1024 * 1024), gcTime, gcCount);
+    }
+  }
+
+  /**
+   * Runs the configurations specified in the command line.
+   */
+  public static void main(final String[] args) throws IOException {
+    List<String> configurations = new ArrayList<String>();
+    File output = null;
+
+    for (int i = 0; i < args.length; i++) {
+      if ("-o".equals(args[i]) && i + 1 < args.length) {
+        output = new File(args[++i]);
+      } else {
+        configurations.add(args[i]);
+      }
+    }
+
+    if (configurations.isEmpty()) {
+      for (String configuration : DEFAULT_CONFIGURATIONS) {
+        configurations.add(configuration);
+      }
+    }
+
+    ThroughputHarness harness = new ThroughputHarness();
+    List<Result> results = new ArrayList<Result>();
+
+    for (String configuration : configurations) {
+      Result result = harness.run(configuration);
+
+      System.out.println(result);
+      results.add(result);
+    }
+
+    if (output != null) {
+      writeResults(results, output);
+    }
+  }
+
+  /**
+   * Generates and runs the suite for the specified configuration.
+   *
+   * @param configuration Configuration to run. It cannot be null or empty.
+   *
+   * @return Returns the measured results, never returns null.
+   */
+  public Result run(final String configuration) throws IOException {
+    Validate.notEmpty(configuration, "The configuration cannot be null.");
+
+    SuiteGenerator generator = parse(configuration);
+    File directory = createTempDirectory("qunit-suite");
+    File reports = createTempDirectory("qunit-reports");
+
+    try {
+      String[] pages = generator.generate(directory);
+
+      EnvironmentConfiguration env = new EnvironmentConfiguration();
+      env.setFiles(directory.getAbsolutePath() + File.separator, pages,
+          new String[0]);
+      env.setLookupPackages(new String[] {
+          "classpath:/org/moyrax/benchmark/**"
+      });
+      env.setClassLoader(classLoader);
+
+      WebClient browser = new WebClient(BrowserVersion.FIREFOX_3);
+      TestRunner runner = new TestRunner(new QUnitReporter(
+          reports.getAbsolutePath(), logger), browser);
+      HarnessClient client = new HarnessClient(runner, env,
+          new ClassPathResolver(classLoader));
+
+      System.gc();
+      resetPeakUsage();
+
+      long gcTime = getCollectionTime();
+      long gcCount = getCollectionCount();
+      long start = System.nanoTime();
+
+      client.addGlobalResource("org/moyrax/javascript/lib/qunit.js");
+      client.runTests();
+      runner.reportAll();
+
+      Result result = new Result();
+      result.wallTime = (System.nanoTime() - start) / 1000000L;
+      result.peakHeap = getPeakUsage();
+      result.gcTime = getCollectionTime() - gcTime;
+      result.gcCount = getCollectionCount() - gcCount;
+      result.configuration = configuration;
+      result.pages = pages.length;
+      result.tests = pages.length * generator.getTestsPerPage();
+
+      browser.closeAllWindows();
+
+      return result;
+    } finally {
+      FileUtils.deleteDirectory(directory);
+      FileUtils.deleteDirectory(reports);
+    }
+  }
+
+  /**
+   * Creates a generator for the specified configuration.
+   *
+   * @param configuration Configuration to parse. It cannot be null.
+   */
+  private SuiteGenerator parse(final String configuration) {
+    String[] options = StringUtils.split(configuration, ",");
+    String[] size = StringUtils.split(options[0], "x");
+
+    Validate.isTrue(size.length == 4, "The size must have the format"
+        + " pages x modules x tests x assertions: " + configuration);
+
+    SuiteGenerator generator = new SuiteGenerator();
+    generator.setSize(Integer.parseInt(size[0].trim()),
+        Integer.parseInt(size[1].trim()), Integer.parseInt(size[2].trim()),
+        Integer.parseInt(size[3].trim()));
+
+    for (int i = 1; i < options.length; i++) {
+      String name = StringUtils.substringBefore(options[i], "=").trim();
+      int value = Integer.parseInt(StringUtils.substringAfter(options[i],
+          "=").trim());
+
+      if ("async".equals(name)) {
+        generator.setAsyncEvery(value);
+      } else if ("dom".equals(name)) {
+        generator.setDomEvery(value, 100);
+      } else if ("fixture".equals(name)) {
+        generator.setFixtureSize(value);
+      } else {
+        throw new IllegalArgumentException("Unknown option " + name + ": "
+            + configuration);
+      }
+    }
+
+    return generator;
+  }
+
+  /**
+   * Writes the results as a JSON array.
+   *
+   * @param results Results to write. It cannot be null.
+   * @param output File to write the results. It cannot be null.
+   */
+  private static void writeResults(final List<Result> results,
+      final File output) throws IOException {
+
+    PrintWriter writer = new PrintWriter(new FileWriter(output));
+
+    try {
+      writer.println("[");
+
+      for (int i = 0; i < results.size(); i++) {
+        writer.print("  " + results.get(i).toJson());
+        writer.println(i + 1 < results.size() ? "," : "");
+      }
+
+      writer.println("]");
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Creates a new empty temporary directory.
+   */
+  private static File createTempDirectory(final String prefix)
+      throws IOException {
+    File directory = File.createTempFile(prefix, "");
+
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Cannot create the directory " + directory);
+    }
+
+    return directory;
+  }
+
+  /**
+   * Resets the peak usage of the heap memory pools.
+   */
+  private static void resetPeakUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of the peak usage of the heap memory pools, in bytes.
+   */
+  private static long getPeakUsage() {
+    long peak = 0;
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+
+    return peak;
+  }
+
+  /**
+   * Returns the accumulated time of all garbage collections, in milliseconds.
+   */
+  private static long getCollectionTime() {
+    long time = 0;
+
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+
+    return time;
+  }
+
+  /**
+   * Returns the number of garbage collections.
+   */
+  private static long getCollectionCount() {
+    long count = 0;
+
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+
+    return count;
+  }
+
+  /**
+   * {@link TestingClient} which allows to register the global resources.
+   */
+  private static class HarnessClient extends TestingClient {
+    /**
+     * Creates a new client.
+     */
+    public HarnessClient(final TestRunner theRunner,
+        final EnvironmentConfiguration theContext,
+        final ClassPathResolver theResolver) {
+      super(theRunner, theContext, theResolver);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addGlobalResource(final String classPath) {
+      super.addGlobalResource(classPath);
+    }
+  }
+}
@@ -4,14 +4,22 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
 import net.sourceforge.htmlunit.corejs.javascript.JavaScriptException;
+import net.sourceforge.htmlunit.corejs.javascript.Script;
 import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
 
 import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.instrument.CoverageRecorder;
+import org.moyrax.javascript.instrument.FunctionInvoker;
+import org.moyrax.javascript.instrument.FunctionInvokerFactory;
+import org.moyrax.javascript.profiler.ScriptProfiler;
 import org.moyrax.util.ScriptUtils;
+import org.moyrax.util.Trace;
 
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 
@@ -43,6 +51,26 @@ public class ConfigurableEngine extends JavaScriptEngine {
    */
   private ArrayList<String> scopeResources = new ArrayList<String>();
 
+  /**
+   * Creates the functions which invoke the components methods directly.
+   */
+  private FunctionInvokerFactory invokers = new FunctionInvokerFactory();
+
+  /** Time spent initializing scopes and running the global resources. */
+  private long libraryTime;
+
+  /** Time spent executing scripts and functions from the pages. */
+  private long executionTime;
+
+  /** Number of nested executions in progress. */
+  private int executionDepth;
+
+  /** Profiler of the scripts, or null if profiling is disabled. */
+  private ScriptProfiler profiler;
+
+  /** Line coverage of the scripts, or null if coverage is disabled. */
+  private CoverageRecorder coverage;
+
   /**
    * Creates a new {@link ConfigurableEngine} and sets the enclosing
    * {@link WebClient}.
@@ -82,10 +110,137 @@ public class ConfigurableEngine extends JavaScriptEngine {
     final ScriptableObject scope = (ScriptableObject)htmlPage
         .getEnclosingWindow().getScriptObject();
 
-    this.initializeScope(scope);
-    this.loadScopeResources(scope);
+    Trace.Span span = Trace.start(Trace.SCRIPT, sourceName);
+
+    try {
+      long start = System.nanoTime();
+
+      this.initializeScope(scope);
+      this.loadScopeResources(scope);
+
+      if (executionDepth == 0) {
+        libraryTime += System.nanoTime() - start;
+      }
+
+      return timedExecute(htmlPage, sourceCode, sourceName, startLine);
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Executes the compiled script in the scope of the given page.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Object execute(final HtmlPage htmlPage, final Script script) {
+    long start = System.nanoTime();
+
+    executionDepth++;
+
+    try {
+      return super.execute(htmlPage, script);
+    } finally {
+      executionDepth--;
+
+      if (executionDepth == 0) {
+        executionTime += System.nanoTime() - start;
+      }
+    }
+  }
+
+  /**
+   * Calls a function from the given page, for instance a timeout or an event
+   * handler.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Object callFunction(final HtmlPage htmlPage,
+      final Function javaScriptFunction, final Scriptable thisObject,
+      final Object[] args, final DomNode htmlElementScope) {
+    long start = System.nanoTime();
+
+    executionDepth++;
+
+    try {
+      return super.callFunction(htmlPage, javaScriptFunction, thisObject,
+          args, htmlElementScope);
+    } finally {
+      executionDepth--;
+
+      if (executionDepth == 0) {
+        executionTime += System.nanoTime() - start;
+      }
+    }
+  }
 
-    return super.execute(htmlPage, sourceCode, sourceName, startLine);
+  /**
+   * Enables the sampling profiler for the scripts executed by this engine.
+   * Profiling runs the scripts in interpreted mode, so they're slower.
+   *
+   * @param intervalMillis Sampling interval, in milliseconds. Must be greater
+   *    than zero.
+   */
+  public void enableProfiler(final long intervalMillis) {
+    if (profiler == null) {
+      profiler = new ScriptProfiler(intervalMillis);
+      profiler.install(getContextFactory());
+    }
+  }
+
+  /**
+   * Returns the scripts profiler.
+   *
+   * @return Returns the profiler, or <code>null</code> if profiling is not
+   *    enabled.
+   */
+  public ScriptProfiler getProfiler() {
+    return profiler;
+  }
+
+  /**
+   * Enables the line coverage for the scripts executed by this engine,
+   * including the global resources and the included scripts. Coverage runs
+   * the scripts in interpreted mode, so they're slower.
+   */
+  public void enableCoverage() {
+    if (coverage == null) {
+      coverage = new CoverageRecorder();
+      coverage.install(getContextFactory());
+    }
+  }
+
+  /**
+   * Returns the scripts line coverage.
+   *
+   * @return Returns the coverage, or <code>null</code> if coverage is not
+   *    enabled.
+   */
+  public CoverageRecorder getCoverage() {
+    return coverage;
+  }
+
+  /**
+   * Returns the accumulated time spent initializing the pages scopes and
+   * running the global resources since this engine was created.
+   *
+   * @return Returns the time, in nanoseconds.
+   */
+  public long getLibraryTime() {
+    return libraryTime;
+  }
+
+  /**
+   * Returns the accumulated time spent executing scripts and functions from
+   * the pages since this engine was created. Nested executions are counted
+   * only once.
+   *
+   * @return Returns the time, in nanoseconds.
+   */
+  public long getExecutionTime() {
+    return executionTime;
   }
 
   /**
@@ -133,7 +288,8 @@ public class ConfigurableEngine extends JavaScriptEngine {
 
   /**
    * Initializes the specified {@link Scriptable} object adding all registered
-   * classes to the scope.
+   * classes to the scope. The component functions are invoked directly when
+   * their signatures allow it, otherwise they're invoked through reflection.
    *
    * @param scope Scope to initialize. It cannot be null.
    */
@@ -143,12 +299,23 @@ public class ConfigurableEngine extends JavaScriptEngine {
 
     /* Registers all global functions. */
     for (ScriptComponent bean : components) {
-      String[] globalFunctions = bean.getGlobalFunctionNames().toArray(
-          new String[] {});
+      ArrayList<String> reflectiveFunctions = new ArrayList<String>();
+
+      for (String name : bean.getGlobalFunctionNames()) {
+        FunctionInvoker function = invokers.create(bean.getScriptableClass(),
+            name, true, scope);
+
+        if (function != null) {
+          scope.defineProperty(name, function, ScriptableObject.DONTENUM);
+        } else {
+          reflectiveFunctions.add(name);
+        }
+      }
 
-      /* Adds the global functions to the scope. */
-      scope.defineFunctionProperties(globalFunctions,
-          bean.getScriptableClass(), ScriptableObject.DONTENUM);
+      /* Adds the remaining global functions to the scope. */
+      scope.defineFunctionProperties(reflectiveFunctions.toArray(
+          new String[] {}), bean.getScriptableClass(),
+          ScriptableObject.DONTENUM);
     }
 
     try {
@@ -156,12 +323,62 @@ public class ConfigurableEngine extends JavaScriptEngine {
       for (ScriptComponent bean : components) {
         ScriptableObject.defineClass(scope,
             (Class<? extends ScriptableObject>)bean.getScriptableClass());
+
+        defineFunctions(scope, bean);
       }
     } catch (Exception ex) {
       throw new JavaScriptEngineException("Error initializing the scope.", ex);
     }
   }
 
+  /**
+   * Replaces the reflective functions in the component's prototype by
+   * functions which invoke the methods directly.
+   *
+   * @param scope Scope which contains the component. It cannot be null.
+   * @param bean Component to define the functions. It cannot be null.
+   */
+  private void defineFunctions(final ScriptableObject scope,
+      final ScriptComponent bean) {
+
+    Scriptable prototype = ScriptableObject.getClassPrototype(scope,
+        bean.getClassName());
+
+    if (!(prototype instanceof ScriptableObject)) {
+      return;
+    }
+
+    for (String name : bean.getFunctionNames()) {
+      FunctionInvoker function = invokers.create(bean.getScriptableClass(),
+          name, false, scope);
+
+      if (function != null) {
+        ((ScriptableObject)prototype).defineProperty(name, function,
+            ScriptableObject.DONTENUM);
+      }
+    }
+  }
+
+  /**
+   * Executes the JavaScript code and accumulates the execution time.
+   */
+  private Object timedExecute(final HtmlPage htmlPage, final String sourceCode,
+      final String sourceName, final int startLine) {
+    long start = System.nanoTime();
+
+    executionDepth++;
+
+    try {
+      return super.execute(htmlPage, sourceCode, sourceName, startLine);
+    } finally {
+      executionDepth--;
+
+      if (executionDepth == 0) {
+        executionTime += System.nanoTime() - start;
+      }
+    }
+  }
+
   /**
    * Executes the configured global resources in the given scope.
    *
@@ -1,21 +1,89 @@
 package org.moyrax.javascript;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang.Validate;
 import org.moyrax.javascript.instrument.ComponentClassAdapter;
 import org.moyrax.util.ScriptUtils;
+import org.moyrax.util.Trace;
 
 /** This {@link ClassLoader} processes all classes designed to be exported as
  * JavaScript components. It must be used by the engine in order to identify
  * the exportable classes to register in the global context.
  *
+ * Determining whether a class is exportable requires to read its bytecode, so
+ * the result is cached for each class name. Classes from the JDK and from the
+ * libraries used by the engine are never considered components and they're
+ * rejected without reading the bytecode.
+ *
+ * The class loader is parallel capable on platforms that support it. Classes
+ * are transformed holding a lock that depends on the class name, so different
+ * components can be loaded at the same time by several threads.
+ *
  * @author Matias Mirabelli <lumen.night@gmail.com>
  * @since 1.2
  */
 public class ContextClassLoader extends ClassLoader {
+  /** Packages which cannot contain JavaScript components. */
+  private static final String[] EXCLUDED_PACKAGES = new String[] {
+    "java.",
+    "javax.",
+    "sun.",
+    "com.sun.",
+    "com.gargoylesoftware.",
+    "net.sourceforge.htmlunit.",
+    "org.mozilla.",
+    "org.objectweb.asm.",
+    "org.springframework."
+  };
+
+  static {
+    // ClassLoader.registerAsParallelCapable() is available since Java 7.
+    try {
+      ClassLoader.class.getDeclaredMethod("registerAsParallelCapable")
+          .invoke(null);
+    } catch (NoSuchMethodException ex) {
+      // Older platforms lock on the class loader instance.
+    } catch (IllegalAccessException ex) {
+      // Nevermind, the class loader just won't be parallel capable.
+    } catch (InvocationTargetException ex) {
+      // Nevermind, the class loader just won't be parallel capable.
+    }
+  }
+
   /** Keep track of the loaded Script classes. */
-  private HashMap<String, Class<?>> loaded = new HashMap<String, Class<?>>();
+  private ConcurrentHashMap<String, Class<?>> loaded =
+    new ConcurrentHashMap<String, Class<?>>();
+
+  /**
+   * Locks for the class transformations by class name. Only components have
+   * a lock, since other classes are delegated to the parent class loader.
+   */
+  private ConcurrentHashMap<String, Object> locks =
+    new ConcurrentHashMap<String, Object>();
+
+  /** Classes already checked, and whether they're exportable or not. */
+  private ConcurrentHashMap<String, Boolean> exportable =
+    new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Packages that may contain components. If it's null, all packages but the
+   * excluded ones are checked.
+   */
+  private String[] componentPackages;
+
+  /** Number of classes transformed by this class loader. */
+  private final AtomicLong transformCount = new AtomicLong();
+
+  /** Number of exportable checks resolved from the cache. */
+  private final AtomicLong exportableHits = new AtomicLong();
+
+  /** Number of exportable checks that required to read the bytecode. */
+  private final AtomicLong exportableMisses = new AtomicLong();
 
   /**
    * {@inheritDoc}
@@ -24,12 +92,35 @@ public class ContextClassLoader extends ClassLoader {
     super(parent);
   }
 
+  /**
+   * Creates a new {@link ContextClassLoader} which only looks for components
+   * in the specified packages.
+   *
+   * @param parent Parent class loader.
+   * @param thePackages Names of the packages that may contain components, for
+   *    instance <code>org.moyrax.javascript</code>. Subpackages are also
+   *    included. It cannot be null.
+   */
+  public ContextClassLoader(final ClassLoader parent,
+      final String[] thePackages) {
+    super(parent);
+
+    Validate.notNull(thePackages, "The packages cannot be null.");
+
+    componentPackages = new String[thePackages.length];
+
+    for (int i = 0; i < thePackages.length; i++) {
+      componentPackages[i] = thePackages[i].endsWith(".") ? thePackages[i]
+          : thePackages[i] + ".";
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   protected Class<?> findClass(final String name) throws ClassNotFoundException {
-    if (ScriptUtils.isExportable(name, this)) {
+    if (isExportable(name)) {
       return this.loadClass(name);
     } else {
       return super.findClass(name);
@@ -44,13 +135,148 @@ public class ContextClassLoader extends ClassLoader {
     return transform(name);
   }
 
+  /**
+   * Reads the resources through the parent class loader, so it can resolve
+   * them without building an url for each resource.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the input stream, or <code>null</code> if the resource is
+   *    not found.
+   */
+  @Override
+  public InputStream getResourceAsStream(final String name) {
+    if (getParent() == null) {
+      return super.getResourceAsStream(name);
+    }
+
+    return getParent().getResourceAsStream(name);
+  }
+
+  /**
+   * Returns the number of component classes transformed by this class loader.
+   */
+  public long getTransformCount() {
+    return transformCount.get();
+  }
+
+  /**
+   * Returns the number of times the exportable check of a class was resolved
+   * from the cache.
+   */
+  public long getExportableCacheHits() {
+    return exportableHits.get();
+  }
+
+  /**
+   * Returns the number of times the bytecode of a class was read to check
+   * whether it's exportable.
+   */
+  public long getExportableCacheMisses() {
+    return exportableMisses.get();
+  }
+
+  /**
+   * Determines if the specified class is a JavaScript component. The bytecode
+   * is read only the first time a class is checked, and never for classes
+   * outside of the component packages.
+   *
+   * @param className Name of the class to check. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the class is exportable,
+   *    <code>false</code> otherwise.
+   */
+  protected boolean isExportable(final String className) {
+    if (!isCandidate(className)) {
+      return false;
+    }
+
+    Boolean result = exportable.get(className);
+
+    if (result == null) {
+      exportableMisses.incrementAndGet();
+
+      result = Boolean.valueOf(ScriptUtils.isExportable(className, this));
+
+      exportable.put(className, result);
+    } else {
+      exportableHits.incrementAndGet();
+    }
+
+    return result.booleanValue();
+  }
+
+  /**
+   * Determines if the specified class may be a component according to its
+   * package.
+   *
+   * @param className Name of the class to check. It cannot be null.
+   */
+  private boolean isCandidate(final String className) {
+    for (String excluded : EXCLUDED_PACKAGES) {
+      if (className.startsWith(excluded)) {
+        return false;
+      }
+    }
+
+    if (componentPackages == null) {
+      return true;
+    }
+
+    for (String included : componentPackages) {
+      if (className.startsWith(included)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the lock to transform the specified class. A lock per class name
+   * is used instead of a fixed set of locks, since transforming a component
+   * may require to transform its superclass while holding the lock.
+   *
+   * @param className Name of the class to transform. It cannot be null.
+   */
+  private Object getTransformLock(final String className) {
+    Object lock = locks.get(className);
+
+    if (lock == null) {
+      Object newLock = new Object();
+
+      lock = locks.putIfAbsent(className, newLock);
+
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+
+    return lock;
+  }
+
   private Class<?> transform(final String className)
       throws ClassNotFoundException {
 
-    Class<?> result;
+    Class<?> result = loaded.get(className);
+
+    if (result != null) {
+      return result;
+    }
+
+    if (!isExportable(className)) {
+      return super.loadClass(className);
+    }
+
+    synchronized (getTransformLock(className)) {
+      result = loaded.get(className);
+
+      if (result != null) {
+        return result;
+      }
+
+      Trace.Span span = Trace.start(Trace.TRANSFORM, className);
 
-    if (!loaded.containsKey(className) &&
-        ScriptUtils.isExportable(className, this)) {
       try {
         ComponentClassAdapter adapter = new ComponentClassAdapter(className,
             this);
@@ -60,6 +286,7 @@ public class ContextClassLoader extends ClassLoader {
         result = defineClass(className, bytecode, 0, bytecode.length);
 
         loaded.put(className, result);
+        transformCount.incrementAndGet();
       } catch (IOException ex) {
         throw new ClassNotFoundException("Cannot transform the class "
             + className, ex);
@@ -69,11 +296,9 @@ public class ContextClassLoader extends ClassLoader {
       } catch (LinkageError ex) {
         throw new ClassNotFoundException("Cannot instrument the class "
             + className, ex);
+      } finally {
+        span.end();
       }
-    } else if (loaded.containsKey(className)) {
-      result = loaded.get(className);
-    } else {
-      result = super.loadClass(className);
     }
 
     return result;
@@ -12,9 +12,13 @@ import org.moyrax.javascript.annotation.Constructor;
 import org.moyrax.javascript.annotation.Function;
 import org.moyrax.javascript.annotation.GlobalFunction;
 import org.moyrax.javascript.annotation.Script;
+import org.moyrax.javascript.index.ComponentDescriptor;
+import org.moyrax.javascript.index.ScriptComponentIndex;
 import org.moyrax.reflect.ClassResource;
 import org.moyrax.reflect.Method;
+import org.moyrax.reflect.TypeResolver;
 import org.moyrax.util.ScriptUtils;
+import org.objectweb.asm.Type;
 
 /**
  * This class parses a class designed to be a component in the client
@@ -26,15 +30,31 @@ import org.moyrax.util.ScriptUtils;
  */
 public class ScriptComponent {
   /**
-   * {@link ScriptableObject}'s class to be parsed.
+   * {@link ScriptableObject}'s class to be parsed. It's read lazily when the
+   * component is found in the {@link ScriptComponentIndex}.
    */
   private ClassResource klass;
 
+  /**
+   * {@link ClassLoader} used to locate the class's resources.
+   */
+  private ClassLoader classLoader;
+
   /**
    * The class's name.
    */
   private String className;
 
+  /**
+   * Binary name of the exportable object's class.
+   */
+  private String scriptableClassName;
+
+  /**
+   * Binary name of the ECMA implementation class.
+   */
+  private String implementationClassName;
+
   /**
    * List of global function names.
    */
@@ -50,6 +70,11 @@ public class ScriptComponent {
    */
   private Method constructor;
 
+  /**
+   * Name of the constructor method.
+   */
+  private String constructorName;
+
   /**
    * Constructs a new parser for the specified exportable class.
    *
@@ -78,33 +103,40 @@ public class ScriptComponent {
   }
 
   /**
-   * Constructs a new parser for the specified exportable class.
+   * Constructs a new parser for the specified exportable class. If the class
+   * is listed in the {@link ScriptComponentIndex} the information is taken
+   * from there, otherwise the class bytecode is parsed.
    *
-   * @param klass The name of class to be parsed. It cannot be null or empty.
-   * @param classLoader The {@link ClassLoader} to locate class's resources. It
-   *    cannot be null.
+   * @param klassName The name of class to be parsed. It cannot be null or
+   *    empty.
+   * @param theClassLoader The {@link ClassLoader} to locate class's resources.
+   *    It cannot be null.
    *
    * @throws IllegalArgumentException If the specified class is not designed
    *    to be exportable.
    */
   public ScriptComponent(final String klassName,
-      final ClassLoader classLoader) {
+      final ClassLoader theClassLoader) {
 
     Validate.notEmpty(klassName, "The class cannot be null.");
-    Validate.notNull(classLoader, "The class loader cannot be null.");
-    Validate.isTrue(ScriptUtils.isExportable(klassName, classLoader),
-        "The class must be"
-        + " designed to be exportable adding the Script annotation to the"
-        + " class.");
+    Validate.notNull(theClassLoader, "The class loader cannot be null.");
 
-    try {
-      this.klass = new ClassResource(klassName, classLoader);
-    } catch (IOException ex) {
-      throw new IllegalArgumentException("Cannot read the specified"
-          + " class resource", ex);
-    }
+    classLoader = theClassLoader;
+    scriptableClassName = klassName;
 
-    this.parse();
+    ComponentDescriptor descriptor = ScriptComponentIndex
+        .getInstance(classLoader).getComponent(klassName);
+
+    if (descriptor != null) {
+      this.load(descriptor);
+    } else {
+      Validate.isTrue(ScriptUtils.isExportable(klassName, classLoader),
+          "The class must be"
+          + " designed to be exportable adding the Script annotation to the"
+          + " class.");
+
+      this.parse();
+    }
   }
 
   /**
@@ -134,14 +166,19 @@ public class ScriptComponent {
    * @return Returns the exportable object's class.
    */
   public Class<?> getScriptableClass() {
-    return klass.getDeclaringClass();
+    try {
+      return classLoader.loadClass(scriptableClassName);
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalStateException("Cannot load the class "
+          + scriptableClassName, ex);
+    }
   }
 
   /**
    * @return Returns the name of the exportable object's class.
    */
   public String getScriptableClassName() {
-    return klass.getName();
+    return scriptableClassName;
   }
 
   /**
@@ -149,7 +186,8 @@ public class ScriptComponent {
    * uses the HTMLUnit implementation inherited from Rhino.
    */
   public Class<?> getImplementationClass() {
-    return klass.getAnnotation(Script.class).implementation();
+    return TypeResolver.resolve(Type.getObjectType(
+        implementationClassName.replace(".", "/")), classLoader);
   }
 
   /**
@@ -158,19 +196,51 @@ public class ScriptComponent {
    * application creates a new instance of the class.
    */
   public Method getConstructor() {
+    if (constructor == null && constructorName != null) {
+      constructor = findConstructor();
+    }
+
     return constructor;
   }
 
+  /**
+   * Returns the name of the method used to create a host object. It doesn't
+   * require to parse the class when the component is indexed.
+   *
+   * @return Returns the constructor's name, or <code>null</code> if there's no
+   *    constructor.
+   */
+  public String getConstructorName() {
+    return constructorName;
+  }
+
+  /**
+   * Loads the exportable object's information from the components index.
+   *
+   * @param descriptor Indexed information. It cannot be null.
+   */
+  private void load(final ComponentDescriptor descriptor) {
+    className = descriptor.getName();
+    scriptableClassName = descriptor.getClassName();
+    implementationClassName = descriptor.getImplementation();
+    globalFunctions = new HashSet<String>(descriptor.getGlobalFunctions());
+    instanceFunctions = new HashSet<String>(descriptor.getFunctions());
+    constructorName = descriptor.getConstructor();
+  }
+
   /**
    * Parses the exportable object.
    */
   private void parse() {
+    klass = getResource();
+    implementationClassName = klass.getAnnotation(Script.class)
+        .implementation().getName();
+
     // Retrieves the class's name.
     className = klass.getAnnotation(Script.class).name();
 
     if (className.equals("")) {
-      className = klass.getName().substring(klass.getCanonicalName()
-          .lastIndexOf(".") + 1);
+      className = ComponentDescriptor.getDefaultName(klass.getName());
     }
 
     // Retrieves the global methods.
@@ -181,6 +251,26 @@ public class ScriptComponent {
 
     // Retrieves the constructor.
     constructor = findConstructor();
+
+    if (constructor != null) {
+      constructorName = constructor.getName();
+    }
+  }
+
+  /**
+   * Returns the resource to read the exportable object's bytecode.
+   */
+  private ClassResource getResource() {
+    if (klass == null) {
+      try {
+        klass = new ClassResource(scriptableClassName, classLoader);
+      } catch (IOException ex) {
+        throw new IllegalArgumentException("Cannot read the specified"
+            + " class resource", ex);
+      }
+    }
+
+    return klass;
   }
 
   /**
@@ -229,7 +319,7 @@ public class ScriptComponent {
    *    {@link Constructor} annotation, or <code>null</code> if there's no one.
    */
   private Method findConstructor() {
-    final Method[] methods = klass.getMethods();
+    final Method[] methods = getResource().getMethods();
 
     for (Method method : methods) {
       if (!Modifier.isStatic(method.getModifiers()) &&
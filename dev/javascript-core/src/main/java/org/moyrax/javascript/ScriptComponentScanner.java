@@ -1,21 +1,36 @@
 package org.moyrax.javascript;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Enumeration;
 
-import org.apache.commons.collections.Predicate;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.annotation.Script;
+import org.moyrax.javascript.index.ScriptComponentIndex;
 import org.moyrax.util.ClassUtils;
-import org.moyrax.util.ScriptUtils;
+import org.moyrax.util.Trace;
 
 /**
  * This class lookup classes in a set of configured packages and determines
  * which class can be initialized using the {@link ScriptComponent} class.
  * The classes found will be registered in the global host-script scope.
- * 
+ *
+ * Classpath roots that contain a {@link ScriptComponentIndex} are resolved
+ * from the index, and only the roots without an index are scanned. All the
+ * scanned locations are read in a single parallel pass.
+ *
  * @author Matias Mirabelli <lumen.night@gmail.com>
  * @since 1.2
  */
 public class ScriptComponentScanner {
+  /** Prefix of the patterns that are searched in a single classpath root. */
+  private static final String CLASSPATH_PREFIX = "classpath:";
+
+  /** Prefix of the patterns that are searched in all classpath roots. */
+  private static final String ALL_CLASSPATH_PREFIX = "classpath*:";
+
   /**
    * List of packages which will be parsed to find {@link Scriptable} classes.
    */
@@ -64,13 +79,123 @@ public class ScriptComponentScanner {
    * Scans the configured packages for {@link Scriptable} classes.
    */
   public void scan() {
+    Trace.Span span = Trace.start(Trace.SCAN, StringUtils.join(this.packages,
+        ", "));
+
+    try {
+      doScan();
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Scans the configured packages and keeps the found classes.
+   */
+  private void doScan() {
     this.classes = new ArrayList<Class<?>>();
 
+    ScriptComponentIndex index = ScriptComponentIndex.getInstance(
+        this.classLoader);
+
+    ArrayList<String> locations = new ArrayList<String>();
+
     for (String element : this.packages) {
-      this.classes.addAll(ClassUtils.lookup(element, filter, this.classLoader));
+      if (element.startsWith(CLASSPATH_PREFIX) ||
+          element.startsWith(ALL_CLASSPATH_PREFIX)) {
+        this.classes.addAll(scan(element, index, locations));
+      } else {
+        locations.add(element);
+      }
+    }
+
+    if (!locations.isEmpty()) {
+      this.classes.addAll(ClassUtils.lookup(
+          locations.toArray(new String[locations.size()]),
+          Script.class.getName(), this.classLoader));
     }
   }
 
+  /**
+   * Searches for components in the classpath roots matching the specified
+   * pattern. Indexed roots are read from the index and the other ones are
+   * added to the list of locations to scan.
+   *
+   * @param packagePattern Classpath pattern to search for components. It
+   *    cannot be null.
+   * @param index Components index for the current {@link ClassLoader}. It
+   *    cannot be null.
+   * @param locations List to add the locations which are not indexed. It
+   *    cannot be null.
+   *
+   * @return Returns the list of indexed components.
+   */
+  private ArrayList<Class<?>> scan(final String packagePattern,
+      final ScriptComponentIndex index, final ArrayList<String> locations) {
+
+    ArrayList<Class<?>> result = new ArrayList<Class<?>>();
+    boolean allRoots = packagePattern.startsWith(ALL_CLASSPATH_PREFIX);
+
+    String location = StringUtils.substringAfter(packagePattern, ":");
+
+    if (location.startsWith("/")) {
+      location = location.substring(1);
+    }
+
+    String rootDir = determineRootDir(location);
+    String subPattern = location.substring(rootDir.length());
+
+    try {
+      Enumeration<URL> rootDirs = this.classLoader.getResources(rootDir);
+
+      while (rootDirs.hasMoreElements()) {
+        String rootDirUrl = rootDirs.nextElement().toString();
+        String root = rootDirUrl.substring(0,
+            rootDirUrl.length() - rootDir.length());
+
+        if (index.isIndexed(root)) {
+          for (String className : index.getClassNames(root, location)) {
+            result.add(this.classLoader.loadClass(className));
+          }
+        } else {
+          locations.add(rootDirUrl + subPattern);
+        }
+
+        if (!allRoots) {
+          break;
+        }
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Cannot list classes in the given "
+          + "package: " + packagePattern, ex);
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalArgumentException("The indexed class cannot be loaded"
+          + " using the current ClassLoader.", ex);
+    }
+
+    return result;
+  }
+
+  /**
+   * Determines the directory part of a pattern, that is the path up to the
+   * first segment that contains a wildcard.
+   *
+   * @param location Pattern relative to the classpath root. It cannot be null.
+   *
+   * @return Returns the root directory, ending with <code>/</code>, or an
+   *    empty string if the pattern starts with a wildcard.
+   */
+  private String determineRootDir(final String location) {
+    int wildcard = StringUtils.indexOfAny(location, new char[] {
+        '*', '?', '{' });
+
+    if (wildcard == -1) {
+      wildcard = location.length();
+    }
+
+    return location.substring(0, location.lastIndexOf('/', wildcard) + 1);
+  }
+
   /**
    * @return Returns the list of scanned classes.
    */
@@ -86,18 +211,4 @@ public class ScriptComponentScanner {
   public void setClassLoader(final ClassLoader theClassLoader) {
     this.classLoader = theClassLoader;
   }
-
-  /**
-   * This object is used to filter classes that implements the
-   * {@link Scriptable} interface.
-   */
-  private static final Predicate filter = new Predicate() {
-    /**
-     * Returns <code>true</code> if the class is a valid {@link Scriptable}
-     * class, <code>false</code> otherwise.
-     */
-    public boolean evaluate(final Object object) {
-      return ScriptUtils.isExportable((Class<?>)object);
-    }
-  };
 }
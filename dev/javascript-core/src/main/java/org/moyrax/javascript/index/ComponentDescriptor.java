@@ -0,0 +1,183 @@
+package org.moyrax.javascript.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.annotation.Constructor;
+import org.moyrax.javascript.annotation.Function;
+import org.moyrax.javascript.annotation.GlobalFunction;
+import org.moyrax.javascript.annotation.Script;
+
+/**
+ * Describes an exportable class as it is stored in the components index. It
+ * holds the same information that the {@link org.moyrax.javascript.ScriptComponent}
+ * extracts from the class bytecode, so the class doesn't need to be parsed
+ * when it's registered in the engine.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ComponentDescriptor {
+  /**
+   * Binary name of the class annotated with {@link Script}.
+   */
+  private String className;
+
+  /**
+   * Name of the component in the client application.
+   */
+  private String name;
+
+  /**
+   * Binary name of the ECMA implementation class.
+   */
+  private String implementation;
+
+  /**
+   * Names of the functions annotated with {@link GlobalFunction}.
+   */
+  private List<String> globalFunctions = new ArrayList<String>();
+
+  /**
+   * Names of the functions annotated with {@link Function}.
+   */
+  private List<String> functions = new ArrayList<String>();
+
+  /**
+   * Name of the method annotated with {@link Constructor}. It may be null.
+   */
+  private String constructor;
+
+  /**
+   * Creates a new descriptor for the specified class.
+   *
+   * @param theClassName Binary name of the exportable class. It cannot be null
+   *    or empty.
+   */
+  public ComponentDescriptor(final String theClassName) {
+    Validate.notEmpty(theClassName, "The class name cannot be null or empty.");
+
+    className = theClassName;
+  }
+
+  /**
+   * Returns the name of a component which doesn't specify one in the
+   * {@link Script} annotation. It's the class name without the package and
+   * the enclosing classes, so the indexed and the parsed components are
+   * registered with the same name.
+   *
+   * @param theClassName Binary name of the exportable class. It cannot be
+   *    null or empty.
+   *
+   * @return Returns the default component name.
+   */
+  public static String getDefaultName(final String theClassName) {
+    Validate.notEmpty(theClassName, "The class name cannot be null or empty.");
+
+    return theClassName.substring(theClassName.replace('$', '.')
+        .lastIndexOf('.') + 1);
+  }
+
+  /**
+   * @return Returns the binary name of the exportable class.
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * @return Returns the name of the component in the client application.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets the name of the component in the client application.
+   *
+   * @param theName Component name. It cannot be null or empty.
+   */
+  public void setName(final String theName) {
+    Validate.notEmpty(theName, "The name cannot be null or empty.");
+
+    name = theName;
+  }
+
+  /**
+   * @return Returns the binary name of the ECMA implementation class.
+   */
+  public String getImplementation() {
+    return implementation;
+  }
+
+  /**
+   * Sets the ECMA implementation class.
+   *
+   * @param theImplementation Binary name of the implementation class. It
+   *    cannot be null or empty.
+   */
+  public void setImplementation(final String theImplementation) {
+    Validate.notEmpty(theImplementation, "The implementation cannot be null"
+        + " or empty.");
+
+    implementation = theImplementation;
+  }
+
+  /**
+   * @return Returns the list of global function names.
+   */
+  public List<String> getGlobalFunctions() {
+    return globalFunctions;
+  }
+
+  /**
+   * Adds a global function to this component.
+   *
+   * @param functionName Name of the function. It cannot be null or empty.
+   */
+  public void addGlobalFunction(final String functionName) {
+    Validate.notEmpty(functionName, "The function cannot be null or empty.");
+
+    if (!globalFunctions.contains(functionName)) {
+      globalFunctions.add(functionName);
+    }
+  }
+
+  /**
+   * @return Returns the list of instance function names.
+   */
+  public List<String> getFunctions() {
+    return functions;
+  }
+
+  /**
+   * Adds an instance function to this component.
+   *
+   * @param functionName Name of the function. It cannot be null or empty.
+   */
+  public void addFunction(final String functionName) {
+    Validate.notEmpty(functionName, "The function cannot be null or empty.");
+
+    if (!functions.contains(functionName)) {
+      functions.add(functionName);
+    }
+  }
+
+  /**
+   * @return Returns the name of the constructor method, or <code>null</code>
+   *    if the component has no one.
+   */
+  public String getConstructor() {
+    return constructor;
+  }
+
+  /**
+   * Sets the name of the constructor method.
+   *
+   * @param theConstructor Name of the method. It can be null.
+   */
+  public void setConstructor(final String theConstructor) {
+    constructor = theConstructor;
+  }
+}
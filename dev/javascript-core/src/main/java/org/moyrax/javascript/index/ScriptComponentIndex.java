@@ -0,0 +1,273 @@
+package org.moyrax.javascript.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Index of the exportable classes available in a {@link ClassLoader}. The
+ * index files are generated at compile time by the
+ * {@link ScriptComponentProcessor}, one per classpath root, so components can
+ * be discovered without scanning and parsing class files.
+ *
+ * Classpath roots without an index file are not covered by this class, and
+ * the caller is expected to scan them.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ScriptComponentIndex {
+  /** Location of the index file inside each classpath root. */
+  public static final String LOCATION =
+    "META-INF/moyrax/script-components.idx";
+
+  /** Index already loaded for each class loader. */
+  private static final Map<ClassLoader, ScriptComponentIndex> instances =
+    new WeakHashMap<ClassLoader, ScriptComponentIndex>();
+
+  /** Matcher used to apply package patterns to the indexed classes. */
+  private static final PathMatcher matcher = new AntPathMatcher();
+
+  /** Indexed components by class name. */
+  private HashMap<String, ComponentDescriptor> components =
+    new HashMap<String, ComponentDescriptor>();
+
+  /** Indexed class names by classpath root url. */
+  private HashMap<String, List<String>> roots =
+    new HashMap<String, List<String>>();
+
+  /**
+   * Returns the index for the specified {@link ClassLoader}. The index files
+   * are read only once for each class loader.
+   *
+   * @param classLoader Class loader to read the index files from. It cannot be
+   *    null.
+   *
+   * @return Returns the index, never returns null.
+   */
+  public static ScriptComponentIndex getInstance(
+      final ClassLoader classLoader) {
+    Validate.notNull(classLoader, "The class loader cannot be null.");
+
+    synchronized (instances) {
+      ScriptComponentIndex index = instances.get(classLoader);
+
+      if (index == null) {
+        index = new ScriptComponentIndex(classLoader);
+
+        instances.put(classLoader, index);
+      }
+
+      return index;
+    }
+  }
+
+  /**
+   * Creates the index and reads all the index files visible for the
+   * specified {@link ClassLoader}.
+   *
+   * @param classLoader Class loader to read the index files from. It cannot be
+   *    null.
+   */
+  private ScriptComponentIndex(final ClassLoader classLoader) {
+    try {
+      Enumeration<URL> resources = classLoader.getResources(LOCATION);
+
+      while (resources.hasMoreElements()) {
+        URL resource = resources.nextElement();
+        String root = StringUtils.substringBeforeLast(resource.toString(),
+            LOCATION);
+
+        if (!roots.containsKey(root)) {
+          roots.put(root, load(resource));
+        }
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the components index.", ex);
+    }
+  }
+
+  /**
+   * Returns the descriptor of the specified class.
+   *
+   * @param className Binary name of the class. It cannot be null or empty.
+   *
+   * @return Returns the related descriptor, or <code>null</code> if the class
+   *    is not indexed.
+   */
+  public ComponentDescriptor getComponent(final String className) {
+    Validate.notEmpty(className, "The class name cannot be null or empty.");
+
+    return components.get(className);
+  }
+
+  /**
+   * Determines whether the specified classpath root contains an index file.
+   *
+   * @param root Url of the classpath root. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the root is indexed,
+   *    <code>false</code> otherwise.
+   */
+  public boolean isIndexed(final String root) {
+    Validate.notNull(root, "The root cannot be null.");
+
+    return roots.containsKey(root);
+  }
+
+  /**
+   * Retrieves the indexed classes of a classpath root which match the
+   * specified pattern.
+   *
+   * @param root Url of the classpath root. It cannot be null.
+   * @param pathPattern Ant-style pattern relative to the root, for instance
+   *    <code>org/moyrax/**</code>. It cannot be null.
+   *
+   * @return Returns the list of class names, or an empty list if there's no
+   *    class matching the pattern.
+   */
+  public List<String> getClassNames(final String root,
+      final String pathPattern) {
+    Validate.notNull(root, "The root cannot be null.");
+    Validate.notNull(pathPattern, "The pattern cannot be null.");
+
+    ArrayList<String> result = new ArrayList<String>();
+    List<String> classNames = roots.get(root);
+
+    if (classNames != null) {
+      for (String className : classNames) {
+        String path = className.replace(".", "/") + ".class";
+
+        if (matcher.match(pathPattern, path)) {
+          result.add(className);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the components from an index file.
+   *
+   * @param resource Url of the index file. It cannot be null.
+   *
+   * @return Returns the list of indexed class names.
+   */
+  private List<String> load(final URL resource) throws IOException {
+    ArrayList<String> classNames = new ArrayList<String>();
+    InputStream input = resource.openStream();
+
+    try {
+      for (ComponentDescriptor descriptor : read(new InputStreamReader(input,
+          "UTF-8"))) {
+        components.put(descriptor.getClassName(), descriptor);
+        classNames.add(descriptor.getClassName());
+      }
+    } finally {
+      input.close();
+    }
+
+    return classNames;
+  }
+
+  /**
+   * Parses the index file format. Each component starts with a
+   * <code>component</code> line followed by one line per property.
+   *
+   * @param input Reader to read the index from. It cannot be null.
+   *
+   * @return Returns the list of components in the index.
+   */
+  public static List<ComponentDescriptor> read(final Reader input)
+      throws IOException {
+    Validate.notNull(input, "The input cannot be null.");
+
+    ArrayList<ComponentDescriptor> result =
+      new ArrayList<ComponentDescriptor>();
+    BufferedReader reader = new BufferedReader(input);
+    ComponentDescriptor current = null;
+    String line;
+
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+
+      String key = StringUtils.substringBefore(line, " ");
+      String value = StringUtils.substringAfter(line, " ").trim();
+
+      if (key.equals("component")) {
+        current = new ComponentDescriptor(value);
+        result.add(current);
+      } else if (current == null) {
+        throw new IOException("Invalid index entry: " + line);
+      } else if (key.equals("name")) {
+        current.setName(value);
+      } else if (key.equals("implementation")) {
+        current.setImplementation(value);
+      } else if (key.equals("global")) {
+        current.addGlobalFunction(value);
+      } else if (key.equals("function")) {
+        current.addFunction(value);
+      } else if (key.equals("constructor")) {
+        current.setConstructor(value);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the components in the index file format.
+   *
+   * @param output Writer to write the index. It cannot be null.
+   * @param descriptors Components to write. It cannot be null.
+   */
+  public static void write(final Writer output,
+      final Collection<ComponentDescriptor> descriptors) throws IOException {
+    Validate.notNull(output, "The output cannot be null.");
+    Validate.notNull(descriptors, "The descriptors cannot be null.");
+
+    output.write("# Generated by " + ScriptComponentProcessor.class.getName()
+        + ". Do not edit.\n");
+
+    for (ComponentDescriptor descriptor : descriptors) {
+      output.write("component " + descriptor.getClassName() + "\n");
+      output.write("name " + descriptor.getName() + "\n");
+      output.write("implementation " + descriptor.getImplementation() + "\n");
+
+      for (String function : descriptor.getGlobalFunctions()) {
+        output.write("global " + function + "\n");
+      }
+
+      for (String function : descriptor.getFunctions()) {
+        output.write("function " + function + "\n");
+      }
+
+      if (descriptor.getConstructor() != null) {
+        output.write("constructor " + descriptor.getConstructor() + "\n");
+      }
+    }
+
+    output.flush();
+  }
+}
@@ -0,0 +1,277 @@
+package org.moyrax.javascript.index;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.moyrax.javascript.annotation.Constructor;
+import org.moyrax.javascript.annotation.Function;
+import org.moyrax.javascript.annotation.GlobalFunction;
+import org.moyrax.javascript.annotation.Script;
+
+/**
+ * Annotation processor which writes the {@link ScriptComponentIndex} of the
+ * classes annotated with {@link Script}. It applies the same rules used by the
+ * {@link org.moyrax.javascript.ScriptComponent} to read the class bytecode, so
+ * both sources of information are interchangeable.
+ *
+ * The processor is registered as a service, so it runs in every module that
+ * depends on this library. It's invoked for all the compilations, even if
+ * no compiled class is annotated, so an incremental build can drop the
+ * classes which are no longer components. It doesn't claim any annotation.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@SupportedAnnotationTypes("*")
+public class ScriptComponentProcessor extends AbstractProcessor {
+  /** Default ECMA implementation when it's not specified. */
+  private static final String DEFAULT_IMPLEMENTATION =
+    "net.sourceforge.htmlunit.corejs.javascript.ScriptableObject";
+
+  /** Components found in all processing rounds. */
+  private Map<String, ComponentDescriptor> descriptors =
+    new LinkedHashMap<String, ComponentDescriptor>();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations,
+      final RoundEnvironment roundEnv) {
+
+    if (roundEnv.processingOver()) {
+      writeIndex();
+
+      return false;
+    }
+
+    for (Element element : roundEnv.getElementsAnnotatedWith(Script.class)) {
+      if (element.getKind() == ElementKind.CLASS) {
+        ComponentDescriptor descriptor = describe((TypeElement)element);
+
+        descriptors.put(descriptor.getClassName(), descriptor);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Builds the descriptor for the specified exportable class.
+   *
+   * @param type Class annotated with {@link Script}. It cannot be null.
+   *
+   * @return Returns the new descriptor.
+   */
+  private ComponentDescriptor describe(final TypeElement type) {
+    ComponentDescriptor descriptor = new ComponentDescriptor(processingEnv
+        .getElementUtils().getBinaryName(type).toString());
+
+    Script script = type.getAnnotation(Script.class);
+
+    if (script.name().equals("")) {
+      descriptor.setName(ComponentDescriptor.getDefaultName(
+          descriptor.getClassName()));
+    } else {
+      descriptor.setName(script.name());
+    }
+
+    descriptor.setImplementation(findImplementation(type));
+
+    for (Element member : type.getEnclosedElements()) {
+      if (member.getKind() != ElementKind.METHOD &&
+          member.getKind() != ElementKind.CONSTRUCTOR) {
+        continue;
+      }
+
+      ExecutableElement method = (ExecutableElement)member;
+      boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+      String methodName = method.getSimpleName().toString();
+
+      GlobalFunction global = method.getAnnotation(GlobalFunction.class);
+
+      if (global != null && isStatic) {
+        if (global.name().equals("")) {
+          descriptor.addGlobalFunction(methodName);
+        } else {
+          descriptor.addGlobalFunction(global.name());
+        }
+      }
+
+      if (method.getAnnotation(Function.class) != null) {
+        descriptor.addFunction(methodName);
+      }
+
+      if (method.getAnnotation(Constructor.class) != null && !isStatic &&
+          descriptor.getConstructor() == null) {
+        descriptor.setConstructor(methodName);
+      }
+    }
+
+    return descriptor;
+  }
+
+  /**
+   * Reads the ECMA implementation class from the {@link Script} annotation.
+   * The annotation value cannot be read directly at compile time since the
+   * class may be not compiled yet.
+   *
+   * @param type Class annotated with {@link Script}. It cannot be null.
+   *
+   * @return Returns the binary name of the implementation class.
+   */
+  private String findImplementation(final TypeElement type) {
+    for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement)annotation
+          .getAnnotationType().asElement();
+
+      if (!annotationType.getQualifiedName().contentEquals(
+          Script.class.getName())) {
+        continue;
+      }
+
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>
+          entry : annotation.getElementValues().entrySet()) {
+
+        if (entry.getKey().getSimpleName().contentEquals("implementation")) {
+          TypeMirror value = (TypeMirror)entry.getValue().getValue();
+          TypeElement implementation = (TypeElement)((DeclaredType)value)
+              .asElement();
+
+          return processingEnv.getElementUtils().getBinaryName(implementation)
+              .toString();
+        }
+      }
+    }
+
+    return DEFAULT_IMPLEMENTATION;
+  }
+
+  /**
+   * Writes the index file to the class output directory. The components of
+   * an existing index are kept if their classes are still annotated, since
+   * an incremental build only processes the changed classes.
+   */
+  private void writeIndex() {
+    Map<String, ComponentDescriptor> previous = readIndex();
+
+    if (descriptors.isEmpty() && previous == null) {
+      return;
+    }
+
+    Map<String, ComponentDescriptor> components =
+      new LinkedHashMap<String, ComponentDescriptor>();
+
+    if (previous != null) {
+      for (ComponentDescriptor descriptor : previous.values()) {
+        if (isComponent(descriptor.getClassName())) {
+          components.put(descriptor.getClassName(), descriptor);
+        }
+      }
+    }
+
+    components.putAll(descriptors);
+
+    try {
+      FileObject index = processingEnv.getFiler().createResource(
+          StandardLocation.CLASS_OUTPUT, "", ScriptComponentIndex.LOCATION);
+
+      Writer writer = new OutputStreamWriter(index.openOutputStream(),
+          "UTF-8");
+
+      try {
+        ScriptComponentIndex.write(writer, components.values());
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Cannot write the components index: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Reads the index file left in the class output directory by a previous
+   * build.
+   *
+   * @return Returns the indexed components by class name, or null if
+   *    there's no index file.
+   */
+  private Map<String, ComponentDescriptor> readIndex() {
+    Reader reader;
+
+    try {
+      FileObject index = processingEnv.getFiler().getResource(
+          StandardLocation.CLASS_OUTPUT, "", ScriptComponentIndex.LOCATION);
+
+      reader = new InputStreamReader(index.openInputStream(), "UTF-8");
+    } catch (IOException ex) {
+      return null;
+    }
+
+    Map<String, ComponentDescriptor> components =
+      new LinkedHashMap<String, ComponentDescriptor>();
+
+    try {
+      for (ComponentDescriptor descriptor : ScriptComponentIndex.read(
+          reader)) {
+        components.put(descriptor.getClassName(), descriptor);
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Cannot read the previous components index: " + ex.getMessage());
+    } finally {
+      try {
+        reader.close();
+      } catch (IOException ex) {
+        // Nothing to do, the index was already read.
+      }
+    }
+
+    return components;
+  }
+
+  /**
+   * Determines whether a class from a previous build still exists and is
+   * annotated with {@link Script}.
+   *
+   * @param className Binary name of the class. It cannot be null.
+   */
+  private boolean isComponent(final String className) {
+    TypeElement type = processingEnv.getElementUtils().getTypeElement(
+        className.replace('$', '.'));
+
+    return type != null && type.getAnnotation(Script.class) != null;
+  }
+}
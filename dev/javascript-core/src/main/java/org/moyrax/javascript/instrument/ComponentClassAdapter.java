@@ -183,15 +183,14 @@ public final class ComponentClassAdapter extends ClassAdapter {
     MethodVisitor mv = super.visitMethod(access, name, desc, signature,
         exceptions);
 
-    if (this.functions.contains(name) ||
-        (script.getConstructor() != null &&
-            script.getConstructor().getName().equals(name))) {
+    boolean isConstructor = name.equals(script.getConstructorName());
+
+    if (this.functions.contains(name) || isConstructor) {
 
       MethodDescriptor descriptor = new MethodDescriptor(name, desc, signature,
           exceptions);
 
-      if (script.getConstructor() != null &&
-          script.getConstructor().getName().equals(name)) {
+      if (isConstructor) {
         descriptor.constructor = true;
       }
 
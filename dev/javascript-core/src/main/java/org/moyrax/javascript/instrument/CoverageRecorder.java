@@ -0,0 +1,328 @@
+package org.moyrax.javascript.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebugFrame;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebuggableScript;
+import net.sourceforge.htmlunit.corejs.javascript.debug.Debugger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Records the JavaScript line coverage of the scripts executed by the
+ * contexts of a {@link ContextFactory}. It covers the library resources,
+ * the included scripts and the page scripts, since all of them are compiled
+ * by the same contexts.
+ *
+ * The executable lines of each source are read from the compiled scripts,
+ * and the hits are counted in a preallocated <code>int[]</code> for each
+ * source, so a hit doesn't allocate any object. Counters are not
+ * synchronized: hits from concurrent threads on the same line may be lost,
+ * which doesn't change whether the line is covered.
+ *
+ * The coverage is written in LCOV format.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class CoverageRecorder implements Debugger, ContextFactory.Listener {
+  /**
+   * Source name of the page scripts in HtmlUnit:
+   * <code>script in http://host/page.html from (1, 2) to (3, 4)</code>.
+   */
+  private static final Pattern PAGE_SCRIPT = Pattern.compile(
+      "script in (.+) from \\(\\d+, \\d+\\) to \\(\\d+, \\d+\\)");
+
+  /** Coverage of each source, by normalized source name. */
+  private final ConcurrentHashMap<String, SourceCoverage> sources =
+    new ConcurrentHashMap<String, SourceCoverage>();
+
+  /**
+   * Installs this recorder in the contexts created by the specified factory.
+   * The context bound to the current thread, if any, is also recorded.
+   *
+   * @param factory Factory which creates the contexts. It cannot be null.
+   */
+  public void install(final ContextFactory factory) {
+    Validate.notNull(factory, "The factory cannot be null.");
+
+    factory.addListener(this);
+
+    Context current = Context.getCurrentContext();
+
+    if (current != null) {
+      contextCreated(current);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void contextCreated(final Context cx) {
+    DebuggerChain.attach(cx, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void contextReleased(final Context cx) {
+  }
+
+  /**
+   * Registers the executable lines of the compiled script. It's invoked for
+   * the script and for each nested function.
+   *
+   * {@inheritDoc}
+   */
+  public void handleCompilationDone(final Context cx,
+      final DebuggableScript fnOrScript, final String source) {
+    getSource(fnOrScript).addLines(fnOrScript.getLineNumbers());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public DebugFrame getFrame(final Context cx,
+      final DebuggableScript fnOrScript) {
+    return getSource(fnOrScript).frame;
+  }
+
+  /**
+   * Returns the coverage of all the sources.
+   *
+   * @return Returns the hits of each executable line, by source name and
+   *    line number. Never returns null.
+   */
+  public Map<String, Map<Integer, Integer>> getCoverage() {
+    TreeMap<String, Map<Integer, Integer>> coverage =
+      new TreeMap<String, Map<Integer, Integer>>();
+
+    for (Map.Entry<String, SourceCoverage> source : sources.entrySet()) {
+      coverage.put(source.getKey(), source.getValue().getLines());
+    }
+
+    return coverage;
+  }
+
+  /**
+   * Writes the coverage of all the sources in LCOV format.
+   *
+   * @param writer Writer to write the coverage. It cannot be null.
+   */
+  public void writeLcov(final Writer writer) throws IOException {
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    for (Map.Entry<String, Map<Integer, Integer>> source
+        : getCoverage().entrySet()) {
+      int linesHit = 0;
+
+      writer.write("TN:\n");
+      writer.write("SF:" + toPath(source.getKey()) + "\n");
+
+      for (Map.Entry<Integer, Integer> line : source.getValue().entrySet()) {
+        writer.write("DA:" + line.getKey() + "," + line.getValue() + "\n");
+
+        if (line.getValue() > 0) {
+          linesHit++;
+        }
+      }
+
+      writer.write("LF:" + source.getValue().size() + "\n");
+      writer.write("LH:" + linesHit + "\n");
+      writer.write("end_of_record\n");
+    }
+
+    writer.flush();
+  }
+
+  /**
+   * Returns the coverage of the source which contains the specified script.
+   *
+   * @param fnOrScript Function or script. It cannot be null.
+   */
+  private SourceCoverage getSource(final DebuggableScript fnOrScript) {
+    String name = normalize(fnOrScript.getSourceName());
+    SourceCoverage source = sources.get(name);
+
+    if (source == null) {
+      SourceCoverage newSource = new SourceCoverage();
+
+      source = sources.putIfAbsent(name, newSource);
+
+      if (source == null) {
+        source = newSource;
+      }
+    }
+
+    return source;
+  }
+
+  /**
+   * Normalizes the source name, so all the scripts of a page are recorded
+   * in the same source.
+   *
+   * @param sourceName Source name given by Rhino. It can be null.
+   */
+  private static String normalize(final String sourceName) {
+    if (sourceName == null) {
+      return "(unknown)";
+    }
+
+    Matcher matcher = PAGE_SCRIPT.matcher(sourceName);
+
+    if (matcher.matches()) {
+      return matcher.group(1);
+    }
+
+    return sourceName;
+  }
+
+  /**
+   * Converts file urls to paths, so the LCOV tools can find the sources.
+   *
+   * @param sourceName Normalized source name. It cannot be null.
+   */
+  private static String toPath(final String sourceName) {
+    if (!sourceName.startsWith("file:")) {
+      return sourceName;
+    }
+
+    try {
+      return new File(new URI(StringUtils.substringBefore(sourceName, "#")))
+          .getAbsolutePath();
+    } catch (URISyntaxException ex) {
+      return sourceName;
+    } catch (IllegalArgumentException ex) {
+      return sourceName;
+    }
+  }
+
+  /**
+   * Coverage of a single source.
+   */
+  private static class SourceCoverage {
+    /** Hits of each line, by line number. */
+    private volatile int[] hits = new int[0];
+
+    /** Whether each line is executable, by line number. */
+    private boolean[] executable = new boolean[0];
+
+    /** Frame shared by all the scripts of this source. */
+    private final DebugFrame frame = new LineFrame(this);
+
+    /**
+     * Registers executable lines. The counters are grown here, when the
+     * script is compiled, so hits never allocate.
+     *
+     * @param lines Line numbers. It can be null.
+     */
+    private synchronized void addLines(final int[] lines) {
+      if (lines == null || lines.length == 0) {
+        return;
+      }
+
+      int max = executable.length - 1;
+
+      for (int line : lines) {
+        max = Math.max(max, line);
+      }
+
+      if (max >= executable.length) {
+        boolean[] newExecutable = new boolean[max + 1];
+        System.arraycopy(executable, 0, newExecutable, 0, executable.length);
+        executable = newExecutable;
+
+        int[] newHits = new int[max + 1];
+        System.arraycopy(hits, 0, newHits, 0, hits.length);
+        hits = newHits;
+      }
+
+      for (int line : lines) {
+        if (line >= 0) {
+          executable[line] = true;
+        }
+      }
+    }
+
+    /**
+     * Returns the hits of each executable line, by line number.
+     */
+    private synchronized Map<Integer, Integer> getLines() {
+      TreeMap<Integer, Integer> lines = new TreeMap<Integer, Integer>();
+      int[] currentHits = hits;
+
+      for (int line = 0; line < executable.length; line++) {
+        if (executable[line]) {
+          lines.put(line, currentHits[line]);
+        }
+      }
+
+      return lines;
+    }
+  }
+
+  /**
+   * Frame which counts the line hits of a source.
+   */
+  private static class LineFrame implements DebugFrame {
+    /** Coverage of the source. */
+    private final SourceCoverage source;
+
+    /**
+     * Creates a new frame for the specified source.
+     */
+    private LineFrame(final SourceCoverage theSource) {
+      source = theSource;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onLineChange(final Context cx, final int lineNumber) {
+      int[] hits = source.hits;
+
+      if (lineNumber >= 0 && lineNumber < hits.length) {
+        hits[lineNumber]++;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onEnter(final Context cx, final Scriptable activation,
+        final Scriptable thisObj, final Object[] args) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExceptionThrown(final Context cx, final Throwable ex) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExit(final Context cx, final boolean byThrow,
+        final Object resultOrException) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onDebuggerStatement(final Context cx) {
+    }
+  }
+}
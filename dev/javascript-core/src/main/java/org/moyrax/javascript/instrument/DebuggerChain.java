@@ -0,0 +1,168 @@
+package org.moyrax.javascript.instrument;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebugFrame;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebuggableScript;
+import net.sourceforge.htmlunit.corejs.javascript.debug.Debugger;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * {@link Debugger} which notifies two debuggers, so several tools can hook
+ * the same {@link Context}. Rhino supports a single debugger per context.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class DebuggerChain implements Debugger {
+  /** Debugger notified first. */
+  private final Debugger first;
+
+  /** Debugger notified last. */
+  private final Debugger second;
+
+  /**
+   * Creates a new chain.
+   *
+   * @param theFirst Debugger notified first. It cannot be null.
+   * @param theSecond Debugger notified last. It cannot be null.
+   */
+  public DebuggerChain(final Debugger theFirst, final Debugger theSecond) {
+    Validate.notNull(theFirst, "The first debugger cannot be null.");
+    Validate.notNull(theSecond, "The second debugger cannot be null.");
+
+    first = theFirst;
+    second = theSecond;
+  }
+
+  /**
+   * Adds a debugger to the specified context. If the context already has a
+   * debugger, both are chained. Debugger hooks are only invoked by the
+   * interpreter, so the context is switched to interpreted mode.
+   *
+   * @param cx Context to add the debugger. It cannot be null.
+   * @param debugger Debugger to add. It cannot be null.
+   */
+  public static void attach(final Context cx, final Debugger debugger) {
+    Validate.notNull(cx, "The context cannot be null.");
+    Validate.notNull(debugger, "The debugger cannot be null.");
+
+    Debugger current = cx.getDebugger();
+
+    if (current == debugger || (current instanceof DebuggerChain
+        && ((DebuggerChain) current).contains(debugger))) {
+      return;
+    }
+
+    cx.setOptimizationLevel(-1);
+    cx.setGeneratingDebug(true);
+
+    if (current == null) {
+      cx.setDebugger(debugger, null);
+    } else {
+      cx.setDebugger(new DebuggerChain(current, debugger),
+          cx.getDebuggerContextData());
+    }
+  }
+
+  /**
+   * Determines whether the specified debugger is part of this chain.
+   *
+   * @param debugger Debugger to check. It cannot be null.
+   */
+  public boolean contains(final Debugger debugger) {
+    return first == debugger || second == debugger
+        || (first instanceof DebuggerChain
+            && ((DebuggerChain) first).contains(debugger));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void handleCompilationDone(final Context cx,
+      final DebuggableScript fnOrScript, final String source) {
+    first.handleCompilationDone(cx, fnOrScript, source);
+    second.handleCompilationDone(cx, fnOrScript, source);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public DebugFrame getFrame(final Context cx,
+      final DebuggableScript fnOrScript) {
+    DebugFrame firstFrame = first.getFrame(cx, fnOrScript);
+    DebugFrame secondFrame = second.getFrame(cx, fnOrScript);
+
+    if (firstFrame == null) {
+      return secondFrame;
+    }
+
+    if (secondFrame == null) {
+      return firstFrame;
+    }
+
+    return new FrameChain(firstFrame, secondFrame);
+  }
+
+  /**
+   * {@link DebugFrame} which notifies two frames.
+   */
+  private static class FrameChain implements DebugFrame {
+    /** Frame notified first. */
+    private final DebugFrame first;
+
+    /** Frame notified last. */
+    private final DebugFrame second;
+
+    /**
+     * Creates a new chain of frames.
+     */
+    private FrameChain(final DebugFrame theFirst, final DebugFrame theSecond) {
+      first = theFirst;
+      second = theSecond;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onEnter(final Context cx, final Scriptable activation,
+        final Scriptable thisObj, final Object[] args) {
+      first.onEnter(cx, activation, thisObj, args);
+      second.onEnter(cx, activation, thisObj, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onLineChange(final Context cx, final int lineNumber) {
+      first.onLineChange(cx, lineNumber);
+      second.onLineChange(cx, lineNumber);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExceptionThrown(final Context cx, final Throwable ex) {
+      first.onExceptionThrown(cx, ex);
+      second.onExceptionThrown(cx, ex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExit(final Context cx, final boolean byThrow,
+        final Object resultOrException) {
+      second.onExit(cx, byThrow, resultOrException);
+      first.onExit(cx, byThrow, resultOrException);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onDebuggerStatement(final Context cx) {
+      first.onDebuggerStatement(cx);
+      second.onDebuggerStatement(cx);
+    }
+  }
+}
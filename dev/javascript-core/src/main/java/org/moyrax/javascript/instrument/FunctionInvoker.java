@@ -0,0 +1,154 @@
+package org.moyrax.javascript.instrument;
+
+import net.sourceforge.htmlunit.corejs.javascript.BaseFunction;
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptRuntime;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.Undefined;
+
+/**
+ * JavaScript function which invokes a component method directly, without
+ * reflection. The subclasses are generated by the
+ * {@link FunctionInvokerFactory} for each method, and they convert the
+ * arguments using the same rules as Rhino's <code>FunctionObject</code>.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public abstract class FunctionInvoker extends BaseFunction {
+  /** Default id for serialization. */
+  private static final long serialVersionUID = 1L;
+
+  /** Name of the function in the client application. */
+  private String functionName;
+
+  /** Number of arguments declared by the function. */
+  private int arity;
+
+  /**
+   * Creates a new function of this type. It's implemented by the generated
+   * classes to avoid creating the instances through reflection.
+   */
+  protected abstract FunctionInvoker newInstance();
+
+  /**
+   * Invokes the component method.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public abstract Object call(Context cx, Scriptable scope, Scriptable thisObj,
+      Object[] args);
+
+  /**
+   * Creates a new function bound to the specified scope.
+   *
+   * @param scope Scope to define the function in. It cannot be null.
+   *
+   * @return Returns the new function.
+   */
+  public FunctionInvoker create(final Scriptable scope) {
+    FunctionInvoker function = newInstance();
+
+    function.functionName = functionName;
+    function.arity = arity;
+
+    ScriptRuntime.setFunctionProtoAndParent(function, scope);
+
+    return function;
+  }
+
+  /**
+   * Sets the function signature in the client application.
+   *
+   * @param theFunctionName Name of the function. It cannot be null.
+   * @param theArity Number of arguments declared by the function.
+   */
+  void setSignature(final String theFunctionName, final int theArity) {
+    functionName = theFunctionName;
+    arity = theArity;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getFunctionName() {
+    return functionName;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getArity() {
+    return arity;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getLength() {
+    return arity;
+  }
+
+  /**
+   * Returns the argument in the specified position, or <code>undefined</code>
+   * if it was not provided.
+   */
+  protected static Object getArgument(final Object[] args, final int index) {
+    if (index < args.length) {
+      return args[index];
+    }
+
+    return Undefined.instance;
+  }
+
+  /**
+   * Converts an argument to a {@link Scriptable}. <code>null</code> values
+   * are passed as they are.
+   */
+  protected static Scriptable toScriptable(final Context cx,
+      final Scriptable scope, final Object arg) {
+    if (arg == null) {
+      return null;
+    }
+
+    return ScriptRuntime.toObject(cx, scope, arg);
+  }
+
+  /**
+   * Searches the prototype chain of the <code>this</code> object for an
+   * instance of the component class.
+   *
+   * @param thisObj The <code>this</code> object of the call.
+   * @param type Component class.
+   * @param name Name of the function, used to report errors.
+   *
+   * @return Returns the component instance.
+   */
+  protected static Object findThis(final Scriptable thisObj,
+      final Class<?> type, final String name) {
+
+    Scriptable current = thisObj;
+
+    while (current != null && !type.isInstance(current)) {
+      current = current.getPrototype();
+    }
+
+    if (current == null) {
+      throw ScriptRuntime.typeError1("msg.incompat.call", name);
+    }
+
+    return current;
+  }
+
+  /**
+   * Wraps a result which is not a JavaScript native type.
+   */
+  protected static Object wrapResult(final Context cx, final Scriptable scope,
+      final Object result) {
+    return cx.getWrapFactory().wrap(cx, scope, result, null);
+  }
+}
@@ -0,0 +1,492 @@
+package org.moyrax.javascript.instrument;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptRuntime;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.Undefined;
+
+import org.apache.commons.lang.Validate;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates the {@link FunctionInvoker}s which call the component methods
+ * directly from JavaScript. Each invoker is a class generated for a single
+ * method, which converts the arguments to the exact parameter types without
+ * boxing the primitive values.
+ *
+ * The supported signatures are the same supported by Rhino's
+ * <code>FunctionObject</code>: parameters of type <code>String</code>,
+ * <code>int</code>, <code>boolean</code>, <code>double</code>, their
+ * wrappers, {@link Scriptable} and <code>Object</code>, and the static
+ * variable arguments form <code>(Context, Scriptable, Object[],
+ * Function)</code>. Other signatures are not supported and the caller should
+ * use the <code>FunctionObject</code> instead.
+ *
+ * The generated classes are cached for the lifetime of the factory.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class FunctionInvokerFactory {
+  /** Internal name of the invokers superclass. */
+  private static final String INVOKER = Type.getInternalName(
+      FunctionInvoker.class);
+
+  /** Internal name of Rhino's runtime. */
+  private static final String RUNTIME = Type.getInternalName(
+      ScriptRuntime.class);
+
+  /** Descriptor of the {@link FunctionInvoker#call} method. */
+  private static final String CALL_DESCRIPTOR = Type.getMethodDescriptor(
+      Type.getType(Object.class), new Type[] {
+          Type.getType(Context.class), Type.getType(Scriptable.class),
+          Type.getType(Scriptable.class), Type.getType(Object[].class) });
+
+  /** Parameters of the variable arguments functions. */
+  private static final Class<?>[] VARARGS_PARAMETERS = new Class<?>[] {
+    Context.class, Scriptable.class, Object[].class, Function.class
+  };
+
+  /** Number of generated classes, used to create unique names. */
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  /** Invoker of each method, new functions are created from them. */
+  private ConcurrentHashMap<Method, FunctionInvoker> templates =
+    new ConcurrentHashMap<Method, FunctionInvoker>();
+
+  /** Class loader to define the invokers for each component class loader. */
+  private HashMap<ClassLoader, InvokerClassLoader> loaders =
+    new HashMap<ClassLoader, InvokerClassLoader>();
+
+  /**
+   * Creates a function which invokes the specified method of a component.
+   *
+   * @param type Component class. It cannot be null.
+   * @param name Name of the method. It cannot be null or empty.
+   * @param isStatic Indicates whether the method is static.
+   * @param scope Scope to define the function in. It cannot be null.
+   *
+   * @return Returns the new function, or <code>null</code> if the method
+   *    signature is not supported or there're several methods with the same
+   *    name.
+   */
+  public FunctionInvoker create(final Class<?> type, final String name,
+      final boolean isStatic, final Scriptable scope) {
+
+    Validate.notNull(type, "The type cannot be null.");
+    Validate.notEmpty(name, "The name cannot be null or empty.");
+    Validate.notNull(scope, "The scope cannot be null.");
+
+    Method method = findMethod(type, name, isStatic);
+
+    if (method == null) {
+      return null;
+    }
+
+    FunctionInvoker template = templates.get(method);
+
+    if (template == null) {
+      template = generate(method);
+
+      FunctionInvoker existing = templates.putIfAbsent(method, template);
+
+      if (existing != null) {
+        template = existing;
+      }
+    }
+
+    return template.create(scope);
+  }
+
+  /**
+   * Determines whether the invokers can call the specified method.
+   *
+   * @param method Method to check. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the method signature is supported,
+   *    <code>false</code> otherwise.
+   */
+  public static boolean isSupported(final Method method) {
+    Validate.notNull(method, "The method cannot be null.");
+
+    if (!Modifier.isPublic(method.getModifiers()) ||
+        !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return false;
+    }
+
+    if (isVarArgs(method)) {
+      return true;
+    }
+
+    for (Class<?> parameter : method.getParameterTypes()) {
+      if (parameter != String.class && parameter != Object.class &&
+          parameter != Integer.TYPE && parameter != Integer.class &&
+          parameter != Boolean.TYPE && parameter != Boolean.class &&
+          parameter != Double.TYPE && parameter != Double.class &&
+          !Scriptable.class.isAssignableFrom(parameter)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Searches for the single public method with the specified name.
+   *
+   * @return Returns the method, or <code>null</code> if it's not found, it's
+   *    overloaded or its signature is not supported.
+   */
+  private Method findMethod(final Class<?> type, final String name,
+      final boolean isStatic) {
+
+    Method result = null;
+
+    for (Method method : type.getMethods()) {
+      if (method.getName().equals(name) &&
+          Modifier.isStatic(method.getModifiers()) == isStatic) {
+        if (result != null) {
+          return null;
+        }
+
+        result = method;
+      }
+    }
+
+    if (result == null || !isSupported(result)) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Determines whether the method uses the variable arguments form.
+   */
+  private static boolean isVarArgs(final Method method) {
+    return Modifier.isStatic(method.getModifiers()) &&
+        Arrays.equals(method.getParameterTypes(),
+            VARARGS_PARAMETERS);
+  }
+
+  /**
+   * Generates and instantiates the invoker for the specified method.
+   *
+   * @param method Method to invoke. It cannot be null.
+   *
+   * @return Returns an invoker without scope.
+   */
+  private FunctionInvoker generate(final Method method) {
+    Class<?> declaringClass = method.getDeclaringClass();
+    String className = INVOKER + "$" + declaringClass.getSimpleName() + "$"
+        + method.getName() + "$" + counter.incrementAndGet();
+
+    byte[] bytecode = generateClass(className, method);
+    FunctionInvoker invoker;
+
+    try {
+      invoker = (FunctionInvoker)getClassLoader(declaringClass.getClassLoader())
+          .define(className.replace("/", "."), bytecode).newInstance();
+    } catch (InstantiationException ex) {
+      throw new IllegalStateException("Cannot create the invoker.", ex);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("Cannot create the invoker.", ex);
+    }
+
+    invoker.setSignature(method.getName(), isVarArgs(method) ? 1
+        : method.getParameterTypes().length);
+
+    return invoker;
+  }
+
+  /**
+   * Returns the class loader to define the invokers of the components loaded
+   * by the specified class loader.
+   */
+  private InvokerClassLoader getClassLoader(final ClassLoader parent) {
+    synchronized (loaders) {
+      InvokerClassLoader classLoader = loaders.get(parent);
+
+      if (classLoader == null) {
+        classLoader = new InvokerClassLoader(parent != null ? parent
+            : FunctionInvoker.class.getClassLoader());
+
+        loaders.put(parent, classLoader);
+      }
+
+      return classLoader;
+    }
+  }
+
+  /**
+   * Generates the bytecode of the invoker class.
+   *
+   * @param className Internal name of the new class. It cannot be null.
+   * @param method Method to invoke. It cannot be null.
+   */
+  private byte[] generateClass(final String className, final Method method) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+    cw.visit(V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null,
+        INVOKER, null);
+
+    /* Default constructor. */
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null,
+        null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, INVOKER, "<init>", "()V");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    /* newInstance() */
+    mv = cw.visitMethod(ACC_PROTECTED, "newInstance",
+        "()L" + INVOKER + ";", null, null);
+    mv.visitCode();
+    mv.visitTypeInsn(NEW, className);
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(INVOKESPECIAL, className, "<init>", "()V");
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    /* call(Context, Scriptable, Scriptable, Object[]) */
+    mv = cw.visitMethod(ACC_PUBLIC, "call", CALL_DESCRIPTOR, null, null);
+    mv.visitCode();
+    generateCall(mv, method);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+
+    return cw.toByteArray();
+  }
+
+  /**
+   * Generates the body of the call method. The equivalent Java code is:
+   *
+   * <pre>
+   * return ((Component)findThis(thisObj, Component.class, "name")).name(
+   *     ScriptRuntime.toInt32(getArgument(args, 0)), ...);
+   * </pre>
+   *
+   * @param mv Visitor of the call method. It cannot be null.
+   * @param method Method to invoke. It cannot be null.
+   */
+  private void generateCall(final MethodVisitor mv, final Method method) {
+    Type owner = Type.getType(method.getDeclaringClass());
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+
+    if (!isStatic) {
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitLdcInsn(owner);
+      mv.visitLdcInsn(method.getName());
+      mv.visitMethodInsn(INVOKESTATIC, INVOKER, "findThis",
+          "(L" + Type.getInternalName(Scriptable.class)
+          + ";Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Object;");
+      mv.visitTypeInsn(CHECKCAST, owner.getInternalName());
+    }
+
+    if (isVarArgs(method)) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitVarInsn(ALOAD, 4);
+      mv.visitVarInsn(ALOAD, 0);
+    } else {
+      Class<?>[] parameters = method.getParameterTypes();
+
+      for (int i = 0; i < parameters.length; i++) {
+        generateArgument(mv, parameters[i], i);
+      }
+    }
+
+    mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL,
+        owner.getInternalName(), method.getName(),
+        Type.getMethodDescriptor(method));
+
+    generateResult(mv, method.getReturnType());
+
+    mv.visitInsn(ARETURN);
+  }
+
+  /**
+   * Generates the code to read and convert an argument.
+   *
+   * @param mv Visitor of the call method. It cannot be null.
+   * @param parameter Type of the parameter. It cannot be null.
+   * @param index Position of the argument.
+   */
+  private void generateArgument(final MethodVisitor mv,
+      final Class<?> parameter, final int index) {
+
+    boolean isScriptable = Scriptable.class.isAssignableFrom(parameter);
+
+    if (isScriptable) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, 2);
+    }
+
+    mv.visitVarInsn(ALOAD, 4);
+    mv.visitLdcInsn(Integer.valueOf(index));
+    mv.visitMethodInsn(INVOKESTATIC, INVOKER, "getArgument",
+        "([Ljava/lang/Object;I)Ljava/lang/Object;");
+
+    if (parameter == Integer.TYPE || parameter == Integer.class) {
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "toInt32",
+          "(Ljava/lang/Object;)I");
+    } else if (parameter == Boolean.TYPE || parameter == Boolean.class) {
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "toBoolean",
+          "(Ljava/lang/Object;)Z");
+    } else if (parameter == Double.TYPE || parameter == Double.class) {
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "toNumber",
+          "(Ljava/lang/Object;)D");
+    } else if (parameter == String.class) {
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "toString",
+          "(Ljava/lang/Object;)Ljava/lang/String;");
+    } else if (isScriptable) {
+      String scriptable = Type.getInternalName(Scriptable.class);
+
+      mv.visitMethodInsn(INVOKESTATIC, INVOKER, "toScriptable",
+          "(L" + Type.getInternalName(Context.class) + ";L" + scriptable
+          + ";Ljava/lang/Object;)L" + scriptable + ";");
+
+      if (parameter != Scriptable.class) {
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(parameter));
+      }
+    }
+
+    if (!parameter.isPrimitive() && (parameter == Integer.class ||
+        parameter == Boolean.class || parameter == Double.class)) {
+      generateBoxing(mv, Type.getType(parameter == Integer.class
+          ? Integer.TYPE : parameter == Boolean.class ? Boolean.TYPE
+              : Double.TYPE));
+    }
+  }
+
+  /**
+   * Generates the code to convert the method result to a JavaScript value.
+   *
+   * @param mv Visitor of the call method. It cannot be null.
+   * @param returnType Return type of the method. It cannot be null.
+   */
+  private void generateResult(final MethodVisitor mv,
+      final Class<?> returnType) {
+
+    if (returnType == Void.TYPE) {
+      mv.visitFieldInsn(GETSTATIC, Type.getInternalName(Undefined.class),
+          "instance", "Ljava/lang/Object;");
+    } else if (returnType.isPrimitive()) {
+      Type type = Type.getType(returnType);
+
+      generateBoxing(mv, type);
+
+      if (type.getSort() == Type.CHAR || type.getSort() == Type.LONG ||
+          type.getSort() == Type.FLOAT) {
+        generateWrap(mv);
+      }
+    } else if (returnType != String.class && returnType != Object.class &&
+        returnType != Integer.class && returnType != Boolean.class &&
+        returnType != Double.class &&
+        !Scriptable.class.isAssignableFrom(returnType)) {
+      generateWrap(mv);
+    }
+  }
+
+  /**
+   * Generates the code to box the primitive value on top of the stack.
+   */
+  private void generateBoxing(final MethodVisitor mv, final Type type) {
+    String wrapper;
+
+    switch (type.getSort()) {
+    case Type.BOOLEAN:
+      wrapper = "java/lang/Boolean";
+      break;
+    case Type.CHAR:
+      wrapper = "java/lang/Character";
+      break;
+    case Type.BYTE:
+    case Type.SHORT:
+    case Type.INT:
+      wrapper = "java/lang/Integer";
+      break;
+    case Type.LONG:
+      wrapper = "java/lang/Long";
+      break;
+    case Type.FLOAT:
+      wrapper = "java/lang/Float";
+      break;
+    default:
+      wrapper = "java/lang/Double";
+    }
+
+    String primitive = type.getSort() == Type.BYTE ||
+        type.getSort() == Type.SHORT ? "I" : type.getDescriptor();
+
+    mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf",
+        "(" + primitive + ")L" + wrapper + ";");
+  }
+
+  /**
+   * Generates the code to wrap the value on top of the stack with the
+   * context's wrap factory.
+   */
+  private void generateWrap(final MethodVisitor mv) {
+    String scriptable = Type.getInternalName(Scriptable.class);
+
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInsn(SWAP);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitInsn(SWAP);
+    mv.visitMethodInsn(INVOKESTATIC, INVOKER, "wrapResult",
+        "(L" + Type.getInternalName(Context.class) + ";L" + scriptable
+        + ";Ljava/lang/Object;)Ljava/lang/Object;");
+  }
+
+  /**
+   * Class loader used to define the generated invokers.
+   */
+  private static class InvokerClassLoader extends ClassLoader {
+    /**
+     * Creates a new class loader with the specified parent.
+     */
+    private InvokerClassLoader(final ClassLoader parent) {
+      super(parent);
+    }
+
+    /**
+     * Defines a new invoker class.
+     */
+    private Class<?> define(final String name, final byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package org.moyrax.javascript.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebugFrame;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebuggableScript;
+import net.sourceforge.htmlunit.corejs.javascript.debug.Debugger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.instrument.DebuggerChain;
+
+/**
+ * Sampling profiler for the JavaScript code. It's installed as the Rhino
+ * {@link Debugger} of the contexts created by a {@link ContextFactory}, and
+ * keeps the JavaScript call stack of each thread from the debugger hooks.
+ *
+ * The stack is sampled from the thread that runs the script, when a function
+ * is entered or a line changes and the sampling interval has elapsed, so the
+ * samples never race with the running script. Since samples are taken at
+ * statement boundaries, the time spent in native code is attributed to the
+ * function which runs the next statement. The samples are aggregated as
+ * folded stacks, the format consumed by the flame graph tools:
+ * <code>outer@file.js:10;inner@file.js:20 42</code>.
+ *
+ * Debugger hooks are only invoked by the interpreter, so the contexts are
+ * switched to interpreted mode while the profiler is installed. Other
+ * debuggers in the same context are chained through {@link DebuggerChain}.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ScriptProfiler implements Debugger, ContextFactory.Listener {
+  /** Maximum stack depth recorded in the samples. */
+  private static final int MAX_DEPTH = 256;
+
+  /** Sampling interval, in nanoseconds. */
+  private final long interval;
+
+  /** Number of samples of each folded stack. */
+  private final ConcurrentHashMap<String, AtomicLong> samples =
+    new ConcurrentHashMap<String, AtomicLong>();
+
+  /** Frame of each compiled function or script. */
+  private final Map<DebuggableScript, Frame> frames =
+    Collections.synchronizedMap(new WeakHashMap<DebuggableScript, Frame>());
+
+  /** Call stack of each thread. */
+  private final ThreadLocal<CallStack> stacks = new ThreadLocal<CallStack>() {
+    @Override
+    protected CallStack initialValue() {
+      return new CallStack();
+    }
+  };
+
+  /**
+   * Creates a new profiler.
+   *
+   * @param intervalMillis Sampling interval, in milliseconds. Must be greater
+   *    than zero.
+   */
+  public ScriptProfiler(final long intervalMillis) {
+    Validate.isTrue(intervalMillis > 0, "The interval must be greater than"
+        + " zero.");
+
+    interval = intervalMillis * 1000000L;
+  }
+
+  /**
+   * Installs this profiler in the contexts created by the specified factory.
+   * The context bound to the current thread, if any, is also profiled.
+   *
+   * @param factory Factory which creates the contexts. It cannot be null.
+   */
+  public void install(final ContextFactory factory) {
+    Validate.notNull(factory, "The factory cannot be null.");
+
+    factory.addListener(this);
+
+    Context current = Context.getCurrentContext();
+
+    if (current != null) {
+      contextCreated(current);
+    }
+  }
+
+  /**
+   * Discards the samples taken so far.
+   */
+  public void reset() {
+    samples.clear();
+  }
+
+  /**
+   * Returns the samples taken since the last reset.
+   *
+   * @return Returns the number of samples of each folded stack, sorted by
+   *    stack. Never returns null.
+   */
+  public Map<String, Long> getSamples() {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+
+    for (Map.Entry<String, AtomicLong> sample : samples.entrySet()) {
+      result.put(sample.getKey(), sample.getValue().get());
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the samples in folded stacks format, one stack per line.
+   *
+   * @param samples Samples to write, as returned by {@link #getSamples()}. It
+   *    cannot be null.
+   * @param writer Writer to write the stacks. It cannot be null.
+   */
+  public static void writeFoldedStacks(final Map<String, Long> samples,
+      final Writer writer) throws IOException {
+    Validate.notNull(samples, "The samples cannot be null.");
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    for (Map.Entry<String, Long> sample : samples.entrySet()) {
+      writer.write(sample.getKey() + " " + sample.getValue() + "\n");
+    }
+
+    writer.flush();
+  }
+
+  /**
+   * Enables the debugger hooks in the new context.
+   *
+   * {@inheritDoc}
+   */
+  public void contextCreated(final Context cx) {
+    DebuggerChain.attach(cx, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void contextReleased(final Context cx) {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void handleCompilationDone(final Context cx,
+      final DebuggableScript fnOrScript, final String source) {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public DebugFrame getFrame(final Context cx,
+      final DebuggableScript fnOrScript) {
+    Frame frame = frames.get(fnOrScript);
+
+    if (frame == null) {
+      frame = new Frame(getFrameName(fnOrScript));
+      frames.put(fnOrScript, frame);
+    }
+
+    return frame;
+  }
+
+  /**
+   * Takes a sample of the current thread's stack if the interval elapsed.
+   *
+   * @param stack Call stack of the current thread. It cannot be null.
+   */
+  private void sample(final CallStack stack) {
+    long now = System.nanoTime();
+
+    if (now < stack.nextSample) {
+      return;
+    }
+
+    stack.nextSample = now + interval;
+
+    if (stack.depth == 0) {
+      return;
+    }
+
+    StringBuilder folded = new StringBuilder();
+    int depth = Math.min(stack.depth, MAX_DEPTH);
+
+    for (int i = 0; i < depth; i++) {
+      if (i > 0) {
+        folded.append(';');
+      }
+
+      folded.append(stack.frames[i]);
+    }
+
+    String key = folded.toString();
+    AtomicLong count = samples.get(key);
+
+    if (count == null) {
+      AtomicLong newCount = new AtomicLong();
+
+      count = samples.putIfAbsent(key, newCount);
+
+      if (count == null) {
+        count = newCount;
+      }
+    }
+
+    count.incrementAndGet();
+  }
+
+  /**
+   * Builds the name of a frame as <code>function@source:line</code>.
+   *
+   * @param fnOrScript Function or script to build the name. It cannot be
+   *    null.
+   */
+  private static String getFrameName(final DebuggableScript fnOrScript) {
+    String name = fnOrScript.getFunctionName();
+
+    if (StringUtils.isEmpty(name)) {
+      name = fnOrScript.isFunction() ? "(anonymous)" : "(script)";
+    }
+
+    String source = StringUtils.defaultString(fnOrScript.getSourceName(),
+        "(unknown)");
+    source = StringUtils.substringAfterLast("/" + source, "/");
+
+    int[] lines = fnOrScript.getLineNumbers();
+    int line = 0;
+
+    if (lines != null && lines.length > 0) {
+      line = lines[0];
+
+      for (int candidate : lines) {
+        line = Math.min(line, candidate);
+      }
+    }
+
+    return (name + "@" + source + ":" + line).replace(';', '_')
+        .replace(' ', '_');
+  }
+
+  /**
+   * JavaScript call stack of a thread.
+   */
+  private static class CallStack {
+    /** Names of the frames, from the outermost. */
+    private String[] frames = new String[32];
+
+    /** Number of frames in the stack. */
+    private int depth;
+
+    /** Time of the next sample, in nanoseconds. */
+    private long nextSample;
+
+    /**
+     * Pushes a new frame.
+     */
+    private void push(final String frame) {
+      if (depth == frames.length) {
+        String[] newFrames = new String[frames.length * 2];
+        System.arraycopy(frames, 0, newFrames, 0, depth);
+        frames = newFrames;
+      }
+
+      frames[depth++] = frame;
+    }
+
+    /**
+     * Pops the last frame.
+     */
+    private void pop() {
+      if (depth > 0) {
+        frames[--depth] = null;
+      }
+    }
+  }
+
+  /**
+   * Debugger frame shared by all the invocations of a function or script.
+   */
+  private class Frame implements DebugFrame {
+    /** Name of the frame in the folded stacks. */
+    private final String name;
+
+    /**
+     * Creates a new frame.
+     *
+     * @param theName Name of the frame. It cannot be null.
+     */
+    private Frame(final String theName) {
+      name = theName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onEnter(final Context cx, final Scriptable activation,
+        final Scriptable thisObj, final Object[] args) {
+      CallStack stack = stacks.get();
+
+      stack.push(name);
+      sample(stack);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onLineChange(final Context cx, final int lineNumber) {
+      sample(stacks.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExceptionThrown(final Context cx, final Throwable ex) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onExit(final Context cx, final boolean byThrow,
+        final Object resultOrException) {
+      stacks.get().pop();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onDebuggerStatement(final Context cx) {
+    }
+  }
+}
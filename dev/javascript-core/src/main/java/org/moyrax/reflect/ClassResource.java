@@ -13,6 +13,8 @@ import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.Validate;
 import org.objectweb.asm.ClassAdapter;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
@@ -30,6 +32,10 @@ import sun.reflect.annotation.AnnotationType;
  * The class also support the basic Java Reflection, and will use it if
  * available instead of ASM.
  *
+ * The bytecode is parsed on demand: the first pass only reads the class header
+ * and annotations, and the methods are read the first time they're required.
+ * Method bodies and debug information are never parsed.
+ *
  * @author Matias Mirabelli <lumen.night@gmail.com>
  * @since 1.2
  */
@@ -49,11 +55,21 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
   /** {@link ClassReader} to parse the script class. */
   private ClassReader reader;
 
+  /** Parsing options that skip the method bodies and debug information. */
+  private static final int SKIP_CODE = ClassReader.SKIP_CODE
+      | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
   /**
-   * Indicates if the class is already parsed. Default is <code>false</code>.
+   * Indicates if the class header is already parsed. Default is
+   * <code>false</code>.
    */
   private boolean transformed;
 
+  /**
+   * Class members, it's created the first time the methods are required.
+   */
+  private ClassNode members;
+
   /**
    * {@link ClassLoader} used to locate resources and related classes.
    */
@@ -237,7 +253,7 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
    * Returns the methods which has this class.
    */
   public Method[] getMethods() {
-    ClassNode node = getNode();
+    ClassNode node = getMembersNode();
 
     if (node.methods == null) {
       return new Method[0];
@@ -274,12 +290,35 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
   }
 
   /**
-   * @return Returns the byte array which contains the code of the transformed
-   * class.
+   * Skips the fields in the header pass.
+   *
+   * @return Always returns <code>null</code>.
+   */
+  @Override
+  public FieldVisitor visitField(final int access, final String name,
+      final String desc, final String signature, final Object value) {
+    return null;
+  }
+
+  /**
+   * Skips the methods in the header pass. They're read by
+   * {@link #getMembersNode()} only if needed.
+   *
+   * @return Always returns <code>null</code>.
+   */
+  @Override
+  public MethodVisitor visitMethod(final int access, final String name,
+      final String desc, final String signature, final String[] exceptions) {
+    return null;
+  }
+
+  /**
+   * @return Returns the node which contains the class header and the class
+   * annotations.
    */
   private ClassNode getNode() {
     if (!transformed) {
-      reader.accept(this, 8);
+      reader.accept(this, SKIP_CODE);
 
       transformed = true;
     }
@@ -287,6 +326,22 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
     return (ClassNode)cv;
   }
 
+  /**
+   * @return Returns the node which contains the class fields and methods,
+   * without the methods code.
+   */
+  private ClassNode getMembersNode() {
+    if (members == null) {
+      ClassNode node = new ClassNode();
+
+      reader.accept(node, SKIP_CODE);
+
+      members = node;
+    }
+
+    return members;
+  }
+
   /**
    * Searches for an annotation from its name.
    *
@@ -301,9 +356,10 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
     ClassNode node = getNode();
 
     if (node.visibleAnnotations != null) {
+      String descriptor = "L" + name.replace(".", "/") + ";";
+
       for (int i = 0, j = node.visibleAnnotations.size(); i < j; i++) {
         AnnotationNode ann = (AnnotationNode)node.visibleAnnotations.get(i);
-        String descriptor = "L" + name.replace(".", "/") + ";";
 
         if (ann.desc.equals(descriptor)) {
           return ann;
@@ -347,7 +403,8 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
             Object value = node.values.get(i + 1);
 
             if (value.getClass().equals(Type.class)) {
-              value = TypeResolver.resolve((Type)value);
+              value = TypeResolver.resolve((Type)value,
+                  classLoader);
             }
 
             values.put(name, value);
@@ -400,8 +457,8 @@ GenericDeclaration, java.lang.reflect.Type, AnnotatedElement {
       /* Puts the annotation into the cache. */
       cache.get(CacheType.METHODS).put(node.desc + node.name, new Method(
           declaringClass, exceptions, node.name, node.access, parameters,
-          returnType, annotations, parameterAnnotations, node.desc
-      ));
+          returnType, annotations, parameterAnnotations, node.desc,
+          classLoader));
     }
 
     return (Method)cache.get(CacheType.METHODS).get(node.desc + node.name);
@@ -50,6 +50,15 @@ public class Method extends AccessibleObject implements Member {
   /** The method's descriptor. */
   private final String descriptor;
 
+  /** Resolver used to load the classes of the method's signature. */
+  private final TypeResolver resolver;
+
+  /** Resolved parameter types, it's initialized on demand. */
+  private volatile Class<?>[] resolvedParameterTypes;
+
+  /** Resolved exception types, it's initialized on demand. */
+  private volatile Class<?>[] resolvedExceptionTypes;
+
   /**
    * Creates a new Method and initializes its information.
    *
@@ -87,6 +96,53 @@ public class Method extends AccessibleObject implements Member {
       final Annotation[][] theParameterAnnotations,
       final String theDescriptor) {
 
+    this(theDeclaringClass, theExceptions, theName, theModifiers,
+        theParameterTypes, theReturnType, theAnnotations,
+        theParameterAnnotations, theDescriptor,
+        TypeResolver.class.getClassLoader());
+  }
+
+  /**
+   * Creates a new Method and initializes its information. The classes of the
+   * method's signature are loaded by the specified {@link ClassLoader}.
+   *
+   * @param theDeclaringClass Class name representing the class or interface
+   *    that declares the method represented by this Method object. It cannot be
+   *    null or empty.
+   *
+   * @param theExceptions Class names that represent the types of the
+   *    exceptions declared to be thrown by the underlying method represented
+   *    by this Method object. It cannot be null.
+   *
+   * @param theName Name of the method represented by this Method object, as a
+   *    String. It cannot be null or empty.
+   *
+   * @param theModifiers Java language modifiers for the method represented by
+   *    this Method object, as an integer.
+   *
+   * @param theParameterTypes Array of Class names that represent the formal
+   *    parameter types, in declaration order, of the method represented by
+   *    this Method object. It cannot be null.
+   *
+   * @param theReturnType Class object that represents the formal return type
+   *    of the method represented by this Method object. It can be null for
+   *    void methods.
+   *
+   * @param theAnnotations Annotations that are directly present on this
+   *    element. It can be null.
+   *
+   * @param theDescriptor The method's descriptor. It cannot be null or empty.
+   *
+   * @param theClassLoader Class loader used to resolve the classes of the
+   *    method's signature. It cannot be null.
+   */
+  public Method(final String theDeclaringClass,
+      final String[] theExceptions, final String theName,
+      final int theModifiers, final Type[] theParameterTypes,
+      final Type theReturnType, final Annotation[] theAnnotations,
+      final Annotation[][] theParameterAnnotations,
+      final String theDescriptor, final ClassLoader theClassLoader) {
+
     Validate.notEmpty(theDeclaringClass, "The declaring class cannot be null or"
         + " empty.");
     Validate.notNull(theExceptions, "The exceptions cannot be null.");
@@ -103,6 +159,7 @@ public class Method extends AccessibleObject implements Member {
     annotations = theAnnotations;
     parameterAnnotations = theParameterAnnotations;
     descriptor = theDescriptor;
+    resolver = TypeResolver.getInstance(theClassLoader);
   }
 
   /**
@@ -110,7 +167,7 @@ public class Method extends AccessibleObject implements Member {
    * that declares the method represented by this <code>Method</code> object.
    */
   public Class<?> getDeclaringClass() {
-    return TypeResolver.resolve(Type.getObjectType(declaringClass));
+    return resolver.resolveClass(Type.getObjectType(declaringClass));
   }
 
   /**
@@ -128,17 +185,26 @@ public class Method extends AccessibleObject implements Member {
    * represented by this <code>Method</code> object.  Returns an array of length
    * 0 if the method declares no exceptions in its <code>throws</code> clause.
    * 
+   * The types are resolved only once, and each caller receives a copy of
+   * the resolved array.
+   *
    * @return the exception types declared as being thrown by the
    * method this object represents
    */
   public Class<?>[] getExceptionTypes() {
-    Class<?>[] params = new Class<?>[parameterTypes.length];
+    Class<?>[] types = resolvedExceptionTypes;
 
-    for (int i = 0, j = parameterTypes.length; i < j; i++) {
-      params[i] = TypeResolver.resolve(parameterTypes[i]);
+    if (types == null) {
+      types = new Class<?>[exceptions.length];
+
+      for (int i = 0, j = exceptions.length; i < j; i++) {
+        types[i] = resolver.resolveClass(Type.getObjectType(exceptions[i]));
+      }
+
+      resolvedExceptionTypes = types;
     }
 
-    return params;
+    return types.clone();
   }
 
   /**
@@ -180,17 +246,26 @@ public class Method extends AccessibleObject implements Member {
    * represented by this <code>Method</code> object.  Returns an array of length
    * 0 if the underlying method takes no parameters.
    * 
+   * The types are resolved only once, and each caller receives a copy of
+   * the resolved array.
+   *
    * @return the parameter types for the method this object
    * represents
    */
   public Class<?>[] getParameterTypes() {
-    Class<?>[] params = new Class<?>[parameterTypes.length];
+    Class<?>[] types = resolvedParameterTypes;
 
-    for (int i = 0, j = parameterTypes.length; i < j; i++) {
-      params[i] = TypeResolver.resolve(parameterTypes[i]);
+    if (types == null) {
+      types = new Class<?>[parameterTypes.length];
+
+      for (int i = 0, j = parameterTypes.length; i < j; i++) {
+        types[i] = resolver.resolveClass(parameterTypes[i]);
+      }
+
+      resolvedParameterTypes = types;
     }
 
-    return params;
+    return types.clone();
   }
 
   /**
@@ -219,7 +294,7 @@ public class Method extends AccessibleObject implements Member {
    * @return the return type for the method this object represents
    */
   public Class<?> getReturnType() {
-    return TypeResolver.resolve(returnType);
+    return resolver.resolveClass(returnType);
   }
 
   /**
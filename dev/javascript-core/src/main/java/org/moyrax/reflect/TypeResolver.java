@@ -1,6 +1,12 @@
 package org.moyrax.reflect;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.Validate;
 import org.objectweb.asm.Type;
@@ -8,57 +14,187 @@ import org.objectweb.asm.Type;
 /**
  * Resolves asm {@link Type}s to the related classes.
  *
+ * There's one resolver for each {@link ClassLoader}, and each one caches the
+ * resolved classes so the class loader is asked only once for each type. The
+ * resolvers and the cached classes are weakly referenced, so they don't keep
+ * the class loaders from being unloaded.
+ *
  * @author Matías Mirabelli <lumen.night@gmail.com>
  */
 public class TypeResolver {
   /** Mapping of the primitive types string code to the primitive class. */
-  private static HashMap<String, Class<?>> types;
+  private static final Map<String, Class<?>> types;
+
+  /** Resolver of each class loader. */
+  private static final Map<ClassLoader, TypeResolver> resolvers =
+    new WeakHashMap<ClassLoader, TypeResolver>();
+
+  /** Number of classes resolved from the cache by all the resolvers. */
+  private static final AtomicLong cacheHits = new AtomicLong();
+
+  /** Number of classes loaded by all the resolvers. */
+  private static final AtomicLong cacheMisses = new AtomicLong();
+
+  static {
+    HashMap<String, Class<?>> primitives = new HashMap<String, Class<?>>();
+
+    /* Maps the primitive types. */
+    primitives.put("V", void.class);
+    primitives.put("Z", boolean.class);
+    primitives.put("C", char.class);
+    primitives.put("B", byte.class);
+    primitives.put("S", short.class);
+    primitives.put("I", int.class);
+    primitives.put("F", float.class);
+    primitives.put("J", long.class);
+    primitives.put("D", double.class);
+
+    primitives.put("[Z", boolean[].class);
+    primitives.put("[C", char[].class);
+    primitives.put("[B", byte[].class);
+    primitives.put("[S", short[].class);
+    primitives.put("[I", int[].class);
+    primitives.put("[F", float[].class);
+    primitives.put("[J", long[].class);
+    primitives.put("[D", double[].class);
+
+    types = Collections.unmodifiableMap(primitives);
+  }
+
+  /** Class loader used to load the classes. */
+  private final WeakReference<ClassLoader> classLoader;
+
+  /** Classes already resolved, by type descriptor. */
+  private final ConcurrentHashMap<String, WeakReference<Class<?>>> classes =
+    new ConcurrentHashMap<String, WeakReference<Class<?>>>();
 
   /**
-   * Returns the class represented by the specified type.
+   * Creates a new resolver for the specified class loader.
+   *
+   * @param theClassLoader Class loader used to load the classes. It cannot be
+   *    null.
+   */
+  private TypeResolver(final ClassLoader theClassLoader) {
+    classLoader = new WeakReference<ClassLoader>(theClassLoader);
+  }
+
+  /**
+   * Returns the resolver for the specified class loader.
+   *
+   * @param classLoader Class loader used to load the classes. It cannot be
+   *    null.
+   *
+   * @return Returns the resolver, never returns null.
+   */
+  public static TypeResolver getInstance(final ClassLoader classLoader) {
+    Validate.notNull(classLoader, "The class loader cannot be null.");
+
+    synchronized (resolvers) {
+      TypeResolver resolver = resolvers.get(classLoader);
+
+      if (resolver == null) {
+        resolver = new TypeResolver(classLoader);
+
+        resolvers.put(classLoader, resolver);
+      }
+
+      return resolver;
+    }
+  }
+
+  /**
+   * Returns the number of classes resolved from the cache by all the
+   * resolvers. Primitive types are not counted.
+   */
+  public static long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Returns the number of classes loaded by all the resolvers because they
+   * weren't in the cache.
+   */
+  public static long getCacheMisses() {
+    return cacheMisses.get();
+  }
+
+  /**
+   * Returns the class represented by the specified type. The class is loaded
+   * by the same class loader that loaded this class.
    *
    * @param descriptor Type to resolve. It cannot be null.
    */
   public static Class<?> resolve(final Type descriptor) {
+    return resolve(descriptor, TypeResolver.class.getClassLoader());
+  }
+
+  /**
+   * Returns the class represented by the specified type.
+   *
+   * @param descriptor Type to resolve. It cannot be null.
+   * @param classLoader Class loader used to load the class. It cannot be null.
+   */
+  public static Class<?> resolve(final Type descriptor,
+      final ClassLoader classLoader) {
+    return getInstance(classLoader).resolveClass(descriptor);
+  }
+
+  /**
+   * Returns the class represented by the specified type.
+   *
+   * @param descriptor Type to resolve. It cannot be null.
+   */
+  public Class<?> resolveClass(final Type descriptor) {
     Validate.notNull(descriptor, "The descriptor cannot be null.");
 
+    String key = descriptor.getDescriptor();
+    Class<?> result = types.get(key);
+
+    if (result != null) {
+      return result;
+    }
+
+    WeakReference<Class<?>> reference = classes.get(key);
+
+    if (reference != null) {
+      result = reference.get();
+    }
+
+    if (result == null) {
+      cacheMisses.incrementAndGet();
+
+      result = load(descriptor);
+
+      classes.put(key, new WeakReference<Class<?>>(result));
+    } else {
+      cacheHits.incrementAndGet();
+    }
+
+    return result;
+  }
+
+  /**
+   * Loads the class represented by the specified type.
+   *
+   * @param descriptor Type to load. It cannot be null.
+   */
+  private Class<?> load(final Type descriptor) {
+    ClassLoader loader = classLoader.get();
+
+    if (loader == null) {
+      throw new IllegalStateException("The class loader was unloaded.");
+    }
+
     try {
-      if (getTypes().containsKey(descriptor.getDescriptor())) {
-        return getTypes().get(descriptor.getDescriptor());
+      if (descriptor.getSort() == Type.ARRAY) {
+        return Class.forName(descriptor.getInternalName().replace('/', '.'),
+            false, loader);
       } else {
-        return TypeResolver.class.getClassLoader().loadClass(
-            descriptor.getClassName());
+        return loader.loadClass(descriptor.getClassName());
       }
     } catch (ClassNotFoundException ex) {
       throw new IllegalAccessError("The class " + descriptor.getClassName()
           + " cannot be loaded.");
     }
   }
-
-  private static HashMap<String, Class<?>> getTypes() {
-    if (types == null) {
-      types = new HashMap<String, Class<?>>();
-
-      /* Maps the primitive types. */
-      types.put("Z", boolean.class);
-      types.put("C", char.class);
-      types.put("B", byte.class);
-      types.put("S", short.class);
-      types.put("I", int.class);
-      types.put("F", float.class);
-      types.put("J", long.class);
-      types.put("D", double.class);
-  
-      types.put("[Z", boolean[].class);
-      types.put("[C", char[].class);
-      types.put("[B", byte[].class);
-      types.put("[S", short[].class);
-      types.put("[I", int[].class);
-      types.put("[F", float[].class);
-      types.put("[J", long[].class);
-      types.put("[D", double[].class);
-    }
-
-    return types;
-  }
 }
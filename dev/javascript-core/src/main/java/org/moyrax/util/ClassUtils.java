@@ -2,7 +2,20 @@ package org.moyrax.util;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -14,6 +27,7 @@ import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
 
 /**
  * Miscellaneous class utility methods. This provides a set of methods to
@@ -23,6 +37,29 @@ import org.springframework.core.type.classreading.MetadataReaderFactory;
  * @since 1.2
  */
 public class ClassUtils {
+  /** Number of threads used to scan the classpath. */
+  private static final int SCAN_THREADS = Runtime.getRuntime()
+      .availableProcessors();
+
+  /** Number of resources read by each task while scanning the classpath. */
+  private static final int SCAN_BATCH_SIZE = 64;
+
+  /** Marks the resources which are not valid class files. */
+  private static final ScannedClass NOT_A_CLASS = new ScannedClass(null,
+      Collections.<String>emptySet());
+
+  /**
+   * Metadata of the class files read by the scans, by class loader and class
+   * file url. Only the class name and the annotation types are kept, so the
+   * lookups which follow don't read the class files again. Guarded by itself.
+   */
+  private static final Map<ClassLoader, ConcurrentHashMap<String,
+      ScannedClass>> scannedClasses = new WeakHashMap<ClassLoader,
+      ConcurrentHashMap<String, ScannedClass>>();
+
+  /** Threads which scan the classpath, created on the first scan. */
+  private static ExecutorService scanExecutor;
+
   /**
    * Searches for all classes in the given package. It just returns the classes
    * which are visible for current {@link ClassLoader}.
@@ -115,11 +152,14 @@ public class ClassUtils {
     try {
       final PathMatchingResourcePatternResolver resolver =
           new PathMatchingResourcePatternResolver(classLoader);
+      final MetadataReaderFactory metadataReaderFactory =
+          new CachingMetadataReaderFactory(classLoader);
 
       final Resource[] resources = resolver.getResources(packagePattern);
 
       for (Resource resource : resources) {
-        Class<?> clazz = getClassFromResource(resource, resolver, classLoader);
+        Class<?> clazz = getClassFromResource(resource, metadataReaderFactory,
+            classLoader);
 
         if (clazz != null) {
           classes.add(clazz);
@@ -133,6 +173,237 @@ public class ClassUtils {
     return classes;
   }
 
+  /**
+   * Searches for the classes annotated with the specified annotation in a set
+   * of packages. The packages are listed and the class files are read in
+   * parallel, and only the classes that contain the annotation are loaded.
+   * Each class file is read only once even if it matches several patterns,
+   * and its metadata is cached for the following lookups on the same class
+   * loader.
+   *
+   * @param packagePatterns Patterns which contain the path to list the
+   *    classes. It cannot be null.
+   * @param annotationClass Name of the annotation's class. It cannot be null
+   *    or empty.
+   * @param classLoader ClassLoader that contains the classes. It cannot be
+   *    null.
+   *
+   * @return If the patterns contain annotated classes it returns a list of
+   *    those classes, otherwise returns an empty {@link List}.
+   */
+  public static ArrayList<Class<?>> lookup(final String[] packagePatterns,
+      final String annotationClass, final ClassLoader classLoader) {
+
+    Validate.notNull(packagePatterns, "The packages cannot be null.");
+    Validate.notEmpty(annotationClass, "The annotation class cannot be null or"
+        + " empty.");
+    Validate.notNull(classLoader, "The class loader cannot be null.");
+
+    final PathMatchingResourcePatternResolver resolver =
+        new PathMatchingResourcePatternResolver(classLoader);
+    final MetadataReaderFactory metadataReaderFactory =
+        new SimpleMetadataReaderFactory(classLoader);
+    final ConcurrentHashMap<String, ScannedClass> cache =
+        getScannedClasses(classLoader);
+    final ConcurrentHashMap<Resource, Boolean> visited =
+        new ConcurrentHashMap<Resource, Boolean>();
+
+    LinkedHashSet<String> classNames = new LinkedHashSet<String>();
+    ExecutorService executor = getScanExecutor();
+    ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+
+    try {
+      /* Lists the resources of all packages. */
+      ArrayList<Future<Resource[]>> listings =
+          new ArrayList<Future<Resource[]>>();
+
+      for (final String packagePattern : packagePatterns) {
+        listings.add(executor.submit(new Callable<Resource[]>() {
+          public Resource[] call() throws IOException {
+            return resolver.getResources(packagePattern);
+          }
+        }));
+      }
+
+      tasks.addAll(listings);
+
+      ArrayList<Resource> resources = new ArrayList<Resource>();
+
+      for (Future<Resource[]> listing : listings) {
+        for (Resource resource : listing.get()) {
+          if (visited.putIfAbsent(resource, Boolean.TRUE) == null) {
+            resources.add(resource);
+          }
+        }
+      }
+
+      /* Reads the class files. */
+      ArrayList<Future<List<String>>> matches =
+          new ArrayList<Future<List<String>>>();
+
+      for (int i = 0; i < resources.size(); i += SCAN_BATCH_SIZE) {
+        final List<Resource> batch = resources.subList(i,
+            Math.min(i + SCAN_BATCH_SIZE, resources.size()));
+
+        matches.add(executor.submit(new Callable<List<String>>() {
+          public List<String> call() {
+            return findAnnotatedClasses(batch, annotationClass,
+                metadataReaderFactory, cache);
+          }
+        }));
+      }
+
+      tasks.addAll(matches);
+
+      for (Future<List<String>> match : matches) {
+        classNames.addAll(match.get());
+      }
+    } catch (ExecutionException ex) {
+      throw new IllegalArgumentException("Cannot list classes in the given "
+          + "packages.", ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+
+      throw new IllegalStateException("The classpath scan was interrupted.",
+          ex);
+    } finally {
+      // The executor is shared, so only the tasks of this scan are stopped.
+      for (Future<?> task : tasks) {
+        task.cancel(true);
+      }
+    }
+
+    /* Loads only the matching classes. */
+    ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
+
+    for (String className : classNames) {
+      try {
+        classes.add(classLoader.loadClass(className));
+      } catch (ClassNotFoundException ex) {
+        throw new IllegalArgumentException("The class related to the given "
+            + "resource cannot be loaded using the current ClassLoader.", ex);
+      }
+    }
+
+    return classes;
+  }
+
+  /**
+   * Reads the specified class files and returns the name of the classes that
+   * contain the annotation. The classes are not loaded.
+   *
+   * @param resources Class files to read. It cannot be null.
+   * @param annotationClass Name of the annotation's class. It cannot be null.
+   * @param metadataReaderFactory Factory to read the class files. It cannot
+   *    be null.
+   * @param cache Metadata of the class files already read, by url. It cannot
+   *    be null.
+   *
+   * @return Returns the list of annotated class names.
+   */
+  private static List<String> findAnnotatedClasses(
+      final List<Resource> resources, final String annotationClass,
+      final MetadataReaderFactory metadataReaderFactory,
+      final ConcurrentHashMap<String, ScannedClass> cache) {
+
+    ArrayList<String> classNames = new ArrayList<String>();
+
+    for (Resource resource : resources) {
+      if (!resource.isReadable() ||
+          !resource.getFilename().endsWith(".class")) {
+        continue;
+      }
+
+      String url;
+
+      try {
+        url = resource.getURL().toString();
+      } catch (IOException ex) {
+        url = resource.getDescription();
+      }
+
+      ScannedClass scanned = cache.get(url);
+
+      if (scanned == null) {
+        scanned = readClass(resource, metadataReaderFactory);
+        cache.put(url, scanned);
+      }
+
+      if (scanned.annotations.contains(annotationClass)) {
+        classNames.add(scanned.className);
+      }
+    }
+
+    return classNames;
+  }
+
+  /**
+   * Reads the name and the annotation types of a class file.
+   *
+   * @return Returns the metadata of the class, or {@link #NOT_A_CLASS} if
+   *    the resource is not a valid class file.
+   */
+  @SuppressWarnings("unchecked")
+  private static ScannedClass readClass(final Resource resource,
+      final MetadataReaderFactory metadataReaderFactory) {
+    try {
+      MetadataReader reader = metadataReaderFactory.getMetadataReader(
+          resource);
+
+      return new ScannedClass(reader.getClassMetadata().getClassName(),
+          reader.getAnnotationMetadata().getAnnotationTypes());
+    } catch (IOException ex) {
+      // We don't need to check this exception since it means that probably
+      // the given resource is not a valid class.
+      return NOT_A_CLASS;
+    }
+  }
+
+  /**
+   * Returns the metadata cache of the class files read through the
+   * specified class loader.
+   */
+  private static ConcurrentHashMap<String, ScannedClass> getScannedClasses(
+      final ClassLoader classLoader) {
+    synchronized (scannedClasses) {
+      ConcurrentHashMap<String, ScannedClass> cache =
+          scannedClasses.get(classLoader);
+
+      if (cache == null) {
+        cache = new ConcurrentHashMap<String, ScannedClass>();
+        scannedClasses.put(classLoader, cache);
+      }
+
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the threads which scan the classpath. They're daemon threads, so
+   * they don't keep the JVM alive, and they're shared by all the scans.
+   */
+  private static synchronized ExecutorService getScanExecutor() {
+    if (scanExecutor == null) {
+      scanExecutor = Executors.newFixedThreadPool(SCAN_THREADS,
+          new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(final Runnable task) {
+          Thread thread = new Thread(task, "classpath-scan-"
+              + count.incrementAndGet());
+
+          thread.setDaemon(true);
+          // Don't retain the class loader of the first scan.
+          thread.setContextClassLoader(null);
+
+          return thread;
+        }
+      });
+    }
+
+    return scanExecutor;
+  }
+
   /**
    * Returns a {@link MetadataReader} for the specified {@link Resource}.
    *
@@ -164,9 +435,33 @@ public class ClassUtils {
   public static Class<?> getClassFromResource(final Resource resource,
       final ResourcePatternResolver resolver, final ClassLoader classLoader) {
 
-    Validate.notNull(resource, "The resource cannot be null.");
     Validate.notNull(resolver, "The resolver cannot be null.");
 
+    return getClassFromResource(resource,
+        new CachingMetadataReaderFactory(classLoader), classLoader);
+  }
+
+  /**
+   * Returns the {@link Class} related to the specified {@link Resource}. The
+   * {@link MetadataReaderFactory} should be shared by all the resources read
+   * in the same lookup.
+   *
+   * @param resource Resource related to class to search for. It cannot be null.
+   * @param metadataReaderFactory Factory used to read the class metadata. It
+   *    cannot be null.
+   * @param classLoader ClassLoader that contains the class. It cannot be null.
+   *
+   * @return If the resource represents a valid class, returns the {@link Class}
+   *    object that it represents, otherwise returns <code>null</code>.
+   */
+  public static Class<?> getClassFromResource(final Resource resource,
+      final MetadataReaderFactory metadataReaderFactory,
+      final ClassLoader classLoader) {
+
+    Validate.notNull(resource, "The resource cannot be null.");
+    Validate.notNull(metadataReaderFactory, "The metadata reader factory"
+        + " cannot be null.");
+
     if (!resource.isReadable() ||
         !resource.getFilename().endsWith(".class")) {
       return null;
@@ -176,9 +471,6 @@ public class ClassUtils {
     MetadataReader reader = null;
 
     try {
-      final MetadataReaderFactory metadataReaderFactory =
-          new CachingMetadataReaderFactory(classLoader);
-
       reader = metadataReaderFactory.getMetadataReader(resource);
 
       clazz = classLoader.loadClass(reader.getClassMetadata().getClassName());
@@ -250,4 +542,24 @@ public class ClassUtils {
           + " found in the current classpath.", ex);
     }
   }
+
+  /**
+   * Name and annotation types of a class file read by a scan.
+   */
+  private static class ScannedClass {
+    /** Name of the class, or null if the resource is not a class. */
+    private final String className;
+
+    /** Names of the annotation types of the class. */
+    private final Set<String> annotations;
+
+    /**
+     * Creates the metadata of a class.
+     */
+    private ScannedClass(final String theClassName,
+        final Set<String> theAnnotations) {
+      className = theClassName;
+      annotations = theAnnotations;
+    }
+  }
 }
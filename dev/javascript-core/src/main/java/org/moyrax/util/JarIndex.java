@@ -0,0 +1,693 @@
+package org.moyrax.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Index of the entries of a set of jar files. The central directory of each
+ * jar is read only once, and every entry and package is mapped to the jar
+ * that contains it and to the offset of its data. Resources are then resolved
+ * and read directly from the jar files with positional reads, without
+ * searching the jars one by one.
+ *
+ * The jars are numbered in the order they're added, starting at 0. They're
+ * kept open until the index is closed, like the jars of a
+ * {@link java.net.URLClassLoader}.
+ *
+ * Jars using the ZIP64 format are not indexed, the caller is expected to read
+ * them in the usual way. The index is not thread-safe while jars are being
+ * added, but it can be read by several threads once it's built.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class JarIndex {
+  /** Signature of the end of central directory record. */
+  private static final int END_SIGNATURE = 0x06054b50;
+
+  /** Signature of the central directory file headers. */
+  private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+  /** Signature of the local file headers. */
+  private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+  /** Fixed size of the end of central directory record. */
+  private static final int END_SIZE = 22;
+
+  /** Fixed size of the central directory file headers. */
+  private static final int CENTRAL_SIZE = 46;
+
+  /** Fixed size of the local file headers. */
+  private static final int LOCAL_SIZE = 30;
+
+  /** Maximum length of the zip file comment. */
+  private static final int MAX_COMMENT = 0xFFFF;
+
+  /** Compression method for entries that are not compressed. */
+  private static final int STORED = 0;
+
+  /** Compression method for deflated entries. */
+  private static final int DEFLATED = 8;
+
+  /** Flag of the entries whose name is encoded in UTF-8. */
+  private static final int UTF8_FLAG = 0x800;
+
+  /** Location of the manifest inside the jars. */
+  private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+  /**
+   * Encoding of the entry names without the UTF-8 flag, as defined by the
+   * zip format.
+   */
+  private static final String DEFAULT_ENCODING = Charset.isSupported("IBM437")
+      ? "IBM437" : "ISO-8859-1";
+
+  /** Url of each indexed jar. */
+  private ArrayList<URL> jars = new ArrayList<URL>();
+
+  /** Channel to read each indexed jar. */
+  private ArrayList<FileChannel> channels = new ArrayList<FileChannel>();
+
+  /** Manifest of each indexed jar, they're read on demand. */
+  private ArrayList<Manifest> manifests = new ArrayList<Manifest>();
+
+  /**
+   * Entries by name. Entries with the same name in several jars are chained
+   * in the same order the jars were added.
+   */
+  private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+  /**
+   * Jars which contain each package, by package path. Package paths end with
+   * <code>/</code>, for instance <code>org/moyrax/</code>.
+   */
+  private HashMap<String, List<Integer>> packages =
+    new HashMap<String, List<Integer>>();
+
+  /**
+   * Adds a jar file to the index.
+   *
+   * @param file Jar file to index. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the jar was indexed,
+   *    <code>false</code> if the file is not a jar or its format is not
+   *    supported.
+   *
+   * @throws IOException If the file cannot be read.
+   */
+  public boolean add(final File file) throws IOException {
+    Validate.notNull(file, "The file cannot be null.");
+
+    if (!file.isFile() || file.length() < END_SIZE ||
+        file.length() > Integer.MAX_VALUE) {
+      return false;
+    }
+
+    FileChannel channel = new FileInputStream(file).getChannel();
+    boolean indexed = false;
+
+    try {
+      indexed = add(file, channel);
+    } finally {
+      if (!indexed) {
+        channel.close();
+      }
+    }
+
+    return indexed;
+  }
+
+  /**
+   * Reads the central directory of a jar and adds its entries to the index.
+   *
+   * @param file Jar file to index. It cannot be null.
+   * @param channel Open channel of the jar. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the jar was indexed.
+   */
+  private boolean add(final File file, final FileChannel channel)
+      throws IOException {
+    long fileSize = channel.size();
+    int tailSize = (int)Math.min(fileSize, END_SIZE + MAX_COMMENT);
+    long tailStart = fileSize - tailSize;
+    ByteBuffer tail = readFully(channel, tailStart, tailSize);
+
+    int end = findEnd(tail);
+
+    if (end == -1) {
+      return false;
+    }
+
+    int count = readShort(tail, end + 10);
+    long directorySize = readUnsigned(tail, end + 12);
+    long directoryOffset = readUnsigned(tail, end + 16);
+
+    if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL ||
+        directoryOffset + directorySize > tailStart + end) {
+      return false;
+    }
+
+    // Only the central directory is read, the entries are read on demand.
+    ByteBuffer buffer = readFully(channel, directoryOffset,
+        (int)directorySize);
+    int directoryEnd = buffer.limit();
+
+    ArrayList<Entry> jarEntries = new ArrayList<Entry>(count);
+    int position = 0;
+    int jar = jars.size();
+
+    for (int i = 0; i < count; i++) {
+      if (position + CENTRAL_SIZE > directoryEnd ||
+          buffer.getInt(position) != CENTRAL_SIGNATURE) {
+        return false;
+      }
+
+      int flags = readShort(buffer, position + 8);
+
+      long compressedSize = readUnsigned(buffer, position + 20);
+      long size = readUnsigned(buffer, position + 24);
+      int nameLength = readShort(buffer, position + 28);
+      int extraLength = readShort(buffer, position + 30);
+      int commentLength = readShort(buffer, position + 32);
+      long headerOffset = readUnsigned(buffer, position + 42);
+
+      if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL ||
+          headerOffset == 0xFFFFFFFFL) {
+        return false;
+      }
+
+      if (position + CENTRAL_SIZE + nameLength > directoryEnd) {
+        return false;
+      }
+
+      byte[] name = new byte[nameLength];
+
+      buffer.position(position + CENTRAL_SIZE);
+      buffer.get(name);
+
+      String encoding = DEFAULT_ENCODING;
+
+      if ((flags & UTF8_FLAG) != 0) {
+        encoding = "UTF-8";
+      }
+
+      Entry entry = new Entry(new String(name, encoding), jar,
+          readShort(buffer, position + 10), (int)compressedSize, (int)size,
+          (int)headerOffset);
+
+      jarEntries.add(entry);
+
+      position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+    }
+
+    jars.add(file.toURI().toURL());
+    channels.add(channel);
+    manifests.add(null);
+
+    for (Entry entry : jarEntries) {
+      addEntry(entry);
+    }
+
+    return true;
+  }
+
+  /**
+   * Determines whether the specified resource is indexed.
+   *
+   * @param name Name of the resource, for instance
+   *    <code>org/moyrax/Foo.class</code>. It cannot be null.
+   *
+   * @return Returns <code>true</code> if any indexed jar contains the resource.
+   */
+  public boolean contains(final String name) {
+    Validate.notNull(name, "The name cannot be null.");
+
+    return entries.containsKey(name) || packages.containsKey(name);
+  }
+
+  /**
+   * Returns the url of the jar which contains the specified resource.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the url of the first jar containing the resource, or
+   *    <code>null</code> if it's not indexed.
+   */
+  public URL getJar(final String name) {
+    Validate.notNull(name, "The name cannot be null.");
+
+    Entry entry = entries.get(name);
+
+    if (entry == null) {
+      return null;
+    }
+
+    return jars.get(entry.jar);
+  }
+
+  /**
+   * Returns the url of the specified resource, using the same format used by
+   * the {@link java.net.URLClassLoader}.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the url of the resource in the first jar that contains it,
+   *    or <code>null</code> if it's not indexed.
+   */
+  public URL getResource(final String name) {
+    List<URL> resources = getResources(name);
+
+    if (resources.isEmpty()) {
+      return null;
+    }
+
+    return resources.get(0);
+  }
+
+  /**
+   * Returns the urls of the specified resource in all the indexed jars.
+   * Package paths are resolved even if the jars don't contain directory
+   * entries.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the list of urls, or an empty list if the resource is not
+   *    indexed.
+   */
+  public List<URL> getResources(final String name) {
+    Validate.notNull(name, "The name cannot be null.");
+
+    ArrayList<URL> result = new ArrayList<URL>();
+
+    try {
+      if (name.endsWith("/") && packages.containsKey(name)) {
+        for (Integer jar : packages.get(name)) {
+          result.add(createUrl(jar, name));
+        }
+      } else {
+        for (Entry entry = entries.get(name); entry != null;
+            entry = entry.next) {
+          result.add(createUrl(entry.jar, name));
+        }
+      }
+    } catch (MalformedURLException ex) {
+      throw new IllegalStateException("Cannot create the resource url.", ex);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of the first jar which contains the specified
+   * resource.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the jar number, or <code>-1</code> if the resource is not
+   *    indexed.
+   */
+  public int getFirstJar(final String name) {
+    Validate.notNull(name, "The name cannot be null.");
+
+    if (name.endsWith("/") && packages.containsKey(name)) {
+      return packages.get(name).get(0);
+    }
+
+    Entry entry = entries.get(name);
+
+    if (entry == null) {
+      return -1;
+    }
+
+    return entry.jar;
+  }
+
+  /**
+   * Returns the url of the specified resource in a single jar.
+   *
+   * @param jar Number of the jar.
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the url of the resource, or <code>null</code> if the jar
+   *    doesn't contain it.
+   */
+  public URL getResource(final int jar, final String name) {
+    Validate.notNull(name, "The name cannot be null.");
+
+    boolean found = false;
+
+    if (name.endsWith("/") && packages.containsKey(name)) {
+      found = packages.get(name).contains(jar);
+    } else {
+      for (Entry entry = entries.get(name); entry != null && !found;
+          entry = entry.next) {
+        found = entry.jar == jar;
+      }
+    }
+
+    if (!found) {
+      return null;
+    }
+
+    try {
+      return createUrl(jar, name);
+    } catch (MalformedURLException ex) {
+      throw new IllegalStateException("Cannot create the resource url.", ex);
+    }
+  }
+
+  /**
+   * Closes all the indexed jars. The index cannot read the resources after
+   * it's closed.
+   *
+   * @throws IOException If a jar cannot be closed.
+   */
+  public void close() throws IOException {
+    IOException error = null;
+
+    for (FileChannel channel : channels) {
+      try {
+        channel.close();
+      } catch (IOException ex) {
+        error = ex;
+      }
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Reads the content of the specified resource from the first jar that
+   * contains it.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the resource content, or <code>null</code> if it's not
+   *    indexed.
+   *
+   * @throws IOException If the entry cannot be read.
+   */
+  public byte[] read(final String name) throws IOException {
+    Validate.notNull(name, "The name cannot be null.");
+
+    Entry entry = entries.get(name);
+
+    if (entry == null) {
+      return null;
+    }
+
+    return read(entry);
+  }
+
+  /**
+   * Returns the manifest of the jar which contains the specified resource.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the manifest, or <code>null</code> if the resource is not
+   *    indexed or the jar has no manifest.
+   *
+   * @throws IOException If the manifest cannot be read.
+   */
+  public Manifest getManifest(final String name) throws IOException {
+    Validate.notNull(name, "The name cannot be null.");
+
+    Entry entry = entries.get(name);
+
+    if (entry == null) {
+      return null;
+    }
+
+    synchronized (manifests) {
+      Manifest manifest = manifests.get(entry.jar);
+
+      if (manifest == null) {
+        for (Entry candidate = entries.get(MANIFEST); candidate != null;
+            candidate = candidate.next) {
+          if (candidate.jar == entry.jar) {
+            manifest = new Manifest(new ByteArrayInputStream(
+                read(candidate)));
+
+            manifests.set(entry.jar, manifest);
+            break;
+          }
+        }
+      }
+
+      return manifest;
+    }
+  }
+
+  /**
+   * Adds an entry to the index and registers all its parent packages.
+   *
+   * @param entry Entry to add. It cannot be null.
+   */
+  private void addEntry(final Entry entry) {
+    Entry previous = entries.get(entry.name);
+
+    if (previous == null) {
+      entries.put(entry.name, entry);
+    } else {
+      while (previous.next != null) {
+        previous = previous.next;
+      }
+
+      previous.next = entry;
+    }
+
+    int separator = entry.name.indexOf('/');
+
+    while (separator != -1) {
+      String packageName = entry.name.substring(0, separator + 1);
+      List<Integer> packageJars = packages.get(packageName);
+
+      if (packageJars == null) {
+        packageJars = new ArrayList<Integer>();
+        packages.put(packageName, packageJars);
+      }
+
+      if (packageJars.isEmpty() ||
+          packageJars.get(packageJars.size() - 1) != entry.jar) {
+        packageJars.add(entry.jar);
+      }
+
+      separator = entry.name.indexOf('/', separator + 1);
+    }
+  }
+
+  /**
+   * Reads the content of an entry from its jar, with positional reads.
+   *
+   * @param entry Entry to read. It cannot be null.
+   *
+   * @return Returns the uncompressed content.
+   */
+  private byte[] read(final Entry entry) throws IOException {
+    FileChannel channel = channels.get(entry.jar);
+    ByteBuffer header = readFully(channel, entry.headerOffset, LOCAL_SIZE);
+
+    if (header.getInt(0) != LOCAL_SIGNATURE) {
+      throw new IOException("Invalid local header for entry: " + entry.name);
+    }
+
+    long start = entry.headerOffset + LOCAL_SIZE + readShort(header, 26)
+        + readShort(header, 28);
+
+    // Inflater requires an extra dummy byte when it doesn't read the zlib
+    // header.
+    byte[] data = new byte[entry.compressedSize + 1];
+
+    readFully(channel, start, ByteBuffer.wrap(data, 0,
+        entry.compressedSize));
+
+    if (entry.method == STORED) {
+      byte[] content = new byte[entry.compressedSize];
+      System.arraycopy(data, 0, content, 0, content.length);
+
+      return content;
+    }
+
+    if (entry.method != DEFLATED) {
+      throw new IOException("Unsupported compression method for entry: "
+          + entry.name);
+    }
+
+    Inflater inflater = new Inflater(true);
+
+    try {
+      byte[] content = new byte[entry.size];
+      int length = 0;
+
+      inflater.setInput(data);
+
+      while (length < content.length && !inflater.finished()) {
+        int count = inflater.inflate(content, length,
+            content.length - length);
+
+        if (count == 0 && (inflater.needsInput() ||
+            inflater.needsDictionary())) {
+          throw new IOException("Unexpected end of entry: " + entry.name);
+        }
+
+        length += count;
+      }
+
+      return content;
+    } catch (DataFormatException ex) {
+      throw new IOException("Invalid compressed data for entry: "
+          + entry.name + ". " + ex.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Searches for the end of central directory record.
+   *
+   * @param buffer Jar content. It cannot be null.
+   *
+   * @return Returns the position of the record, or <code>-1</code> if the
+   *    file is not a zip file.
+   */
+  private int findEnd(final ByteBuffer buffer) {
+    int limit = Math.max(0, buffer.limit() - END_SIZE - MAX_COMMENT);
+
+    for (int position = buffer.limit() - END_SIZE; position >= limit;
+        position--) {
+      if (buffer.getInt(position) == END_SIGNATURE) {
+        return position;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Reads a region of a file into a new buffer.
+   *
+   * @param channel Channel of the file. It cannot be null.
+   * @param position Position of the region.
+   * @param length Length of the region.
+   *
+   * @return Returns the buffer, in little-endian order.
+   */
+  private static ByteBuffer readFully(final FileChannel channel,
+      final long position, final int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    readFully(channel, position, buffer);
+
+    buffer.flip();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    return buffer;
+  }
+
+  /**
+   * Fills a buffer with the content of a file. The positional reads don't
+   * change the channel position, so several threads can read at once.
+   *
+   * @param channel Channel of the file. It cannot be null.
+   * @param position Position to read from.
+   * @param buffer Buffer to fill. It cannot be null.
+   */
+  private static void readFully(final FileChannel channel,
+      final long position, final ByteBuffer buffer) throws IOException {
+    long next = position;
+
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, next);
+
+      if (read == -1) {
+        throw new IOException("Unexpected end of file.");
+      }
+
+      next += read;
+    }
+  }
+
+  /**
+   * Creates the url of a resource inside a jar.
+   *
+   * @param jar Index of the jar.
+   * @param name Name of the resource. It cannot be null.
+   */
+  private URL createUrl(final int jar, final String name)
+      throws MalformedURLException {
+    return new URL("jar:" + jars.get(jar).toExternalForm() + "!/" + name);
+  }
+
+  /**
+   * Reads an unsigned 16 bits value.
+   */
+  private static int readShort(final ByteBuffer buffer, final int position) {
+    return buffer.getShort(position) & 0xFFFF;
+  }
+
+  /**
+   * Reads an unsigned 32 bits value.
+   */
+  private static long readUnsigned(final ByteBuffer buffer,
+      final int position) {
+    return buffer.getInt(position) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Location of an entry inside one of the indexed jars.
+   */
+  private static class Entry {
+    /** Name of the entry. */
+    private final String name;
+
+    /** Index of the jar that contains the entry. */
+    private final int jar;
+
+    /** Compression method. */
+    private final int method;
+
+    /** Size of the stored data. */
+    private final int compressedSize;
+
+    /** Size of the uncompressed data. */
+    private final int size;
+
+    /** Position of the local file header. */
+    private final int headerOffset;
+
+    /** Entry with the same name in the next jar. */
+    private Entry next;
+
+    /**
+     * Creates a new entry.
+     */
+    private Entry(final String theName, final int theJar, final int theMethod,
+        final int theCompressedSize, final int theSize,
+        final int theHeaderOffset) {
+      name = theName;
+      jar = theJar;
+      method = theMethod;
+      compressedSize = theCompressedSize;
+      size = theSize;
+      headerOffset = theHeaderOffset;
+    }
+  }
+}
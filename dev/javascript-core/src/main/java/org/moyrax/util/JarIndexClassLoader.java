@@ -0,0 +1,419 @@
+package org.moyrax.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.jar.Manifest;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * {@link URLClassLoader} which resolves the classes and resources contained
+ * in jar files through a {@link JarIndex}. The jars are indexed once when the
+ * class loader is created, so lookups don't need to open and search each jar.
+ * Directories and jars that cannot be indexed are read through a
+ * {@link URLClassLoader} for each of them, and their classes are defined by
+ * this class loader.
+ *
+ * The search path keeps the order of the urls: a resource is taken from the
+ * first url which contains it, no matter if it's an indexed jar or not. Only
+ * the urls that are not indexed and come before the first indexed jar with
+ * the resource are searched.
+ *
+ * The indexed jars, and the jars opened by the class loaders of the urls
+ * which are not indexed, are kept open until the class loader is closed with
+ * {@link #close()}.
+ *
+ * Classes read from the index are defined without signers, since the index
+ * doesn't verify the jar signatures.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class JarIndexClassLoader extends URLClassLoader {
+  /** Index of the jar files in the search path. */
+  private JarIndex index = new JarIndex();
+
+  /** Complete search path, including the indexed jars. */
+  private URL[] urls;
+
+  /**
+   * Number of the jar in the index for each url of the search path, or -1
+   * if the url is not indexed.
+   */
+  private int[] jarNumbers;
+
+  /** Position of each indexed jar in the search path, by jar number. */
+  private int[] jarPositions;
+
+  /**
+   * Class loader for each url of the search path which is not indexed, used
+   * to find out which url contains a resource. It's null for the indexed
+   * jars.
+   */
+  private URLClassLoader[] urlLoaders;
+
+  /**
+   * Creates a new class loader for the specified urls.
+   *
+   * @param theUrls Urls to load the classes and resources from. It cannot be
+   *    null.
+   * @param parent Parent class loader.
+   */
+  public JarIndexClassLoader(final URL[] theUrls, final ClassLoader parent) {
+    super(new URL[0], parent);
+
+    Validate.notNull(theUrls, "The urls cannot be null.");
+
+    urls = theUrls.clone();
+    jarNumbers = new int[urls.length];
+    jarPositions = new int[urls.length];
+    urlLoaders = new URLClassLoader[urls.length];
+
+    int jars = 0;
+
+    for (int i = 0; i < urls.length; i++) {
+      if (addToIndex(urls[i])) {
+        jarNumbers[i] = jars;
+        jarPositions[jars] = i;
+        jars++;
+      } else {
+        jarNumbers[i] = -1;
+        urlLoaders[i] = new URLClassLoader(new URL[] { urls[i] }, null);
+      }
+    }
+  }
+
+  /**
+   * Closes the indexed jars and the class loaders of the urls which are not
+   * indexed. No classes or resources can be loaded after the class loader is
+   * closed.
+   *
+   * The urls are not registered in the super class, so it has nothing to
+   * close. The class loaders of the urls can be closed since Java 7; on older
+   * platforms their jars are released when they're collected.
+   *
+   * @throws IOException If a jar cannot be closed.
+   */
+  public void close() throws IOException {
+    IOException error = null;
+
+    try {
+      index.close();
+    } catch (IOException ex) {
+      error = ex;
+    }
+
+    for (URLClassLoader urlLoader : urlLoaders) {
+      if (urlLoader == null) {
+        continue;
+      }
+
+      try {
+        closeLoader(urlLoader);
+      } catch (IOException ex) {
+        if (error == null) {
+          error = ex;
+        }
+      }
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public URL[] getURLs() {
+    return urls.clone();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Class<?> findClass(final String name)
+      throws ClassNotFoundException {
+
+    String path = name.replace('.', '/') + ".class";
+    int position = findPosition(path);
+
+    if (position == -1) {
+      throw new ClassNotFoundException(name);
+    }
+
+    byte[] bytecode;
+    URL source;
+
+    try {
+      if (jarNumbers[position] == -1) {
+        bytecode = read(urlLoaders[position].findResource(path));
+        source = urls[position];
+      } else {
+        bytecode = index.read(path);
+        source = index.getJar(path);
+      }
+    } catch (IOException ex) {
+      throw new ClassNotFoundException(name, ex);
+    }
+
+    int packageIndex = name.lastIndexOf('.');
+
+    if (packageIndex != -1) {
+      definePackage(name.substring(0, packageIndex), path, position,
+          source);
+    }
+
+    return defineClass(name, bytecode, 0, bytecode.length,
+        new CodeSource(source, (Certificate[]) null));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public URL findResource(final String name) {
+    int position = findPosition(name);
+
+    if (position == -1) {
+      return null;
+    }
+
+    if (jarNumbers[position] == -1) {
+      return urlLoaders[position].findResource(name);
+    }
+
+    return index.getResource(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Enumeration<URL> findResources(final String name) throws IOException {
+    Vector<URL> resources = new Vector<URL>();
+
+    for (int i = 0; i < urls.length; i++) {
+      if (jarNumbers[i] == -1) {
+        Enumeration<URL> found = urlLoaders[i].findResources(name);
+
+        while (found.hasMoreElements()) {
+          resources.add(found.nextElement());
+        }
+      } else {
+        URL resource = index.getResource(jarNumbers[i], name);
+
+        if (resource != null) {
+          resources.add(resource);
+        }
+      }
+    }
+
+    return resources.elements();
+  }
+
+  /**
+   * Returns an input stream to read the specified resource. The parent class
+   * loader is searched first, and resources in the indexed jars are read
+   * directly from the index if no previous url contains them.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the input stream, or <code>null</code> if the resource is
+   *    not found.
+   */
+  @Override
+  public InputStream getResourceAsStream(final String name) {
+    InputStream input = null;
+
+    if (getParent() != null) {
+      input = getParent().getResourceAsStream(name);
+    }
+
+    if (input != null) {
+      return input;
+    }
+
+    int position = findPosition(name);
+
+    try {
+      if (position != -1 && jarNumbers[position] == -1) {
+        input = urlLoaders[position].findResource(name).openStream();
+      } else if (position != -1) {
+        byte[] content = index.read(name);
+
+        if (content != null) {
+          input = new ByteArrayInputStream(content);
+        }
+      }
+    } catch (IOException ex) {
+      return null;
+    }
+
+    return input;
+  }
+
+  /**
+   * Finds the first url of the search path which contains the resource.
+   *
+   * @param name Name of the resource. It cannot be null.
+   *
+   * @return Returns the position of the url, or <code>-1</code> if no url
+   *    contains the resource.
+   */
+  private int findPosition(final String name) {
+    int jar = index.getFirstJar(name);
+    int limit = urls.length;
+
+    if (jar != -1) {
+      limit = jarPositions[jar];
+    }
+
+    for (int i = 0; i < limit; i++) {
+      if (urlLoaders[i] != null && urlLoaders[i].findResource(name) != null) {
+        return i;
+      }
+    }
+
+    if (jar != -1) {
+      return limit;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Defines the package of a class, if it's not defined yet.
+   *
+   * @param packageName Name of the package. It cannot be null.
+   * @param path Path of the class inside the url. It cannot be null.
+   * @param position Position of the url which contains the class.
+   * @param jar Url that contains the class. It cannot be null.
+   */
+  private void definePackage(final String packageName, final String path,
+      final int position, final URL jar) {
+
+    if (getPackage(packageName) != null) {
+      return;
+    }
+
+    Manifest manifest = null;
+
+    try {
+      if (jarNumbers[position] != -1) {
+        manifest = index.getManifest(path);
+      } else {
+        URL manifestUrl = urlLoaders[position].findResource(
+            "META-INF/MANIFEST.MF");
+
+        if (manifestUrl != null) {
+          InputStream input = manifestUrl.openStream();
+
+          try {
+            manifest = new Manifest(input);
+          } finally {
+            input.close();
+          }
+        }
+      }
+    } catch (IOException ex) {
+      // The package is defined without the manifest information.
+    }
+
+    try {
+      if (manifest != null) {
+        definePackage(packageName, manifest, jar);
+      } else {
+        definePackage(packageName, null, null, null, null, null, null, null);
+      }
+    } catch (IllegalArgumentException ex) {
+      // The package was defined by another thread.
+    }
+  }
+
+  /**
+   * Reads the whole content of a resource.
+   *
+   * @param resource Url of the resource. It cannot be null.
+   *
+   * @return Returns the content. Never returns null.
+   */
+  private static byte[] read(final URL resource) throws IOException {
+    InputStream input = resource.openStream();
+
+    try {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      int read;
+
+      while ((read = input.read(chunk)) != -1) {
+        content.write(chunk, 0, read);
+      }
+
+      return content.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Closes a class loader of an url which is not indexed.
+   * {@link URLClassLoader#close()} is available since Java 7.
+   *
+   * @param loader Class loader to close. It cannot be null.
+   */
+  private static void closeLoader(final URLClassLoader loader)
+      throws IOException {
+    try {
+      URLClassLoader.class.getMethod("close").invoke(loader);
+    } catch (NoSuchMethodException ex) {
+      // Older platforms release the jars when the loader is collected.
+    } catch (IllegalAccessException ex) {
+      // Nevermind, the jars are released when the loader is collected.
+    } catch (InvocationTargetException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+
+      throw new IllegalStateException("Cannot close the class loader.",
+          ex.getCause());
+    }
+  }
+
+  /**
+   * Adds the specified url to the jar index.
+   *
+   * @param url Url to add. It cannot be null.
+   *
+   * @return Returns <code>true</code> if the url is a jar and it was indexed,
+   *    <code>false</code> otherwise.
+   */
+  private boolean addToIndex(final URL url) {
+    if (!"file".equals(url.getProtocol())) {
+      return false;
+    }
+
+    try {
+      File file = new File(url.toURI());
+
+      return !file.isDirectory() && index.add(file);
+    } catch (URISyntaxException ex) {
+      return false;
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+}
@@ -171,6 +171,8 @@ public class ScriptUtils {
     Validate.notNull(scope, "The scope parameter cannot be null.");
     Validate.notNull(reader, "The reader parameter cannot be null.");
 
+    Trace.Span span = Trace.start(Trace.SCRIPT, name);
+
     try {
       /* Executes the script in the current context. */
       return context.evaluateReader(scope, reader, name, 1, null);
@@ -184,6 +186,8 @@ public class ScriptUtils {
       throw wrappedEx;
     } catch (IOException ex) {
       throw new JavaScriptException("Error reading script: " + name, name, 0);
+    } finally {
+      span.end();
     }
   }
 
@@ -0,0 +1,205 @@
+package org.moyrax.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Traces the boundaries of the plugin operations, like page loads, script
+ * evaluations and class transformations, so they can be correlated with
+ * profiler recordings.
+ *
+ * The operations are sent to the registered {@link TraceListener}s. Listeners
+ * are registered through {@link #addListener(TraceListener)}, or listed in
+ * <code>META-INF/services/org.moyrax.util.TraceListener</code> resources
+ * which are loaded the first time this class is used. Listeners that cannot
+ * be loaded on the current platform are ignored. When there're no listeners,
+ * tracing an operation doesn't create any object.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public final class Trace {
+  /** Loading and running a test page. */
+  public static final String PAGE = "page";
+
+  /** Evaluating a script. */
+  public static final String SCRIPT = "script";
+
+  /** Transforming a component class. */
+  public static final String TRANSFORM = "transform";
+
+  /** Scanning the classpath for components. */
+  public static final String SCAN = "scan";
+
+  /** Writing a report to its output. */
+  public static final String REPORT = "report";
+
+  /** Default logger for this class. */
+  private static final Log logger = LogFactory.getLog(Trace.class);
+
+  /** Span returned when there're no listeners. */
+  private static final Span EMPTY_SPAN = new Span() {
+    public void end() {
+    }
+  };
+
+  /** Registered listeners. */
+  private static final List<TraceListener> listeners =
+    new CopyOnWriteArrayList<TraceListener>();
+
+  static {
+    loadListeners();
+  }
+
+  /**
+   * Traced operation in progress.
+   */
+  public interface Span {
+    /**
+     * Finishes the operation.
+     */
+    void end();
+  }
+
+  /** Utility class. */
+  private Trace() {}
+
+  /**
+   * Starts tracing an operation. The returned span must be ended when the
+   * operation finishes, usually in a <code>finally</code> block.
+   *
+   * @param category Category of the operation. It cannot be null.
+   * @param name Name of the page, script, class or file related to the
+   *    operation. It can be null.
+   *
+   * @return Returns the span to end the operation, never returns null.
+   */
+  public static Span start(final String category, final String name) {
+    if (listeners.isEmpty()) {
+      return EMPTY_SPAN;
+    }
+
+    Validate.notNull(category, "The category cannot be null.");
+
+    String spanName = StringUtils.defaultString(name);
+
+    if (listeners.size() == 1) {
+      return listeners.get(0).start(category, spanName);
+    }
+
+    final Span[] spans = new Span[listeners.size()];
+    int i = 0;
+
+    for (TraceListener listener : listeners) {
+      if (i < spans.length) {
+        spans[i++] = listener.start(category, spanName);
+      }
+    }
+
+    return new Span() {
+      public void end() {
+        for (Span span : spans) {
+          if (span != null) {
+            span.end();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Determines whether there're listeners registered.
+   */
+  public static boolean isEnabled() {
+    return !listeners.isEmpty();
+  }
+
+  /**
+   * Registers a new listener.
+   *
+   * @param listener Listener to register. It cannot be null.
+   */
+  public static void addListener(final TraceListener listener) {
+    Validate.notNull(listener, "The listener cannot be null.");
+
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a registered listener.
+   *
+   * @param listener Listener to remove. It cannot be null.
+   */
+  public static void removeListener(final TraceListener listener) {
+    Validate.notNull(listener, "The listener cannot be null.");
+
+    listeners.remove(listener);
+  }
+
+  /**
+   * Loads the listeners listed in the services resources.
+   */
+  private static void loadListeners() {
+    ClassLoader classLoader = Trace.class.getClassLoader();
+
+    if (classLoader == null) {
+      return;
+    }
+
+    try {
+      Enumeration<URL> resources = classLoader.getResources(
+          "META-INF/services/" + TraceListener.class.getName());
+
+      while (resources.hasMoreElements()) {
+        URL resource = resources.nextElement();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            resource.openStream(), "UTF-8"));
+
+        try {
+          String line;
+
+          while ((line = reader.readLine()) != null) {
+            String className = StringUtils.substringBefore(line, "#").trim();
+
+            if (className.length() > 0) {
+              loadListener(className, classLoader);
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      }
+    } catch (IOException ex) {
+      logger.warn("Cannot read the trace listeners.", ex);
+    }
+  }
+
+  /**
+   * Creates and registers the specified listener.
+   *
+   * @param className Name of the listener class. It cannot be null.
+   * @param classLoader Class loader to load the listener. It cannot be null.
+   */
+  private static void loadListener(final String className,
+      final ClassLoader classLoader) {
+    try {
+      listeners.add((TraceListener) classLoader.loadClass(className)
+          .newInstance());
+    } catch (Exception ex) {
+      logger.debug("Trace listener not available: " + className, ex);
+    } catch (LinkageError ex) {
+      // Listeners may require a newer platform.
+      logger.debug("Trace listener not available: " + className, ex);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package org.moyrax.util;
+
+/**
+ * Receives the operations traced by the plugin, for instance to record them
+ * as profiler events. Listeners are registered through {@link Trace}.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public interface TraceListener {
+  /**
+   * Occurs when a traced operation starts.
+   *
+   * @param category Category of the operation, one of the constants defined
+   *    in {@link Trace}. It's never null.
+   * @param name Name of the page, script, class or file related to the
+   *    operation. It's never null.
+   *
+   * @return Returns the span which is ended when the operation finishes. It
+   *    cannot be null.
+   */
+  Trace.Span start(String category, String name);
+}
@@ -0,0 +1,121 @@
+package org.moyrax.javascript;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.moyrax.javascript.annotation.Function;
+import org.moyrax.javascript.annotation.Script;
+
+/**
+ * Tests the {@link ContextClassLoader} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ContextClassLoaderTest {
+  @Script
+  public static class TestComponent {
+    public TestComponent() {}
+
+    @Function
+    public String ping(final String message) {
+      return message;
+    }
+  };
+
+  @Script
+  public static class OtherTestComponent {
+    public OtherTestComponent() {}
+
+    @Function
+    public String pong(final String message) {
+      return message;
+    }
+  };
+
+  /** Number of threads loading classes at the same time. */
+  private static final int THREADS = 16;
+
+  private ClassLoader parent = Thread.currentThread().getContextClassLoader();
+
+  @Test
+  public void testTransformComponent() throws Exception {
+    ContextClassLoader classLoader = new ContextClassLoader(parent);
+
+    Class<?> klass = classLoader.loadClass(TestComponent.class.getName());
+
+    assertNotSame(TestComponent.class, klass);
+    assertSame(klass, classLoader.loadClass(TestComponent.class.getName()));
+  }
+
+  @Test
+  public void testExcludedPackages() throws Exception {
+    ContextClassLoader classLoader = new ContextClassLoader(parent);
+
+    assertSame(String.class, classLoader.loadClass(String.class.getName()));
+  }
+
+  @Test
+  public void testComponentPackages() throws Exception {
+    ContextClassLoader classLoader = new ContextClassLoader(parent,
+        new String[] { "org.moyrax.other" });
+
+    assertSame(TestComponent.class, classLoader.loadClass(
+        TestComponent.class.getName()));
+  }
+
+  @Test
+  public void testConcurrentLoad() throws Exception {
+    final ContextClassLoader classLoader = new ContextClassLoader(parent);
+    final CountDownLatch start = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Class<?>>> results = new ArrayList<Future<Class<?>>>();
+
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        final String className;
+
+        if (i % 2 == 0) {
+          className = TestComponent.class.getName();
+        } else {
+          className = OtherTestComponent.class.getName();
+        }
+
+        results.add(executor.submit(new Callable<Class<?>>() {
+          public Class<?> call() throws Exception {
+            start.await();
+
+            return classLoader.loadClass(className);
+          }
+        }));
+      }
+
+      start.countDown();
+
+      HashSet<Class<?>> classes = new HashSet<Class<?>>();
+
+      for (Future<Class<?>> result : results) {
+        Class<?> klass = result.get();
+
+        assertSame(classLoader, klass.getClassLoader());
+
+        classes.add(klass);
+      }
+
+      assertEquals(2, classes.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package org.moyrax.javascript.index;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ScriptComponentIndex} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ScriptComponentIndexTest {
+  @Test
+  public void testWriteAndRead() throws Exception {
+    ComponentDescriptor descriptor = createDescriptor("org.moyrax.Foo");
+    StringWriter output = new StringWriter();
+
+    ScriptComponentIndex.write(output, Arrays.asList(descriptor));
+
+    List<ComponentDescriptor> result = ScriptComponentIndex.read(
+        new StringReader(output.toString()));
+
+    assertEquals(1, result.size());
+
+    ComponentDescriptor read = result.get(0);
+
+    assertEquals("org.moyrax.Foo", read.getClassName());
+    assertEquals("Foo", read.getName());
+    assertEquals(descriptor.getImplementation(), read.getImplementation());
+    assertEquals(Arrays.asList("print"), read.getGlobalFunctions());
+    assertEquals(Arrays.asList("ping"), read.getFunctions());
+    assertEquals("init", read.getConstructor());
+  }
+
+  @Test
+  public void testGetInstance() throws Exception {
+    File root = new File(System.getProperty("java.io.tmpdir"),
+        "ScriptComponentIndexTest" + System.currentTimeMillis());
+    File indexFile = new File(root, ScriptComponentIndex.LOCATION);
+
+    indexFile.getParentFile().mkdirs();
+
+    FileWriter writer = new FileWriter(indexFile);
+
+    try {
+      ScriptComponentIndex.write(writer, Arrays.asList(
+          createDescriptor("org.moyrax.common.Foo"),
+          createDescriptor("org.moyrax.other.Bar")));
+    } finally {
+      writer.close();
+    }
+
+    try {
+      URL rootUrl = root.toURI().toURL();
+      ClassLoader classLoader = new URLClassLoader(new URL[] { rootUrl },
+          null);
+
+      ScriptComponentIndex index = ScriptComponentIndex.getInstance(
+          classLoader);
+      String indexedRoot = classLoader.getResource(
+          ScriptComponentIndex.LOCATION).toString().replace(
+              ScriptComponentIndex.LOCATION, "");
+
+      assertTrue(index.isIndexed(indexedRoot));
+      assertFalse(index.isIndexed("file:/not/indexed/"));
+      assertNotNull(index.getComponent("org.moyrax.common.Foo"));
+      assertNull(index.getComponent("org.moyrax.common.Baz"));
+      assertEquals(Arrays.asList("org.moyrax.common.Foo"),
+          index.getClassNames(indexedRoot, "org/moyrax/common/**"));
+    } finally {
+      FileUtils.deleteDirectory(root);
+    }
+  }
+
+  private ComponentDescriptor createDescriptor(final String className) {
+    ComponentDescriptor descriptor = new ComponentDescriptor(className);
+
+    descriptor.setName(className.substring(className.lastIndexOf(".") + 1));
+    descriptor.setImplementation(
+        "net.sourceforge.htmlunit.corejs.javascript.ScriptableObject");
+    descriptor.addGlobalFunction("print");
+    descriptor.addFunction("ping");
+    descriptor.setConstructor("init");
+
+    return descriptor;
+  }
+}
@@ -0,0 +1,148 @@
+package org.moyrax.javascript.index;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ScriptComponentProcessor} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ScriptComponentProcessorTest {
+  /** Directory of the sources and the compiled classes. */
+  private File root;
+
+  @Before
+  public void setUp() {
+    root = new File(System.getProperty("java.io.tmpdir"),
+        "ScriptComponentProcessorTest" + System.currentTimeMillis());
+    new File(root, "classes").mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(root);
+  }
+
+  @Test
+  public void testNestedComponent() throws Exception {
+    compile(writeSource("Outer", "@Script public class Outer {\n"
+        + "  @Script public static class Inner {}\n"
+        + "  @Script(name = \"Named\") public static class Other {}\n"
+        + "}\n"));
+
+    Map<String, ComponentDescriptor> index = readIndex();
+
+    assertEquals(3, index.size());
+    assertEquals("Outer", index.get("test.Outer").getName());
+    assertEquals(ComponentDescriptor.getDefaultName("test.Outer$Inner"),
+        index.get("test.Outer$Inner").getName());
+    assertEquals("Inner", index.get("test.Outer$Inner").getName());
+    assertEquals("Named", index.get("test.Outer$Other").getName());
+  }
+
+  @Test
+  public void testIncrementalBuild() throws Exception {
+    File first = writeSource("First", "@Script public class First {}\n");
+    File second = writeSource("Second", "@Script public class Second {}\n");
+
+    compile(first, second);
+
+    assertTrue(second.delete());
+
+    compile(writeSource("Third", "@Script public class Third {}\n"));
+
+    Map<String, ComponentDescriptor> index = readIndex();
+
+    assertEquals(Arrays.asList("test.First", "test.Second", "test.Third"),
+        Arrays.asList(index.keySet().toArray()));
+
+    // Removes the annotation from a class which was indexed.
+    compile(writeSource("First", "public class First {}\n"));
+
+    assertEquals(Arrays.asList("test.Second", "test.Third"),
+        Arrays.asList(readIndex().keySet().toArray()));
+  }
+
+  /**
+   * Writes a source file in the <code>test</code> package.
+   */
+  private File writeSource(final String name, final String body)
+      throws Exception {
+    File source = new File(root, name + ".java");
+    FileWriter writer = new FileWriter(source);
+
+    try {
+      writer.write("package test;\n"
+          + "import org.moyrax.javascript.annotation.Script;\n" + body);
+    } finally {
+      writer.close();
+    }
+
+    return source;
+  }
+
+  /**
+   * Compiles the sources with the processor into the classes directory,
+   * which is also in the classpath like in an incremental build.
+   */
+  private void compile(final File... sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+        null, null, null);
+    File classes = new File(root, "classes");
+
+    try {
+      CompilationTask task = compiler.getTask(null, fileManager, null,
+          Arrays.asList("-d", classes.getPath(), "-classpath",
+              System.getProperty("java.class.path") + File.pathSeparator
+              + classes.getPath()), null,
+          fileManager.getJavaFileObjects(sources));
+
+      task.setProcessors(Arrays.asList(new ScriptComponentProcessor()));
+
+      assertTrue(task.call());
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  /**
+   * Reads the index file written by the processor.
+   */
+  private Map<String, ComponentDescriptor> readIndex() throws Exception {
+    Map<String, ComponentDescriptor> index =
+      new LinkedHashMap<String, ComponentDescriptor>();
+    InputStreamReader reader = new InputStreamReader(new FileInputStream(
+        new File(root, "classes/" + ScriptComponentIndex.LOCATION)), "UTF-8");
+
+    try {
+      for (ComponentDescriptor descriptor : ScriptComponentIndex.read(
+          reader)) {
+        index.put(descriptor.getClassName(), descriptor);
+      }
+    } finally {
+      reader.close();
+    }
+
+    return index;
+  }
+}
@@ -0,0 +1,73 @@
+package org.moyrax.javascript.instrument;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+
+import org.junit.Test;
+import org.moyrax.javascript.profiler.ScriptProfiler;
+
+/**
+ * Tests the {@link CoverageRecorder} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class CoverageRecorderTest {
+  private static final String SCRIPT =
+      "function add(a, b) {\n"
+    + "  return a + b;\n"
+    + "}\n"
+    + "function unused() {\n"
+    + "  return 0;\n"
+    + "}\n"
+    + "for (var i = 0; i < 3; i++) {\n"
+    + "  add(i, 1);\n"
+    + "}\n";
+
+  @Test
+  public void testCoverage() throws Exception {
+    ContextFactory factory = new ContextFactory();
+    CoverageRecorder recorder = new CoverageRecorder();
+    ScriptProfiler profiler = new ScriptProfiler(1);
+
+    recorder.install(factory);
+    profiler.install(factory);
+
+    Context context = factory.enterContext();
+
+    try {
+      Scriptable scope = context.initStandardObjects();
+
+      context.evaluateString(scope, SCRIPT, "file:/tmp/test.js", 1, null);
+    } finally {
+      Context.exit();
+    }
+
+    Map<Integer, Integer> lines = recorder.getCoverage()
+        .get("file:/tmp/test.js");
+
+    assertEquals(3, lines.get(2).intValue());
+    assertEquals(0, lines.get(5).intValue());
+    assertEquals(3, lines.get(8).intValue());
+    assertFalse(lines.containsKey(3));
+
+    StringWriter output = new StringWriter();
+    recorder.writeLcov(output);
+
+    String lcov = output.toString();
+
+    assertTrue(lcov.startsWith("TN:\nSF:"));
+    assertTrue(lcov.contains("test.js\n"));
+    assertTrue(lcov.contains("DA:2,3\n"));
+    assertTrue(lcov.contains("DA:5,0\n"));
+    assertTrue(lcov.contains("LF:" + lines.size() + "\n"));
+    assertTrue(lcov.endsWith("end_of_record\n"));
+  }
+}
@@ -0,0 +1,111 @@
+package org.moyrax.javascript.instrument;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+import net.sourceforge.htmlunit.corejs.javascript.Undefined;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FunctionInvokerFactory} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class FunctionInvokerFactoryTest {
+  public static class TestComponent extends ScriptableObject {
+    private static final long serialVersionUID = 1L;
+
+    public String getClassName() {
+      return "TestComponent";
+    }
+
+    public double add(final int a, final double b) {
+      return a + b;
+    }
+
+    public String greet(final String name, final boolean polite) {
+      return (polite ? "Hello, " : "Hi, ") + name;
+    }
+
+    public void clear() {
+    }
+
+    public static Object count(final Context cx, final Scriptable thisObj,
+        final Object[] args, final Function funObj) {
+      return Integer.valueOf(args.length);
+    }
+
+    public static long unsupported(final long value) {
+      return value;
+    }
+  }
+
+  private Context cx;
+
+  private ScriptableObject scope;
+
+  private FunctionInvokerFactory factory = new FunctionInvokerFactory();
+
+  @Before
+  public void setUp() {
+    cx = Context.enter();
+    scope = cx.initStandardObjects();
+  }
+
+  @After
+  public void tearDown() {
+    Context.exit();
+  }
+
+  @Test
+  public void testInstanceFunctions() {
+    TestComponent component = new TestComponent();
+
+    FunctionInvoker add = factory.create(TestComponent.class, "add", false,
+        scope);
+
+    assertEquals("add", add.getFunctionName());
+    assertEquals(2, add.getArity());
+    assertEquals(Double.valueOf(3.5), add.call(cx, scope, component,
+        new Object[] { "1", Double.valueOf(2.5) }));
+
+    FunctionInvoker greet = factory.create(TestComponent.class, "greet",
+        false, scope);
+
+    assertEquals("Hi, John", greet.call(cx, scope, component,
+        new Object[] { "John" }));
+    assertEquals(Undefined.instance, factory.create(TestComponent.class,
+        "clear", false, scope).call(cx, scope, component, new Object[0]));
+  }
+
+  @Test
+  public void testStaticFunctions() {
+    FunctionInvoker count = factory.create(TestComponent.class, "count", true,
+        scope);
+
+    assertEquals(1, count.getArity());
+    assertEquals(Integer.valueOf(3), count.call(cx, scope, scope,
+        new Object[] { "a", "b", "c" }));
+
+    assertNull(factory.create(TestComponent.class, "unsupported", true,
+        scope));
+  }
+
+  @Test
+  public void testScriptCall() {
+    scope.defineProperty("count", factory.create(TestComponent.class, "count",
+        true, scope), ScriptableObject.DONTENUM);
+
+    assertNotNull(scope.get("count", scope));
+    assertEquals(2, ((Number)cx.evaluateString(scope, "count(1, 2)", "test",
+        1, null)).intValue());
+  }
+}
@@ -0,0 +1,72 @@
+package org.moyrax.javascript.profiler;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ScriptProfiler} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ScriptProfilerTest {
+  private static final String SCRIPT =
+      "function busy() {\n"
+    + "  var end = new Date().getTime() + 100;\n"
+    + "  var count = 0;\n"
+    + "  while (new Date().getTime() < end) {\n"
+    + "    count++;\n"
+    + "  }\n"
+    + "}\n"
+    + "function run() {\n"
+    + "  busy();\n"
+    + "}\n"
+    + "run();\n";
+
+  @Test
+  public void testSamples() throws Exception {
+    ContextFactory factory = new ContextFactory();
+    ScriptProfiler profiler = new ScriptProfiler(1);
+
+    profiler.install(factory);
+
+    Context context = factory.enterContext();
+
+    try {
+      Scriptable scope = context.initStandardObjects();
+
+      context.evaluateString(scope, SCRIPT, "test.js", 1, null);
+    } finally {
+      Context.exit();
+    }
+
+    Map<String, Long> samples = profiler.getSamples();
+
+    assertFalse(samples.isEmpty());
+
+    boolean found = false;
+
+    for (String stack : samples.keySet()) {
+      found = found || stack.endsWith(";run@test.js:9;busy@test.js:2");
+    }
+
+    assertTrue(found);
+
+    StringWriter output = new StringWriter();
+    ScriptProfiler.writeFoldedStacks(samples, output);
+
+    assertTrue(output.toString().contains(";run@test.js:9;busy@test.js:2 "));
+
+    profiler.reset();
+
+    assertTrue(profiler.getSamples().isEmpty());
+  }
+}
@@ -0,0 +1,50 @@
+package org.moyrax.reflect;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+/**
+ * Tests the {@link TypeResolver} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class TypeResolverTest {
+  @Test
+  public void testResolve() {
+    ClassLoader classLoader = getClass().getClassLoader();
+
+    assertEquals(void.class, TypeResolver.resolve(Type.VOID_TYPE,
+        classLoader));
+    assertEquals(int[].class, TypeResolver.resolve(Type.getType("[I"),
+        classLoader));
+    assertEquals(String[][].class, TypeResolver.resolve(
+        Type.getType(String[][].class), classLoader));
+    assertEquals(TypeResolverTest.class, TypeResolver.resolve(
+        Type.getType(TypeResolverTest.class), classLoader));
+  }
+
+  @Test
+  public void testGetInstance() {
+    ClassLoader classLoader = getClass().getClassLoader();
+    ClassLoader otherClassLoader = new URLClassLoader(new URL[] {
+        getClass().getProtectionDomain().getCodeSource().getLocation()
+    }, null);
+
+    assertSame(TypeResolver.getInstance(classLoader),
+        TypeResolver.getInstance(classLoader));
+
+    Type type = Type.getType(TypeResolverTest.class);
+    Class<?> klass = TypeResolver.resolve(type, otherClassLoader);
+
+    assertNotSame(TypeResolverTest.class, klass);
+    assertSame(otherClassLoader, klass.getClassLoader());
+    assertSame(klass, TypeResolver.resolve(type, otherClassLoader));
+  }
+}
@@ -0,0 +1,39 @@
+package org.moyrax.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.moyrax.javascript.ContextClassLoaderTest;
+import org.moyrax.javascript.annotation.Script;
+
+/**
+ * Tests the {@link ClassUtils} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ClassUtilsTest {
+  /**
+   * Tests the {@link ClassUtils#lookup(String[], String, ClassLoader)} method.
+   */
+  @Test
+  public void testLookupAnnotated() {
+    ClassLoader classLoader = getClass().getClassLoader();
+
+    ArrayList<Class<?>> classes = ClassUtils.lookup(new String[] {
+        "classpath*:org/moyrax/javascript/**/*.class",
+        "classpath*:org/moyrax/javascript/ContextClassLoaderTest*.class"
+    }, Script.class.getName(), classLoader);
+
+    assertTrue(classes.contains(ContextClassLoaderTest.TestComponent.class));
+    assertTrue(classes.contains(
+        ContextClassLoaderTest.OtherTestComponent.class));
+
+    for (Class<?> klass : classes) {
+      assertTrue(klass.isAnnotationPresent(Script.class));
+      assertEquals(classes.indexOf(klass), classes.lastIndexOf(klass));
+    }
+  }
+}
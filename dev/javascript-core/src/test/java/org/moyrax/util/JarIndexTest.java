@@ -0,0 +1,281 @@
+package org.moyrax.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link JarIndex} and {@link JarIndexClassLoader} classes.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class JarIndexTest {
+  private static final String CONTENT = "function foo() { return 'bar'; }";
+
+  @Test
+  public void testRead() throws Exception {
+    File jar = createJar();
+
+    try {
+      JarIndex index = new JarIndex();
+
+      assertTrue(index.add(jar));
+      assertTrue(index.contains("org/moyrax/deflated.js"));
+      assertTrue(index.contains("org/moyrax/"));
+      assertFalse(index.contains("org/moyrax/missing.js"));
+
+      assertEquals(CONTENT, new String(index.read("org/moyrax/deflated.js"),
+          "UTF-8"));
+      assertEquals(CONTENT, new String(index.read("org/moyrax/stored.js"),
+          "UTF-8"));
+      assertNull(index.read("org/moyrax/missing.js"));
+
+      List<URL> packages = index.getResources("org/moyrax/");
+
+      assertEquals(1, packages.size());
+      assertEquals("jar:" + jar.toURI().toURL() + "!/org/moyrax/",
+          packages.get(0).toString());
+      assertEquals(CONTENT, IOUtils.toString(index.getResource(
+          "org/moyrax/deflated.js").openStream(), "UTF-8"));
+
+      index.close();
+    } finally {
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void testClassLoader() throws Exception {
+    File jar = createJar();
+
+    try {
+      JarIndexClassLoader classLoader = new JarIndexClassLoader(
+          new URL[] { jar.toURI().toURL() }, null);
+
+      InputStream input = classLoader.getResourceAsStream(
+          "org/moyrax/deflated.js");
+
+      assertNotNull(input);
+      assertEquals(CONTENT, IOUtils.toString(input, "UTF-8"));
+      assertNotNull(classLoader.getResource("org/moyrax/stored.js"));
+      assertNull(classLoader.getResourceAsStream("org/moyrax/missing.js"));
+      assertEquals(1, classLoader.getURLs().length);
+
+      input.close();
+      classLoader.close();
+    } finally {
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void testSearchOrder() throws Exception {
+    File jar = createJar();
+    File directory = new File(System.getProperty("java.io.tmpdir"),
+        "JarIndexTest" + System.currentTimeMillis());
+    String classPath = Marker.class.getName().replace('.', '/') + ".class";
+
+    try {
+      File resource = new File(directory, "org/moyrax/deflated.js");
+      File classFile = new File(directory, classPath);
+
+      resource.getParentFile().mkdirs();
+      classFile.getParentFile().mkdirs();
+
+      FileUtils.writeStringToFile(resource, "directory", "UTF-8");
+      FileUtils.writeByteArrayToFile(classFile, readMarker());
+      addEntry(jar, classPath, readMarker());
+
+      URL directoryUrl = directory.toURI().toURL();
+      URL jarUrl = jar.toURI().toURL();
+
+      JarIndexClassLoader directoryFirst = new JarIndexClassLoader(
+          new URL[] { directoryUrl, jarUrl }, null);
+      JarIndexClassLoader jarFirst = new JarIndexClassLoader(
+          new URL[] { jarUrl, directoryUrl }, null);
+
+      try {
+        assertEquals("directory", IOUtils.toString(directoryFirst
+            .getResourceAsStream("org/moyrax/deflated.js"), "UTF-8"));
+        assertEquals(CONTENT, IOUtils.toString(jarFirst
+            .getResourceAsStream("org/moyrax/deflated.js"), "UTF-8"));
+        assertEquals("file", directoryFirst.getResource(
+            "org/moyrax/deflated.js").getProtocol());
+
+        List<URL> resources = Collections.list(jarFirst.getResources(
+            "org/moyrax/deflated.js"));
+
+        assertEquals(2, resources.size());
+        assertEquals("jar", resources.get(0).getProtocol());
+        assertEquals("file", resources.get(1).getProtocol());
+
+        assertEquals(directoryUrl, directoryFirst.loadClass(
+            Marker.class.getName()).getProtectionDomain().getCodeSource()
+            .getLocation());
+        assertSame(directoryFirst, directoryFirst.loadClass(
+            Marker.class.getName()).getClassLoader());
+        assertEquals(jarUrl, jarFirst.loadClass(Marker.class.getName())
+            .getProtectionDomain().getCodeSource().getLocation());
+      } finally {
+        directoryFirst.close();
+        jarFirst.close();
+      }
+    } finally {
+      FileUtils.deleteDirectory(directory);
+      assertTrue(jar.delete());
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    File directory = new File(System.getProperty("java.io.tmpdir"),
+        "JarIndexTest" + System.currentTimeMillis());
+
+    try {
+      directory.mkdirs();
+
+      FileUtils.writeStringToFile(new File(directory, "resource.txt"),
+          "directory", "UTF-8");
+
+      JarIndexClassLoader loader = new JarIndexClassLoader(new URL[] {
+          directory.toURI().toURL() }, null);
+
+      assertNotNull(loader.findResource("resource.txt"));
+
+      loader.close();
+
+      assertNull(loader.findResource("resource.txt"));
+    } finally {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  public void testEntryNameEncoding() throws Exception {
+    File jar = File.createTempFile("JarIndexTest", ".jar");
+    String name = "org/moyrax/caf\u00e9.js";
+
+    try {
+      // Without the UTF-8 flag, the names are encoded in IBM437.
+      ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar),
+          Charset.forName("IBM437"));
+
+      try {
+        output.putNextEntry(new ZipEntry(name));
+        output.write(CONTENT.getBytes("UTF-8"));
+        output.closeEntry();
+      } finally {
+        output.close();
+      }
+
+      JarIndex index = new JarIndex();
+
+      try {
+        assertTrue(index.add(jar));
+        assertTrue(index.contains(name));
+      } finally {
+        index.close();
+      }
+    } finally {
+      assertTrue(jar.delete());
+    }
+  }
+
+  /**
+   * Reads the bytecode of the {@link Marker} class.
+   */
+  private byte[] readMarker() throws Exception {
+    InputStream input = getClass().getResourceAsStream("/"
+        + Marker.class.getName().replace('.', '/') + ".class");
+
+    try {
+      return IOUtils.toByteArray(input);
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Rewrites a jar adding an entry.
+   */
+  private void addEntry(final File jar, final String name,
+      final byte[] content) throws Exception {
+    JarIndex index = new JarIndex();
+    byte[] deflated;
+    byte[] stored;
+
+    try {
+      index.add(jar);
+      deflated = index.read("org/moyrax/deflated.js");
+      stored = index.read("org/moyrax/stored.js");
+    } finally {
+      index.close();
+    }
+
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+
+    try {
+      output.putNextEntry(new ZipEntry("org/moyrax/deflated.js"));
+      output.write(deflated);
+      output.putNextEntry(new ZipEntry("org/moyrax/stored.js"));
+      output.write(stored);
+      output.putNextEntry(new ZipEntry(name));
+      output.write(content);
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+  }
+
+  /** Class loaded from both a directory and a jar. */
+  public static class Marker {
+  }
+
+  private File createJar() throws Exception {
+    File jar = File.createTempFile("JarIndexTest", ".jar");
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+
+    try {
+      byte[] content = CONTENT.getBytes("UTF-8");
+
+      output.putNextEntry(new ZipEntry("org/moyrax/deflated.js"));
+      output.write(content);
+      output.closeEntry();
+
+      CRC32 crc = new CRC32();
+      crc.update(content);
+
+      ZipEntry stored = new ZipEntry("org/moyrax/stored.js");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(content.length);
+      stored.setCrc(crc.getValue());
+
+      output.putNextEntry(stored);
+      output.write(content);
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+
+    return jar;
+  }
+}
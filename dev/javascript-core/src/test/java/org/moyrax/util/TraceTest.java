@@ -0,0 +1,56 @@
+package org.moyrax.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link Trace} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class TraceTest {
+  @Test
+  public void testListener() {
+    final List<String> events = new ArrayList<String>();
+
+    TraceListener listener = new TraceListener() {
+      public Trace.Span start(final String category, final String name) {
+        events.add("start " + category + " " + name);
+
+        return new Trace.Span() {
+          public void end() {
+            events.add("end " + category + " " + name);
+          }
+        };
+      }
+    };
+
+    assertFalse(Trace.isEnabled());
+
+    Trace.addListener(listener);
+
+    try {
+      assertTrue(Trace.isEnabled());
+
+      Trace.Span span = Trace.start(Trace.PAGE, "test.html");
+      Trace.start(Trace.SCRIPT, null).end();
+      span.end();
+    } finally {
+      Trace.removeListener(listener);
+    }
+
+    Trace.start(Trace.PAGE, "ignored.html").end();
+
+    assertEquals(4, events.size());
+    assertEquals("start page test.html", events.get(0));
+    assertEquals("start script ", events.get(1));
+    assertEquals("end script ", events.get(2));
+    assertEquals("end page test.html", events.get(3));
+  }
+}
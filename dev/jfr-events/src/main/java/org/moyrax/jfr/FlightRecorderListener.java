@@ -0,0 +1,67 @@
+package org.moyrax.jfr;
+
+import org.moyrax.util.Trace;
+import org.moyrax.util.TraceListener;
+
+/**
+ * Records the plugin operations as Java Flight Recorder events. It's loaded
+ * by {@link Trace} through the services resource of this module.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class FlightRecorderListener implements TraceListener {
+  /** Span returned for operations whose events are disabled. */
+  private static final Trace.Span DISABLED = new Trace.Span() {
+    public void end() {
+    }
+  };
+
+  /**
+   * {@inheritDoc}
+   */
+  public Trace.Span start(final String category, final String name) {
+    final OperationEvent event = createEvent(category);
+
+    if (event == null || !event.isEnabled()) {
+      return DISABLED;
+    }
+
+    event.name = name;
+    event.begin();
+
+    return new Trace.Span() {
+      public void end() {
+        event.end();
+
+        if (event.shouldCommit()) {
+          event.commit();
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates the event for the specified category.
+   *
+   * @param category Category of the operation. It cannot be null.
+   *
+   * @return Returns the event, or <code>null</code> if the category is not
+   *    known.
+   */
+  private OperationEvent createEvent(final String category) {
+    if (Trace.PAGE.equals(category)) {
+      return new PageEvent();
+    } else if (Trace.SCRIPT.equals(category)) {
+      return new ScriptEvent();
+    } else if (Trace.TRANSFORM.equals(category)) {
+      return new TransformEvent();
+    } else if (Trace.SCAN.equals(category)) {
+      return new ScanEvent();
+    } else if (Trace.REPORT.equals(category)) {
+      return new ReportEvent();
+    }
+
+    return null;
+  }
+}
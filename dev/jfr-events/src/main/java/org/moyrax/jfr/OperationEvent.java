@@ -0,0 +1,19 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base event for the plugin operations. The event duration is the duration
+ * of the operation.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Category("QUnit")
+abstract class OperationEvent extends Event {
+  /** Name of the page, script, class or file related to the operation. */
+  @Label("Name")
+  String name;
+}
@@ -0,0 +1,17 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event for loading and running a test page.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Name("org.moyrax.qunit.Page")
+@Label("Page Load")
+@Description("Loading and running a test page.")
+class PageEvent extends OperationEvent {
+}
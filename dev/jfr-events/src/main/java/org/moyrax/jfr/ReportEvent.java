@@ -0,0 +1,17 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event for writing a report file.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Name("org.moyrax.qunit.Report")
+@Label("Report Flush")
+@Description("Writing a report file.")
+class ReportEvent extends OperationEvent {
+}
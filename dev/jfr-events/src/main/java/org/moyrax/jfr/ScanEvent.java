@@ -0,0 +1,17 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event for scanning the classpath for JavaScript components.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Name("org.moyrax.qunit.Scan")
+@Label("Component Scan")
+@Description("Scanning the classpath for JavaScript components.")
+class ScanEvent extends OperationEvent {
+}
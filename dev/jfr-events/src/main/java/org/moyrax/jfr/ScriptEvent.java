@@ -0,0 +1,17 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event for evaluating a script, either a global library or a page script.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Name("org.moyrax.qunit.Script")
+@Label("Script Evaluation")
+@Description("Evaluating a script, either a global library or a page script.")
+class ScriptEvent extends OperationEvent {
+}
@@ -0,0 +1,17 @@
+package org.moyrax.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event for transforming a JavaScript component class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+@Name("org.moyrax.qunit.Transform")
+@Label("Class Transformation")
+@Description("Transforming a JavaScript component class.")
+class TransformEvent extends OperationEvent {
+}
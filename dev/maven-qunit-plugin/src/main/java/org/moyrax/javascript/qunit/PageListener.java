@@ -0,0 +1,18 @@
+package org.moyrax.javascript.qunit;
+
+/**
+ * Receives the pages run by a {@link TestRunner} as they complete.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public interface PageListener {
+  /**
+   * Invoked when a page was run and its results were sent to the reporters.
+   * The handler's results are released afterwards, so they must not be kept
+   * beyond this call.
+   *
+   * @param handler Handler which ran the page. It's never null.
+   */
+  void pageCompleted(TestHandler handler);
+}
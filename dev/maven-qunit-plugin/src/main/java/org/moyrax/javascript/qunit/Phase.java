@@ -0,0 +1,41 @@
+package org.moyrax.javascript.qunit;
+
+/**
+ * Phases of the execution of a test page, as recorded by the
+ * {@link TestHandler}.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public enum Phase {
+  /** Fetching the page and its resources through the web connection. */
+  FETCH,
+
+  /**
+   * Parsing the HTML. Local files are read by the browser without the web
+   * connection, so it also includes reading the page from the disk.
+   */
+  PARSE,
+
+  /** Initializing the scope and evaluating the global libraries. */
+  LIBRARIES,
+
+  /** Executing the page scripts, including timeouts and event handlers. */
+  EXECUTION,
+
+  /** Waiting for the background JavaScript, without the execution time. */
+  BACKGROUND,
+
+  /** Reading the tests from the page. */
+  READ_TESTS,
+
+  /** Reading the results summary from the page. */
+  READ_RESULTS;
+
+  /**
+   * Returns the name used in the reports.
+   */
+  public String getName() {
+    return this.toString().toLowerCase().replace('_', '-');
+  }
+}
@@ -1,19 +1,19 @@
 package org.moyrax.javascript.qunit;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.commons.logging.Log;
 import org.moyrax.reporting.AbstractReporter;
 import org.moyrax.reporting.ConsoleReporter;
 import org.moyrax.reporting.Operation;
+import org.moyrax.reporting.OutputSettings;
 import org.moyrax.reporting.PlainFileReporter;
 import org.moyrax.reporting.ReportEntry;
+import org.moyrax.reporting.ReportEvent;
+import org.moyrax.reporting.ReportPipeline;
 import org.moyrax.reporting.ReportStatus;
 import org.moyrax.reporting.Reporter;
 import org.moyrax.reporting.Status;
@@ -22,7 +22,10 @@ import org.moyrax.reporting.TestSuite;
 import org.moyrax.reporting.XmlFileReporter;
 
 /**
- * Broadcasts operations to a set of reporters.
+ * Broadcasts operations to a set of reporters. The operations are delivered
+ * asynchronously through a {@link ReportPipeline}, so the reporters' I/O
+ * overlaps with the tests execution. {@link #runCompleted()} waits until all
+ * the operations are reported.
  *
  * @author Matias Mirabelli &lt;matias.mirabelli@globant.com&gt;
  * @since 0.1.2
@@ -33,6 +36,11 @@ public class QUnitReporter extends AbstractReporter {
    */
   private List<Reporter> reporters;
 
+  /**
+   * Delivers the operations to the reporters.
+   */
+  private ReportPipeline pipeline;
+
   /**
    * Creates a new {@link QUnitReporter} and initializes the reporting
    * configuration.
@@ -42,20 +50,39 @@ public class QUnitReporter extends AbstractReporter {
    * @param theLog Logger for writing results. It cannot be null.
    */
   public QUnitReporter(final String theOutputDir, final Log theLog) {
+    this(theOutputDir, theLog, null);
+  }
+
+  /**
+   * Creates a new {@link QUnitReporter} and initializes the reporting
+   * configuration, with the output settings of the run.
+   *
+   * @param theOutputDir Directory to write the reports. It cannot be
+   *    null or empty.
+   * @param theLog Logger for writing results. It cannot be null.
+   * @param settings Output settings of the run, or null to keep the output
+   *    in memory.
+   */
+  public QUnitReporter(final String theOutputDir, final Log theLog,
+      final OutputSettings settings) {
 
     Validate.notEmpty(theOutputDir, "The output directory cannot be null or"
         + " empty.");
     Validate.notNull(theLog, "The log cannot be null.");
 
     reporters = new ArrayList<Reporter>(Arrays.asList(new Reporter[] {
-        new ConsoleReporter(System.out),
+        settings == null ? new ConsoleReporter(System.out)
+            : new ConsoleReporter(System.out, settings),
         new PlainFileReporter(theOutputDir),
-        new XmlFileReporter(theOutputDir)
+        settings == null ? new XmlFileReporter(theOutputDir)
+            : new XmlFileReporter(theOutputDir, settings)
     }));
 
     for (Reporter reporter : reporters) {
       reporter.setLog(theLog);
     }
+
+    pipeline = new ReportPipeline(reporters, ReportPipeline.DEFAULT_CAPACITY);
   }
   /**
    * {@inheritDoc}
@@ -63,9 +90,7 @@ public class QUnitReporter extends AbstractReporter {
   @Override
   public <T extends ReportEntry> void started(final Operation<T> operation,
       final Status<T> status) {
-    for (Reporter reporter : reporters) {
-      reporter.started(operation, status);
-    }
+    pipeline.publish(ReportEvent.started(operation, status));
   }
 
   /**
@@ -74,9 +99,7 @@ public class QUnitReporter extends AbstractReporter {
   @Override
   public <T extends ReportEntry> void succeed(final Operation<T> operation,
       final Status<T> status) {
-    for (Reporter reporter : reporters) {
-      reporter.succeed(operation, status);
-    }
+    pipeline.publish(ReportEvent.succeed(operation, status));
   }
 
   /**
@@ -85,9 +108,7 @@ public class QUnitReporter extends AbstractReporter {
   @Override
   public <T extends ReportEntry> void failed(final Operation<T> operation,
       final Status<T> status) {
-    for (Reporter reporter : reporters) {
-      reporter.failed(operation, status);
-    }
+    pipeline.publish(ReportEvent.failed(operation, status));
   }
 
   /**
@@ -162,6 +183,9 @@ public class QUnitReporter extends AbstractReporter {
    *
    * @param handler Handler which executed the current test report. It cannot
    *    be null.
+   *
+   * @throws IllegalStateException If there're failed tests in the handler.
+   *    The report is finalized anyway.
    */
   public void done(final TestHandler handler) {
     Validate.notNull(handler, "The test handler cannot be null.");
@@ -170,12 +194,64 @@ public class QUnitReporter extends AbstractReporter {
 
     Validate.isTrue(failures >= 0, "The total tests must be greater than 0.");
 
+    succeed(new Operation<ReportEntry>(handler, handler.getName()),
+        ReportStatus.DONE);
+
     if (failures > 0) {
       fail();
     }
+  }
 
-    succeed(new Operation<ReportEntry>(handler, handler.getName()),
-        ReportStatus.DONE);
+  /**
+   * Releases the results of the specified handler once all the reporters
+   * finished reporting them. It doesn't wait for the reporters.
+   *
+   * @param handler Handler to release. It cannot be null.
+   */
+  public void release(final TestHandler handler) {
+    Validate.notNull(handler, "The test handler cannot be null.");
+
+    pipeline.publish(ReportEvent.barrier(new Runnable() {
+      public void run() {
+        handler.release();
+      }
+    }, reporters.size()));
+  }
+
+  /**
+   * Waits until all the operations published so far are reported.
+   *
+   * @throws IllegalStateException If a reporter failed to report an
+   *    operation.
+   */
+  public void flush() {
+    pipeline.flush();
+  }
+
+  /**
+   * Finalizes the reporting of the whole run. It waits for the pending
+   * operations, stops the reporters' threads and writes the phases summary
+   * to the console.
+   */
+  public void runCompleted() {
+    pipeline.close();
+
+    for (Reporter reporter : reporters) {
+      if (reporter instanceof ConsoleReporter) {
+        ((ConsoleReporter) reporter).printPhaseSummary();
+      }
+    }
+  }
+
+  /**
+   * Stops the reporters' threads, delivering the pending operations. It does
+   * nothing if the run was already completed.
+   *
+   * @throws IllegalStateException If a reporter failed to handle an
+   *    operation.
+   */
+  public void close() {
+    pipeline.close();
   }
 
   /**
@@ -186,9 +262,7 @@ public class QUnitReporter extends AbstractReporter {
    */
   @Override
   public void info(final String message) {
-    for (Reporter reporter : reporters) {
-      reporter.info(message);
-    }
+    pipeline.publish(ReportEvent.info(message));
   }
 
   /**
@@ -199,9 +273,7 @@ public class QUnitReporter extends AbstractReporter {
    */
   @Override
   public void warn(final String message) {
-    for (Reporter reporter : reporters) {
-      reporter.warn(message);
-    }
+    pipeline.publish(ReportEvent.warn(message));
   }
 
   /**
@@ -212,9 +284,7 @@ public class QUnitReporter extends AbstractReporter {
    */
   @Override
   public void debug(final String message) {
-    for (Reporter reporter : reporters) {
-      reporter.debug(message);
-    }
+    pipeline.publish(ReportEvent.debug(message));
   }
 
   /**
@@ -224,32 +294,15 @@ public class QUnitReporter extends AbstractReporter {
    * @param message Message to write. It can be null or empty.
    */
   public void error(final String message, final Throwable cause) {
-    for (Reporter reporter : reporters) {
-      reporter.fatal(message, cause);
-    }
+    pipeline.publish(ReportEvent.fatal(message, cause));
   }
 
   /**
-   * Throws an exception with the failure information.
+   * Throws an exception with the failure information. The reporters' output
+   * is not loaded here: it was already written to the console and report
+   * files, and it can be read from {@link Reporter#getOutput()}.
    */
   private void fail() {
-    ByteArrayOutputStream output = new ByteArrayOutputStream();
-
-    for (Reporter reporter : reporters) {
-      try {
-        IOUtils.copy(reporter.getOutput(), output);
-      } catch (IOException ex) {
-        String message = "Cannot read the output for "
-          + reporter.getClass().getName();
-
-        try {
-          output.write(message.getBytes());
-        } catch (IOException wtf) {
-          // What a terrible failure: Nevermind
-        }
-      }
-    }
-
     throw new IllegalStateException("THERE'RE TESTS IN FAILURE\n");
   }
 }
@@ -5,22 +5,32 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.ConfigurableEngine;
+import org.moyrax.javascript.profiler.ScriptProfiler;
 import org.moyrax.maven.QUnitException;
+import org.moyrax.reporting.AssertionList;
+import org.moyrax.reporting.OutputSettings;
 import org.moyrax.reporting.ReportEntry;
 import org.moyrax.reporting.TestCase;
 import org.moyrax.reporting.TestSuite;
+import org.moyrax.util.Trace;
 
 import com.gargoylesoftware.htmlunit.NicelyResynchronizingAjaxController;
 import com.gargoylesoftware.htmlunit.ScriptException;
+import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
@@ -59,9 +69,14 @@ public class TestHandler extends ReportEntry {
   private URL testUrl;
 
   /**
-   * List of modules in the test file.
+   * List of modules in the test file, in the order they were found.
    */
-  private HashMap<String, TestSuite> modules =
+  private ArrayList<TestSuite> modules = new ArrayList<TestSuite>();
+
+  /**
+   * Modules in the test file indexed by name.
+   */
+  private HashMap<String, TestSuite> modulesByName =
     new HashMap<String, TestSuite>();
 
   /**
@@ -89,6 +104,23 @@ public class TestHandler extends ReportEntry {
    */
   private QUnitException error;
 
+  /**
+   * Time spent in each phase of the execution, in nanoseconds.
+   */
+  private EnumMap<Phase, Long> phaseTimes = new EnumMap<Phase, Long>(
+      Phase.class);
+
+  /**
+   * Samples of the scripts profiler, by folded stack.
+   */
+  private Map<String, Long> profile = Collections.emptyMap();
+
+  /**
+   * Output settings of the run, or null to keep the output of the tests in
+   * memory.
+   */
+  private OutputSettings outputSettings;
+
   /**
    * Constructs a new {@link TestHandler} for the specified file, and uses
    * the web client to run the tests.
@@ -124,34 +156,120 @@ public class TestHandler extends ReportEntry {
     testUrl = theTestUrl;
   }
 
+  /**
+   * Sets the output settings of the run, used to capture the output of the
+   * tests in this page.
+   *
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  public void setOutputSettings(final OutputSettings settings) {
+    Validate.notNull(settings, "The settings cannot be null.");
+
+    outputSettings = settings;
+  }
+
   /**
    * Runs the test and keeps the results.
    *
    * @throws IOException If there're errors reading the test file.
    */
   public void run() throws IOException {
+    TimedWebConnection connection = new TimedWebConnection(
+        browser.getWebConnection());
+
+    browser.setWebConnection(connection);
+
+    Trace.Span span = Trace.start(Trace.PAGE, testUrl.toString());
+    HtmlPage page = null;
+
     try {
       startTime = new Date().getTime();
 
       browser.setAjaxController(new NicelyResynchronizingAjaxController());
       browser.setJavaScriptEnabled(true);
 
-      HtmlPage page = browser.getPage(testUrl);
+      ScriptProfiler profiler = getProfiler();
+
+      if (profiler != null) {
+        profiler.reset();
+      }
+
+      long libraries = getLibraryTime();
+      long execution = getScriptTime();
+      long start = System.nanoTime();
+
+      page = browser.getPage(testUrl);
+
+      long loaded = System.nanoTime();
+      long loadFetch = connection.getTime();
+      long loadLibraries = getLibraryTime() - libraries;
+      long loadExecution = getScriptTime() - execution;
 
       // This is to avoid errors when background JS hasn't updated the DOM yet
       // while we're trying to access it.
       // See: http://htmlunit.sourceforge.net/faq.html
       browser.waitForBackgroundJavaScript(10000);
 
+      long finished = System.nanoTime();
+
+      setPhaseTime(Phase.FETCH, connection.getTime());
+      setPhaseTime(Phase.PARSE, (loaded - start) - loadFetch - loadLibraries
+          - loadExecution);
+      setPhaseTime(Phase.LIBRARIES, getLibraryTime() - libraries);
+      setPhaseTime(Phase.EXECUTION, getScriptTime() - execution);
+      setPhaseTime(Phase.BACKGROUND, (finished - loaded)
+          - (connection.getTime() - loadFetch)
+          - (getLibraryTime() - libraries - loadLibraries)
+          - (getScriptTime() - execution - loadExecution));
+
       readTests(page);
+
+      long testsRead = System.nanoTime();
+
+      setPhaseTime(Phase.READ_TESTS, testsRead - finished);
+
       readResults(page);
 
+      setPhaseTime(Phase.READ_RESULTS, System.nanoTime() - testsRead);
+
+      if (profiler != null) {
+        profile = profiler.getSamples();
+      }
     } catch (IOException ex) {
       throw (IOException) new IOException("Cannot read the test resource.")
           .initCause(ex);
     } catch (ScriptException scriptEx) {
       error = new QUnitException(scriptEx);
+    } finally {
+      try {
+        if (page != null) {
+          closeWindow(page);
+        }
+      } finally {
+        span.end();
+        browser.setWebConnection(connection.getConnection());
+      }
+    }
+  }
+
+  /**
+   * Releases the results model of the page once it was reported. The
+   * modules, tests and their output are discarded, and only the summary
+   * (totals, phase times and error) is kept.
+   */
+  public void release() {
+    for (TestSuite module : modules) {
+      for (TestCase test : module.getTests()) {
+        test.clearOutput();
+      }
+
+      module.clearOutput();
+      module.clear();
     }
+
+    modules.clear();
+    modulesByName.clear();
+    profile = Collections.emptyMap();
   }
 
   /**
@@ -192,13 +310,53 @@ public class TestHandler extends ReportEntry {
   }
 
   /**
-   * Returns an immutable list of modules executed in the file. If some tests
-   * are executed out of a module, a default module will be created for them.
+   * Returns an immutable list of modules executed in the file, in the order
+   * they were run. If some tests are executed out of a module, a default
+   * module will be created for them.
    *
    * @return The list of executed modules.
    */
   public List<TestSuite> getModules() {
-    return new ArrayList<TestSuite>(modules.values());
+    return Collections.unmodifiableList(modules);
+  }
+
+  /**
+   * Returns the time spent in the specified phase of the execution.
+   *
+   * @param phase Phase to retrieve the time. It cannot be null.
+   *
+   * @return Returns the time, in nanoseconds, or 0 if the phase wasn't
+   *    completed.
+   */
+  public long getPhaseTime(final Phase phase) {
+    Validate.notNull(phase, "The phase cannot be null.");
+
+    Long time = phaseTimes.get(phase);
+
+    if (time == null) {
+      return 0;
+    }
+
+    return time;
+  }
+
+  /**
+   * Returns an immutable map with the time spent in each completed phase of
+   * the execution, in nanoseconds.
+   */
+  public Map<Phase, Long> getPhaseTimes() {
+    return Collections.unmodifiableMap(phaseTimes);
+  }
+
+  /**
+   * Returns the samples taken by the scripts profiler while the page was
+   * running.
+   *
+   * @return Returns the number of samples of each folded stack, or an empty
+   *    map if the profiler is not enabled. Never returns null.
+   */
+  public Map<String, Long> getProfile() {
+    return profile;
   }
 
   /**
@@ -224,6 +382,70 @@ public class TestHandler extends ReportEntry {
     return new File(getTestUrl().getFile()).getName();
   }
 
+  /**
+   * Closes the window of the page, which stops its background scripts and
+   * releases its DOM. It's closed even if the results cannot be read, so a
+   * failed page doesn't keep running in the browser.
+   *
+   * @param page Page to close. It cannot be null.
+   */
+  private void closeWindow(final HtmlPage page) {
+    WebWindow window = page.getEnclosingWindow().getTopWindow();
+
+    if (window instanceof TopLevelWindow) {
+      ((TopLevelWindow) window).close();
+    }
+  }
+
+  /**
+   * Sets the time spent in a phase of the execution.
+   *
+   * @param phase Phase to set the time. It cannot be null.
+   * @param time Time spent in the phase, in nanoseconds.
+   */
+  private void setPhaseTime(final Phase phase, final long time) {
+    phaseTimes.put(phase, Math.max(0, time));
+  }
+
+  /**
+   * Returns the profiler of the JavaScript engine, or <code>null</code> if
+   * it's not enabled.
+   */
+  private ScriptProfiler getProfiler() {
+    if (browser.getJavaScriptEngine() instanceof ConfigurableEngine) {
+      return ((ConfigurableEngine) browser.getJavaScriptEngine())
+          .getProfiler();
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the time spent by the JavaScript engine evaluating the global
+   * libraries, in nanoseconds.
+   */
+  private long getLibraryTime() {
+    if (browser.getJavaScriptEngine() instanceof ConfigurableEngine) {
+      return ((ConfigurableEngine) browser.getJavaScriptEngine())
+          .getLibraryTime();
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns the time spent by the JavaScript engine executing the page
+   * scripts, in nanoseconds.
+   */
+  private long getScriptTime() {
+    if (browser.getJavaScriptEngine() instanceof ConfigurableEngine) {
+      return ((ConfigurableEngine) browser.getJavaScriptEngine())
+          .getExecutionTime();
+    }
+
+    return 0;
+  }
+
   /**
    * Reads the tests results from the browser output and creates the modules
    * and tests objects from it.
@@ -246,7 +468,7 @@ public class TestHandler extends ReportEntry {
 
       if (matcher.lookingAt()) {
         TestSuite module = getModule(matcher);
-        TestCase test = buildTest(matcher);
+        TestCase test = buildTest(matcher, testOutput);
 
         if (currentModule != module) {
           if (currentModule != null) {
@@ -256,10 +478,6 @@ public class TestHandler extends ReportEntry {
           currentModule = module;
         }
 
-        for (HtmlElement outputLine : testOutput) {
-          test.print(outputLine.getFirstChild().asXml());
-        }
-
         module.addTest(test);
       }
     }
@@ -316,34 +534,86 @@ public class TestHandler extends ReportEntry {
       moduleName = StringUtils.substringBeforeLast(moduleName, ":");
     }
 
-    if (!modules.containsKey(moduleName)) {
-      modules.put(moduleName, new TestSuite(moduleName));
+    TestSuite module = modulesByName.get(moduleName);
+
+    if (module == null) {
+      if (outputSettings == null) {
+        module = new TestSuite(moduleName);
+      } else {
+        module = new TestSuite(moduleName, outputSettings);
+      }
+
+      modules.add(module);
+      modulesByName.put(module.getName(), module);
     }
 
-    return modules.get(moduleName);
+    return module;
   }
 
   /**
    * Creates a new test from the data contained in matched fields.
    *
    * @param matcher Matcher which contains the test fields. It cannot be null.
+   * @param assertions Elements of the test assertions. It cannot be null.
    *
    * @return Return the created test.
    */
-  private TestCase buildTest(final Matcher matcher) {
+  private TestCase buildTest(final Matcher matcher,
+      final List<HtmlElement> assertions) {
     Validate.notNull(matcher, "The matcher cannot be null.");
+    Validate.notNull(assertions, "The assertions cannot be null.");
 
     if (matcher.group(TEST_NAME) == null) {
       throw new RuntimeException("The test name cannot be null.");
     }
 
-    TestCase test = new TestCase(matcher.group(TEST_NAME));
+    TestCase test;
+
+    if (outputSettings == null) {
+      test = new TestCase(matcher.group(TEST_NAME));
+    } else {
+      test = new TestCase(matcher.group(TEST_NAME), outputSettings);
+    }
 
     test.start(startTime);
 
+    for (HtmlElement assertion : assertions) {
+      addAssertion(test, assertion);
+    }
+
     test.done(Integer.valueOf(matcher.group(NUM_TESTS)),
         Integer.valueOf(matcher.group(NUM_FAILURES)));
 
     return test;
   }
+
+  /**
+   * Adds an assertion to the test. The message is read from the text of the
+   * element, and the failures are split into the message and the expected
+   * and actual values, as they're written by QUnit.
+   *
+   * @param test Test which has the assertion. It cannot be null.
+   * @param element Element of the assertion. It cannot be null.
+   */
+  private void addAssertion(final TestCase test, final HtmlElement element) {
+    boolean passed = !"fail".equals(element.getAttribute("class"));
+    String text = "";
+
+    if (element.getFirstChild() != null) {
+      text = StringUtils.defaultString(element.getFirstChild()
+          .getNodeValue());
+    }
+
+    int expected = text.lastIndexOf(AssertionList.EXPECTED);
+    int result = text.indexOf(AssertionList.RESULT, expected
+        + AssertionList.EXPECTED.length());
+
+    if (passed || expected == -1 || result == -1) {
+      test.getAssertions().add(passed, text);
+    } else {
+      test.getAssertions().add(passed, text.substring(0, expected),
+          text.substring(expected + AssertionList.EXPECTED.length(), result),
+          text.substring(result + AssertionList.RESULT.length()));
+    }
+  }
 }
@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.moyrax.reporting.OutputSettings;
 import org.moyrax.reporting.TestCase;
 import org.moyrax.reporting.TestSuite;
 
@@ -30,15 +31,25 @@ public class TestRunner {
   private QUnitReporter reporterManager;
 
   /**
-   * Tests handlers containing the results.
+   * Listeners notified when each page completes.
    */
-  private List<TestHandler> handlers = new ArrayList<TestHandler>();
+  private List<PageListener> listeners = new ArrayList<PageListener>();
+
+  /**
+   * First failure reported by the pages, thrown once the run completes.
+   */
+  private IllegalStateException failure;
 
   /**
    * Container for running tests.
    */
   private WebClient client;
 
+  /**
+   * Output settings of the run, or null to keep the output in memory.
+   */
+  private OutputSettings outputSettings;
+
   /** Creates a new {@link TestRunner} and uses the given client as the
    * container for running tests.
    *
@@ -58,32 +69,43 @@ public class TestRunner {
   }
 
   /**
-   * Reports the tests results using the configured QUnitReporter.
-   * The results will be available once the tests execution is completed.
+   * Completes the reporting of the run. Pages are reported as soon as they
+   * complete, so this waits until the reporters write all the results, and
+   * then writes the run summary.
+   *
+   * @throws IllegalStateException If there're tests in failure.
    */
   public void reportAll() {
-    for (TestHandler handler : handlers) {
-      reporterManager.init(handler);
-
-      for (TestSuite module : handler.getModules()) {
-        reporterManager.moduleStart(module);
-
-        if (module.getTests().size() == 0) {
-          reporterManager.info("There are no tests to run.");
-        } else {
-          for (TestCase test : module.getTests()) {
-            reporterManager.testStart(test);
-            reporterManager.testCompleted(test);
-          }
-        }
-
-        reporterManager.moduleCompleted(module);
-      }
+    reporterManager.runCompleted();
 
-      reporterManager.done(handler);
+    if (failure != null) {
+      throw failure;
     }
   }
 
+  /**
+   * Sets the output settings of the run, used to capture the output of the
+   * tests in all the pages.
+   *
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  public void setOutputSettings(final OutputSettings settings) {
+    Validate.notNull(settings, "The settings cannot be null.");
+
+    outputSettings = settings;
+  }
+
+  /**
+   * Adds a listener to be notified when each page completes.
+   *
+   * @param listener Listener to add. It cannot be null.
+   */
+  public void addPageListener(final PageListener listener) {
+    Validate.notNull(listener, "The listener cannot be null.");
+
+    listeners.add(listener);
+  }
+
   /**
    * Runs the JavaScript source contained by the specified InputStream.
    *
@@ -140,11 +162,7 @@ public class TestRunner {
   public void run(final File file) throws IOException {
     Validate.notNull(file, "The file cannot be null.");
 
-    TestHandler handler = new TestHandler(client, file);
-
-    handlers.add(handler);
-
-    handler.run();
+    runPage(new TestHandler(client, file));
   }
 
   /**
@@ -155,11 +173,67 @@ public class TestRunner {
   public void run(final URL url) throws IOException {
     Validate.notNull(url, "The url cannot be null.");
 
-    TestHandler handler = new TestHandler(client, url);
+    runPage(new TestHandler(client, url));
+  }
 
-    handlers.add(handler);
+  /**
+   * Runs the page of the specified handler and reports its results, even if
+   * the page cannot be read. The results are released once they're reported,
+   * so the memory used doesn't grow with the number of pages.
+   *
+   * @param handler Handler of the page to run. It cannot be null.
+   */
+  private void runPage(final TestHandler handler) throws IOException {
+    if (outputSettings != null) {
+      handler.setOutputSettings(outputSettings);
+    }
+
+    try {
+      handler.run();
+    } finally {
+      try {
+        report(handler);
+
+        for (PageListener listener : listeners) {
+          listener.pageCompleted(handler);
+        }
+      } finally {
+        reporterManager.release(handler);
+      }
+    }
+  }
 
-    handler.run();
+  /**
+   * Sends the results of the specified handler to the reporters.
+   *
+   * @param handler Handler which ran the page. It cannot be null.
+   */
+  private void report(final TestHandler handler) {
+    reporterManager.init(handler);
+
+    for (TestSuite module : handler.getModules()) {
+      reporterManager.moduleStart(module);
+
+      if (module.getTests().size() == 0) {
+        reporterManager.info("There are no tests to run.");
+      } else {
+        for (TestCase test : module.getTests()) {
+          reporterManager.testStart(test);
+          reporterManager.testCompleted(test);
+        }
+      }
+
+      reporterManager.moduleCompleted(module);
+    }
+
+    try {
+      reporterManager.done(handler);
+    } catch (IllegalStateException ex) {
+      // There're tests in failure. The remaining pages are run anyway.
+      if (failure == null) {
+        failure = ex;
+      }
+    }
   }
 
   /**
@@ -0,0 +1,67 @@
+package org.moyrax.javascript.qunit;
+
+import java.io.IOException;
+
+import org.apache.commons.lang.Validate;
+
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequestSettings;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+
+/**
+ * {@link WebConnection} which accumulates the time spent fetching responses.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+class TimedWebConnection extends WebConnectionWrapper {
+  /** Connection that performs the requests. */
+  private final WebConnection connection;
+
+  /** Accumulated time, in nanoseconds. */
+  private long time;
+
+  /**
+   * Creates a new connection which delegates to the specified connection.
+   *
+   * @param theConnection Connection that performs the requests. It cannot be
+   *    null.
+   */
+  TimedWebConnection(final WebConnection theConnection) {
+    super(theConnection);
+
+    Validate.notNull(theConnection, "The connection cannot be null.");
+
+    connection = theConnection;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WebResponse getResponse(final WebRequestSettings settings)
+      throws IOException {
+    long start = System.nanoTime();
+
+    try {
+      return super.getResponse(settings);
+    } finally {
+      time += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Returns the time spent fetching responses, in nanoseconds.
+   */
+  long getTime() {
+    return time;
+  }
+
+  /**
+   * Returns the connection that performs the requests.
+   */
+  WebConnection getConnection() {
+    return connection;
+  }
+}
@@ -48,6 +48,17 @@ public class EnvironmentConfiguration {
    */
   private String baseUrl;
 
+  /**
+   * Sampling interval of the scripts profiler, in milliseconds. The profiler
+   * is disabled if it's 0.
+   */
+  private long profilerInterval;
+
+  /**
+   * Indicates whether the line coverage of the scripts is recorded.
+   */
+  private boolean coverage;
+
   /**
    * Sets the list of patterns to locate testing resources. All resources that
    * matches the patterns will be executed. It will be used if no configuration
@@ -102,6 +113,43 @@ public class EnvironmentConfiguration {
     return baseDirectory;
   }
 
+  /**
+   * Enables the scripts profiler.
+   *
+   * @param theProfilerInterval Sampling interval, in milliseconds. Zero
+   *    disables the profiler.
+   */
+  public void setProfilerInterval(final long theProfilerInterval) {
+    Validate.isTrue(theProfilerInterval >= 0, "The interval cannot be"
+        + " negative.");
+
+    profilerInterval = theProfilerInterval;
+  }
+
+  /**
+   * Returns the sampling interval of the scripts profiler, in milliseconds,
+   * or 0 if the profiler is disabled.
+   */
+  public long getProfilerInterval() {
+    return profilerInterval;
+  }
+
+  /**
+   * Enables or disables the line coverage of the scripts.
+   *
+   * @param theCoverage <code>true</code> to record the coverage.
+   */
+  public void setCoverage(final boolean theCoverage) {
+    coverage = theCoverage;
+  }
+
+  /**
+   * Returns whether the line coverage of the scripts is recorded.
+   */
+  public boolean isCoverage() {
+    return coverage;
+  }
+
   /**
    * Sets the list of packages patterns which will be used to search for
    * JavaScript components. All the found classes will be added to the
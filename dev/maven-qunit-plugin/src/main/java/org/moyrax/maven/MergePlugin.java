@@ -0,0 +1,79 @@
+package org.moyrax.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.moyrax.reporting.ReportMerger;
+
+/** Merges the reports of several runs, like the shards or the forks of a
+ * single run, into one reports directory.
+ *
+ * @goal merge
+ * @requiresProject false
+ */
+public class MergePlugin extends AbstractMojo {
+  /**
+   * Directories with the reports to merge. When a page was reported in more
+   * than one directory, only the last attempt is kept.
+   *
+   * @parameter
+   * @required
+   */
+  private File[] inputDirectories;
+
+  /**
+   * Directory to write the merged reports.
+   *
+   * @parameter expression="${qunit.mergeOutput}"
+   *    default-value="${project.build.directory}/qunit-reports-merged"
+   * @required
+   */
+  private File outputDirectory;
+
+  /**
+   * Fails the build if the merged run has tests in failure.
+   *
+   * @parameter expression="${qunit.failOnFailures}" default-value="false"
+   */
+  private Boolean failOnFailures = false;
+
+  /**
+   * Merges the reports.
+   */
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    ReportMerger merger = new ReportMerger(outputDirectory);
+
+    for (File input : inputDirectories) {
+      if (!input.isDirectory()) {
+        throw new MojoExecutionException("The directory " + input
+            + " doesn't exist.");
+      }
+
+      merger.addInput(input);
+    }
+
+    ReportMerger.Summary summary;
+
+    try {
+      summary = merger.merge();
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Cannot merge the reports.", ex);
+    }
+
+    getLog().info("Merged " + summary.getPages() + " pages into "
+        + outputDirectory + " (" + summary.getRetried()
+        + " retried attempts discarded)");
+    getLog().info("Tests run: " + summary.getTests() + ", Failures: "
+        + summary.getFailures() + ", Errors: " + summary.getErrors()
+        + ", Time elapsed: "
+        + NumberFormat.getInstance().format(summary.getTime()) + " sec");
+
+    if (failOnFailures && summary.getFailures() + summary.getErrors() > 0) {
+      throw new MojoFailureException("There're tests in failure.");
+    }
+  }
+}
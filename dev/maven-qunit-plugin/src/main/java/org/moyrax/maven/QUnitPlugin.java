@@ -3,9 +3,12 @@
 package org.moyrax.maven;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -30,9 +33,18 @@ import org.apache.maven.project.artifact.MavenMetadataSource;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
 import org.moyrax.javascript.ContextClassLoader;
+import org.moyrax.javascript.instrument.CoverageRecorder;
+import org.moyrax.javascript.profiler.ScriptProfiler;
+import org.moyrax.javascript.qunit.PageListener;
 import org.moyrax.javascript.qunit.QUnitReporter;
+import org.moyrax.javascript.qunit.TestHandler;
 import org.moyrax.javascript.qunit.TestRunner;
+import org.moyrax.reporting.OutputSettings;
+import org.moyrax.reporting.RunHistory;
+import org.moyrax.reporting.TestCase;
+import org.moyrax.reporting.TestSuite;
 import org.moyrax.resolver.ClassPathResolver;
+import org.moyrax.util.JarIndexClassLoader;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.WebClient;
@@ -43,6 +55,12 @@ import com.gargoylesoftware.htmlunit.WebClient;
  * @phase test
  */
 public class QUnitPlugin extends AbstractMojo {
+  /** Minimum number of runs in the history to compare a page with. */
+  private static final int MIN_HISTORY_RUNS = 5;
+
+  /** Fraction of changed results from which a test is considered flaky. */
+  private static final double FLAKY_FLIP_RATE = 0.2;
+
   /**
    * Local files which will be executed using QUnit.
    *
@@ -72,6 +90,17 @@ public class QUnitPlugin extends AbstractMojo {
    */
   private List<String> components = new ArrayList<String>();
 
+  /**
+   * Packages which may contain exportable Java classes, for instance
+   * <code>org.moyrax.javascript</code>. Subpackages are also included. Only
+   * the classes in these packages are read to check whether they're
+   * components. If it's empty, all the classes but the ones from the JDK and
+   * the engine libraries are checked.
+   *
+   * @parameter
+   */
+  private List<String> componentPackages = new ArrayList<String>();
+
   /**
    * List of classpath urls in which lookup for exportable Java classes.
    *
@@ -86,6 +115,62 @@ public class QUnitPlugin extends AbstractMojo {
    */
   private Boolean oldSkipTests = false;
 
+  /**
+   * Enables the JavaScript sampling profiler. The samples of each test file
+   * are written in folded stacks format to the reports directory, in files
+   * with the <code>.folded</code> extension.
+   *
+   * @parameter expression="${qunit.profile}" default-value="false"
+   */
+  private Boolean profile = false;
+
+  /**
+   * Sampling interval of the JavaScript profiler, in milliseconds.
+   *
+   * @parameter expression="${qunit.profileInterval}" default-value="10"
+   */
+  private Integer profileInterval = 10;
+
+  /**
+   * Records the line coverage of the JavaScript code executed by the tests,
+   * including the global resources and the included scripts. The coverage
+   * is written in LCOV format to the reports directory, in the
+   * <code>lcov.info</code> file.
+   *
+   * @parameter expression="${qunit.coverage}" default-value="false"
+   */
+  private Boolean coverage = false;
+
+  /**
+   * Number of characters of tests and reports output kept in memory. The
+   * output beyond this budget is spilled to a temporary file.
+   *
+   * @parameter expression="${qunit.outputMemoryBudget}"
+   *    default-value="8388608"
+   */
+  private Long outputMemoryBudget = 8388608L;
+
+  /**
+   * Maximum number of output characters kept for the tests that succeed. Zero
+   * discards their output, and -1 keeps all of it. The output of the failed
+   * tests is always kept.
+   *
+   * @parameter expression="${qunit.passedOutputLimit}" default-value="-1"
+   */
+  private Integer passedOutputLimit = -1;
+
+  /**
+   * Directory of the history of the runs. The duration and result of each
+   * page and test are recorded there on every run, and the pages which take
+   * much longer than usual are reported. No history is kept if it's empty.
+   * Builds which share the directory don't record their runs while another
+   * build holds it.
+   *
+   * @parameter expression="${qunit.historyDirectory}"
+   *    default-value="${user.home}/.m2/qunit-history/${project.groupId}/${project.artifactId}"
+   */
+  private File historyDirectory;
+
   /**
    * Object to ask the files specified in the plugin configuration.
    */
@@ -113,6 +198,15 @@ public class QUnitPlugin extends AbstractMojo {
    */
   private TestRunner runner;
 
+  /**
+   * Class loader of the project under test.
+   */
+  private ClassLoader projectClassLoader;
+
+  /** Class loaders with indexed jars, which are closed when the run ends. */
+  private List<JarIndexClassLoader> indexedClassLoaders =
+    new ArrayList<JarIndexClassLoader>();
+
   /** The Maven project object, used to generate a classloader to access the
    * classpath resources from the project.
    *
@@ -163,15 +257,54 @@ public class QUnitPlugin extends AbstractMojo {
     // point of the module.
     Validate.notNull(project, "The project cannot be null.");
 
-    reporter = new QUnitReporter(getReportsDirectory(),
-        new MojoLogAdapter(getLog()));
+    final RunMetrics metrics = new RunMetrics();
 
-    runner = new TestRunner(reporter, browser);
-    initEnvironment();
-    loadContextResources();
+    final OutputSettings outputSettings = new OutputSettings(
+        outputMemoryBudget, passedOutputLimit);
+
+    try {
+      reporter = new QUnitReporter(getReportsDirectory(),
+          new MojoLogAdapter(getLog()), outputSettings);
 
-    client.runTests();
-    runner.reportAll();
+      try {
+        runner = new TestRunner(reporter, browser);
+        runner.setOutputSettings(outputSettings);
+
+        final RunHistory history = openHistory();
+
+        try {
+          runner.addPageListener(new PageListener() {
+            public void pageCompleted(final TestHandler handler) {
+              metrics.addPage(handler);
+              writeProfile(handler);
+              recordHistory(history, handler);
+            }
+          });
+
+          try {
+            initEnvironment();
+            loadContextResources();
+
+            client.runTests();
+
+            try {
+              runner.reportAll();
+            } finally {
+              writeMetrics(metrics);
+              writeCoverage();
+            }
+          } finally {
+            closeClassLoaders();
+          }
+        } finally {
+          closeHistory(history);
+        }
+      } finally {
+        closeReporter();
+      }
+    } finally {
+      closeOutput(outputSettings);
+    }
   }
 
   /**
@@ -231,6 +364,12 @@ public class QUnitPlugin extends AbstractMojo {
 
     env.setLookupPackages(components.toArray(new String[] {}));
 
+    if (profile) {
+      env.setProfilerInterval(profileInterval);
+    }
+
+    env.setCoverage(coverage);
+
     if (contextPath != null) {
       for (Entry entry : contextPath) {
         ContextPathBuilder.addDefinition(entry.files.getDirectory(),
@@ -240,7 +379,7 @@ public class QUnitPlugin extends AbstractMojo {
 
     ContextPathBuilder.build();
 
-    ClassLoader projectClassLoader = createProjectClassloader(project);
+    projectClassLoader = createProjectClassloader(project);
     ClassPathResolver resolver = new ClassPathResolver(projectClassLoader);
 
     env.setClassLoader(projectClassLoader);
@@ -248,6 +387,224 @@ public class QUnitPlugin extends AbstractMojo {
     client = new TestingClient(runner, env, resolver);
   }
 
+  /**
+   * Writes the metrics of the run to the reports directory. Errors writing
+   * the metrics don't fail the build.
+   *
+   * @param metrics Metrics collected since the run started. It cannot be
+   *    null.
+   */
+  private void writeMetrics(final RunMetrics metrics) {
+    metrics.setClassLoader(projectClassLoader);
+
+    try {
+      metrics.write(new File(getReportsDirectory()));
+    } catch (IOException ex) {
+      getLog().warn("Cannot write the run metrics.", ex);
+    }
+  }
+
+  /**
+   * Writes the samples of the scripts profiler for a test file to the
+   * reports directory, in folded stacks format.
+   *
+   * @param handler Handler which ran the test file. It cannot be null.
+   */
+  private void writeProfile(final TestHandler handler) {
+    if (!profile) {
+      return;
+    }
+
+    File file = new File(getReportsDirectory(), handler.getName()
+        + ".folded");
+
+    try {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+          "UTF-8");
+
+      try {
+        ScriptProfiler.writeFoldedStacks(handler.getProfile(), writer);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      getLog().warn("Cannot write the profile " + file, ex);
+    }
+  }
+
+  /**
+   * Writes the line coverage of the scripts to the reports directory, in
+   * LCOV format.
+   */
+  private void writeCoverage() {
+    CoverageRecorder recorder = client.getCoverage();
+
+    if (!coverage || recorder == null) {
+      return;
+    }
+
+    File file = new File(getReportsDirectory(), "lcov.info");
+
+    try {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+          "UTF-8");
+
+      try {
+        recorder.writeLcov(writer);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      getLog().warn("Cannot write the coverage " + file, ex);
+    }
+  }
+
+  /**
+   * Opens the history of the runs.
+   *
+   * @return Returns the history, or null if there's no history directory or
+   *    it cannot be opened.
+   */
+  private RunHistory openHistory() {
+    if (historyDirectory == null) {
+      return null;
+    }
+
+    try {
+      return RunHistory.open(historyDirectory);
+    } catch (IOException ex) {
+      getLog().warn("Cannot open the runs history " + historyDirectory
+          + ", this run is not recorded.", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Records the results of a page in the history of the runs, and warns if
+   * the page took much longer than in the previous runs.
+   *
+   * @param history History of the runs. It can be null.
+   * @param handler Handler which ran the page. It cannot be null.
+   */
+  private void recordHistory(final RunHistory history,
+      final TestHandler handler) {
+    if (history == null) {
+      return;
+    }
+
+    String page = handler.getName();
+    long duration = 0;
+
+    for (Long phaseTime : handler.getPhaseTimes().values()) {
+      duration += phaseTime;
+    }
+
+    duration /= 1000000L;
+
+    RunHistory.Stats stats = history.getPageStats(page);
+
+    if (stats != null && stats.getRuns() >= MIN_HISTORY_RUNS
+        && duration > 2L * stats.getPercentile(95)) {
+      getLog().warn("The page " + page + " took " + duration + " ms, the"
+          + " 95th percentile of the last " + stats.getRuns() + " runs is "
+          + stats.getPercentile(95) + " ms.");
+    }
+
+    try {
+      history.recordPage(page, duration, handler.getFailures() == 0
+          && handler.getError() == null, handler.getTotal());
+
+      for (TestSuite module : handler.getModules()) {
+        for (TestCase test : module.getTests()) {
+          history.recordTest(page, module.getName(), test.getName(),
+              test.getTotalTime(), test.isSuccess(), test.getTotal());
+
+          if (!test.isSuccess()) {
+            warnFlaky(history.getTestStats(page, module.getName(),
+                test.getName()), module.getName() + " - " + test.getName());
+          }
+        }
+      }
+    } catch (IOException ex) {
+      getLog().warn("Cannot record the page " + page + " in the runs"
+          + " history.", ex);
+    }
+  }
+
+  /**
+   * Reports a failed test which changed its result often in the previous
+   * runs.
+   *
+   * @param stats History of the test. It cannot be null.
+   * @param test Name of the test. It cannot be null.
+   */
+  private void warnFlaky(final RunHistory.Stats stats, final String test) {
+    if (stats.getRuns() >= MIN_HISTORY_RUNS
+        && stats.getFlipRate() >= FLAKY_FLIP_RATE) {
+      getLog().warn("The test " + test + " looks flaky: its result changed"
+          + " in " + Math.round(stats.getFlipRate() * 100) + "% of the last "
+          + stats.getRuns() + " runs.");
+    }
+  }
+
+  /**
+   * Closes the history of the runs, if there's one.
+   *
+   * @param history History to close. It can be null.
+   */
+  private void closeHistory(final RunHistory history) {
+    if (history == null) {
+      return;
+    }
+
+    try {
+      history.close();
+    } catch (IOException ex) {
+      getLog().warn("Cannot write the runs history " + historyDirectory, ex);
+    }
+  }
+
+  /**
+   * Closes the jars indexed by the class loaders of the run.
+   */
+  private void closeClassLoaders() {
+    for (JarIndexClassLoader classLoader : indexedClassLoaders) {
+      try {
+        classLoader.close();
+      } catch (IOException ex) {
+        getLog().warn("Cannot close the project dependencies.", ex);
+      }
+    }
+
+    indexedClassLoaders.clear();
+  }
+
+  /**
+   * Stops the reporters if the run failed before reporting its results.
+   * Errors of the reporters are logged, so they don't hide the error which
+   * stopped the run.
+   */
+  private void closeReporter() {
+    try {
+      reporter.close();
+    } catch (IllegalStateException ex) {
+      getLog().warn("Cannot report the results of the run.", ex);
+    }
+  }
+
+  /**
+   * Deletes the output spilled to disk during the run.
+   *
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  private void closeOutput(final OutputSettings settings) {
+    try {
+      settings.close();
+    } catch (IOException ex) {
+      getLog().warn("Cannot delete the output captured during the run.", ex);
+    }
+  }
+
   /**
    * Returns the directory where the reports will be written.
    */
@@ -294,14 +651,23 @@ public class QUnitPlugin extends AbstractMojo {
 
     ClassLoader depsClassLoader = createDependenciesClassLoader(theProject);
 
-    URLClassLoader newLoader = new URLClassLoader(testUrls, depsClassLoader);
+    JarIndexClassLoader newLoader = new JarIndexClassLoader(testUrls,
+        depsClassLoader);
 
-    return new ContextClassLoader(newLoader);
+    indexedClassLoaders.add(newLoader);
+
+    if (componentPackages.isEmpty()) {
+      return new ContextClassLoader(newLoader);
+    }
+
+    return new ContextClassLoader(newLoader, componentPackages.toArray(
+        new String[componentPackages.size()]));
   }
 
   /**
    * Creates a {@link ClassLoader} which contains all the project's
-   * dependencies.
+   * dependencies. The dependency jars are indexed once, so the resources and
+   * classes are resolved without searching each jar.
    *
    * @param theProject The maven project under test. It cannot be null.
    *
@@ -357,9 +723,11 @@ public class QUnitPlugin extends AbstractMojo {
       }
     }
 
-    URLClassLoader newLoader = new URLClassLoader(urls,
+    JarIndexClassLoader newLoader = new JarIndexClassLoader(urls,
         Thread.currentThread().getContextClassLoader());
 
+    indexedClassLoaders.add(newLoader);
+
     return newLoader;
   }
 }
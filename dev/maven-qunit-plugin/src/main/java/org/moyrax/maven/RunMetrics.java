@@ -0,0 +1,415 @@
+package org.moyrax.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.ContextClassLoader;
+import org.moyrax.javascript.qunit.Phase;
+import org.moyrax.javascript.qunit.TestHandler;
+import org.moyrax.reflect.TypeResolver;
+import org.moyrax.reporting.TestCase;
+import org.moyrax.reporting.TestSuite;
+
+/**
+ * Collects the metrics of a test run and writes them in JSON and Prometheus
+ * text format, so they can be collected from the reports directory instead of
+ * parsing the build logs.
+ *
+ * The run starts when the metrics are created. The heap peak is reset at that
+ * point, and the garbage collections and resolver cache counters are
+ * measured from there.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class RunMetrics {
+  /** Name of the JSON metrics file. */
+  public static final String JSON_FILE = "qunit-metrics.json";
+
+  /** Name of the Prometheus text format metrics file. */
+  public static final String PROMETHEUS_FILE = "qunit-metrics.prom";
+
+  /** Upper bounds of the phase latency histogram buckets, in seconds. */
+  private static final double[] BUCKETS = new double[] {
+    0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30
+  };
+
+  /** Time when the run started, in nanoseconds. */
+  private final long startTime = System.nanoTime();
+
+  /** Accumulated time of each collector when the run started. */
+  private final Map<String, Long> gcStartTimes =
+    new LinkedHashMap<String, Long>();
+
+  /** Number of collections of each collector when the run started. */
+  private final Map<String, Long> gcStartCounts =
+    new LinkedHashMap<String, Long>();
+
+  /** Type resolver cache hits when the run started. */
+  private final long typeCacheStartHits = TypeResolver.getCacheHits();
+
+  /** Type resolver cache misses when the run started. */
+  private final long typeCacheStartMisses = TypeResolver.getCacheMisses();
+
+  /** Latency histogram of each phase. */
+  private final EnumMap<Phase, Histogram> phases =
+    new EnumMap<Phase, Histogram>(Phase.class);
+
+  /** Number of pages run. */
+  private int pages;
+
+  /** Number of pages which couldn't run because of errors. */
+  private int errors;
+
+  /** Number of tests run. */
+  private int tests;
+
+  /** Number of tests with failures. */
+  private int failedTests;
+
+  /** Number of assertions run. */
+  private int assertions;
+
+  /** Number of failed assertions. */
+  private int failures;
+
+  /** Class loader used to load the components, if it's known. */
+  private ContextClassLoader classLoader;
+
+  /**
+   * Starts collecting the metrics of a new run.
+   */
+  public RunMetrics() {
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcStartTimes.put(gc.getName(), gc.getCollectionTime());
+      gcStartCounts.put(gc.getName(), gc.getCollectionCount());
+    }
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Adds the results of a page to the metrics.
+   *
+   * @param handler Handler which ran the page. It cannot be null.
+   */
+  public void addPage(final TestHandler handler) {
+    Validate.notNull(handler, "The handler cannot be null.");
+
+    pages++;
+
+    if (handler.getError() != null) {
+      errors++;
+    }
+
+    assertions += handler.getTotal();
+    failures += handler.getFailures();
+
+    for (TestSuite module : handler.getModules()) {
+      for (TestCase test : module.getTests()) {
+        tests++;
+
+        if (test.getFailures() > 0) {
+          failedTests++;
+        }
+      }
+    }
+
+    for (Map.Entry<Phase, Long> phase : handler.getPhaseTimes().entrySet()) {
+      Histogram histogram = phases.get(phase.getKey());
+
+      if (histogram == null) {
+        histogram = new Histogram();
+        phases.put(phase.getKey(), histogram);
+      }
+
+      histogram.observe(phase.getValue() / 1e9);
+    }
+  }
+
+  /**
+   * Sets the class loader used to load the components. The transformation
+   * counters are only available for {@link ContextClassLoader}s.
+   *
+   * @param theClassLoader Class loader used to load the components. It can be
+   *    null.
+   */
+  public void setClassLoader(final ClassLoader theClassLoader) {
+    if (theClassLoader instanceof ContextClassLoader) {
+      classLoader = (ContextClassLoader) theClassLoader;
+    } else {
+      classLoader = null;
+    }
+  }
+
+  /**
+   * Writes the metrics to the JSON and Prometheus files in the specified
+   * directory.
+   *
+   * @param directory Directory to write the files. It cannot be null, and
+   *    it must exist.
+   */
+  public void write(final File directory) throws IOException {
+    Validate.notNull(directory, "The directory cannot be null.");
+
+    Map<String, Number> values = collect();
+
+    PrintWriter writer = createWriter(new File(directory, JSON_FILE));
+
+    try {
+      writeJson(writer, values);
+    } finally {
+      writer.close();
+    }
+
+    writer = createWriter(new File(directory, PROMETHEUS_FILE));
+
+    try {
+      writePrometheus(writer, values);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Collects the scalar metrics of the run.
+   *
+   * @return Returns the metrics by name, in the order they're written.
+   */
+  private Map<String, Number> collect() {
+    Map<String, Number> values = new LinkedHashMap<String, Number>();
+
+    values.put("duration_seconds", (System.nanoTime() - startTime) / 1e9);
+    values.put("pages", pages);
+    values.put("page_errors", errors);
+    values.put("tests", tests);
+    values.put("failed_tests", failedTests);
+    values.put("assertions", assertions);
+    values.put("failed_assertions", failures);
+
+    if (classLoader != null) {
+      values.put("classloader_transforms", classLoader.getTransformCount());
+      values.put("classloader_cache_hits",
+          classLoader.getExportableCacheHits());
+      values.put("classloader_cache_misses",
+          classLoader.getExportableCacheMisses());
+      values.put("classloader_cache_hit_ratio", ratio(
+          classLoader.getExportableCacheHits(),
+          classLoader.getExportableCacheMisses()));
+    }
+
+    long typeHits = TypeResolver.getCacheHits() - typeCacheStartHits;
+    long typeMisses = TypeResolver.getCacheMisses() - typeCacheStartMisses;
+
+    values.put("type_cache_hits", typeHits);
+    values.put("type_cache_misses", typeMisses);
+    values.put("type_cache_hit_ratio", ratio(typeHits, typeMisses));
+
+    long peakHeap = 0;
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+    }
+
+    values.put("heap_peak_bytes", peakHeap);
+
+    long gcCount = 0;
+    long gcTime = 0;
+
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += delta(gc.getCollectionCount(), gcStartCounts.get(
+          gc.getName()));
+      gcTime += delta(gc.getCollectionTime(), gcStartTimes.get(gc.getName()));
+    }
+
+    values.put("gc_pauses", gcCount);
+    values.put("gc_pause_seconds", gcTime / 1e3);
+
+    return values;
+  }
+
+  /**
+   * Writes the metrics as a JSON object.
+   *
+   * @param writer Writer to write the metrics. It cannot be null.
+   * @param values Scalar metrics to write. It cannot be null.
+   */
+  private void writeJson(final PrintWriter writer,
+      final Map<String, Number> values) {
+
+    writer.println("{");
+
+    for (Map.Entry<String, Number> value : values.entrySet()) {
+      writer.println("  \"" + value.getKey() + "\": "
+          + format(value.getValue()) + ",");
+    }
+
+    writer.print("  \"phases\": {");
+
+    String separator = "\n";
+
+    for (Map.Entry<Phase, Histogram> phase : phases.entrySet()) {
+      Histogram histogram = phase.getValue();
+
+      writer.print(separator + "    \"" + phase.getKey().getName() + "\": {"
+          + "\"count\": " + histogram.count
+          + ", \"sum_seconds\": " + format(histogram.sum)
+          + ", \"max_seconds\": " + format(histogram.max)
+          + ", \"buckets\": {");
+
+      for (int i = 0; i < BUCKETS.length; i++) {
+        writer.print((i > 0 ? ", " : "") + "\"" + format(BUCKETS[i]) + "\": "
+            + histogram.counts[i]);
+      }
+
+      writer.print(", \"+Inf\": " + histogram.count + "}}");
+
+      separator = ",\n";
+    }
+
+    writer.println(phases.isEmpty() ? "}" : "\n  }");
+    writer.println("}");
+  }
+
+  /**
+   * Writes the metrics in Prometheus text format.
+   *
+   * @param writer Writer to write the metrics. It cannot be null.
+   * @param values Scalar metrics to write. It cannot be null.
+   */
+  private void writePrometheus(final PrintWriter writer,
+      final Map<String, Number> values) {
+
+    for (Map.Entry<String, Number> value : values.entrySet()) {
+      String name = "qunit_" + value.getKey();
+
+      writer.println("# TYPE " + name + " gauge");
+      writer.println(name + " " + format(value.getValue()));
+    }
+
+    if (phases.isEmpty()) {
+      return;
+    }
+
+    writer.println("# HELP qunit_phase_seconds Time spent in each phase of"
+        + " the pages execution.");
+    writer.println("# TYPE qunit_phase_seconds histogram");
+
+    for (Map.Entry<Phase, Histogram> phase : phases.entrySet()) {
+      String label = "phase=\"" + phase.getKey().getName() + "\"";
+      Histogram histogram = phase.getValue();
+
+      for (int i = 0; i < BUCKETS.length; i++) {
+        writer.println("qunit_phase_seconds_bucket{" + label + ",le=\""
+            + format(BUCKETS[i]) + "\"} " + histogram.counts[i]);
+      }
+
+      writer.println("qunit_phase_seconds_bucket{" + label + ",le=\"+Inf\"} "
+          + histogram.count);
+      writer.println("qunit_phase_seconds_sum{" + label + "} "
+          + format(histogram.sum));
+      writer.println("qunit_phase_seconds_count{" + label + "} "
+          + histogram.count);
+    }
+  }
+
+  /**
+   * Creates a UTF-8 writer for the specified file.
+   */
+  private PrintWriter createWriter(final File file) throws IOException {
+    return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+        "UTF-8"));
+  }
+
+  /**
+   * Formats a number independently of the default locale.
+   */
+  private static String format(final Number value) {
+    if (value instanceof Double) {
+      return String.format(Locale.US, "%.6f", value.doubleValue());
+    }
+
+    return value.toString();
+  }
+
+  /**
+   * Returns the hits ratio, or 0 if there're no lookups.
+   */
+  private static double ratio(final long hits, final long misses) {
+    if (hits + misses == 0) {
+      return 0;
+    }
+
+    return (double) hits / (hits + misses);
+  }
+
+  /**
+   * Returns the difference between a counter and its initial value. Counters
+   * that aren't available are reported as 0.
+   */
+  private static long delta(final long value, final Long start) {
+    if (value < 0) {
+      return 0;
+    }
+
+    if (start == null || start < 0) {
+      return value;
+    }
+
+    return value - start;
+  }
+
+  /**
+   * Cumulative latency histogram.
+   */
+  private static class Histogram {
+    /** Number of observations less than or equal to each bucket bound. */
+    private final long[] counts = new long[BUCKETS.length];
+
+    /** Number of observations. */
+    private long count;
+
+    /** Sum of all the observations. */
+    private double sum;
+
+    /** Highest observation. */
+    private double max;
+
+    /**
+     * Adds an observation to the histogram.
+     *
+     * @param value Observed value, in seconds.
+     */
+    private void observe(final double value) {
+      for (int i = 0; i < BUCKETS.length; i++) {
+        if (value <= BUCKETS[i]) {
+          counts[i]++;
+        }
+      }
+
+      count++;
+      sum += value;
+      max = Math.max(max, value);
+    }
+  }
+}
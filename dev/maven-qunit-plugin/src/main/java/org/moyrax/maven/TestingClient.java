@@ -11,6 +11,7 @@ import org.apache.commons.logging.LogFactory;
 import org.moyrax.javascript.ConfigurableEngine;
 import org.moyrax.javascript.ScriptComponentScanner;
 import org.moyrax.javascript.Shell;
+import org.moyrax.javascript.instrument.CoverageRecorder;
 import org.moyrax.javascript.qunit.TestRunner;
 import org.moyrax.javascript.shell.Global;
 import org.moyrax.resolver.LibraryResolver;
@@ -120,6 +121,15 @@ public class TestingClient {
     }
   }
 
+  /**
+   * Returns the line coverage of the scripts run by this client.
+   *
+   * @return Returns the coverage, or <code>null</code> if it's not enabled.
+   */
+  public CoverageRecorder getCoverage() {
+    return engine.getCoverage();
+  }
+
   /**
    * Adds a new resource which will be registered in the Window scope. It's
    * useful to initialize the client environment before executing the tests.
@@ -147,6 +157,14 @@ public class TestingClient {
     Shell.setResolver("lib", new LibraryResolver("/org/moyrax/javascript/lib"));
     Shell.setResolver("classpath", resourceResolver);
 
+    if (context.getProfilerInterval() > 0) {
+      engine.enableProfiler(context.getProfilerInterval());
+    }
+
+    if (context.isCoverage()) {
+      engine.enableCoverage();
+    }
+
     runner.getClient().setJavaScriptEngine(engine);
   }
 
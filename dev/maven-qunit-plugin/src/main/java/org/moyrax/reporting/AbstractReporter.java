@@ -1,8 +1,5 @@
 package org.moyrax.reporting;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.text.NumberFormat;
 
@@ -34,7 +31,27 @@ public abstract class AbstractReporter implements Reporter {
   /**
    * Keeps the output there.
    */
-  private ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final CaptureBuffer output;
+
+  /**
+   * Creates a reporter which keeps its output in memory.
+   */
+  protected AbstractReporter() {
+    output = new CaptureBuffer();
+  }
+
+  /**
+   * Creates a reporter which keeps its output within the memory budget of
+   * the run. The output beyond the budget is spilled to disk, and it's
+   * deleted when the run finishes.
+   *
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  protected AbstractReporter(final OutputSettings settings) {
+    Validate.notNull(settings, "The settings cannot be null.");
+
+    output = settings.createBuffer();
+  }
 
   /**
    * {@inheritDoc}
@@ -142,7 +159,7 @@ public abstract class AbstractReporter implements Reporter {
    * {@inheritDoc}
    */
   public InputStream getOutput() {
-    return new ByteArrayInputStream(output.toByteArray());
+    return output.openStream();
   }
 
   /**
@@ -180,13 +197,8 @@ public abstract class AbstractReporter implements Reporter {
   protected void write(final String message) {
     Validate.notNull(message, "The message cannot be null.");
 
-    try {
-      String outputBuffer = message + "\n";
-
-      output.write(outputBuffer.getBytes());
-    } catch (IOException ex) {
-      // Nervermind.
-    }
+    output.write(message);
+    output.write("\n");
   }
 
   /**
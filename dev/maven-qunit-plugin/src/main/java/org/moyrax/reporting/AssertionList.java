@@ -0,0 +1,356 @@
+package org.moyrax.reporting;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Assertions of a test, kept as compact records. Each record is a single int
+ * with the status of the assertion and the id of its message in the
+ * {@link Messages} table of the run. The expected and actual values are kept only for
+ * the failed assertions.
+ *
+ * The text of the assertions is rendered only when it's written, through
+ * {@link #writeTo(Writer)}. Each assertion is rendered in a line, in the same
+ * format used by QUnit.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class AssertionList {
+  /** Text between the message and the expected value of a failure. */
+  public static final String EXPECTED = ", expected: ";
+
+  /** Text between the expected and the actual value of a failure. */
+  public static final String RESULT = " result: ";
+
+  /** Table of the messages, shared by the tests of the run. */
+  private final Messages table;
+
+  /** Records of the assertions: the message id and the status bit. */
+  private int[] records = new int[0];
+
+  /** Number of assertions. */
+  private int size;
+
+  /**
+   * Messages which didn't fit in the shared table. They're referenced by
+   * negative ids, starting at -1.
+   */
+  private String[] localMessages;
+
+  /** Number of messages which didn't fit in the shared table. */
+  private int localCount;
+
+  /** Position of each failed assertion, in ascending order. */
+  private int[] failedPositions = new int[0];
+
+  /** Expected value of each failed assertion. */
+  private String[] expectedValues = new String[0];
+
+  /** Actual value of each failed assertion. */
+  private String[] actualValues = new String[0];
+
+  /** Number of failed assertions. */
+  private int failed;
+
+  /** Indicates whether assertions were dropped by {@link #truncate(int)}. */
+  private boolean truncated;
+
+  /**
+   * Creates a list which keeps its messages in a table of its own.
+   */
+  public AssertionList() {
+    this(new Messages());
+  }
+
+  /**
+   * Creates a list which keeps its messages in the specified table.
+   *
+   * @param theTable Table of the messages. It cannot be null.
+   */
+  AssertionList(final Messages theTable) {
+    Validate.notNull(theTable, "The table cannot be null.");
+
+    table = theTable;
+  }
+
+  /**
+   * Adds an assertion.
+   *
+   * @param passed Indicates whether the assertion passed.
+   * @param message Message of the assertion. It cannot be null.
+   */
+  public void add(final boolean passed, final String message) {
+    add(passed, message, null, null);
+  }
+
+  /**
+   * Adds an assertion. The expected and actual values are kept only if the
+   * assertion failed.
+   *
+   * @param passed Indicates whether the assertion passed.
+   * @param message Message of the assertion. It cannot be null.
+   * @param expected Expected value. It can be null.
+   * @param actual Actual value. It can be null.
+   */
+  public void add(final boolean passed, final String message,
+      final String expected, final String actual) {
+    Validate.notNull(message, "The message cannot be null.");
+
+    int id = table.intern(message);
+
+    if (id == -1) {
+      if (localMessages == null) {
+        localMessages = new String[4];
+      } else if (localCount == localMessages.length) {
+        localMessages = resize(localMessages, localCount * 2);
+      }
+
+      localMessages[localCount++] = message;
+      id = -localCount;
+    }
+
+    if (size == records.length) {
+      records = resize(records, Math.max(16, size * 2));
+    }
+
+    if (!passed && (expected != null || actual != null)) {
+      if (failed == failedPositions.length) {
+        int capacity = Math.max(4, failed * 2);
+
+        failedPositions = resize(failedPositions, capacity);
+        expectedValues = resize(expectedValues, capacity);
+        actualValues = resize(actualValues, capacity);
+      }
+
+      failedPositions[failed] = size;
+      expectedValues[failed] = expected;
+      actualValues[failed] = actual;
+      failed++;
+    }
+
+    records[size++] = (id << 1) | (passed ? 1 : 0);
+  }
+
+  /**
+   * Returns the number of assertions.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Determines whether there're no assertions.
+   */
+  public boolean isEmpty() {
+    return size == 0 && !truncated;
+  }
+
+  /**
+   * Determines whether the assertion at the specified position passed.
+   *
+   * @param index Position of the assertion.
+   */
+  public boolean isPassed(final int index) {
+    checkIndex(index);
+
+    return (records[index] & 1) == 1;
+  }
+
+  /**
+   * Returns the message of the assertion at the specified position.
+   *
+   * @param index Position of the assertion.
+   *
+   * @return Returns the message. Never returns null.
+   */
+  public String getMessage(final int index) {
+    checkIndex(index);
+
+    int id = records[index] >> 1;
+
+    if (id < 0) {
+      return localMessages[-id - 1];
+    }
+
+    return table.get(id);
+  }
+
+  /**
+   * Returns the expected value of the assertion at the specified position.
+   *
+   * @param index Position of the assertion.
+   *
+   * @return Returns the value, or null if the assertion passed or it has no
+   *    expected value.
+   */
+  public String getExpected(final int index) {
+    int failure = findFailure(index);
+
+    return failure < 0 ? null : expectedValues[failure];
+  }
+
+  /**
+   * Returns the actual value of the assertion at the specified position.
+   *
+   * @param index Position of the assertion.
+   *
+   * @return Returns the value, or null if the assertion passed or it has no
+   *    actual value.
+   */
+  public String getActual(final int index) {
+    int failure = findFailure(index);
+
+    return failure < 0 ? null : actualValues[failure];
+  }
+
+  /**
+   * Keeps only the first assertions whose text fits in the specified number
+   * of characters. If assertions are dropped, the text ends with
+   * {@link CaptureBuffer#TRUNCATED}.
+   *
+   * @param limit Maximum number of characters to keep, or 0 to discard all
+   *    the assertions. It cannot be negative.
+   *
+   * @return Returns the number of characters left after the kept assertions,
+   *    or 0 if assertions were dropped.
+   */
+  public int truncate(final int limit) {
+    Validate.isTrue(limit >= 0, "The limit cannot be negative.");
+
+    long used = 0;
+
+    for (int i = 0; i < size; i++) {
+      long length = render(i).length() + 1;
+
+      if (used + length > limit) {
+        size = i;
+        truncated = limit > 0;
+        dropFailures();
+
+        return 0;
+      }
+
+      used += length;
+    }
+
+    return (int) (limit - used);
+  }
+
+  /**
+   * Discards all the assertions.
+   */
+  public void clear() {
+    records = new int[0];
+    size = 0;
+    localMessages = null;
+    localCount = 0;
+    truncated = false;
+    dropFailures();
+  }
+
+  /**
+   * Writes the text of the assertions, one per line.
+   *
+   * @param writer Writer to write the text. It cannot be null.
+   */
+  public void writeTo(final Writer writer) throws IOException {
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    for (int i = 0; i < size; i++) {
+      writer.write(render(i));
+      writer.write('\n');
+    }
+
+    if (truncated) {
+      writer.write(CaptureBuffer.TRUNCATED);
+    }
+  }
+
+  /**
+   * Renders the text of an assertion, without the line break.
+   */
+  private String render(final int index) {
+    String message = getMessage(index);
+    int failure = findFailure(index);
+
+    if (failure < 0) {
+      return message;
+    }
+
+    return message + EXPECTED + expectedValues[failure] + RESULT
+        + actualValues[failure];
+  }
+
+  /**
+   * Returns the position of an assertion in the failures, or a negative
+   * value if it has no failure values.
+   */
+  private int findFailure(final int index) {
+    checkIndex(index);
+
+    if ((records[index] & 1) == 1) {
+      return -1;
+    }
+
+    int low = 0;
+    int high = failed - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+
+      if (failedPositions[middle] < index) {
+        low = middle + 1;
+      } else if (failedPositions[middle] > index) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Discards the failure values of the assertions beyond the size.
+   */
+  private void dropFailures() {
+    while (failed > 0 && failedPositions[failed - 1] >= size) {
+      failed--;
+      expectedValues[failed] = null;
+      actualValues[failed] = null;
+    }
+  }
+
+  /**
+   * Verifies that the position is in the list.
+   */
+  private void checkIndex(final int index) {
+    Validate.isTrue(index >= 0 && index < size, "The index is out of"
+        + " bounds: " + index);
+  }
+
+  /**
+   * Copies the array into a new one of the specified length.
+   */
+  private static int[] resize(final int[] array, final int length) {
+    int[] newArray = new int[length];
+
+    System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+
+    return newArray;
+  }
+
+  /**
+   * Copies the array into a new one of the specified length.
+   */
+  private static String[] resize(final String[] array, final int length) {
+    String[] newArray = new String[length];
+
+    System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+
+    return newArray;
+  }
+}
@@ -0,0 +1,444 @@
+package org.moyrax.reporting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Captures text output with a fixed in-memory budget. The content is kept in
+ * memory while the budget shared by the buffers of the run allows it, and it's
+ * spilled to a memory-mapped temporary file beyond that. The content is read
+ * back in a streaming way, through {@link #openReader()},
+ * {@link #openStream()} or {@link #writeTo(Writer)}.
+ *
+ * The buffers of a run are created by {@link OutputSettings#createBuffer()},
+ * which carries the memory budget of the run.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class CaptureBuffer extends Writer {
+  /** Marker appended to the truncated content. */
+  public static final String TRUNCATED = "[...]";
+
+  /** Size of the chunks used to read the content. */
+  private static final int CHUNK_SIZE = 8192;
+
+  /**
+   * Store of the spilled content, or null to keep all the content in memory.
+   */
+  private final CaptureStore store;
+
+  /** Content kept in memory. It's always the start of the content. */
+  private final StringBuilder memory = new StringBuilder();
+
+  /** Position of each spilled segment in the store. */
+  private long[] positions = new long[0];
+
+  /** Length of each spilled segment, in bytes. */
+  private long[] lengths = new long[0];
+
+  /** Number of spilled segments. */
+  private int segments;
+
+  /** Number of characters in the buffer. */
+  private long length;
+
+  /**
+   * Creates a new buffer which keeps all the content in memory.
+   */
+  public CaptureBuffer() {
+    store = null;
+  }
+
+  /**
+   * Creates a new buffer which uses the specified store.
+   *
+   * @param theStore Store to spill the content. It cannot be null.
+   */
+  CaptureBuffer(final CaptureStore theStore) {
+    Validate.notNull(theStore, "The store cannot be null.");
+
+    store = theStore;
+  }
+
+  /**
+   * Appends the text to this buffer.
+   *
+   * @param text Text to append. It cannot be null.
+   */
+  @Override
+  public void write(final String text) {
+    Validate.notNull(text, "The text cannot be null.");
+
+    append(CharBuffer.wrap(text));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final char[] chars, final int offset, final int count) {
+    append(CharBuffer.wrap(chars, offset, count));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Returns the number of characters in this buffer.
+   */
+  public synchronized long length() {
+    return length;
+  }
+
+  /**
+   * Determines whether this buffer has no content.
+   */
+  public synchronized boolean isEmpty() {
+    return length == 0;
+  }
+
+  /**
+   * Determines whether part of the content was spilled to disk.
+   */
+  public synchronized boolean isSpilled() {
+    return segments > 0;
+  }
+
+  /**
+   * Truncates the content to the specified number of characters. The
+   * truncated content ends with {@link #TRUNCATED}. Spilled content is
+   * dropped entirely, so the result may be shorter than the limit.
+   *
+   * @param limit Maximum number of characters to keep, or 0 to discard all
+   *    the content. It cannot be negative.
+   */
+  public synchronized void truncate(final int limit) {
+    Validate.isTrue(limit >= 0, "The limit cannot be negative.");
+
+    if (length <= limit) {
+      return;
+    }
+
+    int kept = Math.min(limit, memory.length());
+
+    if (store != null) {
+      long spilledBytes = 0;
+
+      for (int i = 0; i < segments; i++) {
+        spilledBytes += lengths[i];
+      }
+
+      store.release(memory.length() - kept);
+
+      try {
+        store.discard(spilledBytes);
+      } catch (IOException ex) {
+        throw new IllegalStateException("Cannot discard the spilled"
+            + " content.", ex);
+      }
+    }
+
+    memory.setLength(kept);
+    segments = 0;
+    length = kept;
+
+    if (limit > 0) {
+      memory.append(TRUNCATED);
+      length += TRUNCATED.length();
+    }
+  }
+
+  /**
+   * Discards the content of this buffer and releases its memory.
+   */
+  public synchronized void clear() {
+    truncate(0);
+  }
+
+  /**
+   * Opens a reader over the content of this buffer. The reader only sees the
+   * content appended before it was opened.
+   *
+   * @return Returns the reader. Never returns null.
+   */
+  public synchronized Reader openReader() {
+    try {
+      return new InputStreamReader(openStream(), "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException("UTF-8 is not supported.", ex);
+    }
+  }
+
+  /**
+   * Opens a stream over the content of this buffer, encoded in UTF-8. The
+   * stream only sees the content appended before it was opened, and the
+   * content is encoded while it's read, so the buffer must not be truncated
+   * or cleared until the stream is closed.
+   *
+   * @return Returns the stream. Never returns null.
+   */
+  public synchronized InputStream openStream() {
+    final InputStream head = new MemoryInputStream(memory.length());
+
+    final long[] segmentPositions = positions;
+    final long[] segmentLengths = lengths;
+    final int segmentCount = segments;
+
+    return new SequenceInputStream(new Enumeration<InputStream>() {
+      private int next = -1;
+
+      public boolean hasMoreElements() {
+        return next < segmentCount;
+      }
+
+      public InputStream nextElement() {
+        if (!hasMoreElements()) {
+          throw new NoSuchElementException();
+        }
+
+        InputStream stream;
+
+        if (next == -1) {
+          stream = head;
+        } else {
+          stream = store.open(segmentPositions[next], segmentLengths[next]);
+        }
+
+        next++;
+
+        return stream;
+      }
+    });
+  }
+
+  /**
+   * Copies the content of this buffer to the specified writer.
+   *
+   * @param writer Writer to copy the content. It cannot be null.
+   */
+  public void writeTo(final Writer writer) throws IOException {
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    Reader reader = openReader();
+
+    try {
+      char[] chunk = new char[CHUNK_SIZE];
+      int read;
+
+      while ((read = reader.read(chunk)) != -1) {
+        writer.write(chunk, 0, read);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns the whole content of this buffer. It loads the spilled content
+   * in memory, so {@link #writeTo(Writer)} is preferred for large buffers.
+   */
+  @Override
+  public String toString() {
+    StringWriter content = new StringWriter();
+
+    try {
+      writeTo(content);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the buffer.", ex);
+    }
+
+    return content.toString();
+  }
+
+  /**
+   * Appends the characters to the memory or to the store.
+   *
+   * @param chars Characters to append. It cannot be null.
+   */
+  private synchronized void append(final CharBuffer chars) {
+    int count = chars.remaining();
+
+    if (count == 0) {
+      return;
+    }
+
+    length += count;
+
+    if (segments == 0 && (store == null || store.reserve(count))) {
+      memory.append(chars);
+      return;
+    }
+
+    try {
+      long position;
+      long size;
+
+      synchronized (store) {
+        position = store.write(chars);
+        size = store.getSize() - position;
+      }
+
+      if (segments > 0 && positions[segments - 1] + lengths[segments - 1]
+          == position) {
+        lengths[segments - 1] += size;
+      } else {
+        addSegment(position, size);
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot spill the buffer to disk.", ex);
+    }
+  }
+
+  /**
+   * Returns the next chunk of the in-memory content. A chunk never ends in
+   * the middle of a surrogate pair, so it can be encoded by itself.
+   *
+   * @param start Index of the first character of the chunk.
+   * @param end Index after the last character the stream can read.
+   *
+   * @return Returns the chunk, or null if there's nothing left.
+   */
+  private synchronized String nextChunk(final int start, final int end) {
+    int last = Math.min(end, memory.length());
+
+    if (start >= last) {
+      return null;
+    }
+
+    int count = Math.min(CHUNK_SIZE, last - start);
+
+    if (start + count < last
+        && Character.isHighSurrogate(memory.charAt(start + count - 1))) {
+      count--;
+    }
+
+    return memory.substring(start, start + count);
+  }
+
+  /**
+   * Adds a spilled segment.
+   */
+  private void addSegment(final long position, final long size) {
+    if (segments == positions.length) {
+      long[] newPositions = new long[Math.max(4, segments * 2)];
+      long[] newLengths = new long[newPositions.length];
+
+      System.arraycopy(positions, 0, newPositions, 0, segments);
+      System.arraycopy(lengths, 0, newLengths, 0, segments);
+
+      positions = newPositions;
+      lengths = newLengths;
+    }
+
+    positions[segments] = position;
+    lengths[segments] = size;
+    segments++;
+  }
+
+  /**
+   * Stream which encodes the in-memory content chunk by chunk.
+   */
+  private class MemoryInputStream extends InputStream {
+    /** Index of the next character to encode. */
+    private int position;
+
+    /** Index after the last character to read. */
+    private final int end;
+
+    /** Bytes of the current chunk. */
+    private byte[] chunk = new byte[0];
+
+    /** Position of the next byte to read in the current chunk. */
+    private int chunkPosition;
+
+    /**
+     * Creates a new stream which reads the content up to the specified
+     * character.
+     */
+    private MemoryInputStream(final int theEnd) {
+      end = theEnd;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() {
+      if (!fill()) {
+        return -1;
+      }
+
+      return chunk[chunkPosition++] & 0xff;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) {
+      if (length == 0) {
+        return 0;
+      }
+
+      if (!fill()) {
+        return -1;
+      }
+
+      int count = Math.min(length, chunk.length - chunkPosition);
+
+      System.arraycopy(chunk, chunkPosition, buffer, offset, count);
+      chunkPosition += count;
+
+      return count;
+    }
+
+    /**
+     * Encodes the next chunk if the current one was read.
+     *
+     * @return Returns <code>false</code> if there's nothing left to read.
+     */
+    private boolean fill() {
+      while (chunkPosition == chunk.length) {
+        String text = nextChunk(position, end);
+
+        if (text == null) {
+          return false;
+        }
+
+        try {
+          chunk = text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+          throw new IllegalStateException("UTF-8 is not supported.", ex);
+        }
+
+        chunkPosition = 0;
+        position += text.length();
+      }
+
+      return true;
+    }
+  }
+}
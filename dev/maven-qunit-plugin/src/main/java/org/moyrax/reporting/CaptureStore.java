@@ -0,0 +1,312 @@
+package org.moyrax.reporting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Storage shared by the {@link CaptureBuffer}s of a run. It keeps the
+ * in-memory budget of the buffers, and the temporary file where the buffers
+ * spill their content once the budget is exhausted.
+ *
+ * The file is written through memory-mapped regions in UTF-8. It's created on
+ * the first spill, it's rewound once all the spilled content is discarded,
+ * and it's deleted when the store is closed.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+class CaptureStore {
+  /** Default number of characters all the buffers can keep in memory. */
+  static final long DEFAULT_MEMORY_BUDGET = 8 * 1024 * 1024;
+
+  /** Size of each mapped region of the file, in bytes. */
+  private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+  /** Encoding of the spilled content. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Encoder of the spilled content. */
+  private final CharsetEncoder encoder = UTF_8.newEncoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /** Number of characters all the buffers can keep in memory. */
+  private long memoryBudget;
+
+  /** Number of characters currently kept in memory. */
+  private long memoryUsed;
+
+  /** Temporary file, or null if nothing was spilled yet. */
+  private File file;
+
+  /** Channel of the temporary file. */
+  private FileChannel channel;
+
+  /** Region of the file being written. */
+  private MappedByteBuffer region;
+
+  /** Position of the current region in the file. */
+  private long regionStart;
+
+  /** Number of spilled bytes which are not discarded yet. */
+  private long spilled;
+
+  /** Indicates whether this store was closed. */
+  private boolean closed;
+
+  /**
+   * Creates a new store.
+   *
+   * @param theMemoryBudget Number of characters the buffers can keep in
+   *    memory. It cannot be negative.
+   */
+  CaptureStore(final long theMemoryBudget) {
+    setMemoryBudget(theMemoryBudget);
+  }
+
+  /**
+   * Changes the number of characters the buffers can keep in memory. It only
+   * affects the content appended from now on.
+   *
+   * @param theMemoryBudget Memory budget, in characters. It cannot be
+   *    negative.
+   */
+  synchronized void setMemoryBudget(final long theMemoryBudget) {
+    Validate.isTrue(theMemoryBudget >= 0, "The memory budget cannot be"
+        + " negative.");
+
+    memoryBudget = theMemoryBudget;
+  }
+
+  /**
+   * Reserves memory for the specified number of characters.
+   *
+   * @param chars Number of characters to keep in memory.
+   *
+   * @return Returns <code>true</code> if the memory was reserved,
+   *    <code>false</code> if the content must be spilled.
+   */
+  synchronized boolean reserve(final int chars) {
+    if (memoryUsed + chars > memoryBudget) {
+      return false;
+    }
+
+    memoryUsed += chars;
+
+    return true;
+  }
+
+  /**
+   * Releases the memory previously reserved.
+   *
+   * @param chars Number of characters no longer kept in memory.
+   */
+  synchronized void release(final int chars) {
+    memoryUsed = Math.max(0, memoryUsed - chars);
+  }
+
+  /**
+   * Writes the characters to the file.
+   *
+   * @param chars Characters to write. It cannot be null.
+   *
+   * @return Returns the position of the written bytes in the file.
+   *
+   * @see #getSize()
+   */
+  synchronized long write(final CharBuffer chars) throws IOException {
+    if (closed) {
+      throw new IOException("The store is closed.");
+    }
+
+    if (channel == null) {
+      open();
+    }
+
+    long start = getSize();
+
+    encoder.reset();
+
+    CoderResult result = encoder.encode(chars, region, true);
+
+    while (result.isOverflow()) {
+      mapNextRegion();
+      result = encoder.encode(chars, region, true);
+    }
+
+    while (encoder.flush(region).isOverflow()) {
+      mapNextRegion();
+    }
+
+    spilled += getSize() - start;
+
+    return start;
+  }
+
+  /**
+   * Discards spilled content. Once all the spilled content is discarded the
+   * file is written again from the start, so the streams opened over the
+   * discarded content must not be read anymore.
+   *
+   * @param bytes Number of spilled bytes no longer used.
+   */
+  synchronized void discard(final long bytes) throws IOException {
+    spilled = Math.max(0, spilled - bytes);
+
+    if (spilled == 0 && region != null && !closed) {
+      if (regionStart > 0) {
+        regionStart = 0;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+      } else {
+        region.clear();
+      }
+    }
+  }
+
+  /**
+   * Closes the temporary file and deletes it. The content spilled to this
+   * store cannot be read anymore, and nothing else can be spilled.
+   */
+  synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    region = null;
+
+    if (channel != null) {
+      try {
+        channel.close();
+      } finally {
+        channel = null;
+
+        if (!file.delete()) {
+          file.deleteOnExit();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written to the file.
+   */
+  synchronized long getSize() {
+    if (region == null) {
+      return 0;
+    }
+
+    return regionStart + region.position();
+  }
+
+  /**
+   * Opens a stream to read a range of the file.
+   *
+   * @param position Position of the first byte to read.
+   * @param length Number of bytes to read.
+   *
+   * @return Returns the stream. Never returns null.
+   */
+  InputStream open(final long position, final long length) {
+    return new RangeInputStream(position, length);
+  }
+
+  /**
+   * Creates the temporary file and maps its first region.
+   */
+  private void open() throws IOException {
+    file = File.createTempFile("qunit-capture", ".tmp");
+    file.deleteOnExit();
+
+    channel = new RandomAccessFile(file, "rw").getChannel();
+    region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+    regionStart = 0;
+  }
+
+  /**
+   * Maps the region of the file which follows the current one.
+   */
+  private void mapNextRegion() throws IOException {
+    regionStart += region.position();
+    region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart,
+        REGION_SIZE);
+  }
+
+  /**
+   * Reads the bytes of the file in a range.
+   */
+  private synchronized int read(final ByteBuffer target, final long position)
+      throws IOException {
+    if (channel == null) {
+      throw new IOException("The store is closed.");
+    }
+
+    return channel.read(target, position);
+  }
+
+  /**
+   * Stream which reads a range of the file.
+   */
+  private class RangeInputStream extends InputStream {
+    /** Position of the next byte to read. */
+    private long position;
+
+    /** Position after the last byte of the range. */
+    private final long end;
+
+    /**
+     * Creates a new stream for the specified range.
+     */
+    private RangeInputStream(final long thePosition, final long length) {
+      position = thePosition;
+      end = thePosition + length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+
+      if (read(single, 0, 1) == -1) {
+        return -1;
+      }
+
+      return single[0] & 0xff;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length)
+        throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+
+      int count = (int) Math.min(length, end - position);
+      int read = CaptureStore.this.read(ByteBuffer.wrap(buffer, offset,
+          count), position);
+
+      if (read > 0) {
+        position += read;
+      }
+
+      return read;
+    }
+  }
+}
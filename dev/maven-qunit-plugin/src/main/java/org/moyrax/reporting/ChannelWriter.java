@@ -0,0 +1,224 @@
+package org.moyrax.reporting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Writes text to a file in UTF-8 through a {@link FileChannel}. The text is
+ * encoded into a direct buffer, and the buffer is written to the channel
+ * only when it's full or the writer is flushed, so each write to the file
+ * carries up to {@link #BUFFER_SIZE} bytes.
+ *
+ * The direct buffers are pooled, since they're expensive to allocate, and
+ * returned to the pool when the writer is closed.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ChannelWriter extends Writer {
+  /** Size of the direct buffers, in bytes. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Maximum number of buffers kept in the pool. */
+  private static final int MAX_POOLED_BUFFERS = 8;
+
+  /** Encoding of the files. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Released buffers. */
+  private static final ConcurrentLinkedQueue<ByteBuffer> pool =
+    new ConcurrentLinkedQueue<ByteBuffer>();
+
+  /** Number of buffers in the pool. */
+  private static final AtomicInteger pooled = new AtomicInteger();
+
+  /** Channel of the file. */
+  private FileChannel channel;
+
+  /** Buffer with the encoded text not yet written to the channel. */
+  private ByteBuffer buffer;
+
+  /** Encoder of the text. */
+  private final CharsetEncoder encoder = UTF_8.newEncoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /**
+   * High surrogate at the end of the last write, which is encoded with the
+   * next character. It's 0 if there's none.
+   */
+  private char pendingSurrogate;
+
+  /**
+   * Creates the file and opens a writer for it. An existing file is
+   * truncated.
+   *
+   * @param file File to write. It cannot be null.
+   */
+  public ChannelWriter(final File file) throws IOException {
+    Validate.notNull(file, "The file cannot be null.");
+
+    channel = new FileOutputStream(file).getChannel();
+    buffer = acquireBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final char[] chars, final int offset, final int length)
+      throws IOException {
+    ensureOpen();
+
+    if (length == 0) {
+      return;
+    }
+
+    CharBuffer input;
+
+    if (pendingSurrogate != 0) {
+      input = CharBuffer.allocate(length + 1);
+      input.put(pendingSurrogate).put(chars, offset, length).flip();
+      pendingSurrogate = 0;
+    } else {
+      input = CharBuffer.wrap(chars, offset, length);
+    }
+
+    encode(input, false);
+
+    if (input.hasRemaining()) {
+      pendingSurrogate = input.get();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final String text) throws IOException {
+    write(text.toCharArray(), 0, text.length());
+  }
+
+  /**
+   * Writes the buffered text to the file.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    drain();
+  }
+
+  /**
+   * Writes the buffered text, closes the file and releases the buffer. It
+   * does nothing if the writer is already closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      CharBuffer input = CharBuffer.allocate(1);
+
+      if (pendingSurrogate != 0) {
+        input.put(pendingSurrogate);
+        pendingSurrogate = 0;
+      }
+
+      input.flip();
+      encode(input, true);
+
+      while (encoder.flush(buffer).isOverflow()) {
+        drain();
+      }
+
+      drain();
+    } finally {
+      try {
+        channel.close();
+      } finally {
+        channel = null;
+        releaseBuffer(buffer);
+        buffer = null;
+      }
+    }
+  }
+
+  /**
+   * Encodes the characters into the buffer, writing the buffer to the
+   * channel each time it's full.
+   */
+  private void encode(final CharBuffer input, final boolean endOfInput)
+      throws IOException {
+    CoderResult result = encoder.encode(input, buffer, endOfInput);
+
+    while (result.isOverflow()) {
+      drain();
+      result = encoder.encode(input, buffer, endOfInput);
+    }
+  }
+
+  /**
+   * Writes the content of the buffer to the channel.
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+
+    buffer.clear();
+  }
+
+  /**
+   * Verifies that the writer is not closed.
+   */
+  private void ensureOpen() throws IOException {
+    if (channel == null) {
+      throw new IOException("The writer is closed.");
+    }
+  }
+
+  /**
+   * Takes a buffer from the pool, or allocates a new one.
+   */
+  private static ByteBuffer acquireBuffer() {
+    ByteBuffer pooledBuffer = pool.poll();
+
+    if (pooledBuffer == null) {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    pooled.decrementAndGet();
+
+    return pooledBuffer;
+  }
+
+  /**
+   * Returns a buffer to the pool, unless the pool is full.
+   */
+  private static void releaseBuffer(final ByteBuffer released) {
+    if (pooled.incrementAndGet() > MAX_POOLED_BUFFERS) {
+      pooled.decrementAndGet();
+      return;
+    }
+
+    released.clear();
+    pool.offer(released);
+  }
+}
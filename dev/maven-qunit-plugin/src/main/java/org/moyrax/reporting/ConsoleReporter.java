@@ -1,9 +1,16 @@
 package org.moyrax.reporting;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.moyrax.javascript.qunit.Phase;
+import org.moyrax.javascript.qunit.TestHandler;
 
 /**
  * Reports operations to the console.
@@ -17,6 +24,24 @@ public class ConsoleReporter extends AbstractReporter {
    */
   private final PrintStream printer;
 
+  /**
+   * Time spent in each phase across all the pages, in nanoseconds.
+   */
+  private final EnumMap<Phase, Long> phaseTimes = new EnumMap<Phase, Long>(
+      Phase.class);
+
+  /**
+   * Slowest time spent in each phase by a single page, in nanoseconds.
+   */
+  private final EnumMap<Phase, Long> slowestTimes = new EnumMap<Phase, Long>(
+      Phase.class);
+
+  /**
+   * Name of the slowest page in each phase.
+   */
+  private final EnumMap<Phase, String> slowestPages =
+    new EnumMap<Phase, String>(Phase.class);
+
   /**
    * Creates a new {@link ConsoleReporter} and uses the standard output stream.
    */
@@ -38,6 +63,78 @@ public class ConsoleReporter extends AbstractReporter {
     write("\n");
   }
 
+  /**
+   * Creates a new {@link ConsoleReporter} which uses the specified output to
+   * write the results, and keeps the copy of the output within the memory
+   * budget of the run.
+   *
+   * @param thePrinter Output to write results. It cannot be null.
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  public ConsoleReporter(final PrintStream thePrinter,
+      final OutputSettings settings) {
+    super(settings);
+
+    Validate.notNull(thePrinter, "The printer cannot be null.");
+
+    printer = thePrinter;
+
+    write("\n");
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * When a page is done, this also accumulates the time spent in each phase
+   * of its execution.
+   * </p>
+   */
+  @Override
+  public <T extends ReportEntry> void succeed(final Operation<T> operation,
+      final Status<T> status) {
+    super.succeed(operation, status);
+
+    if (status == ReportStatus.DONE
+        && operation.getRelatedObject() instanceof TestHandler) {
+      addPhases((TestHandler) operation.getRelatedObject());
+    }
+  }
+
+  /**
+   * Writes a summary which ranks the phases by the time spent in them across
+   * all the reported pages, from the slowest to the fastest.
+   */
+  public void printPhaseSummary() {
+    if (phaseTimes.isEmpty()) {
+      return;
+    }
+
+    long total = 0;
+
+    for (Long time : phaseTimes.values()) {
+      total += time;
+    }
+
+    List<Phase> phases = new ArrayList<Phase>(phaseTimes.keySet());
+
+    Collections.sort(phases, new Comparator<Phase>() {
+      public int compare(final Phase phase1, final Phase phase2) {
+        return phaseTimes.get(phase2).compareTo(phaseTimes.get(phase1));
+      }
+    });
+
+    printLine("\nSlowest phases:");
+
+    for (Phase phase : phases) {
+      long time = phaseTimes.get(phase);
+
+      printLine(String.format("  %-14s %10s s %5.1f%%   slowest: %s (%s s)",
+          phase.getName(), elapsedTimeAsString(time / 1000000L),
+          total == 0 ? 0.0 : time * 100.0 / total, slowestPages.get(phase),
+          elapsedTimeAsString(slowestTimes.get(phase) / 1000000L)));
+    }
+  }
+
   /**
    * {@inheritDoc}
    * <p>
@@ -52,10 +149,38 @@ public class ConsoleReporter extends AbstractReporter {
     Validate.notNull(message, "The message cannot be null.");
 
     if (!StringUtils.isBlank(message)) {
-      String outputBuffer = getPrefix() + message;
+      printLine(message);
+    }
+  }
+
+  /**
+   * Accumulates the time spent in each phase by the specified page.
+   *
+   * @param handler Handler which executed the page. It cannot be null.
+   */
+  private void addPhases(final TestHandler handler) {
+    for (Phase phase : handler.getPhaseTimes().keySet()) {
+      long time = handler.getPhaseTime(phase);
+      Long accumulated = phaseTimes.get(phase);
 
-      printer.println(outputBuffer);
-      write(outputBuffer);
+      phaseTimes.put(phase, accumulated == null ? time : accumulated + time);
+
+      if (!slowestTimes.containsKey(phase) || slowestTimes.get(phase) < time) {
+        slowestTimes.put(phase, time);
+        slowestPages.put(phase, handler.getName());
+      }
     }
   }
+
+  /**
+   * Writes a message to the output.
+   *
+   * @param message Message to write. It cannot be null.
+   */
+  private void printLine(final String message) {
+    String outputBuffer = getPrefix() + message;
+
+    printer.println(outputBuffer);
+    write(outputBuffer);
+  }
 }
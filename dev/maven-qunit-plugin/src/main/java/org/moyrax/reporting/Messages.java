@@ -0,0 +1,88 @@
+package org.moyrax.reporting;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the assertion messages. Each distinct message is kept once and
+ * referenced by a numeric id, since suites repeat the same messages (like
+ * "ok") in thousands of assertions.
+ *
+ * A table is shared by all the tests of a run through {@link OutputSettings},
+ * and it's released with the run. It's bounded to {@link #MAX_MESSAGES}
+ * entries; once it's full, new messages are not interned and the caller keeps
+ * them by itself.
+ *
+ * The messages are looked up without locking, so the reporters' threads can
+ * read them while the tests add new ones. Only adding a message is
+ * synchronized.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+final class Messages {
+  /** Maximum number of messages in the table. */
+  static final int MAX_MESSAGES = 64 * 1024;
+
+  /** Id of each interned message. */
+  private final ConcurrentHashMap<String, Integer> ids =
+    new ConcurrentHashMap<String, Integer>();
+
+  /** Interned messages, indexed by id. It's replaced when it grows. */
+  private volatile String[] messages = new String[16];
+
+  /** Number of interned messages. Guarded by this table. */
+  private int count;
+
+  /**
+   * Returns the id of the specified message, adding it to the table if it's
+   * not there yet.
+   *
+   * @param message Message to look up. It cannot be null.
+   *
+   * @return Returns the id of the message, or -1 if the table is full and
+   *    the message is not in it.
+   */
+  int intern(final String message) {
+    Integer id = ids.get(message);
+
+    if (id != null) {
+      return id;
+    }
+
+    synchronized (this) {
+      id = ids.get(message);
+
+      if (id != null) {
+        return id;
+      }
+
+      if (count == MAX_MESSAGES) {
+        return -1;
+      }
+
+      String[] current = messages;
+
+      if (count == current.length) {
+        String[] newMessages = new String[count * 2];
+
+        System.arraycopy(current, 0, newMessages, 0, count);
+        current = newMessages;
+      }
+
+      current[count] = message;
+      messages = current;
+      ids.put(message, count);
+
+      return count++;
+    }
+  }
+
+  /**
+   * Returns the message with the specified id.
+   *
+   * @param id Id returned by {@link #intern(String)}.
+   */
+  String get(final int id) {
+    return messages[id];
+  }
+}
@@ -0,0 +1,57 @@
+package org.moyrax.reporting;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical instances of the names of the report entries. The same module
+ * and test names show up in every page and every run, so the entries share
+ * a single instance of each name instead of keeping a copy per entry.
+ *
+ * The names are kept in a heap map instead of {@link String#intern()}, since
+ * they're not constants and they would fill the permanent generation. The map
+ * is weak: a name is dropped once no entry refers to it, so the map doesn't
+ * grow across the builds of a long-lived JVM.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+final class Names {
+  /** Canonical instance of each name. */
+  private static final Map<String, WeakReference<String>> names =
+    new WeakHashMap<String, WeakReference<String>>();
+
+  /** Utility class, not instantiable. */
+  private Names() {}
+
+  /**
+   * Returns the canonical instance of the specified name.
+   *
+   * @param name Name to look up. It can be null.
+   *
+   * @return Returns the shared instance equal to the name, or null if the
+   *    name is null.
+   */
+  static String intern(final String name) {
+    if (name == null) {
+      return null;
+    }
+
+    synchronized (names) {
+      WeakReference<String> reference = names.get(name);
+      String canonical = null;
+
+      if (reference != null) {
+        canonical = reference.get();
+      }
+
+      if (canonical == null) {
+        names.put(name, new WeakReference<String>(name));
+        return name;
+      }
+
+      return canonical;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.moyrax.reporting;
+
+import java.io.IOException;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Output capture settings of a test run. It keeps the memory budget shared by
+ * the {@link CaptureBuffer}s of the run and the store where they spill their
+ * content, so it must be closed when the run finishes. It also keeps the
+ * table of the assertion messages of the run.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class OutputSettings {
+  /** Default number of characters the buffers of a run keep in memory. */
+  public static final long DEFAULT_MEMORY_BUDGET =
+      CaptureStore.DEFAULT_MEMORY_BUDGET;
+
+  /** Store shared by the buffers of the run. */
+  private final CaptureStore store;
+
+  /** Messages of the assertions of the run. */
+  private final Messages messages = new Messages();
+
+  /**
+   * Maximum number of output characters kept for the tests that succeed, or
+   * -1 to keep all the output.
+   */
+  private final int passedOutputLimit;
+
+  /**
+   * Creates the settings of a run.
+   *
+   * @param theMemoryBudget Number of characters the buffers of the run can
+   *    keep in memory. It cannot be negative.
+   * @param thePassedOutputLimit Maximum number of output characters kept for
+   *    the tests that succeed, 0 to discard the output, or -1 to keep all the
+   *    output.
+   */
+  public OutputSettings(final long theMemoryBudget,
+      final int thePassedOutputLimit) {
+    Validate.isTrue(thePassedOutputLimit >= -1, "The limit must be greater"
+        + " than or equals to -1.");
+
+    store = new CaptureStore(theMemoryBudget);
+    passedOutputLimit = thePassedOutputLimit;
+  }
+
+  /**
+   * Creates a buffer which shares the memory budget of the run.
+   *
+   * @return Returns the new buffer. Never returns null.
+   */
+  public CaptureBuffer createBuffer() {
+    return new CaptureBuffer(store);
+  }
+
+  /**
+   * Creates a list of assertions which shares the messages table of the run.
+   *
+   * @return Returns the new list. Never returns null.
+   */
+  public AssertionList createAssertions() {
+    return new AssertionList(messages);
+  }
+
+  /**
+   * Returns the maximum number of output characters kept for the tests that
+   * succeed, 0 to discard the output, or -1 to keep all the output.
+   */
+  public int getPassedOutputLimit() {
+    return passedOutputLimit;
+  }
+
+  /**
+   * Deletes the content spilled by the buffers of the run. The spilled
+   * content cannot be read after the settings are closed.
+   */
+  public void close() throws IOException {
+    store.close();
+  }
+}
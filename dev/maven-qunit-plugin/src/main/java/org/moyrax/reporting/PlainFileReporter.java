@@ -1,16 +1,18 @@
 package org.moyrax.reporting;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.Writer;
 
 import org.apache.commons.lang.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.moyrax.util.Trace;
 
 /**
- * Report operations to the file system in plain text.
+ * Report operations to the file system in plain text. Each page is written
+ * to its own file through a {@link ChannelWriter}, which is opened when the
+ * page starts and closed when the page is done.
  *
  * @author Matias Mirabelli &lt;lumen.night@gmail.com&gt;
  * @since 1.2.2
@@ -25,9 +27,10 @@ public class PlainFileReporter extends AbstractReporter {
   private File outputDir;
 
   /**
-   * Opened {@link OutputStream} for the current report file.
+   * Opened {@link Writer} for the current report file, or null if there's no
+   * open file.
    */
-  private OutputStream fileOut;
+  private ChannelWriter fileWriter;
 
   /**
    * Creates a new file reporter and sets the output directory.
@@ -95,7 +98,13 @@ public class PlainFileReporter extends AbstractReporter {
     Validate.notNull(operation, "The operation cannot be null.");
 
     if (status == ReportStatus.DONE) {
-      closeFile(operation);
+      Trace.Span span = Trace.start(Trace.REPORT, buildFileName(operation));
+
+      try {
+        closeFile(operation);
+      } finally {
+        span.end();
+      }
     } else {
       super.stopped(operation, status);
     }
@@ -116,10 +125,15 @@ public class PlainFileReporter extends AbstractReporter {
   protected <T extends ReportEntry> void report(final Operation<T> operation,
       final String message) {
 
-    OutputStream output = getFileOut();
+    Writer output = getFileWriter();
+
+    if (output == null) {
+      return;
+    }
 
     try {
-      output.write(message.concat("\n").getBytes());
+      output.write(message);
+      output.write('\n');
     } catch (IOException ex) {
       String fileName = buildFileName(operation);
       logger.error("Cannot write to the report file: " + fileName, ex);
@@ -157,7 +171,8 @@ public class PlainFileReporter extends AbstractReporter {
 
 
   /**
-   * Creates a new report file for the specified operation.
+   * Creates a new report file for the specified operation. If the file of
+   * the previous operation is still open, it's closed first.
    *
    * @param operation Operation for which the report file will be created. It
    *    cannot be null.
@@ -165,27 +180,29 @@ public class PlainFileReporter extends AbstractReporter {
   protected void openFile(final Operation<?> operation) {
     Validate.notNull(operation, "The operation cannot be null.");
 
+    if (fileWriter != null) {
+      closeFile(operation);
+    }
+
     File output = new File(outputDir, buildFileName(operation));
 
     try {
-      output.createNewFile();
-
-      fileOut = new FileOutputStream(output);
+      fileWriter = new ChannelWriter(output);
     } catch (IOException ex) {
       throw new RuntimeException("Cannot create the report file.", ex);
     }
   }
 
   /**
-   * Returns the {@link OutputStream} used to write data to the operation's
-   * report file.
+   * Returns the {@link Writer} used to write data to the operation's report
+   * file. The text is written in UTF-8.
    *
-   * @return Returns the {@link OutputStream} for writing the report file
-   *    related to the current operation, or <code>null</code> if the report
-   *    file is not created.
+   * @return Returns the {@link Writer} for writing the report file related to
+   *    the current operation, or <code>null</code> if the report file is not
+   *    open.
    */
-  protected OutputStream getFileOut() {
-    return fileOut;
+  protected Writer getFileWriter() {
+    return fileWriter;
   }
 
   /**
@@ -197,14 +214,14 @@ public class PlainFileReporter extends AbstractReporter {
   protected void closeFile(final Operation<?> operation) {
     Validate.notNull(operation, "The operation cannot be null.");
 
-    OutputStream out = getFileOut();
-
-    if (out != null) {
-
+    if (fileWriter != null) {
       try {
-        out.close();
+        fileWriter.close();
       } catch (IOException ex) {
-        // Nevermind.
+        logger.error("Cannot close the report file: "
+            + buildFileName(operation), ex);
+      } finally {
+        fileWriter = null;
       }
     }
   }
@@ -4,6 +4,7 @@ import org.apache.commons.lang.Validate;
 
 /**
  * Contains the basic information of a report generated by a {@link Reporter}.
+ * The names are shared between the entries through {@link Names}.
  *
  * @author Matias Mirabelli &lt;lumen.night@gmail&gt;
  * @since 1.2.2
@@ -35,7 +36,7 @@ public abstract class ReportEntry {
   public ReportEntry(final String aName) {
     Validate.notEmpty(aName, "The name cannot be null or empty.");
 
-    this.name = aName;
+    this.name = Names.intern(aName);
   }
 
   /**
@@ -52,7 +53,7 @@ public abstract class ReportEntry {
    * @param aName Report name. It cannot be null or empty.
    */
   public void setName(final String aName) {
-    this.name = aName;
+    this.name = Names.intern(aName);
   }
 
   /**
@@ -68,7 +69,7 @@ public abstract class ReportEntry {
    * @param aGroup Name of the group. It can be null.
    */
   public void setGroup(final String aGroup) {
-    this.group = aGroup;
+    this.group = Names.intern(aGroup);
   }
 
   /**
@@ -87,6 +88,6 @@ public abstract class ReportEntry {
    *    be null.
    */
   public void setSourceName(final String theSourceName) {
-    this.sourceName = theSourceName;
+    this.sourceName = Names.intern(theSourceName);
   }
 }
@@ -0,0 +1,200 @@
+package org.moyrax.reporting;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Notification to a {@link Reporter}, queued by the {@link ReportPipeline}
+ * until the reporter's thread delivers it.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public final class ReportEvent {
+  /**
+   * Reporter methods which can be invoked by an event.
+   */
+  private enum Type {
+    STARTED, SUCCEED, FAILED, INFO, WARN, DEBUG, FATAL, BARRIER
+  }
+
+  /** Reporter method to invoke. */
+  private final Type type;
+
+  /** Reported operation, if the event has one. */
+  private final Operation<ReportEntry> operation;
+
+  /** Status of the operation, if the event has one. */
+  private final Status<ReportEntry> status;
+
+  /** Reported message, if the event has one. */
+  private final String message;
+
+  /** Cause of a fatal error, if any. */
+  private final Throwable cause;
+
+  /** Action run by a barrier once all the reporters received it. */
+  private Runnable action;
+
+  /** Number of reporters which didn't receive the barrier yet. */
+  private AtomicInteger pending;
+
+  /**
+   * Creates a new event.
+   */
+  private ReportEvent(final Type theType,
+      final Operation<ReportEntry> theOperation,
+      final Status<ReportEntry> theStatus, final String theMessage,
+      final Throwable theCause) {
+    type = theType;
+    operation = theOperation;
+    status = theStatus;
+    message = theMessage;
+    cause = theCause;
+  }
+
+  /**
+   * Creates an event for {@link Reporter#started(Operation, Status)}.
+   *
+   * @param operation Started operation. It cannot be null.
+   * @param status Status of the operation. It cannot be null.
+   */
+  public static <T extends ReportEntry> ReportEvent started(
+      final Operation<T> operation, final Status<T> status) {
+    return create(Type.STARTED, operation, status);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#succeed(Operation, Status)}.
+   *
+   * @param operation Succeeded operation. It cannot be null.
+   * @param status Status of the operation. It cannot be null.
+   */
+  public static <T extends ReportEntry> ReportEvent succeed(
+      final Operation<T> operation, final Status<T> status) {
+    return create(Type.SUCCEED, operation, status);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#failed(Operation, Status)}.
+   *
+   * @param operation Failed operation. It cannot be null.
+   * @param status Status of the operation. It cannot be null.
+   */
+  public static <T extends ReportEntry> ReportEvent failed(
+      final Operation<T> operation, final Status<T> status) {
+    return create(Type.FAILED, operation, status);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#info(String)}.
+   *
+   * @param message Message to report. It can be null or empty.
+   */
+  public static ReportEvent info(final String message) {
+    return new ReportEvent(Type.INFO, null, null, message, null);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#warn(String)}.
+   *
+   * @param message Message to report. It can be null or empty.
+   */
+  public static ReportEvent warn(final String message) {
+    return new ReportEvent(Type.WARN, null, null, message, null);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#debug(String)}.
+   *
+   * @param message Message to report. It can be null or empty.
+   */
+  public static ReportEvent debug(final String message) {
+    return new ReportEvent(Type.DEBUG, null, null, message, null);
+  }
+
+  /**
+   * Creates an event for {@link Reporter#fatal(String, Throwable)}.
+   *
+   * @param message Message to report. It can be null or empty.
+   * @param cause Cause of the error. It can be null.
+   */
+  public static ReportEvent fatal(final String message,
+      final Throwable cause) {
+    return new ReportEvent(Type.FATAL, null, null, message, cause);
+  }
+
+  /**
+   * Creates a barrier event, which runs an action once it's delivered to all
+   * the reporters. Since the reporters receive the events in order, the
+   * action runs after all the previous events were reported.
+   *
+   * @param action Action to run. It cannot be null.
+   * @param reporters Number of reporters which receive the event. It must be
+   *    greater than zero.
+   */
+  public static ReportEvent barrier(final Runnable action,
+      final int reporters) {
+    Validate.notNull(action, "The action cannot be null.");
+    Validate.isTrue(reporters > 0, "The number of reporters must be greater"
+        + " than zero.");
+
+    ReportEvent event = new ReportEvent(Type.BARRIER, null, null, null, null);
+    event.action = action;
+    event.pending = new AtomicInteger(reporters);
+
+    return event;
+  }
+
+  /**
+   * Delivers this event to the specified reporter.
+   *
+   * @param reporter Reporter to notify. It cannot be null.
+   */
+  public void deliver(final Reporter reporter) {
+    switch (type) {
+    case STARTED:
+      reporter.started(operation, status);
+      break;
+    case SUCCEED:
+      reporter.succeed(operation, status);
+      break;
+    case FAILED:
+      reporter.failed(operation, status);
+      break;
+    case INFO:
+      reporter.info(message);
+      break;
+    case WARN:
+      reporter.warn(message);
+      break;
+    case DEBUG:
+      reporter.debug(message);
+      break;
+    case FATAL:
+      reporter.fatal(message, cause);
+      break;
+    case BARRIER:
+      if (pending.decrementAndGet() == 0) {
+        action.run();
+      }
+      break;
+    default:
+      throw new IllegalStateException("Unknown event type: " + type);
+    }
+  }
+
+  /**
+   * Creates an event for an operation.
+   */
+  @SuppressWarnings("unchecked")
+  private static ReportEvent create(final Type type,
+      final Operation<?> operation, final Status<?> status) {
+    Validate.notNull(operation, "The operation cannot be null.");
+    Validate.notNull(status, "The status cannot be null.");
+
+    return new ReportEvent(type, (Operation<ReportEntry>) operation,
+        (Status<ReportEntry>) status, null, null);
+  }
+}
@@ -0,0 +1,695 @@
+package org.moyrax.reporting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.Validate;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Merges the reports written by several runs, like the shards or forks of a
+ * single run, into one reports directory.
+ *
+ * Each page is identified by the name of its <code>TEST-*.xml</code> file.
+ * When a page was reported by more than one run, the page was retried, and
+ * only the last attempt is kept: the file modified last, or the file of the
+ * directory added last if they were modified at the same time. The files of
+ * the previous attempts are not read.
+ *
+ * The XML report of each kept page is parsed once with SAX and written to
+ * the output directory while it's read, collecting the totals of its suites
+ * on the way, so the memory used doesn't depend on the size of the reports.
+ * The reports have one root <code>testsuite</code> element per module, so
+ * they're parsed inside a synthetic root element.
+ * The plain text report of the page is copied as is. Finally, a summary with
+ * the totals of each page and of the whole run is written to
+ * {@link #SUMMARY_FILE}.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ReportMerger {
+  /** Name of the summary file. */
+  public static final String SUMMARY_FILE = "qunit-summary.xml";
+
+  /** Prefix of the report files. */
+  private static final String PREFIX = "TEST-";
+
+  /** Suffix of the XML report files. */
+  private static final String XML_SUFFIX = ".xml";
+
+  /** Suffix of the plain text report files. */
+  private static final String TEXT_SUFFIX = ".txt";
+
+  /** Start of the XML declaration. */
+  private static final String DECLARATION_START = "<?xml";
+
+  /** Synthetic root element of the parsed reports. */
+  private static final String ROOT = "qunit-report";
+
+  /** Directory to write the merged reports. */
+  private final File outputDirectory;
+
+  /** Directories to merge, in the order they were added. */
+  private final List<File> inputs = new ArrayList<File>();
+
+  /** Creates the SAX parsers. */
+  private final SAXParserFactory parserFactory;
+
+  /** Parses the times of the suites. */
+  private final NumberFormat numberFormat = NumberFormat.getInstance();
+
+  /**
+   * Creates a new merger.
+   *
+   * @param theOutputDirectory Directory to write the merged reports. It
+   *    cannot be null. It's created if it doesn't exist.
+   */
+  public ReportMerger(final File theOutputDirectory) {
+    Validate.notNull(theOutputDirectory, "The output directory cannot be"
+        + " null.");
+
+    outputDirectory = theOutputDirectory;
+    parserFactory = SAXParserFactory.newInstance();
+    parserFactory.setNamespaceAware(false);
+    parserFactory.setValidating(false);
+  }
+
+  /**
+   * Adds a directory with reports to merge. The directories added later
+   * take precedence when a page was modified at the same time in several
+   * directories.
+   *
+   * @param directory Directory to merge. It cannot be null, and it must
+   *    exist.
+   */
+  public void addInput(final File directory) {
+    Validate.notNull(directory, "The directory cannot be null.");
+    Validate.isTrue(directory.isDirectory(), "The directory " + directory
+        + " doesn't exist.");
+
+    inputs.add(directory);
+  }
+
+  /**
+   * Merges the reports of all the input directories.
+   *
+   * @return Returns the totals of the merged run. Never returns null.
+   */
+  public Summary merge() throws IOException {
+    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+      throw new IOException("Cannot create the directory " + outputDirectory);
+    }
+
+    TreeMap<String, Page> pages = new TreeMap<String, Page>();
+
+    for (File input : inputs) {
+      File[] files = input.listFiles(new FilenameFilter() {
+        public boolean accept(final File dir, final String name) {
+          return name.startsWith(PREFIX) && name.endsWith(XML_SUFFIX);
+        }
+      });
+
+      if (files == null) {
+        throw new IOException("Cannot list the directory " + input);
+      }
+
+      for (File file : files) {
+        Page page = pages.get(file.getName());
+
+        if (page == null) {
+          pages.put(file.getName(), new Page(file));
+        } else {
+          page.addAttempt(file);
+        }
+      }
+    }
+
+    Summary summary = new Summary();
+
+    for (Page page : pages.values()) {
+      mergePage(page);
+      summary.add(page);
+    }
+
+    writeSummary(summary);
+
+    return summary;
+  }
+
+  /**
+   * Writes the reports of the kept attempt of a page to the output
+   * directory.
+   */
+  private void mergePage(final Page page) throws IOException {
+    File target = new File(outputDirectory, page.file.getName());
+
+    if (target.getCanonicalFile().equals(page.file.getCanonicalFile())) {
+      throw new IOException("The output directory cannot be one of the"
+          + " merged directories: " + outputDirectory);
+    }
+
+    Writer writer = new ChannelWriter(target);
+    Reader input = openReport(page.file);
+
+    try {
+      InputSource source = new InputSource(input);
+
+      source.setSystemId(page.file.toURI().toString());
+      createParser().parse(source, new CopyHandler(writer, page));
+    } catch (SAXException ex) {
+      throw (IOException) new IOException("Cannot parse the report "
+          + page.file).initCause(ex);
+    } finally {
+      try {
+        input.close();
+      } finally {
+        writer.close();
+      }
+    }
+
+    String name = page.file.getName();
+    File text = new File(page.file.getParentFile(), name.substring(0,
+        name.length() - XML_SUFFIX.length()) + TEXT_SUFFIX);
+
+    if (text.isFile()) {
+      copy(text, new File(outputDirectory, text.getName()));
+    }
+  }
+
+  /**
+   * Writes the summary of the merged run.
+   */
+  private void writeSummary(final Summary summary) throws IOException {
+    Writer writer = new ChannelWriter(new File(outputDirectory,
+        SUMMARY_FILE));
+
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+      writer.write("<qunit-summary");
+      writeAttribute(writer, "pages", summary.getPages());
+      writeAttribute(writer, "retried", summary.getRetried());
+      writeAttribute(writer, "suites", summary.getSuites());
+      writeAttribute(writer, "tests", summary.getTests());
+      writeAttribute(writer, "failures", summary.getFailures());
+      writeAttribute(writer, "errors", summary.getErrors());
+      writeAttribute(writer, "time", formatTime(summary.getTime()));
+      writer.write(">\n");
+
+      for (Page page : summary.pages) {
+        writer.write("  <page");
+        writeAttribute(writer, "file", page.file.getName());
+        writeAttribute(writer, "source", page.file.getParent());
+        writeAttribute(writer, "attempts", page.attempts);
+        writeAttribute(writer, "suites", page.suites);
+        writeAttribute(writer, "tests", page.tests);
+        writeAttribute(writer, "failures", page.failures);
+        writeAttribute(writer, "errors", page.errors);
+        writeAttribute(writer, "time", formatTime(page.time));
+        writer.write("/>\n");
+      }
+
+      writer.write("</qunit-summary>\n");
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Opens a report as a document with a single root element. The XML
+   * declaration of the report is skipped.
+   */
+  private static Reader openReport(final File file) throws IOException {
+    PushbackReader report = new PushbackReader(new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), "UTF-8")),
+        DECLARATION_START.length());
+
+    try {
+      char[] start = new char[DECLARATION_START.length()];
+      int read = 0;
+      int count;
+
+      while (read < start.length
+          && (count = report.read(start, read, start.length - read)) != -1) {
+        read += count;
+      }
+
+      if (read == start.length
+          && DECLARATION_START.equals(new String(start))) {
+        int previous = 0;
+        int current;
+
+        while ((current = report.read()) != -1
+            && !(previous == '?' && current == '>')) {
+          previous = current;
+        }
+      } else {
+        report.unread(start, 0, read);
+      }
+    } catch (IOException ex) {
+      report.close();
+      throw ex;
+    }
+
+    Reader[] parts = new Reader[] {
+      new StringReader("<" + ROOT + ">"), report,
+      new StringReader("</" + ROOT + ">")
+    };
+
+    return new SequenceReader(parts);
+  }
+
+  /**
+   * Creates a parser which doesn't resolve external entities.
+   */
+  private SAXParser createParser() throws IOException {
+    try {
+      SAXParser parser = parserFactory.newSAXParser();
+
+      parser.getXMLReader().setEntityResolver(new DefaultHandler() {
+        @Override
+        public InputSource resolveEntity(final String publicId,
+            final String systemId) {
+          return new InputSource(new StringReader(""));
+        }
+      });
+
+      return parser;
+    } catch (ParserConfigurationException ex) {
+      throw (IOException) new IOException("Cannot create the XML parser.")
+          .initCause(ex);
+    } catch (SAXException ex) {
+      throw (IOException) new IOException("Cannot create the XML parser.")
+          .initCause(ex);
+    }
+  }
+
+  /**
+   * Parses a number attribute of a suite. Missing or invalid values count as
+   * zero.
+   */
+  private double parseNumber(final String value) {
+    if (value == null || value.length() == 0) {
+      return 0;
+    }
+
+    try {
+      return numberFormat.parse(value).doubleValue();
+    } catch (ParseException ex) {
+      return 0;
+    }
+  }
+
+  /**
+   * Formats a time in seconds in the same way the reporters do.
+   */
+  private String formatTime(final double seconds) {
+    return numberFormat.format(seconds);
+  }
+
+  /**
+   * Writes an attribute of an element.
+   */
+  private static void writeAttribute(final Writer writer, final String name,
+      final Object value) throws IOException {
+    writer.write(" " + name + "=\"");
+    writer.write(StringEscapeUtils.escapeXml(String.valueOf(value)));
+    writer.write("\"");
+  }
+
+  /**
+   * Copies a file through the file channels.
+   */
+  private static void copy(final File source, final File target)
+      throws IOException {
+    FileChannel in = new FileInputStream(source).getChannel();
+
+    try {
+      FileChannel out = new FileOutputStream(target).getChannel();
+
+      try {
+        long position = 0;
+        long size = in.size();
+
+        while (position < size) {
+          position += in.transferTo(position, size - position, out);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the parsed elements to the merged report, and collects the totals
+   * of the suites.
+   */
+  private class CopyHandler extends DefaultHandler {
+    /** Writer of the merged report. */
+    private final Writer writer;
+
+    /** Page being merged. */
+    private final Page page;
+
+    /** Indicates whether the last start tag is still open. */
+    private boolean open;
+
+    /** Depth of the current element, 0 for the synthetic root. */
+    private int depth = -1;
+
+    /**
+     * Creates a new handler.
+     */
+    private CopyHandler(final Writer theWriter, final Page thePage) {
+      writer = theWriter;
+      page = thePage;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startDocument() throws SAXException {
+      write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startElement(final String uri, final String localName,
+        final String qName, final Attributes attributes)
+        throws SAXException {
+      depth++;
+
+      if (depth == 0) {
+        return;
+      }
+
+      closeStartTag();
+
+      if ("testsuite".equals(qName)) {
+        page.suites++;
+        page.tests += (int) parseNumber(attributes.getValue("tests"));
+        page.failures += (int) parseNumber(attributes.getValue("failures"));
+        page.errors += (int) parseNumber(attributes.getValue("errors"));
+        page.time += parseNumber(attributes.getValue("time"));
+      }
+
+      StringBuilder tag = new StringBuilder("<").append(qName);
+
+      for (int i = 0; i < attributes.getLength(); i++) {
+        tag.append(' ').append(attributes.getQName(i)).append("=\"")
+          .append(StringEscapeUtils.escapeXml(attributes.getValue(i)))
+          .append('"');
+      }
+
+      write(tag.toString());
+      open = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endElement(final String uri, final String localName,
+        final String qName) throws SAXException {
+      depth--;
+
+      if (depth < 0) {
+        return;
+      }
+
+      if (open) {
+        write("/>");
+        open = false;
+      } else {
+        write("</" + qName + ">");
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characters(final char[] chars, final int start,
+        final int length) throws SAXException {
+      closeStartTag();
+
+      try {
+        StringEscapeUtils.escapeXml(writer, new String(chars, start, length));
+      } catch (IOException ex) {
+        throw new SAXException(ex);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ignorableWhitespace(final char[] chars, final int start,
+        final int length) throws SAXException {
+      characters(chars, start, length);
+    }
+
+    /**
+     * Closes the last start tag, if it's still open.
+     */
+    private void closeStartTag() throws SAXException {
+      if (open) {
+        write(">");
+        open = false;
+      }
+    }
+
+    /**
+     * Writes text to the merged report.
+     */
+    private void write(final String text) throws SAXException {
+      try {
+        writer.write(text);
+      } catch (IOException ex) {
+        throw new SAXException(ex);
+      }
+    }
+  }
+
+  /**
+   * Reads a sequence of readers one after the other.
+   */
+  private static class SequenceReader extends Reader {
+    /** Readers to read. */
+    private final Reader[] parts;
+
+    /** Index of the reader being read. */
+    private int current;
+
+    /**
+     * Creates a reader over the specified readers.
+     */
+    private SequenceReader(final Reader[] theParts) {
+      parts = theParts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final char[] chars, final int offset, final int length)
+        throws IOException {
+      while (current < parts.length) {
+        int read = parts[current].read(chars, offset, length);
+
+        if (read != -1) {
+          return read;
+        }
+
+        current++;
+      }
+
+      return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      for (Reader part : parts) {
+        part.close();
+      }
+    }
+  }
+
+  /**
+   * Report of a page, with the totals of its kept attempt.
+   */
+  private static class Page {
+    /** Report file of the kept attempt. */
+    private File file;
+
+    /** Number of times the page was reported. */
+    private int attempts = 1;
+
+    /** Number of suites in the page. */
+    private int suites;
+
+    /** Number of tests in the page. */
+    private int tests;
+
+    /** Number of tests with failures in the page. */
+    private int failures;
+
+    /** Number of tests with errors in the page. */
+    private int errors;
+
+    /** Time spent by the suites of the page, in seconds. */
+    private double time;
+
+    /**
+     * Creates a page reported in the specified file.
+     */
+    private Page(final File theFile) {
+      file = theFile;
+    }
+
+    /**
+     * Adds a new attempt of this page, which is kept if it's not older than
+     * the current one.
+     */
+    private void addAttempt(final File attempt) {
+      attempts++;
+
+      if (attempt.lastModified() >= file.lastModified()) {
+        file = attempt;
+      }
+    }
+  }
+
+  /**
+   * Totals of a merged run.
+   */
+  public static class Summary {
+    /** Merged pages, by file name. */
+    private final List<Page> pages = new ArrayList<Page>();
+
+    /** Number of discarded attempts of retried pages. */
+    private int retried;
+
+    /** Number of suites. */
+    private int suites;
+
+    /** Number of tests. */
+    private int tests;
+
+    /** Number of tests with failures. */
+    private int failures;
+
+    /** Number of tests with errors. */
+    private int errors;
+
+    /** Time spent by all the suites, in seconds. */
+    private double time;
+
+    /**
+     * Adds the totals of a merged page.
+     */
+    private void add(final Page page) {
+      pages.add(page);
+      retried += page.attempts - 1;
+      suites += page.suites;
+      tests += page.tests;
+      failures += page.failures;
+      errors += page.errors;
+      time += page.time;
+    }
+
+    /**
+     * Returns the number of merged pages.
+     */
+    public int getPages() {
+      return pages.size();
+    }
+
+    /**
+     * Returns the names of the merged report files, in order.
+     */
+    public List<String> getFiles() {
+      List<String> files = new ArrayList<String>();
+
+      for (Page page : pages) {
+        files.add(page.file.getName());
+      }
+
+      return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Returns the number of attempts of retried pages which were discarded.
+     */
+    public int getRetried() {
+      return retried;
+    }
+
+    /**
+     * Returns the number of suites.
+     */
+    public int getSuites() {
+      return suites;
+    }
+
+    /**
+     * Returns the number of tests.
+     */
+    public int getTests() {
+      return tests;
+    }
+
+    /**
+     * Returns the number of tests with failures.
+     */
+    public int getFailures() {
+      return failures;
+    }
+
+    /**
+     * Returns the number of tests with errors.
+     */
+    public int getErrors() {
+      return errors;
+    }
+
+    /**
+     * Returns the time spent by all the suites, in seconds.
+     */
+    public double getTime() {
+      return time;
+    }
+  }
+}
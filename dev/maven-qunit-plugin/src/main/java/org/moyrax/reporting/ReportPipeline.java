@@ -0,0 +1,271 @@
+package org.moyrax.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Delivers report events to a set of reporters asynchronously, so the thread
+ * which produces the results is not stalled by the reporters' I/O.
+ *
+ * The events are published to a bounded ring shared by all the reporters.
+ * Each reporter has its own thread, which drains the ring in batches and
+ * keeps its own position, so every reporter receives all the events in the
+ * same order they were published. The producer blocks when the ring is full
+ * until the slowest reporter catches up. Only one thread may publish events.
+ *
+ * {@link #flush()} is a barrier which waits until all the published events
+ * were delivered. Errors thrown by the reporters, including {@link Error}s,
+ * are rethrown from there; a reporter which fails keeps receiving the
+ * following events, so the producer is never blocked by a failed reporter.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class ReportPipeline {
+  /** Default number of events in the ring. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** Maximum number of events delivered in a single batch. */
+  private static final int BATCH_SIZE = 64;
+
+  /** Published events. Its size is a power of two. */
+  private final ReportEvent[] ring;
+
+  /** Mask to convert a sequence to a position in the ring. */
+  private final int mask;
+
+  /** Consumer of each reporter. */
+  private final List<Consumer> consumers = new ArrayList<Consumer>();
+
+  /** Guards the sequences and the state of the pipeline. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Signaled when new events are published or the pipeline is closed. */
+  private final Condition published = lock.newCondition();
+
+  /** Signaled when a consumer delivers events. */
+  private final Condition delivered = lock.newCondition();
+
+  /** Number of events published so far. */
+  private long sequence;
+
+  /** Indicates whether this pipeline was closed. */
+  private boolean closed;
+
+  /**
+   * Creates a new pipeline and starts the reporters' threads.
+   *
+   * @param reporters Reporters to deliver the events. It cannot be null.
+   * @param capacity Number of events the ring can hold. It's rounded up to a
+   *    power of two, and must be greater than zero.
+   */
+  public ReportPipeline(final List<Reporter> reporters, final int capacity) {
+    Validate.notNull(reporters, "The reporters cannot be null.");
+    Validate.isTrue(capacity > 0, "The capacity must be greater than zero.");
+
+    int size = Integer.highestOneBit(capacity);
+
+    if (size < capacity) {
+      size <<= 1;
+    }
+
+    ring = new ReportEvent[size];
+    mask = size - 1;
+
+    for (Reporter reporter : reporters) {
+      Consumer consumer = new Consumer(reporter);
+
+      consumers.add(consumer);
+      consumer.start();
+    }
+  }
+
+  /**
+   * Publishes an event. It blocks while the ring is full.
+   *
+   * @param event Event to publish. It cannot be null.
+   */
+  public void publish(final ReportEvent event) {
+    Validate.notNull(event, "The event cannot be null.");
+
+    lock.lock();
+
+    try {
+      Validate.isTrue(!closed, "The pipeline is closed.");
+
+      while (sequence - getSlowest() >= ring.length) {
+        delivered.awaitUninterruptibly();
+      }
+
+      ring[(int) (sequence & mask)] = event;
+      sequence++;
+
+      published.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until all the published events were delivered to all the
+   * reporters.
+   *
+   * @throws IllegalStateException If a reporter failed to handle an event.
+   *    Only the first error of each reporter is reported.
+   */
+  public void flush() {
+    lock.lock();
+
+    try {
+      while (getSlowest() < sequence) {
+        delivered.awaitUninterruptibly();
+      }
+
+      for (Consumer consumer : consumers) {
+        Throwable error = consumer.error;
+
+        if (error != null) {
+          consumer.error = null;
+
+          throw new IllegalStateException("The reporter "
+              + consumer.reporter.getClass().getName() + " failed.", error);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Delivers the pending events and stops the reporters' threads. No events
+   * can be published after the pipeline is closed.
+   */
+  public void close() {
+    try {
+      flush();
+    } finally {
+      lock.lock();
+
+      try {
+        closed = true;
+        published.signalAll();
+      } finally {
+        lock.unlock();
+      }
+
+      for (Consumer consumer : consumers) {
+        try {
+          consumer.join();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the sequence of the reporter which is most behind. It must be
+   * invoked holding the lock.
+   */
+  private long getSlowest() {
+    long slowest = sequence;
+
+    for (Consumer consumer : consumers) {
+      slowest = Math.min(slowest, consumer.position);
+    }
+
+    return slowest;
+  }
+
+  /**
+   * Thread which delivers the events to a single reporter.
+   */
+  private class Consumer extends Thread {
+    /** Reporter to deliver the events. */
+    private final Reporter reporter;
+
+    /** Number of events delivered so far. Guarded by the lock. */
+    private long position;
+
+    /** First error thrown by the reporter. Guarded by the lock. */
+    private Throwable error;
+
+    /**
+     * Creates a new consumer for the specified reporter.
+     */
+    private Consumer(final Reporter theReporter) {
+      super("qunit-reporter-" + theReporter.getClass().getSimpleName());
+
+      reporter = theReporter;
+
+      setDaemon(true);
+    }
+
+    /**
+     * Delivers the events until the pipeline is closed.
+     */
+    @Override
+    public void run() {
+      while (true) {
+        long start;
+        long end;
+
+        lock.lock();
+
+        try {
+          while (position == sequence && !closed) {
+            published.awaitUninterruptibly();
+          }
+
+          if (position == sequence) {
+            return;
+          }
+
+          start = position;
+          end = Math.min(sequence, start + BATCH_SIZE);
+        } finally {
+          lock.unlock();
+        }
+
+        Throwable batchError = null;
+
+        // The slots are not reused until the position is advanced.
+        for (long i = start; i < end; i++) {
+          try {
+            ring[(int) (i & mask)].deliver(reporter);
+          } catch (Throwable ex) {
+            if (batchError == null) {
+              batchError = ex;
+            }
+          }
+        }
+
+        lock.lock();
+
+        try {
+          long slowest = getSlowest();
+
+          position = end;
+
+          // Releases the events that were delivered to all the reporters, so
+          // they don't stay reachable until the slot is reused.
+          for (long i = slowest, last = getSlowest(); i < last; i++) {
+            ring[(int) (i & mask)] = null;
+          }
+
+          if (error == null) {
+            error = batchError;
+          }
+
+          delivered.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+}
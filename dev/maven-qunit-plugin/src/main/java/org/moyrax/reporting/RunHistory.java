@@ -0,0 +1,1000 @@
+package org.moyrax.reporting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * File based history of the test runs. It keeps the duration, the result and
+ * the number of assertions of each page and each test in the last
+ * {@link #WINDOW} runs, so the runs can be scheduled by their expected
+ * duration and the flaky tests can be told apart from the broken ones.
+ *
+ * The history has two files:
+ * <ul>
+ *   <li><code>history.log</code> is an append-only log with one record per
+ *   page or test run. Each record has its length and checksum, so a record
+ *   half written by an interrupted run is detected and dropped.</li>
+ *   <li><code>history.idx</code> has the samples of each page and test
+ *   sorted by key, and the length of the log it covers. It's kept open and
+ *   searched in place with positional reads, so the statistics of a page are
+ *   found without reading the whole history.</li>
+ * </ul>
+ *
+ * The records appended after the index was written are read when the
+ * history is opened, and they're combined with the indexed samples. When
+ * those records grow beyond a quarter of the indexed log, the log is
+ * compacted: it's rewritten with only the samples in the window, and the
+ * index is written again. The old index is closed and deleted before the
+ * log is replaced, so an interrupted compaction leaves no index instead of an
+ * index of another log, and no file is replaced while it's open.
+ *
+ * The history is locked through <code>history.lock</code> while it's open,
+ * so builds which share the directory don't write it at the same time. It
+ * cannot be opened while another build holds the lock.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ * @since 1.2.5
+ */
+public class RunHistory {
+  /** Number of runs kept for each page and test. */
+  public static final int WINDOW = 32;
+
+  /** Name of the log file. */
+  private static final String LOG_FILE = "history.log";
+
+  /** Name of the index file. */
+  private static final String INDEX_FILE = "history.idx";
+
+  /** Name of the lock file. */
+  private static final String LOCK_FILE = "history.lock";
+
+  /** Identifies the index files. */
+  private static final int MAGIC = 0x51484958;
+
+  /** Version of the files format. */
+  private static final int VERSION = 1;
+
+  /** Size of the index header, in bytes. */
+  private static final int HEADER_SIZE = 20;
+
+  /** Minimum number of bytes appended to the log before compacting it. */
+  private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+  /** Separator of the parts of the keys. */
+  private static final char SEPARATOR = '\u0000';
+
+  /** Orders the keys by their UTF-8 bytes, like the index. */
+  private static final Comparator<byte[]> KEY_ORDER =
+    new Comparator<byte[]>() {
+    public int compare(final byte[] first, final byte[] second) {
+      return compareKeys(first, second, 0, second.length);
+    }
+  };
+
+  /** Directory of the history. */
+  private final File directory;
+
+  /** Samples appended after the index was written, by key. */
+  private final Map<String, Stats> recent = new HashMap<String, Stats>();
+
+  /** Channel of the index, or null if there's no index. */
+  private FileChannel index;
+
+  /** Number of entries in the index. */
+  private int indexEntries;
+
+  /** Length of the log covered by the index. */
+  private long indexedLength;
+
+  /** Writer of the log. */
+  private DataOutputStream log;
+
+  /** Length of the log. */
+  private long logLength;
+
+  /** Buffer of the record being appended. */
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+  /** Computes the checksum of the records. */
+  private final CRC32 checksum = new CRC32();
+
+  /** Channel of the lock file, or null if the history is not locked. */
+  private FileChannel lockChannel;
+
+  /** Lock held while the history is open. */
+  private FileLock lock;
+
+  /**
+   * Opens the history.
+   */
+  private RunHistory(final File theDirectory) {
+    directory = theDirectory;
+  }
+
+  /**
+   * Opens the history in the specified directory, creating it if it
+   * doesn't exist. The history is locked until it's closed.
+   *
+   * @param directory Directory of the history. It cannot be null.
+   *
+   * @return Returns the history. Never returns null.
+   *
+   * @throws IOException If the history cannot be read, or if another build
+   *    holds its lock.
+   */
+  public static RunHistory open(final File directory) throws IOException {
+    Validate.notNull(directory, "The directory cannot be null.");
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the directory " + directory);
+    }
+
+    RunHistory history = new RunHistory(directory);
+    boolean loaded = false;
+
+    history.lock();
+
+    try {
+      history.load();
+      loaded = true;
+    } finally {
+      if (!loaded) {
+        try {
+          history.closeIndex();
+        } finally {
+          history.unlock();
+        }
+      }
+    }
+
+    return history;
+  }
+
+  /**
+   * Records a run of a page.
+   *
+   * @param page Name of the page. It cannot be null.
+   * @param duration Time spent by the page, in milliseconds.
+   * @param success Indicates whether all the tests of the page succeeded.
+   * @param assertions Number of assertions of the page.
+   */
+  public void recordPage(final String page, final long duration,
+      final boolean success, final int assertions) throws IOException {
+    Validate.notNull(page, "The page cannot be null.");
+
+    append(page, duration, success, assertions);
+  }
+
+  /**
+   * Records a run of a test.
+   *
+   * @param page Name of the page which ran the test. It cannot be null.
+   * @param module Name of the test's module. It cannot be null.
+   * @param test Name of the test. It cannot be null.
+   * @param duration Time spent by the test, in milliseconds.
+   * @param success Indicates whether the test succeeded.
+   * @param assertions Number of assertions of the test.
+   */
+  public void recordTest(final String page, final String module,
+      final String test, final long duration, final boolean success,
+      final int assertions) throws IOException {
+    Validate.notNull(page, "The page cannot be null.");
+    Validate.notNull(module, "The module cannot be null.");
+    Validate.notNull(test, "The test cannot be null.");
+
+    append(page + SEPARATOR + module + SEPARATOR + test, duration, success,
+        assertions);
+  }
+
+  /**
+   * Returns the statistics of the last runs of a page.
+   *
+   * @param page Name of the page. It cannot be null.
+   *
+   * @return Returns the statistics, or null if the page never ran.
+   */
+  public Stats getPageStats(final String page) {
+    Validate.notNull(page, "The page cannot be null.");
+
+    return getStats(page);
+  }
+
+  /**
+   * Returns the statistics of the last runs of a test.
+   *
+   * @param page Name of the page which ran the test. It cannot be null.
+   * @param module Name of the test's module. It cannot be null.
+   * @param test Name of the test. It cannot be null.
+   *
+   * @return Returns the statistics, or null if the test never ran.
+   */
+  public Stats getTestStats(final String page, final String module,
+      final String test) {
+    Validate.notNull(page, "The page cannot be null.");
+    Validate.notNull(module, "The module cannot be null.");
+    Validate.notNull(test, "The test cannot be null.");
+
+    return getStats(page + SEPARATOR + module + SEPARATOR + test);
+  }
+
+  /**
+   * Rewrites the log with only the runs in the window of each page and
+   * test, and writes the index again.
+   */
+  public void compact() throws IOException {
+    log.flush();
+
+    Map<String, Stats> samples = new HashMap<String, Stats>();
+
+    readLog(samples, 0);
+
+    List<byte[]> keys = new ArrayList<byte[]>();
+
+    for (String key : samples.keySet()) {
+      keys.add(encode(key));
+    }
+
+    Collections.sort(keys, KEY_ORDER);
+
+    log.close();
+    closeIndex();
+
+    File indexFile = new File(directory, INDEX_FILE);
+
+    if (indexFile.exists() && !indexFile.delete()) {
+      throw new IOException("Cannot write " + indexFile);
+    }
+
+    File compacted = new File(directory, LOG_FILE + ".tmp");
+    DataOutputStream output = openLog(compacted, false);
+
+    try {
+      for (byte[] key : keys) {
+        Stats stats = samples.get(decode(key));
+        int[] durations = stats.getDurations();
+        boolean[] outcomes = stats.getOutcomes();
+
+        for (int i = 0; i < durations.length; i++) {
+          writeRecord(output, key, durations[i], outcomes[i],
+              stats.lastAssertions);
+        }
+      }
+    } finally {
+      output.close();
+    }
+
+    replace(compacted, new File(directory, LOG_FILE));
+
+    logLength = new File(directory, LOG_FILE).length();
+
+    writeIndex(keys, samples, logLength);
+
+    recent.clear();
+    openIndex();
+
+    log = openLog(new File(directory, LOG_FILE), true);
+  }
+
+  /**
+   * Writes the appended runs to the disk and closes the history. The log is
+   * compacted if enough runs were appended since the index was written.
+   */
+  public void close() throws IOException {
+    if (log == null) {
+      return;
+    }
+
+    try {
+      log.flush();
+
+      long appended = logLength - indexedLength;
+
+      if (index == null || appended > Math.max(MIN_COMPACTION_SIZE,
+          indexedLength / 4)) {
+        compact();
+      }
+    } finally {
+      try {
+        log.close();
+      } finally {
+        log = null;
+
+        try {
+          closeIndex();
+        } finally {
+          unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Locks the history, so other builds cannot open it.
+   *
+   * @throws IOException If another build holds the lock.
+   */
+  private void lock() throws IOException {
+    lockChannel = new RandomAccessFile(new File(directory, LOCK_FILE), "rw")
+      .getChannel();
+
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException ex) {
+      // Another build in this JVM holds the lock.
+      lock = null;
+    }
+
+    if (lock == null) {
+      lockChannel.close();
+      lockChannel = null;
+
+      throw new IOException("The history " + directory + " is being written"
+          + " by another build.");
+    }
+  }
+
+  /**
+   * Releases the lock of the history, if it's held.
+   */
+  private void unlock() throws IOException {
+    if (lockChannel == null) {
+      return;
+    }
+
+    try {
+      lock.release();
+    } finally {
+      lockChannel.close();
+      lockChannel = null;
+      lock = null;
+    }
+  }
+
+  /**
+   * Returns the statistics of a key, combining the indexed and the recent
+   * samples.
+   */
+  private Stats getStats(final String key) {
+    Stats indexed = findIndexed(encode(key));
+    Stats appended = recent.get(key);
+
+    if (appended == null) {
+      return indexed;
+    }
+
+    if (indexed == null) {
+      return appended.copy();
+    }
+
+    int[] durations = appended.getDurations();
+    boolean[] outcomes = appended.getOutcomes();
+
+    for (int i = 0; i < durations.length; i++) {
+      indexed.add(durations[i], outcomes[i], appended.lastAssertions);
+    }
+
+    return indexed;
+  }
+
+  /**
+   * Loads the index and the records appended after it, and opens the log to
+   * append new records.
+   */
+  private void load() throws IOException {
+    File logFile = new File(directory, LOG_FILE);
+
+    openIndex();
+
+    if (index != null && indexedLength > logFile.length()) {
+      // The log was replaced or truncated after the index was written.
+      closeIndex();
+    }
+
+    long validLength = readLog(recent, index == null ? 0 : indexedLength);
+
+    if (index == null) {
+      indexedLength = 0;
+    }
+
+    if (logFile.exists() && validLength < logFile.length()) {
+      // Drops the record half written by an interrupted run.
+      RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+
+      try {
+        file.setLength(validLength);
+      } finally {
+        file.close();
+      }
+    }
+
+    logLength = validLength;
+    log = openLog(logFile, true);
+  }
+
+  /**
+   * Reads the records of the log from the specified position.
+   *
+   * @param samples Map to add the samples read, by key. It cannot be null.
+   * @param position Position of the first record.
+   *
+   * @return Returns the position after the last valid record.
+   */
+  private long readLog(final Map<String, Stats> samples, final long position)
+      throws IOException {
+    File logFile = new File(directory, LOG_FILE);
+
+    if (!logFile.exists()) {
+      return 0;
+    }
+
+    FileInputStream file = new FileInputStream(logFile);
+
+    file.getChannel().position(position);
+
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        file));
+
+    try {
+      long valid = position;
+
+      CRC32 recordChecksum = new CRC32();
+
+      while (true) {
+        int length;
+        byte[] payload;
+        long expected;
+
+        try {
+          length = input.readInt();
+          expected = input.readInt() & 0xffffffffL;
+
+          if (length < 0 || length > 0xffff + 64) {
+            break;
+          }
+
+          payload = new byte[length];
+          input.readFully(payload);
+        } catch (EOFException ex) {
+          break;
+        }
+
+        recordChecksum.reset();
+        recordChecksum.update(payload);
+
+        if (recordChecksum.getValue() != expected) {
+          break;
+        }
+
+        DataInputStream fields = new DataInputStream(
+            new ByteArrayInputStream(payload));
+        byte[] key = new byte[fields.readUnsignedShort()];
+
+        fields.readFully(key);
+
+        int duration = fields.readInt();
+        boolean success = fields.readBoolean();
+        int assertions = fields.readInt();
+        String name = decode(key);
+        Stats stats = samples.get(name);
+
+        if (stats == null) {
+          stats = new Stats();
+          samples.put(name, stats);
+        }
+
+        stats.add(duration, success, assertions);
+        valid += 8 + length;
+      }
+
+      return valid;
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Appends a record to the log and to the recent samples.
+   */
+  private void append(final String key, final long duration,
+      final boolean success, final int assertions) throws IOException {
+    Validate.isTrue(log != null, "The history is closed.");
+
+    byte[] encodedKey = encode(key);
+    int clippedDuration = (int) Math.max(0, Math.min(Integer.MAX_VALUE,
+        duration));
+
+    logLength += writeRecord(log, encodedKey, clippedDuration, success,
+        assertions);
+
+    Stats stats = recent.get(key);
+
+    if (stats == null) {
+      stats = new Stats();
+      recent.put(key, stats);
+    }
+
+    stats.add(clippedDuration, success, assertions);
+  }
+
+  /**
+   * Writes a record to a log.
+   *
+   * @return Returns the number of bytes written.
+   */
+  private int writeRecord(final DataOutputStream output, final byte[] key,
+      final int duration, final boolean success, final int assertions)
+      throws IOException {
+    Validate.isTrue(key.length <= 0xffff, "The key is too long.");
+
+    record.reset();
+
+    DataOutputStream fields = new DataOutputStream(record);
+
+    fields.writeShort(key.length);
+    fields.write(key);
+    fields.writeInt(duration);
+    fields.writeBoolean(success);
+    fields.writeInt(assertions);
+    fields.flush();
+
+    byte[] payload = record.toByteArray();
+
+    checksum.reset();
+    checksum.update(payload);
+
+    output.writeInt(payload.length);
+    output.writeInt((int) checksum.getValue());
+    output.write(payload);
+
+    return 8 + payload.length;
+  }
+
+  /**
+   * Writes the index of the specified samples.
+   */
+  private void writeIndex(final List<byte[]> keys,
+      final Map<String, Stats> samples, final long coveredLength)
+      throws IOException {
+    File temp = new File(directory, INDEX_FILE + ".tmp");
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(temp)));
+
+    try {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(coveredLength);
+      output.writeInt(keys.size());
+
+      int offset = 0;
+
+      for (byte[] key : keys) {
+        output.writeInt(offset);
+        offset += getEntrySize(key, samples.get(decode(key)));
+      }
+
+      for (byte[] key : keys) {
+        Stats stats = samples.get(decode(key));
+        int[] durations = stats.getDurations();
+        boolean[] outcomes = stats.getOutcomes();
+        long outcomeBits = 0;
+
+        for (int i = 0; i < outcomes.length; i++) {
+          if (outcomes[i]) {
+            outcomeBits |= 1L << i;
+          }
+        }
+
+        output.writeShort(key.length);
+        output.write(key);
+        output.writeInt(stats.lastAssertions);
+        output.writeLong(outcomeBits);
+        output.writeByte(durations.length);
+
+        for (int duration : durations) {
+          output.writeInt(duration);
+        }
+      }
+    } finally {
+      output.close();
+    }
+
+    replace(temp, new File(directory, INDEX_FILE));
+  }
+
+  /**
+   * Returns the number of bytes of an index entry.
+   */
+  private static int getEntrySize(final byte[] key, final Stats stats) {
+    return 2 + key.length + 4 + 8 + 1 + stats.count * 4;
+  }
+
+  /**
+   * Opens the index, if it exists and it's valid.
+   */
+  private void openIndex() throws IOException {
+    File indexFile = new File(directory, INDEX_FILE);
+
+    if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+      return;
+    }
+
+    FileChannel channel = new RandomAccessFile(indexFile, "r").getChannel();
+    ByteBuffer header = read(channel, 0, HEADER_SIZE);
+
+    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+      channel.close();
+      return;
+    }
+
+    index = channel;
+    indexedLength = header.getLong(8);
+    indexEntries = header.getInt(16);
+  }
+
+  /**
+   * Closes the index, if it's open. The index file can be replaced once it's
+   * closed.
+   */
+  private void closeIndex() throws IOException {
+    indexEntries = 0;
+
+    if (index == null) {
+      return;
+    }
+
+    try {
+      index.close();
+    } finally {
+      index = null;
+    }
+  }
+
+  /**
+   * Searches a key in the index.
+   *
+   * @return Returns the indexed samples, or null if the key is not indexed.
+   */
+  private Stats findIndexed(final byte[] key) {
+    if (index == null) {
+      return null;
+    }
+
+    try {
+      long entriesStart = HEADER_SIZE + indexEntries * 4L;
+      int low = 0;
+      int high = indexEntries - 1;
+
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        long position = entriesStart + read(index, HEADER_SIZE + middle * 4L,
+            4).getInt(0);
+        int keyLength = read(index, position, 2).getShort(0) & 0xffff;
+        int order = -compareKeys(key, read(index, position + 2, keyLength), 0,
+            keyLength);
+
+        if (order < 0) {
+          low = middle + 1;
+        } else if (order > 0) {
+          high = middle - 1;
+        } else {
+          return readEntry(index, position + 2 + keyLength);
+        }
+      }
+
+      return null;
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the history index at "
+          + directory, ex);
+    }
+  }
+
+  /**
+   * Reads the samples of an index entry.
+   */
+  private static Stats readEntry(final FileChannel channel,
+      final long position) throws IOException {
+    Stats stats = new Stats();
+    ByteBuffer header = read(channel, position, 13);
+    int assertions = header.getInt(0);
+    long outcomes = header.getLong(4);
+    int count = header.get(12) & 0xff;
+    ByteBuffer durations = read(channel, position + 13, count * 4);
+
+    for (int i = 0; i < count; i++) {
+      stats.add(durations.getInt(i * 4), (outcomes & (1L << i)) != 0,
+          assertions);
+    }
+
+    return stats;
+  }
+
+  /**
+   * Reads a region of a file.
+   *
+   * @param channel Channel of the file. It cannot be null.
+   * @param position Position of the region.
+   * @param length Number of bytes to read.
+   *
+   * @return Returns a buffer with the region, at position 0.
+   */
+  private static ByteBuffer read(final FileChannel channel,
+      final long position, final int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("The history index is truncated.");
+      }
+    }
+
+    buffer.flip();
+
+    return buffer;
+  }
+
+  /**
+   * Compares a key with a key stored in a buffer, by their UTF-8 bytes.
+   */
+  private static int compareKeys(final byte[] key, final ByteBuffer buffer,
+      final int position, final int length) {
+    int common = Math.min(key.length, length);
+
+    for (int i = 0; i < common; i++) {
+      int difference = (key[i] & 0xff) - (buffer.get(position + i) & 0xff);
+
+      if (difference != 0) {
+        return difference;
+      }
+    }
+
+    return key.length - length;
+  }
+
+  /**
+   * Compares two keys by their unsigned bytes.
+   */
+  private static int compareKeys(final byte[] first, final byte[] second,
+      final int offset, final int length) {
+    int common = Math.min(first.length, length);
+
+    for (int i = 0; i < common; i++) {
+      int difference = (first[i] & 0xff) - (second[offset + i] & 0xff);
+
+      if (difference != 0) {
+        return difference;
+      }
+    }
+
+    return first.length - length;
+  }
+
+  /**
+   * Opens a log to write records.
+   */
+  private static DataOutputStream openLog(final File file,
+      final boolean append) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file, append)));
+  }
+
+  /**
+   * Replaces a file with another one.
+   */
+  private static void replace(final File source, final File target)
+      throws IOException {
+    if (!source.renameTo(target)) {
+      target.delete();
+
+      if (!source.renameTo(target)) {
+        throw new IOException("Cannot write " + target);
+      }
+    }
+  }
+
+  /**
+   * Encodes a key in UTF-8.
+   */
+  private static byte[] encode(final String key) {
+    try {
+      return key.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException("UTF-8 is not supported.", ex);
+    }
+  }
+
+  /**
+   * Decodes a key from UTF-8.
+   */
+  private static String decode(final byte[] key) {
+    try {
+      return new String(key, "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException("UTF-8 is not supported.", ex);
+    }
+  }
+
+  /**
+   * Statistics of the last runs of a page or a test.
+   */
+  public static class Stats {
+    /** Durations of the runs in the window, as a ring. */
+    private final int[] durations = new int[WINDOW];
+
+    /** Results of the runs in the window, as a ring. */
+    private final boolean[] outcomes = new boolean[WINDOW];
+
+    /** Number of runs in the window. */
+    private int count;
+
+    /** Position of the next run in the ring. */
+    private int next;
+
+    /** Number of assertions of the last run. */
+    private int lastAssertions;
+
+    /** Durations sorted for the percentiles, or null if not computed. */
+    private int[] sorted;
+
+    /**
+     * Adds a run. The oldest run is dropped if the window is full.
+     */
+    private void add(final int duration, final boolean success,
+        final int assertions) {
+      durations[next] = duration;
+      outcomes[next] = success;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+      lastAssertions = assertions;
+      sorted = null;
+    }
+
+    /**
+     * Returns a copy of these statistics.
+     */
+    private Stats copy() {
+      Stats copy = new Stats();
+      int[] runDurations = getDurations();
+      boolean[] runOutcomes = getOutcomes();
+
+      for (int i = 0; i < runDurations.length; i++) {
+        copy.add(runDurations[i], runOutcomes[i], lastAssertions);
+      }
+
+      return copy;
+    }
+
+    /**
+     * Returns the number of runs in the window.
+     */
+    public int getRuns() {
+      return count;
+    }
+
+    /**
+     * Returns the durations of the runs, from the oldest to the newest, in
+     * milliseconds.
+     */
+    public int[] getDurations() {
+      int[] result = new int[count];
+      int start = count < WINDOW ? 0 : next;
+
+      for (int i = 0; i < count; i++) {
+        result[i] = durations[(start + i) % WINDOW];
+      }
+
+      return result;
+    }
+
+    /**
+     * Returns the results of the runs, from the oldest to the newest.
+     */
+    public boolean[] getOutcomes() {
+      boolean[] result = new boolean[count];
+      int start = count < WINDOW ? 0 : next;
+
+      for (int i = 0; i < count; i++) {
+        result[i] = outcomes[(start + i) % WINDOW];
+      }
+
+      return result;
+    }
+
+    /**
+     * Returns a percentile of the durations, with the nearest rank method.
+     *
+     * @param percentile Percentile to compute, between 0 and 100.
+     *
+     * @return Returns the duration, in milliseconds, or 0 if there are no
+     *    runs.
+     */
+    public int getPercentile(final double percentile) {
+      Validate.isTrue(percentile >= 0 && percentile <= 100, "The percentile"
+          + " must be between 0 and 100.");
+
+      if (count == 0) {
+        return 0;
+      }
+
+      if (sorted == null) {
+        sorted = getDurations();
+        Arrays.sort(sorted);
+      }
+
+      int rank = (int) Math.ceil(percentile / 100 * count);
+
+      return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Returns the fraction of the runs which failed.
+     */
+    public double getFailureRate() {
+      if (count == 0) {
+        return 0;
+      }
+
+      int failures = 0;
+
+      for (boolean success : getOutcomes()) {
+        if (!success) {
+          failures++;
+        }
+      }
+
+      return (double) failures / count;
+    }
+
+    /**
+     * Returns the fraction of consecutive runs with different results. A
+     * broken or a stable test is close to 0, and a flaky test is not.
+     */
+    public double getFlipRate() {
+      if (count < 2) {
+        return 0;
+      }
+
+      boolean[] runs = getOutcomes();
+      int flips = 0;
+
+      for (int i = 1; i < runs.length; i++) {
+        if (runs[i] != runs[i - 1]) {
+          flips++;
+        }
+      }
+
+      return (double) flips / (count - 1);
+    }
+
+    /**
+     * Returns the number of assertions of the last run.
+     */
+    public int getLastAssertions() {
+      return lastAssertions;
+    }
+  }
+}
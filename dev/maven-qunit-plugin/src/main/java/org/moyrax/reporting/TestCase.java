@@ -1,5 +1,8 @@
 package org.moyrax.reporting;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Date;
 
 import org.apache.commons.lang.Validate;
@@ -46,20 +49,52 @@ public class TestCase extends ReportEntry {
    */
   private TestSuite suite;
 
+  /**
+   * Maximum number of output characters kept if the test succeeds, or -1 to
+   * keep all the output.
+   */
+  private int passedOutputLimit = -1;
+
   /** Keeps the output buffer. */
-  private StringBuilder output = new StringBuilder();
+  private CaptureBuffer output;
+
+  /** Assertions of the test, written before the output. */
+  private AssertionList assertions;
 
 
   /** Default constructor. Required by Rhino. */
-  public TestCase() {}
+  public TestCase() {
+    output = new CaptureBuffer();
+    assertions = new AssertionList();
+  }
 
   /**
-   * Creates a new test case.
+   * Creates a new test case which keeps all the output in memory.
    *
    * @param aName Test name. It cannot be null or empty.
    */
   public TestCase(final String aName) {
     super(aName);
+
+    output = new CaptureBuffer();
+    assertions = new AssertionList();
+  }
+
+  /**
+   * Creates a new test case which captures the output with the settings of
+   * the run. The output of the failed tests is always kept.
+   *
+   * @param aName Test name. It cannot be null or empty.
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  public TestCase(final String aName, final OutputSettings settings) {
+    super(aName);
+
+    Validate.notNull(settings, "The settings cannot be null.");
+
+    output = settings.createBuffer();
+    assertions = settings.createAssertions();
+    passedOutputLimit = settings.getPassedOutputLimit();
   }
 
   /**
@@ -76,12 +111,25 @@ public class TestCase extends ReportEntry {
         + " than or equals to 0");
 
     if (startTime > 0) {
+      boolean wasSuccess = success;
+      long previousTime = totalTime;
+
       total = asserts;
       failures = theFailures;
       totalTime = new Date().getTime() - startTime;
 
       if (failures == 0) {
         success = true;
+
+        if (passedOutputLimit >= 0) {
+          output.truncate(assertions.truncate(passedOutputLimit));
+        }
+      } else {
+        success = false;
+      }
+
+      if (suite != null) {
+        suite.testCompleted(this, wasSuccess, previousTime);
       }
     }
   }
@@ -94,7 +142,7 @@ public class TestCase extends ReportEntry {
   public void print(final String message) {
     Validate.notNull(message, "The message cannot be null.");
 
-    output.append(message);
+    output.write(message);
   }
 
   /**
@@ -120,13 +168,67 @@ public class TestCase extends ReportEntry {
   }
 
   /**
-   * Returns the test output string.
+   * Returns the test output string. It loads the whole output in memory, so
+   * {@link #writeOutput(Writer)} is preferred to write it.
    *
-   * @return Return a string containing all output entries added by the method
-   *    print().
+   * @return Return a string containing the assertions and all output entries
+   *    added by the method print().
    */
   public String getOutput() {
-    return output.toString();
+    StringWriter content = new StringWriter();
+
+    try {
+      writeOutput(content);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the output.", ex);
+    }
+
+    return content.toString();
+  }
+
+  /**
+   * Writes the test output: the text of the assertions, followed by the
+   * content of the output buffer.
+   *
+   * @param writer Writer to write the output. It cannot be null.
+   */
+  public void writeOutput(final Writer writer) throws IOException {
+    assertions.writeTo(writer);
+    output.writeTo(writer);
+  }
+
+  /**
+   * Determines whether this test has assertions or printed output.
+   */
+  public boolean hasOutput() {
+    return !assertions.isEmpty() || !output.isEmpty();
+  }
+
+  /**
+   * Discards the assertions and the output of this test.
+   */
+  public void clearOutput() {
+    assertions.clear();
+    output.clear();
+  }
+
+  /**
+   * Returns the assertions of this test.
+   *
+   * @return Returns the assertions. Never returns null.
+   */
+  public AssertionList getAssertions() {
+    return assertions;
+  }
+
+  /**
+   * Returns the buffer which keeps the printed output. The assertions are
+   * kept apart, in {@link #getAssertions()}.
+   *
+   * @return Returns the output buffer. Never returns null.
+   */
+  public CaptureBuffer getOutputBuffer() {
+    return output;
   }
 
   /**
@@ -1,7 +1,8 @@
 package org.moyrax.reporting;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import org.apache.commons.lang.Validate;
@@ -10,14 +11,38 @@ import org.apache.commons.lang.Validate;
 /**
  * This class represents a QUnit testing module.
  *
+ * The tests are kept in the order they were added. The number of failed
+ * tests and the total time are updated as the tests are added or completed,
+ * so the reporters can read them any number of times at no cost.
+ *
  * @author Matias Mirabelli <lumen.night@gmail.com>
  * @since 1.2
  */
 public class TestSuite extends TestCase {
   /**
-   * List of tests that this module contains.
+   * List of tests that this module contains, in the order they were added.
+   */
+  private ArrayList<TestCase> tests = new ArrayList<TestCase>();
+
+  /**
+   * Read-only view of the tests.
+   */
+  private List<TestCase> testsView = Collections.unmodifiableList(tests);
+
+  /**
+   * Names of the tests in this module.
+   */
+  private HashSet<String> testNames = new HashSet<String>();
+
+  /**
+   * Number of tests which didn't succeed.
+   */
+  private int failed;
+
+  /**
+   * Time spent by all the tests, in milliseconds.
    */
-  private HashMap<String, TestCase> tests = new HashMap<String, TestCase>();
+  private long testsTime;
 
   /** Default constructor. Required by Rhino. */
   public TestSuite() {}
@@ -31,6 +56,17 @@ public class TestSuite extends TestCase {
     super(moduleName);
   }
 
+  /**
+   * Creates a new QUnit test module which captures the output with the
+   * settings of the run.
+   *
+   * @param moduleName Name for this module. It cannot be null or empty.
+   * @param settings Output settings of the run. It cannot be null.
+   */
+  public TestSuite(final String moduleName, final OutputSettings settings) {
+    super(moduleName, settings);
+  }
+
   /**
    * Adds a new test to this module.
    *
@@ -40,21 +76,27 @@ public class TestSuite extends TestCase {
   public void addTest (final TestCase aTest) {
     Validate.notNull(aTest, "The test cannot be null.");
 
-    if (tests.containsKey(aTest.getName())) {
+    if (!testNames.add(aTest.getName())) {
       throw new IllegalArgumentException("The test '" + aTest.getName() +
       "' already exists in this module.");
     }
 
     aTest.setSuite(this);
 
-    tests.put(aTest.getName(), aTest);
+    tests.add(aTest);
+    testsTime += aTest.getTotalTime();
+
+    if (!aTest.isSuccess()) {
+      failed++;
+    }
   }
 
   /**
-   * Returns a list with all tests in this module.
+   * Returns an immutable list with all tests in this module, in the order
+   * they were added.
    */
   public List<TestCase> getTests() {
-    return new ArrayList<TestCase>(tests.values());
+    return testsView;
   }
 
   /**
@@ -64,15 +106,15 @@ public class TestSuite extends TestCase {
    *    failure.
    */
   public List<TestCase> getFailed() {
-    ArrayList<TestCase> failed = new ArrayList<TestCase>();
+    ArrayList<TestCase> failedTests = new ArrayList<TestCase>(failed);
 
-    for (TestCase test : tests.values()) {
+    for (TestCase test : tests) {
       if (!test.isSuccess()) {
-        failed.add(test);
+        failedTests.add(test);
       }
     }
 
-    return failed;
+    return failedTests;
   }
 
   /**
@@ -82,12 +124,22 @@ public class TestSuite extends TestCase {
     super.done(getTotal(), getFailures());
   }
 
+  /**
+   * Removes all the tests from this module.
+   */
+  public void clear() {
+    tests.clear();
+    testNames.clear();
+    failed = 0;
+    testsTime = 0;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public int getFailures() {
-    return getFailed().size();
+    return failed;
   }
 
   /**
@@ -103,12 +155,24 @@ public class TestSuite extends TestCase {
    */
   @Override
   public long getTotalTime() {
-    long totalTime = 0;
+    return testsTime;
+  }
 
-    for (TestCase test : getTests()) {
-      totalTime += test.getTotalTime();
+  /**
+   * Updates the totals when a test of this module completes.
+   *
+   * @param test Completed test. It cannot be null.
+   * @param wasSuccess Result of the test before it completed.
+   * @param previousTime Time of the test before it completed.
+   */
+  void testCompleted(final TestCase test, final boolean wasSuccess,
+      final long previousTime) {
+    testsTime += test.getTotalTime() - previousTime;
+
+    if (wasSuccess && !test.isSuccess()) {
+      failed++;
+    } else if (!wasSuccess && test.isSuccess()) {
+      failed--;
     }
-
-    return totalTime;
   }
 }
@@ -3,7 +3,7 @@ package org.moyrax.reporting;
 import java.io.PrintWriter;
 
 import org.apache.commons.lang.Validate;
-import org.moyrax.javascript.qunit.ModuleStatus;
+import org.moyrax.util.Trace;
 
 /**
  * Report operations to the file system in XML surefire-compliant format.
@@ -20,6 +20,9 @@ public class XmlFileReporter extends PlainFileReporter {
   /** XML file writer. */
   private PrintWriter writer;
 
+  /** Output settings of the run, or null to keep the output in memory. */
+  private OutputSettings settings;
+
   /**
    * Creates a new file reporter and sets the output directory.
    *
@@ -30,6 +33,23 @@ public class XmlFileReporter extends PlainFileReporter {
     super(theOutputDir);
   }
 
+  /**
+   * Creates a new file reporter which captures the output with the settings
+   * of the run.
+   *
+   * @param theOutputDir Directory to write the reports. It cannot be null or
+   *    empty, and it must exist.
+   * @param theSettings Output settings of the run. It cannot be null.
+   */
+  public XmlFileReporter(final String theOutputDir,
+      final OutputSettings theSettings) {
+    super(theOutputDir);
+
+    Validate.notNull(theSettings, "The settings cannot be null.");
+
+    settings = theSettings;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -81,20 +101,29 @@ public class XmlFileReporter extends PlainFileReporter {
       final Status<T> status) {
     Validate.notNull(operation, "The operation cannot be null.");
 
-    reporter.stopped(operation, status);
-
-    if (status == ReportStatus.DONE || status == ModuleStatus.FAILED) {
-      closeFile(operation);
+    if (status == ReportStatus.DONE) {
+      Trace.Span span = Trace.start(Trace.REPORT, buildFileName(operation));
+
+      try {
+        reporter.stopped(operation, status);
+        closeFile(operation);
+      } finally {
+        span.end();
+      }
+    } else {
+      reporter.stopped(operation, status);
     }
   }
 
   /**
-   * Creates the XML reporter.
+   * Creates the XML reporter for the current report file.
    */
   private void createReporter() {
-    if (reporter == null) {
-      writer = new PrintWriter(getFileOut());
+    writer = new PrintWriter(getFileWriter());
+    if (settings == null) {
       reporter = new XmlReporter(writer);
+    } else {
+      reporter = new XmlReporter(writer, settings);
     }
   }
 
@@ -1,20 +1,25 @@
 package org.moyrax.reporting;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ConcurrentModificationException;
-import java.util.HashMap;
+import java.io.Writer;
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.Validate;
-import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomWriter;
-import org.moyrax.javascript.qunit.ModuleStatus;
+import org.moyrax.javascript.qunit.Phase;
+import org.moyrax.javascript.qunit.TestHandler;
 
 /**
  * Reports operations in XML format. The output format is surefire-reports
- * compliant.
+ * compliant. The test suites also have the time spent in each phase of the
+ * page execution, in attributes like <code>fetch-time</code>.
+ *
+ * The output is streamed: each <code>testcase</code> element is written as
+ * soon as the test completes, and only the header of the current suite is
+ * kept until the suite completes and its totals are known. The test cases of
+ * the current suite are kept in a {@link CaptureBuffer}, so the memory used
+ * doesn't depend on the size of the suites.
  *
  * @author Matias Mirabelli &lt;lumen.night@gmail.com&gt;
  * @since 1.2.2
@@ -23,11 +28,31 @@ public class XmlReporter extends AbstractReporter {
   /** Writer for printing the output. */
   private PrintWriter writer;
 
-  /** List of executed test suites. */
-  private Map<Integer, Xpp3Dom> suites = new HashMap<Integer, Xpp3Dom>();
+  /** Handler which executes the page, if it's known. */
+  private TestHandler handler;
+
+  /** Suite which is being reported, or null if there's no open suite. */
+  private TestSuite suite;
+
+  /** Test cases of the current suite. */
+  private CaptureBuffer buffer;
+
+  /**
+   * Output settings of the run, or null to keep the test cases in memory.
+   */
+  private OutputSettings settings;
+
+  /** Number of tests in the current suite. */
+  private int tests;
+
+  /** Number of tests with failures in the current suite. */
+  private int failures;
 
-  /** List of executed tests. */
-  private Map<Integer, Xpp3Dom> tests = new HashMap<Integer, Xpp3Dom>();
+  /** Time spent by the tests of the current suite, in milliseconds. */
+  private long totalTime;
+
+  /** Indicates whether the XML declaration was already written. */
+  private boolean started;
 
   /**
    * Creates a new {@link XmlReporter} which writes the output to the specified
@@ -41,6 +66,23 @@ public class XmlReporter extends AbstractReporter {
     writer = theWriter;
   }
 
+  /**
+   * Creates a new {@link XmlReporter} which writes the output to the specified
+   * {@link PrintWriter}, and keeps the test cases of the current suite within
+   * the memory budget of the run.
+   *
+   * @param theWriter Writer for printing the output. It cannot be null.
+   * @param theSettings Output settings of the run. It cannot be null.
+   */
+  public XmlReporter(final PrintWriter theWriter,
+      final OutputSettings theSettings) {
+    this(theWriter);
+
+    Validate.notNull(theSettings, "The settings cannot be null.");
+
+    settings = theSettings;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -50,10 +92,12 @@ public class XmlReporter extends AbstractReporter {
 
     Validate.notNull(operation, "The operation cannot be null.");
 
-    if (TestSuite.class.equals(operation.getRelatedObject().getClass())) {
-      notifyTestSuiteElement((TestSuite)operation.getRelatedObject());
-    } else if (TestCase.class.equals(operation.getRelatedObject().getClass())) {
-      notifyTestElement((TestCase)operation.getRelatedObject());
+    Object entry = operation.getRelatedObject();
+
+    if (entry instanceof TestHandler) {
+      handler = (TestHandler) entry;
+    } else if (TestSuite.class.equals(entry.getClass())) {
+      openSuite((TestSuite) entry);
     }
   }
 
@@ -92,119 +136,271 @@ public class XmlReporter extends AbstractReporter {
       final Status<T> status) {
     Validate.notNull(operation, "The operation cannot be null.");
 
-    if (status == ReportStatus.DONE || status == ModuleStatus.FAILED) {
-      writeResults();
+    Object entry = operation.getRelatedObject();
+
+    if (status == ReportStatus.DONE) {
+      closeSuite();
+      writeDeclaration();
+      writer.flush();
+    } else if (TestSuite.class.equals(entry.getClass())) {
+      closeSuite();
+    } else if (TestCase.class.equals(entry.getClass())) {
+      writeTestCase((TestCase) entry);
+      super.stopped(operation, status);
     } else {
       super.stopped(operation, status);
     }
   }
 
   /**
-   * Creates or updates the XML element for the specified {@link TestCase}.
+   * Starts reporting the specified suite. If there's another open suite, it's
+   * completed first.
    *
-   * @param test Test case related to the element to create or update. It
-   *    cannot be null.
+   * @param theSuite Suite to report. It cannot be null.
    */
-  private void notifyTestElement(final TestCase test) {
-    Validate.notNull(test, "The test cannot be null.");
+  private void openSuite(final TestSuite theSuite) {
+    Validate.notNull(theSuite, "The test suite cannot be null.");
 
-    Xpp3Dom element = tests.get(test.hashCode());
+    closeSuite();
 
-    if (element == null) {
-      element = new Xpp3Dom("testcase");
-
-      tests.put(test.hashCode(), element);
+    suite = theSuite;
+    if (settings == null) {
+      buffer = new CaptureBuffer();
+    } else {
+      buffer = settings.createBuffer();
     }
+    tests = 0;
+    failures = 0;
+    totalTime = 0;
+  }
 
-    writeAttributes(element, test);
-    writeOutput(element, test);
-
-    if (test.getSuite() != null) {
-      Xpp3Dom suiteEl = suites.get(test.getSuite().hashCode());
+  /**
+   * Writes the current suite to the output, with the totals of the tests
+   * written so far. It does nothing if there's no open suite.
+   */
+  private void closeSuite() {
+    if (suite == null) {
+      return;
+    }
 
-      if (suiteEl != null) {
-        suiteEl.addChild(element);
-      } else {
-        throw new ConcurrentModificationException("The test is being executed"
-            + " before the related suite is created (test " + test.getName()
-            + " on suite " + test.getSuite().getName() + ")");
-      }
+    writeDeclaration();
+
+    try {
+      writer.write("<testsuite");
+      writeAttributes(suite, totalTime);
+      writeAttribute("tests", String.valueOf(tests));
+      writeAttribute("failures", String.valueOf(failures));
+      writePhases();
+      writer.write(">\n");
+      writeOutput(writer, suite, "  ");
+
+      buffer.writeTo(writer);
+
+      writer.write("</testsuite>\n");
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the test cases of suite "
+          + suite.getName(), ex);
+    } finally {
+      buffer.clear();
+      buffer = null;
+      suite = null;
     }
   }
 
   /**
-   * Creates or updates the XML element for the specified {@link TestSuite}.
+   * Writes the element for the specified {@link TestCase}. The test must be
+   * in the current suite.
    *
-   * @param suite Suite related to the element to create or update. It
-   *    cannot be null.
+   * @param test Completed test case. It cannot be null.
    */
-  private void notifyTestSuiteElement(final TestSuite suite) {
-    Validate.notNull(suite, "The test suite cannot be null.");
+  private void writeTestCase(final TestCase test) {
+    Validate.notNull(test, "The test cannot be null.");
+
+    if (test.getSuite() == null) {
+      return;
+    }
+
+    if (test.getSuite() != suite) {
+      throw new IllegalStateException("The test is being reported outside"
+          + " the related suite (test " + test.getName() + " on suite "
+          + test.getSuite().getName() + ")");
+    }
+
+    tests++;
+    totalTime += test.getTotalTime();
+
+    if (test.getFailures() > 0) {
+      failures++;
+    }
 
-    Xpp3Dom element = suites.get(suite.hashCode());
+    StringBuilder element = new StringBuilder("  <testcase");
 
-    if (element == null) {
-      element = new Xpp3Dom("testsuite");
+    appendAttributes(element, test, test.getTotalTime());
 
-      suites.put(suite.hashCode(), element);
+    if (!test.hasOutput()) {
+      buffer.write(element.append("/>\n").toString());
+      return;
     }
 
-    writeAttributes(element, suite);
-    writeOutput(element, suite);
+    buffer.write(element.append(">\n").toString());
 
+    try {
+      writeOutput(buffer, test, "    ");
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read the output of test "
+          + test.getName(), ex);
+    }
+
+    buffer.write("  </testcase>\n");
   }
 
   /**
    * Writes the default attributes for the specified {@link TestCase}.
    *
-   * @param element Element to write the attributes. It cannot be null.
    * @param source Source {@link TestCase} to retrieve the attributes data. It
    *    cannot be null.
+   * @param time Time spent by the test, in milliseconds.
    */
-  private void writeAttributes(final Xpp3Dom element, final TestCase source) {
-    element.setAttribute("name", source.getName());
+  private void writeAttributes(final TestCase source, final long time) {
+    StringBuilder attributes = new StringBuilder();
+
+    appendAttributes(attributes, source, time);
+
+    writer.write(attributes.toString());
+  }
+
+  /**
+   * Appends the default attributes for the specified {@link TestCase}.
+   *
+   * @param element Element to append the attributes. It cannot be null.
+   * @param source Source {@link TestCase} to retrieve the attributes data. It
+   *    cannot be null.
+   * @param time Time spent by the test, in milliseconds.
+   */
+  private void appendAttributes(final StringBuilder element,
+      final TestCase source, final long time) {
+    appendAttribute(element, "name", source.getName());
 
     if (source.getGroup() != null) {
-      element.setAttribute("group", source.getGroup());
+      appendAttribute(element, "group", source.getGroup());
     }
 
     if (source.getSourceName() != null) {
-      element.setAttribute("classname", source.getSourceName() );
+      appendAttribute(element, "classname", source.getSourceName());
     }
 
-    element.setAttribute("time", elapsedTimeAsString(source.getTotalTime()));
+    appendAttribute(element, "time", elapsedTimeAsString(time));
   }
 
   /**
-   * Writes the output data (if any) of the {@link TestCase}.
+   * Writes the time spent in each phase of the page execution to the current
+   * suite.
+   */
+  private void writePhases() {
+    if (handler == null) {
+      return;
+    }
+
+    for (Map.Entry<Phase, Long> phase : handler.getPhaseTimes().entrySet()) {
+      writeAttribute(phase.getKey().getName() + "-time",
+          elapsedTimeAsString(phase.getValue() / 1000000L));
+    }
+  }
+
+  /**
+   * Writes the output data (if any) of the {@link TestCase}. The output is
+   * escaped while it's rendered from the test.
    *
-   * @param element Element to write the output. It cannot be null.
+   * @param output Writer to write the element. It cannot be null.
    * @param source Source {@link TestCase} to retrieve the output data. It
    *    cannot be null.
+   * @param indent Indentation of the element. It cannot be null.
+   */
+  private void writeOutput(final Writer output, final TestCase source,
+      final String indent) throws IOException {
+    if (!source.hasOutput()) {
+      return;
+    }
+
+    output.write(indent + "<system-out>");
+    source.writeOutput(new EscapingWriter(output));
+    output.write("</system-out>\n");
+  }
+
+  /**
+   * Writes an attribute of the current element.
    */
-  private void writeOutput(final Xpp3Dom element, final TestCase source) {
-    if (!StringUtils.isBlank(source.getOutput())) {
-      Xpp3Dom output = element.getChild("system-out");
+  private void writeAttribute(final String name, final String value) {
+    StringBuilder attribute = new StringBuilder();
 
-      if (output == null) {
-        output = new Xpp3Dom("system-out");
+    appendAttribute(attribute, name, value);
 
-        element.addChild(output);
-      }
+    writer.write(attribute.toString());
+  }
+
+  /**
+   * Appends an attribute to an element.
+   */
+  private static void appendAttribute(final StringBuilder element,
+      final String name, final String value) {
+    element.append(' ').append(name).append("=\"")
+      .append(StringEscapeUtils.escapeXml(value)).append('"');
+  }
 
-      output.setValue(source.getOutput());
+  /**
+   * Writes the XML declaration if it wasn't written yet.
+   */
+  private void writeDeclaration() {
+    if (!started) {
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+      started = true;
     }
   }
 
   /**
-   * Writes the results to the output device. It's invoked only once when the
-   * execution is already finished.
+   * Writer which escapes the XML entities of the text.
    */
-  private void writeResults() {
-    writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>");
+  private static class EscapingWriter extends Writer {
+    /** Writer for the escaped text. */
+    private final Writer target;
+
+    /**
+     * Creates a writer which writes the escaped text to the target.
+     */
+    private EscapingWriter(final Writer theTarget) {
+      target = theTarget;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final char[] chars, final int offset, final int length)
+        throws IOException {
+      StringEscapeUtils.escapeXml(target, new String(chars, offset, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final String text) throws IOException {
+      StringEscapeUtils.escapeXml(target, text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+      target.flush();
+    }
 
-    for (Xpp3Dom suite : suites.values()) {
-      Xpp3DomWriter.write(new PrettyPrintXMLWriter( writer ), suite);
+    /**
+     * The target is not closed.
+     */
+    @Override
+    public void close() {
     }
   }
 }
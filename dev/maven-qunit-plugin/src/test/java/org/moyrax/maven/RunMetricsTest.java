@@ -0,0 +1,44 @@
+package org.moyrax.maven;
+
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.moyrax.javascript.ContextClassLoader;
+
+/**
+ * Tests the {@link RunMetrics} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class RunMetricsTest {
+  @Test
+  public void testWrite() throws Exception {
+    File directory = File.createTempFile("RunMetricsTest", "");
+
+    directory.delete();
+    directory.mkdir();
+
+    try {
+      RunMetrics metrics = new RunMetrics();
+      metrics.setClassLoader(new ContextClassLoader(
+          Thread.currentThread().getContextClassLoader()));
+      metrics.write(directory);
+
+      String json = FileUtils.readFileToString(new File(directory,
+          RunMetrics.JSON_FILE), "UTF-8");
+      String prometheus = FileUtils.readFileToString(new File(directory,
+          RunMetrics.PROMETHEUS_FILE), "UTF-8");
+
+      assertTrue(json.contains("\"pages\": 0,"));
+      assertTrue(json.contains("\"classloader_transforms\": 0,"));
+      assertTrue(json.contains("\"phases\": {}"));
+      assertTrue(prometheus.contains("qunit_pages 0"));
+      assertTrue(prometheus.contains("# TYPE qunit_heap_peak_bytes gauge"));
+    } finally {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+}
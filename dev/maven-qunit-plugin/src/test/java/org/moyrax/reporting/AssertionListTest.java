@@ -0,0 +1,106 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link AssertionList} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class AssertionListTest {
+  @Test
+  public void testRecords() {
+    AssertionList assertions = new AssertionList();
+
+    assertions.add(true, "ok");
+    assertions.add(false, "equals", "1", "2");
+    assertions.add(true, "ok", "ignored", "ignored");
+    assertions.add(false, "failed");
+
+    assertEquals(4, assertions.size());
+    assertTrue(assertions.isPassed(0));
+    assertFalse(assertions.isPassed(1));
+    assertSame(assertions.getMessage(0), assertions.getMessage(2));
+    assertEquals("equals", assertions.getMessage(1));
+    assertEquals("1", assertions.getExpected(1));
+    assertEquals("2", assertions.getActual(1));
+    assertNull(assertions.getExpected(2));
+    assertNull(assertions.getActual(3));
+  }
+
+  @Test
+  public void testSharedMessages() throws Exception {
+    OutputSettings settings = new OutputSettings(0, -1);
+    AssertionList first = settings.createAssertions();
+    AssertionList second = settings.createAssertions();
+    AssertionList other = new AssertionList();
+
+    first.add(true, new String("ok"));
+    second.add(true, new String("ok"));
+    other.add(true, new String("ok"));
+
+    assertSame(first.getMessage(0), second.getMessage(0));
+    assertFalse(first.getMessage(0) == other.getMessage(0));
+
+    settings.close();
+  }
+
+  @Test
+  public void testWriteTo() throws Exception {
+    AssertionList assertions = new AssertionList();
+    StringWriter text = new StringWriter();
+
+    assertions.add(true, "ok \u00e1");
+    assertions.add(false, "equals", "1", "2");
+    assertions.writeTo(text);
+
+    assertEquals("ok \u00e1\nequals, expected: 1 result: 2\n",
+        text.toString());
+  }
+
+  @Test
+  public void testTruncate() throws Exception {
+    AssertionList assertions = new AssertionList();
+
+    for (int i = 0; i < 10; i++) {
+      assertions.add(true, "ok");
+    }
+
+    assertEquals(0, assertions.truncate(7));
+    assertEquals(2, assertions.size());
+
+    StringWriter text = new StringWriter();
+
+    assertions.writeTo(text);
+
+    assertEquals("ok\nok\n" + CaptureBuffer.TRUNCATED, text.toString());
+
+    assertions.truncate(0);
+
+    assertTrue(assertions.isEmpty());
+  }
+
+  @Test
+  public void testTestOutput() {
+    TestCase test = new TestCase("test");
+
+    test.getAssertions().add(false, "equals", "<a>", "b");
+    test.print("printed");
+
+    assertTrue(test.hasOutput());
+    assertEquals("equals, expected: <a> result: b\nprinted",
+        test.getOutput());
+
+    test.clearOutput();
+
+    assertFalse(test.hasOutput());
+  }
+}
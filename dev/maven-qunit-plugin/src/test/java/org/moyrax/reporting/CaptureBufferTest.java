@@ -0,0 +1,115 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CaptureBuffer} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class CaptureBufferTest {
+  @Test
+  public void testSpill() throws Exception {
+    CaptureStore store = new CaptureStore(10);
+    CaptureBuffer first = new CaptureBuffer(store);
+    CaptureBuffer second = new CaptureBuffer(store);
+
+    first.write("0123456789");
+    second.write("abc");
+    first.write("\u00e1\u00e9");
+    second.write("def");
+    first.write("end");
+
+    assertTrue(first.isSpilled());
+    assertTrue(second.isSpilled());
+    assertEquals(15, first.length());
+    assertEquals("0123456789\u00e1\u00e9end", first.toString());
+    assertEquals("abcdef", second.toString());
+
+    InputStream stream = first.openStream();
+
+    try {
+      assertEquals("0123456789\u00e1\u00e9end", IOUtils.toString(stream, "UTF-8"));
+    } finally {
+      stream.close();
+    }
+  }
+
+  @Test
+  public void testTruncate() {
+    CaptureStore store = new CaptureStore(4);
+    CaptureBuffer buffer = new CaptureBuffer(store);
+
+    buffer.write("ab");
+    buffer.write("cdef");
+    buffer.truncate(3);
+
+    assertFalse(buffer.isSpilled());
+    assertEquals("ab" + CaptureBuffer.TRUNCATED, buffer.toString());
+
+    buffer.clear();
+
+    assertTrue(buffer.isEmpty());
+    assertTrue(store.reserve(4));
+  }
+
+  @Test
+  public void testReclaim() throws Exception {
+    CaptureStore store = new CaptureStore(0);
+    CaptureBuffer first = new CaptureBuffer(store);
+    CaptureBuffer second = new CaptureBuffer(store);
+
+    first.write("abc");
+    second.write("def");
+    first.clear();
+
+    assertEquals(6, store.getSize());
+
+    second.clear();
+
+    assertEquals(0, store.getSize());
+
+    first.write("ghi");
+
+    assertEquals("ghi", first.toString());
+
+    store.close();
+
+    try {
+      second.write("jkl");
+      fail("The store is closed.");
+    } catch (IllegalStateException ex) {
+    }
+  }
+
+  @Test
+  public void testStreamChunks() throws Exception {
+    CaptureBuffer buffer = new CaptureBuffer();
+    StringBuilder content = new StringBuilder();
+
+    for (int i = 0; i < 8191; i++) {
+      content.append('a');
+    }
+
+    content.append("\ud83d\ude00end");
+    buffer.write(content.toString());
+
+    InputStream stream = buffer.openStream();
+
+    buffer.write("ignored");
+
+    try {
+      assertEquals(content.toString(), IOUtils.toString(stream, "UTF-8"));
+    } finally {
+      stream.close();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ChannelWriter} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ChannelWriterTest {
+  @Test
+  public void testWrite() throws Exception {
+    File file = File.createTempFile("ChannelWriterTest", ".txt");
+
+    try {
+      String large = StringUtils.repeat("\u00e1bc", ChannelWriter.BUFFER_SIZE);
+      String pair = "\ud83d\ude00";
+
+      ChannelWriter writer = new ChannelWriter(file);
+
+      writer.write(large);
+      writer.write(pair.substring(0, 1));
+      writer.write(pair.substring(1));
+      writer.write("\n");
+      writer.close();
+      writer.close();
+
+      assertEquals(large + pair + "\n", FileUtils.readFileToString(file,
+          "UTF-8"));
+    } finally {
+      file.delete();
+    }
+  }
+}
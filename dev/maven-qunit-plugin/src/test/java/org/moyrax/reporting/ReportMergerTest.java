@@ -0,0 +1,119 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ReportMerger} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ReportMergerTest {
+  /** Directory of the test files. */
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("ReportMergerTest", "");
+    directory.delete();
+    directory.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    File first = new File(directory, "first");
+    File second = new File(directory, "second");
+    File output = new File(directory, "output");
+
+    first.mkdirs();
+    second.mkdirs();
+
+    write(new File(first, "TEST-a.html.xml"), suite("a", 3, 2));
+    write(new File(first, "TEST-a.html.txt"), "first attempt");
+    write(new File(first, "TEST-b.html.xml"), suite("b", 4, 0)
+        + suite("c", 1, 1));
+    write(new File(second, "TEST-a.html.xml"), suite("a", 3, 0));
+    write(new File(second, "TEST-a.html.txt"), "second attempt");
+
+    new File(first, "TEST-a.html.xml").setLastModified(1000);
+
+    ReportMerger merger = new ReportMerger(output);
+
+    merger.addInput(first);
+    merger.addInput(second);
+
+    ReportMerger.Summary summary = merger.merge();
+
+    assertEquals(Arrays.asList("TEST-a.html.xml", "TEST-b.html.xml"),
+        summary.getFiles());
+    assertEquals(1, summary.getRetried());
+    assertEquals(3, summary.getSuites());
+    assertEquals(8, summary.getTests());
+    assertEquals(1, summary.getFailures());
+
+    String merged = FileUtils.readFileToString(new File(output,
+        "TEST-a.html.xml"), "UTF-8");
+
+    assertEquals(1, StringUtils.countMatches(merged, "<?xml"));
+    assertTrue(merged.contains("<testsuite name=\"a\" tests=\"3\""
+        + " failures=\"0\">"));
+    assertTrue(merged.contains("<system-out>a &amp; &lt;b&gt;</system-out>"));
+    assertTrue(merged.contains("<testcase name=\"test0\"/>"));
+    assertEquals("second attempt", FileUtils.readFileToString(
+        new File(output, "TEST-a.html.txt"), "UTF-8"));
+
+    String totals = FileUtils.readFileToString(new File(output,
+        ReportMerger.SUMMARY_FILE), "UTF-8");
+
+    assertTrue(totals.contains("pages=\"2\" retried=\"1\" suites=\"3\""
+        + " tests=\"8\" failures=\"1\" errors=\"0\""));
+  }
+
+  /**
+   * Builds a test suite element.
+   */
+  private String suite(final String name, final int tests,
+      final int failures) {
+    StringBuilder suite = new StringBuilder("<testsuite name=\"" + name
+        + "\" tests=\"" + tests + "\" failures=\"" + failures + "\">\n"
+        + "  <system-out>a &amp; &lt;b&gt;</system-out>\n");
+
+    for (int i = 0; i < tests; i++) {
+      suite.append("  <testcase name=\"test" + i + "\"/>\n");
+    }
+
+    return suite.append("</testsuite>\n").toString();
+  }
+
+  /**
+   * Writes a file in UTF-8.
+   */
+  private void write(final File file, final String content) throws Exception {
+    Writer writer = new ChannelWriter(file);
+
+    try {
+      if (file.getName().endsWith(".xml")) {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+      }
+
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+}
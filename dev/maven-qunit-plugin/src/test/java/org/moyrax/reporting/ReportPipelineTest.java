@@ -0,0 +1,152 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ReportPipeline} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class ReportPipelineTest {
+  @Test
+  public void testDeliverInOrder() {
+    RecordingReporter fast = new RecordingReporter(0);
+    RecordingReporter slow = new RecordingReporter(1);
+
+    ReportPipeline pipeline = new ReportPipeline(Arrays.asList(
+        new Reporter[] { fast, slow }), 4);
+
+    for (int i = 0; i < 50; i++) {
+      pipeline.publish(ReportEvent.info("message" + i));
+    }
+
+    pipeline.flush();
+
+    assertEquals(50, fast.messages.size());
+    assertEquals(50, slow.messages.size());
+    assertEquals("message49", slow.messages.get(49));
+
+    pipeline.close();
+  }
+
+  @Test
+  public void testReleaseDeliveredEvents() throws Exception {
+    RecordingReporter fast = new RecordingReporter(0);
+    RecordingReporter slow = new RecordingReporter(1);
+
+    ReportPipeline pipeline = new ReportPipeline(Arrays.asList(
+        new Reporter[] { fast, slow }), 16);
+
+    ReportEvent event = ReportEvent.info("released");
+    WeakReference<ReportEvent> reference =
+        new WeakReference<ReportEvent>(event);
+
+    pipeline.publish(event);
+    pipeline.publish(ReportEvent.info("next"));
+    pipeline.flush();
+
+    event = null;
+
+    for (int i = 0; i < 20 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull(reference.get());
+
+    pipeline.close();
+  }
+
+  @Test
+  public void testFlushRethrowsErrors() {
+    RecordingReporter reporter = new RecordingReporter(0) {
+      @Override
+      public void warn(final String message) {
+        throw new IllegalArgumentException(message);
+      }
+    };
+
+    ReportPipeline pipeline = new ReportPipeline(Arrays.asList(
+        new Reporter[] { reporter }), 4);
+
+    pipeline.publish(ReportEvent.warn("broken"));
+    pipeline.publish(ReportEvent.info("after"));
+
+    try {
+      pipeline.flush();
+      fail("The reporter error must be rethrown.");
+    } catch (IllegalStateException ex) {
+      assertTrue(ex.getCause() instanceof IllegalArgumentException);
+    }
+
+    assertEquals(Arrays.asList(new String[] { "after" }), reporter.messages);
+
+    pipeline.close();
+  }
+
+  @Test
+  public void testFlushRethrowsFatalErrors() {
+    RecordingReporter reporter = new RecordingReporter(0) {
+      @Override
+      public void warn(final String message) {
+        throw new AssertionError(message);
+      }
+    };
+
+    ReportPipeline pipeline = new ReportPipeline(Arrays.asList(
+        new Reporter[] { reporter }), 2);
+
+    for (int i = 0; i < 10; i++) {
+      pipeline.publish(ReportEvent.warn("broken" + i));
+    }
+
+    pipeline.publish(ReportEvent.info("after"));
+
+    try {
+      pipeline.flush();
+      fail("The reporter error must be rethrown.");
+    } catch (IllegalStateException ex) {
+      assertTrue(ex.getCause() instanceof AssertionError);
+    }
+
+    assertEquals(Arrays.asList(new String[] { "after" }), reporter.messages);
+
+    pipeline.close();
+  }
+
+  /**
+   * Reporter which records the info messages.
+   */
+  private static class RecordingReporter extends AbstractReporter {
+    /** Received messages. */
+    private final List<String> messages = new ArrayList<String>();
+
+    /** Time to wait on each message, in milliseconds. */
+    private final long delay;
+
+    private RecordingReporter(final long theDelay) {
+      delay = theDelay;
+    }
+
+    @Override
+    public void info(final String message) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+
+      messages.add(message);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RunHistory} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class RunHistoryTest {
+  /** Directory of the history. */
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("RunHistoryTest", "");
+    directory.delete();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  public void testPercentiles() throws Exception {
+    for (int run = 1; run <= 20; run++) {
+      RunHistory history = RunHistory.open(directory);
+
+      history.recordPage("page.html", run * 10, run % 5 != 0, 4);
+      history.recordTest("page.html", "module", "test", run, run % 2 == 0,
+          2);
+      history.close();
+    }
+
+    RunHistory history = RunHistory.open(directory);
+
+    try {
+      RunHistory.Stats page = history.getPageStats("page.html");
+
+      assertEquals(20, page.getRuns());
+      assertEquals(100, page.getPercentile(50));
+      assertEquals(190, page.getPercentile(95));
+      assertEquals(0.2, page.getFailureRate(), 0.001);
+      assertEquals(4, page.getLastAssertions());
+
+      RunHistory.Stats test = history.getTestStats("page.html", "module",
+          "test");
+
+      assertEquals(1.0, test.getFlipRate(), 0.001);
+      assertNull(history.getPageStats("other.html"));
+    } finally {
+      history.close();
+    }
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    RunHistory history = RunHistory.open(directory);
+
+    for (int run = 0; run < RunHistory.WINDOW * 3; run++) {
+      history.recordPage("page" + (run % 3) + ".html", run, true, 1);
+    }
+
+    history.compact();
+
+    for (int run = 0; run < 3; run++) {
+      history.recordPage("page0.html", 1000, true, 1);
+    }
+
+    history.close();
+
+    // A record half written by an interrupted run.
+    FileOutputStream log = new FileOutputStream(new File(directory,
+        "history.log"), true);
+
+    log.write(new byte[] { 0, 0, 0, 20, 1, 2 });
+    log.close();
+
+    history = RunHistory.open(directory);
+
+    try {
+      RunHistory.Stats page = history.getPageStats("page0.html");
+      int[] durations = page.getDurations();
+
+      assertEquals(RunHistory.WINDOW, page.getRuns());
+      assertEquals(9, durations[0]);
+      assertEquals(1000, durations[RunHistory.WINDOW - 1]);
+      assertEquals(RunHistory.WINDOW, history.getPageStats("page2.html")
+          .getRuns());
+
+      history.recordPage("page1.html", 5, false, 1);
+
+      assertEquals(5, history.getPageStats("page1.html").getDurations()[
+          RunHistory.WINDOW - 1]);
+    } finally {
+      history.close();
+    }
+  }
+
+  @Test
+  public void testCompactTwice() throws Exception {
+    RunHistory history = RunHistory.open(directory);
+
+    try {
+      history.recordPage("page.html", 10, true, 1);
+      history.compact();
+
+      assertEquals(1, history.getPageStats("page.html").getRuns());
+
+      history.recordPage("page.html", 20, false, 2);
+      history.compact();
+
+      RunHistory.Stats page = history.getPageStats("page.html");
+
+      assertEquals(2, page.getRuns());
+      assertEquals(20, page.getDurations()[1]);
+      assertEquals(2, page.getLastAssertions());
+
+      history.recordPage("page.html", 30, true, 3);
+    } finally {
+      history.close();
+    }
+
+    history = RunHistory.open(directory);
+
+    try {
+      assertEquals(3, history.getPageStats("page.html").getRuns());
+      assertEquals(1.0, history.getPageStats("page.html").getFlipRate(),
+          0.001);
+    } finally {
+      history.close();
+    }
+  }
+
+  @Test
+  public void testLock() throws Exception {
+    RunHistory history = RunHistory.open(directory);
+
+    try {
+      RunHistory.open(directory);
+      fail("The history is locked.");
+    } catch (IOException ex) {
+    }
+
+    history.recordPage("page.html", 10, true, 1);
+    history.close();
+
+    history = RunHistory.open(directory);
+
+    try {
+      assertEquals(1, history.getPageStats("page.html").getRuns());
+    } finally {
+      history.close();
+    }
+  }
+}
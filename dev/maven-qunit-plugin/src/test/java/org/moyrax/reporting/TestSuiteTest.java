@@ -0,0 +1,84 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link TestSuite} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class TestSuiteTest {
+  @Test
+  public void testTotals() {
+    TestSuite module = new TestSuite("module");
+    TestCase first = createTest("first", 0, 5);
+    TestCase second = createTest("second", 1, 7);
+    TestCase running = new TestCase("running");
+
+    module.addTest(first);
+    module.addTest(second);
+    module.addTest(running);
+
+    long time = first.getTotalTime() + second.getTotalTime();
+
+    assertEquals(3, module.getTotal());
+    assertEquals(2, module.getFailures());
+    assertEquals(time, module.getTotalTime());
+
+    running.start(1);
+    running.done(1, 0);
+
+    assertEquals(1, module.getFailures());
+    assertEquals(time + running.getTotalTime(), module.getTotalTime());
+  }
+
+  @Test
+  public void testOrder() {
+    TestSuite module = new TestSuite("module");
+
+    for (int i = 9; i >= 0; i--) {
+      module.addTest(new TestCase("test" + i));
+    }
+
+    List<TestCase> tests = module.getTests();
+
+    for (int i = 0; i < tests.size(); i++) {
+      assertEquals("test" + (9 - i), tests.get(i).getName());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicated() {
+    TestSuite module = new TestSuite("module");
+
+    module.addTest(new TestCase("test"));
+    module.addTest(new TestCase("test"));
+  }
+
+  @Test
+  public void testNames() {
+    TestCase first = new TestCase(new String("shared"));
+    TestCase second = new TestCase(new String("shared"));
+
+    assertSame(first.getName(), second.getName());
+  }
+
+  /**
+   * Creates a completed test which took the specified time.
+   */
+  private TestCase createTest(final String name, final int failures,
+      final long time) {
+    long start = System.currentTimeMillis() - time;
+    TestCase test = new TestCase(name);
+
+    test.start(start);
+    test.done(1, failures);
+
+    return test;
+  }
+}
@@ -0,0 +1,134 @@
+package org.moyrax.reporting;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.moyrax.javascript.qunit.ModuleStatus;
+import org.moyrax.javascript.qunit.TestStatus;
+
+/**
+ * Tests the {@link XmlReporter} class.
+ *
+ * @author Matias Mirabelli <lumen.night@gmail.com>
+ */
+public class XmlReporterTest {
+  @Test
+  public void testWriteSuites() {
+    StringWriter output = new StringWriter();
+
+    report(output, 3, "<b>ok</b>");
+
+    String xml = output.toString();
+
+    assertTrue(xml.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>"));
+    assertTrue(xml.contains("<testsuite name=\"module\""));
+    assertTrue(xml.contains(" tests=\"3\" failures=\"1\">"));
+    assertTrue(xml.contains("<system-out>&lt;b&gt;ok&lt;/b&gt;</system-out>"));
+    assertEquals(3, StringUtils.countMatches(xml, "<testcase "));
+    assertTrue(xml.endsWith("</testsuite>\n"));
+  }
+
+  @Test
+  public void testSpillLargeSuites() {
+    StringWriter output = new StringWriter();
+    String message = StringUtils.repeat("x", 1024);
+
+    report(output, 200, message);
+
+    String xml = output.toString();
+
+    assertEquals(200, StringUtils.countMatches(xml, "<testcase "));
+    assertEquals(200, StringUtils.countMatches(xml, message));
+    assertTrue(xml.contains(" tests=\"200\" failures=\"1\">"));
+    assertTrue(xml.endsWith("</testsuite>\n"));
+  }
+
+  @Test
+  public void testFailedModule() {
+    StringWriter output = new StringWriter();
+    PrintWriter writer = new PrintWriter(output);
+    XmlReporter reporter = new XmlReporter(writer);
+    TestSuite failed = new TestSuite("failed");
+    TestSuite passed = new TestSuite("passed");
+
+    reportModule(reporter, failed, 1);
+
+    // The failed module is written as soon as it completes, before the page
+    // is done.
+    reporter.failed(new Operation<TestSuite>(failed), ModuleStatus.FAILED);
+    writer.flush();
+
+    String xml = output.toString();
+
+    assertTrue(xml.contains("<testsuite name=\"failed\""));
+    assertTrue(xml.contains(" tests=\"1\" failures=\"1\">"));
+    assertTrue(xml.endsWith("</testsuite>\n"));
+
+    reportModule(reporter, passed, 0);
+
+    reporter.succeed(new Operation<TestSuite>(passed), ModuleStatus.SUCCEED);
+    reporter.succeed(new Operation<ReportEntry>(passed), ReportStatus.DONE);
+
+    xml = output.toString();
+
+    assertEquals(2, StringUtils.countMatches(xml, "<testsuite "));
+    assertTrue(xml.contains(" tests=\"1\" failures=\"0\">"));
+  }
+
+  /**
+   * Starts a module and reports a single test with the specified number of
+   * failures.
+   */
+  private void reportModule(final XmlReporter reporter,
+      final TestSuite module, final int failures) {
+    TestCase test = new TestCase(module.getName() + "-test");
+
+    test.start(1);
+    test.done(1, failures);
+    module.addTest(test);
+
+    reporter.started(new Operation<TestSuite>(module), ModuleStatus.STARTED);
+    reporter.started(new Operation<TestCase>(test), TestStatus.STARTED);
+
+    if (failures > 0) {
+      reporter.failed(new Operation<TestCase>(test), TestStatus.FAILED);
+    } else {
+      reporter.succeed(new Operation<TestCase>(test), TestStatus.SUCCEED);
+    }
+  }
+
+  /**
+   * Reports a module with the specified number of tests. The first test
+   * fails.
+   */
+  private void report(final StringWriter output, final int count,
+      final String message) {
+    XmlReporter reporter = new XmlReporter(new PrintWriter(output));
+    TestSuite module = new TestSuite("module");
+
+    for (int i = 0; i < count; i++) {
+      TestCase test = new TestCase("test" + i);
+
+      test.start(1);
+      test.print(message);
+      test.done(2, i == 0 ? 1 : 0);
+
+      module.addTest(test);
+    }
+
+    reporter.started(new Operation<TestSuite>(module), ModuleStatus.STARTED);
+
+    for (TestCase test : module.getTests()) {
+      reporter.started(new Operation<TestCase>(test), TestStatus.STARTED);
+      reporter.succeed(new Operation<TestCase>(test), TestStatus.SUCCEED);
+    }
+
+    reporter.failed(new Operation<TestSuite>(module), ModuleStatus.FAILED);
+    reporter.succeed(new Operation<ReportEntry>(module), ReportStatus.DONE);
+  }
+}